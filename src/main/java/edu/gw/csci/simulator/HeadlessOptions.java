@@ -0,0 +1,365 @@
+package edu.gw.csci.simulator;
+
+import edu.gw.csci.simulator.cpu.Machine;
+import edu.gw.csci.simulator.cpu.PipelineModel;
+import edu.gw.csci.simulator.trace.CacheSweep;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The command line of {@link HeadlessSimulator}, parsed without touching a machine, so a malformed
+ * or unsupported option is reported before anything runs.
+ */
+final class HeadlessOptions {
+
+    static final String USAGE = String.join(System.lineSeparator(),
+            "Usage: HeadlessSimulator <program file> [option]...",
+            "The program file holds one 16 bit binary instruction per line; anything after // is ignored.",
+            "  --start address          Load and start the program at the address",
+            "  --input value            Queue a line of console input, may be repeated",
+            "  --store address=value    Preset a memory location, may be repeated",
+            "  --translate              Run hot basic blocks as generated code",
+            "  --fuse                   Run common instruction sequences as superinstructions",
+            "  --copies n               Run n machines on a simulation farm and report the throughput;",
+            "                           only --start, --input, --store, --translate and --fuse apply",
+            "  --undo n                 Record the last n instructions for stepping back",
+            "  --break address          Stop before the instruction at the address, may be repeated",
+            "  --watch address|register Stop at a write to the address or register, may be repeated",
+            "  --rwatch address         Stop at a read of the address, may be repeated",
+            "  --trace prefix           Write a binary record of every instruction to segment files",
+            "  --profile csv file       Report the hot spots and write every count to the file",
+            "  --timing cost table      Report cycles and CPI under the costs of a properties file",
+            "  --pipeline paths|none    Time the run on a five stage pipeline forwarding EX_MEM,MEM_WB",
+            "  --branch-stage ID|EX     Resolve the pipeline's branches in the stage",
+            "  --predictors name[/n],...  Compare the accuracy of branch predictors on the run",
+            "  --predict name[/n]       Predict the pipeline's branches with a predictor",
+            "  --cache lines,ways,block,LRU|FIFO|RANDOM|PLRU  Set the memory cache geometry",
+            "  --write-back             Write dirty cache lines back instead of through",
+            "  --write-buffer entries   Buffer the cache's writes to memory",
+            "  --hierarchy l1i=...;l1d=...[;l2=...][;latency=l1,l2,memory]  Use split L1 caches and an L2",
+            "  --prefetch next-line|stride|stream[/degree]  Prefetch blocks ahead of data reads",
+            "  --sweep sizes=...;ways=...;blocks=...;policies=...  Replay the run against a grid of caches",
+            "  --address-trace file     Write the address stream of the run to the file");
+
+    private static final String DEFAULT_FORWARDING = "EX_MEM,MEM_WB";
+
+    /**
+     * What a {@link edu.gw.csci.simulator.farm.FarmJob} carries, so what applies to every copy of a farm run
+     */
+    private static final Set<String> FARM_OPTIONS = new LinkedHashSet<>(Arrays.asList(
+            "--start", "--input", "--store", "--translate", "--fuse", "--copies"));
+
+    private final String programFile;
+    private final Set<String> given = new LinkedHashSet<>();
+    private int start = Machine.DEFAULT_LOAD_LOCATION;
+    private final List<String> inputs = new ArrayList<>();
+    private final Map<Integer, Integer> stores = new LinkedHashMap<>();
+    private boolean translation;
+    private boolean fusion;
+    private int copies;
+    private int undo;
+    private final List<Integer> breakpoints = new ArrayList<>();
+    private final List<String> watches = new ArrayList<>();
+    private final List<Integer> readWatches = new ArrayList<>();
+    private String tracePrefix;
+    private String profileFile;
+    private String timingFile;
+    private String forwarding;
+    private PipelineModel.Stage branchStage;
+    private String predictors;
+    private String predictor;
+    private String cacheSpec;
+    private boolean writeBack;
+    private int writeBufferEntries = -1;
+    private String hierarchy;
+    private String prefetcher;
+    private List<String> sweep;
+    private String addressTraceFile;
+
+    private HeadlessOptions(String programFile) {
+        this.programFile = programFile;
+    }
+
+    /**
+     * @param args The program file, then the options
+     * @throws IllegalArgumentException If an option is unknown, misses its value or has a malformed
+     *                                  one, or is given with --copies but not applied on a farm
+     */
+    static HeadlessOptions parse(String... args) {
+        if (args.length == 0) {
+            throw new IllegalArgumentException("No program file");
+        }
+        HeadlessOptions options = new HeadlessOptions(args[0]);
+        for (int i = 1; i < args.length; i++) {
+            String option = args[i];
+            options.given.add(option);
+            if (options.setFlag(option)) {
+                continue;
+            }
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException(option + " needs a value");
+            }
+            try {
+                options.setValue(option, args[++i]);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(String.format("Malformed %s: %s", option, args[i]), e);
+            }
+        }
+        if (options.copies > 0) {
+            List<String> unsupported = new ArrayList<>(options.given);
+            unsupported.removeAll(FARM_OPTIONS);
+            if (!unsupported.isEmpty()) {
+                throw new IllegalArgumentException("A farm run with --copies doesn't apply "
+                        + String.join(", ", unsupported));
+            }
+        }
+        return options;
+    }
+
+    /**
+     * @return Whether the option takes no value, and was applied
+     */
+    private boolean setFlag(String option) {
+        switch (option) {
+            case "--translate":
+                translation = true;
+                return true;
+            case "--fuse":
+                fusion = true;
+                return true;
+            case "--write-back":
+                writeBack = true;
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private void setValue(String option, String value) {
+        switch (option) {
+            case "--start":
+                start = Integer.parseInt(value);
+                break;
+            case "--input":
+                inputs.add(value);
+                break;
+            case "--store":
+                String[] pair = value.split("=");
+                if (pair.length != 2) {
+                    throw new IllegalArgumentException("Expected --store address=value, not " + value);
+                }
+                stores.put(Integer.parseInt(pair[0]), Integer.parseInt(pair[1]));
+                break;
+            case "--copies":
+                copies = count(option, value);
+                break;
+            case "--undo":
+                undo = count(option, value);
+                break;
+            case "--break":
+                breakpoints.add(Integer.parseInt(value));
+                break;
+            case "--watch":
+                watches.add(value);
+                break;
+            case "--rwatch":
+                readWatches.add(Integer.parseInt(value));
+                break;
+            case "--trace":
+                tracePrefix = value;
+                break;
+            case "--profile":
+                profileFile = value;
+                break;
+            case "--timing":
+                timingFile = value;
+                break;
+            case "--pipeline":
+                forwarding = value;
+                break;
+            case "--branch-stage":
+                try {
+                    branchStage = PipelineModel.Stage.valueOf(value.toUpperCase());
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("No pipeline stage called " + value, e);
+                }
+                break;
+            case "--predictors":
+                predictors = value;
+                break;
+            case "--predict":
+                predictor = value;
+                break;
+            case "--cache":
+                cacheSpec = value;
+                break;
+            case "--write-buffer":
+                writeBufferEntries = count(option, value);
+                break;
+            case "--hierarchy":
+                hierarchy = value;
+                break;
+            case "--prefetch":
+                prefetcher = value;
+                break;
+            case "--sweep":
+                sweep = CacheSweep.grid(value);
+                break;
+            case "--address-trace":
+                addressTraceFile = value;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown option " + option);
+        }
+    }
+
+    private static int count(String option, String value) {
+        int count = Integer.parseInt(value);
+        if (count < 0) {
+            throw new IllegalArgumentException(option + " can't be negative: " + value);
+        }
+        return count;
+    }
+
+    String getProgramFile() {
+        return programFile;
+    }
+
+    int getStart() {
+        return start;
+    }
+
+    List<String> getInputs() {
+        return inputs;
+    }
+
+    Map<Integer, Integer> getStores() {
+        return stores;
+    }
+
+    boolean isTranslation() {
+        return translation;
+    }
+
+    boolean isFusion() {
+        return fusion;
+    }
+
+    /**
+     * @return The number of machines of a farm run, 0 to run one machine
+     */
+    int getCopies() {
+        return copies;
+    }
+
+    /**
+     * @return The instructions recorded for stepping back, 0 if none
+     */
+    int getUndo() {
+        return undo;
+    }
+
+    List<Integer> getBreakpoints() {
+        return breakpoints;
+    }
+
+    /**
+     * @return The addresses and register names watched for writes
+     */
+    List<String> getWatches() {
+        return watches;
+    }
+
+    List<Integer> getReadWatches() {
+        return readWatches;
+    }
+
+    String getTracePrefix() {
+        return tracePrefix;
+    }
+
+    String getProfileFile() {
+        return profileFile;
+    }
+
+    String getTimingFile() {
+        return timingFile;
+    }
+
+    /**
+     * @return The forwarding paths of the pipeline model, the default ones if only its branches were
+     * configured, or null if the run isn't timed on a pipeline
+     */
+    String getForwarding() {
+        if (forwarding == null && (branchStage != null || predictor != null)) {
+            return DEFAULT_FORWARDING;
+        }
+        return forwarding;
+    }
+
+    PipelineModel.Stage getBranchStage() {
+        return branchStage;
+    }
+
+    String getPredictors() {
+        return predictors;
+    }
+
+    String getPredictor() {
+        return predictor;
+    }
+
+    String getCacheSpec() {
+        return cacheSpec;
+    }
+
+    boolean isWriteBack() {
+        return writeBack;
+    }
+
+    /**
+     * @return The entries of the cache's write buffer, -1 if not given
+     */
+    int getWriteBufferEntries() {
+        return writeBufferEntries;
+    }
+
+    String getHierarchy() {
+        return hierarchy;
+    }
+
+    String getPrefetcher() {
+        return prefetcher;
+    }
+
+    /**
+     * @return Whether the memory cache gets a full report rather than its hits and misses
+     */
+    boolean isCacheReport() {
+        return cacheSpec != null || writeBack || writeBufferEntries >= 0 || prefetcher != null;
+    }
+
+    /**
+     * @return The caches to replay the address stream against, or null
+     */
+    List<String> getSweep() {
+        return sweep;
+    }
+
+    String getAddressTraceFile() {
+        return addressTraceFile;
+    }
+
+    /**
+     * @return Whether the address stream of the run is recorded
+     */
+    boolean isAddressTrace() {
+        return sweep != null || addressTraceFile != null;
+    }
+}
@@ -0,0 +1,343 @@
+package edu.gw.csci.simulator;
+
+import edu.gw.csci.simulator.branch.BranchPredictors;
+import edu.gw.csci.simulator.branch.BranchStatistics;
+import edu.gw.csci.simulator.cpu.BlockTranslator;
+import edu.gw.csci.simulator.cpu.Breakpoints;
+import edu.gw.csci.simulator.cpu.CPU;
+import edu.gw.csci.simulator.cpu.CycleCounter;
+import edu.gw.csci.simulator.cpu.FusionPass;
+import edu.gw.csci.simulator.cpu.Machine;
+import edu.gw.csci.simulator.cpu.PipelineModel;
+import edu.gw.csci.simulator.cpu.Profiler;
+import edu.gw.csci.simulator.cpu.TimingModel;
+import edu.gw.csci.simulator.cpu.UndoLog;
+import edu.gw.csci.simulator.farm.FarmJob;
+import edu.gw.csci.simulator.farm.FarmReport;
+import edu.gw.csci.simulator.farm.SimulationFarm;
+import edu.gw.csci.simulator.gui.Program;
+import edu.gw.csci.simulator.isa.DecodedInstructionCache;
+import edu.gw.csci.simulator.memory.CacheHierarchy;
+import edu.gw.csci.simulator.memory.MemoryCache;
+import edu.gw.csci.simulator.memory.WordMemory;
+import edu.gw.csci.simulator.prefetch.Prefetcher;
+import edu.gw.csci.simulator.prefetch.Prefetchers;
+import edu.gw.csci.simulator.registers.RegisterType;
+import edu.gw.csci.simulator.trace.AddressTrace;
+import edu.gw.csci.simulator.trace.CacheSweep;
+import edu.gw.csci.simulator.trace.TraceWriter;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs a program file to HLT without the GUI, and reports the console output and the
+ * execution rate, along with whatever the options turned on measure; see
+ * {@link HeadlessOptions#USAGE} for the options.
+ */
+public class HeadlessSimulator {
+
+    private static final String LOG_CONFIGURATION_PROPERTY = "log4j.configurationFile";
+
+    static {
+        //The default configuration includes the GUI console appender, so swap it out unless told otherwise
+        if (System.getProperty(LOG_CONFIGURATION_PROPERTY) == null) {
+            System.setProperty(LOG_CONFIGURATION_PROPERTY, "log4j2-headless.xml");
+        }
+    }
+
+    private static final Logger LOGGER = LogManager.getLogger(HeadlessSimulator.class);
+
+    private static final int PROFILE_HOT_SPOTS = 20;
+    private static final int BRANCH_REPORT_ADDRESSES = 20;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        HeadlessOptions options;
+        Machine machine = null;
+        try {
+            options = HeadlessOptions.parse(args);
+            if (options.getCopies() == 0) {
+                machine = configure(options);
+            }
+        } catch (IllegalArgumentException e) {
+            //A malformed option, or a cache, predictor or prefetcher spec the component rejects
+            System.err.println(e.getMessage());
+            System.err.println(HeadlessOptions.USAGE);
+            System.exit(2);
+            return;
+        }
+
+        if (machine == null) {
+            runFarm(options, readProgram(options));
+            return;
+        }
+        machine.load(readProgram(options), options.getStart());
+        AddressTrace addressTrace = null;
+        if (options.isAddressTrace()) {
+            addressTrace = new AddressTrace();
+            addressTrace.attach(machine.getAllMemory());
+        }
+
+        long elapsed = machine.run();
+        TraceWriter traceWriter = machine.getCpu().getTraceWriter();
+        if (traceWriter != null) {
+            traceWriter.close();
+        }
+        report(machine, options, elapsed);
+        if (addressTrace != null) {
+            addressTrace.detach(machine.getAllMemory());
+            reportAddressTrace(addressTrace, options);
+        }
+    }
+
+    /**
+     * Makes and initializes a machine with everything the options turn on.
+     */
+    private static Machine configure(HeadlessOptions options) throws IOException {
+        //The cache is part of the machine, so it is made before any other option is applied
+        String cacheSpec = options.getCacheSpec();
+        Machine machine = (cacheSpec == null) ? new Machine() : new Machine(new WordMemory(), MemoryCache.create(cacheSpec));
+        machine.initialize();
+        CPU cpu = machine.getCpu();
+        cpu.setTranslation(options.isTranslation());
+        cpu.setFusion(options.isFusion());
+        cpu.consoleInput.addAll(options.getInputs());
+        for (Map.Entry<Integer, Integer> store : options.getStores().entrySet()) {
+            cpu.StoreValue(store.getKey(), store.getValue());
+        }
+        if (options.getUndo() > 0) {
+            cpu.setUndoRecording(options.getUndo());
+        }
+
+        Breakpoints breakpoints = cpu.getBreakpoints();
+        for (int address : options.getBreakpoints()) {
+            breakpoints.setBreakpoint(address);
+        }
+        for (String target : options.getWatches()) {
+            watch(breakpoints, target);
+        }
+        for (int address : options.getReadWatches()) {
+            breakpoints.watchMemory(address, true, false);
+        }
+
+        if (options.getTracePrefix() != null) {
+            cpu.setTraceWriter(new TraceWriter(Paths.get(options.getTracePrefix())));
+        }
+        if (options.getProfileFile() != null) {
+            cpu.setProfiling(true);
+        }
+        if (options.getTimingFile() != null) {
+            cpu.setTimingModel(TimingModel.load(Paths.get(options.getTimingFile())));
+        }
+        if (options.getForwarding() != null) {
+            PipelineModel pipelineModel = pipelineModel(machine, options.getForwarding());
+            if (options.getBranchStage() != null) {
+                pipelineModel.setBranchStage(options.getBranchStage());
+            }
+            if (options.getPredictor() != null) {
+                pipelineModel.setBranchPredictor(BranchPredictors.create(options.getPredictor()));
+            }
+            cpu.setPipelineModel(pipelineModel);
+        }
+        if (options.getPredictors() != null) {
+            BranchStatistics branchStatistics = new BranchStatistics(BranchPredictors.createAll(options.getPredictors()),
+                    machine.getAllMemory().getMemory().getSize());
+            if (cpu.getPipelineModel() != null) {
+                //Mispredicts cost what they cost the pipeline
+                branchStatistics.setMispredictPenalty(cpu.getPipelineModel().getBranchStage().ordinal());
+            }
+            cpu.setBranchStatistics(branchStatistics);
+        }
+
+        MemoryCache memoryCache = machine.getAllMemory().getMemoryCache();
+        if (options.isWriteBack()) {
+            memoryCache.setWritePolicy(MemoryCache.WritePolicy.WRITE_BACK);
+        }
+        if (options.getWriteBufferEntries() > 0) {
+            memoryCache.setWriteBufferEntries(options.getWriteBufferEntries());
+        }
+        if (options.getHierarchy() != null) {
+            machine.getAllMemory().setCacheHierarchy(CacheHierarchy.create(options.getHierarchy()));
+        }
+        if (options.getPrefetcher() != null) {
+            machine.getAllMemory().setPrefetcher(Prefetchers.create(options.getPrefetcher()));
+        }
+        return machine;
+    }
+
+    /**
+     * Prints the console output of the run, its execution rate, and what each component the options
+     * turned on measured.
+     */
+    private static void report(Machine machine, HeadlessOptions options, long elapsed) throws IOException {
+        CPU cpu = machine.getCpu();
+        for (String line : cpu.consoleOutput) {
+            System.out.println(line);
+        }
+        Breakpoints breakpoints = cpu.getBreakpoints();
+        if (breakpoints.isStopped()) {
+            System.out.println(String.format("Stopped: %s, PC %d", breakpoints.describeStop(),
+                    machine.getAllRegisters().getWord(RegisterType.PC)));
+        }
+        long count = cpu.getInstructionCount();
+        double seconds = elapsed / 1e9;
+        System.out.println(String.format("Executed %d instructions in %.3f ms (%.0f instructions/second)",
+                count, seconds * 1000, count / seconds));
+        DecodedInstructionCache instructionCache = cpu.getInstructionCache();
+        System.out.println(String.format("Decoded instruction cache: %d hits, %d misses",
+                instructionCache.getCacheHit(), instructionCache.getCacheMiss()));
+        Prefetcher prefetcher = machine.getAllMemory().getPrefetcher();
+        if (prefetcher != null) {
+            System.out.println("Prefetcher: " + prefetcher.getName());
+        }
+        MemoryCache memoryCache = machine.getAllMemory().getMemoryCache();
+        CacheHierarchy cacheHierarchy = machine.getAllMemory().getCacheHierarchy();
+        if (cacheHierarchy != null) {
+            cacheHierarchy.flush();
+            System.out.println(cacheHierarchy.getReport());
+        } else if (options.isCacheReport()) {
+            memoryCache.flush();
+            System.out.println(memoryCache.getReport());
+        } else {
+            System.out.println(String.format("Memory cache: %d hits, %d misses",
+                    memoryCache.getCacheHit(), memoryCache.getCacheMiss()));
+        }
+        BlockTranslator translator = cpu.getTranslator();
+        if (translator != null) {
+            System.out.println(String.format("Translated blocks: %d translated, %d executed, %d invalidations",
+                    translator.getBlocksTranslated(), translator.getBlocksExecuted(), translator.getInvalidations()));
+        }
+        FusionPass fusionPass = cpu.getFusionPass();
+        if (fusionPass != null) {
+            System.out.println(fusionPass.getCoverageReport());
+        }
+        TraceWriter traceWriter = cpu.getTraceWriter();
+        if (traceWriter != null) {
+            System.out.println(String.format("Trace: %d records in %d segments of %s",
+                    traceWriter.getRecords(), traceWriter.getSegments(), traceWriter.getPrefix()));
+        }
+        PipelineModel pipelineModel = cpu.getPipelineModel();
+        if (pipelineModel != null) {
+            System.out.println(pipelineModel.getReport());
+        }
+        BranchStatistics branchStatistics = cpu.getBranchStatistics();
+        if (branchStatistics != null) {
+            System.out.println(branchStatistics.getReport(BRANCH_REPORT_ADDRESSES));
+        }
+        CycleCounter cycleCounter = cpu.getCycleCounter();
+        if (cycleCounter != null) {
+            System.out.println(cycleCounter.getReport());
+        }
+        Profiler profiler = cpu.getProfiler();
+        if (profiler != null) {
+            System.out.println(profiler.getReport(PROFILE_HOT_SPOTS));
+            try (Writer writer = Files.newBufferedWriter(Paths.get(options.getProfileFile()))) {
+                profiler.writeCsv(writer);
+            }
+            System.out.println("Profile written to " + options.getProfileFile());
+        }
+        UndoLog undoLog = cpu.getUndoLog();
+        if (undoLog != null) {
+            System.out.println(String.format("Undo log: %d of %d instructions can be stepped back",
+                    undoLog.size(), undoLog.getCapacity()));
+        }
+    }
+
+    /**
+     * Prints the address stream of the run, writes it to a file, and replays it against the caches
+     * of the sweep, as the options ask.
+     */
+    private static void reportAddressTrace(AddressTrace addressTrace, HeadlessOptions options)
+            throws IOException, InterruptedException {
+        System.out.println(addressTrace);
+        String addressTraceFile = options.getAddressTraceFile();
+        if (addressTraceFile != null) {
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(Paths.get(addressTraceFile)))) {
+                addressTrace.writeTo(out);
+            }
+            System.out.println("Address trace written to " + addressTraceFile);
+        }
+        if (options.getSweep() != null) {
+            try (CacheSweep cacheSweep = new CacheSweep()) {
+                System.out.println(cacheSweep.getTable(cacheSweep.run(addressTrace, options.getSweep())));
+            }
+        }
+    }
+
+    /**
+     * Runs copies of the program on a farm, each job on its own machine with the inputs, stores,
+     * translation and fusion of the options; parsing rejects every other option.
+     */
+    private static void runFarm(HeadlessOptions options, Program program) throws InterruptedException {
+        int copies = options.getCopies();
+        List<FarmJob> jobs = new ArrayList<>(copies);
+        for (int copy = 0; copy < copies; copy++) {
+            FarmJob job = new FarmJob(program.getName() + "#" + copy, program, options.getStart());
+            job.setTranslation(options.isTranslation());
+            job.setFusion(options.isFusion());
+            for (String input : options.getInputs()) {
+                job.addInput(input);
+            }
+            for (Map.Entry<Integer, Integer> store : options.getStores().entrySet()) {
+                job.store(store.getKey(), store.getValue());
+            }
+            jobs.add(job);
+        }
+
+        try (SimulationFarm farm = new SimulationFarm()) {
+            FarmReport report = farm.run(jobs);
+            for (String line : report.getResults().get(0).getOutput()) {
+                System.out.println(line);
+            }
+            System.out.println(report);
+        }
+    }
+
+    /**
+     * Makes a pipeline model with only the forwarding paths listed, or none.
+     */
+    private static PipelineModel pipelineModel(Machine machine, String paths) {
+        PipelineModel model = new PipelineModel(machine.getAllRegisters());
+        List<String> enabled = Arrays.asList(paths.toUpperCase().split(","));
+        for (PipelineModel.Forwarding path : PipelineModel.Forwarding.values()) {
+            model.setForwarding(path, enabled.contains(path.name()));
+        }
+        return model;
+    }
+
+    /**
+     * Watches writes to a register given by name, or to a memory address.
+     */
+    private static void watch(Breakpoints breakpoints, String target) {
+        if (Character.isDigit(target.charAt(0))) {
+            breakpoints.watchMemory(Integer.parseInt(target), false, true);
+        } else {
+            breakpoints.watchRegister(RegisterType.valueOf(target.toUpperCase()));
+        }
+    }
+
+    private static Program readProgram(HeadlessOptions options) throws IOException {
+        String fileName = options.getProgramFile();
+        Program program = new Program(fileName);
+        List<String> lines = Files.readAllLines(Paths.get(fileName));
+        for (String line : lines) {
+            int comment = line.indexOf("//");
+            String instruction = (comment < 0) ? line.trim() : line.substring(0, comment).trim();
+            if (!instruction.isEmpty()) {
+                program.appendLine(instruction);
+            }
+        }
+        LOGGER.info("Loading {} instructions from {} at {}", program.size(), fileName, options.getStart());
+        return program;
+    }
+}
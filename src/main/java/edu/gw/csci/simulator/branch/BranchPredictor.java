@@ -0,0 +1,48 @@
+package edu.gw.csci.simulator.branch;
+
+/**
+ * Predicts the conditional transfers JZ, JNE, JCC, JGE and SOB. The CPU asks for a prediction when
+ * a transfer is fetched, and reports the outcome once it is resolved, so a predictor learns only
+ * from {@link BranchPredictor#update(int, boolean, int)}.
+ * <p>
+ * A predictor that knows where a transfer jumps to gives the target with its prediction, which
+ * lets fetch go on at the target right away. The others leave the target to decode.
+ */
+public interface BranchPredictor {
+
+    /**
+     * Returned by {@link BranchPredictor#predictTarget(int)} when the target is left to decode
+     */
+    int NO_TARGET = -1;
+
+    /**
+     * @return A short name for reports, such as 2-bit/1024
+     */
+    String getName();
+
+    /**
+     * @param pc The address of the transfer
+     * @return True if the transfer is predicted to jump
+     */
+    boolean predict(int pc);
+
+    /**
+     * @param pc The address of the transfer, predicted to jump
+     * @return The address it is predicted to jump to, or {@link BranchPredictor#NO_TARGET}
+     */
+    default int predictTarget(int pc) {
+        return NO_TARGET;
+    }
+
+    /**
+     * @param pc     The address of the transfer
+     * @param taken  True if it jumped
+     * @param target The address it jumped to, if it did
+     */
+    void update(int pc, boolean taken, int target);
+
+    /**
+     * Forgets everything learnt.
+     */
+    void reset();
+}
@@ -0,0 +1,91 @@
+package edu.gw.csci.simulator.branch;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Makes predictors by name, for command lines, and works out what a prediction costs.
+ */
+public final class BranchPredictors {
+
+    public static final int DEFAULT_ENTRIES = 1024;
+
+    /**
+     * The names {@link BranchPredictors#create(String)} knows
+     */
+    public static final String NAMES = "not-taken, 1-bit, 2-bit, gshare, btb";
+
+    /**
+     * The cycles lost when a transfer is predicted to jump but its target has to wait for decode,
+     * or the predicted target is wrong
+     */
+    public static final int TARGET_PENALTY = 1;
+
+    private BranchPredictors() {
+    }
+
+    /**
+     * @param spec A name, optionally followed by /entries, such as gshare/4096
+     * @return A new predictor
+     * @throws IllegalArgumentException If the name is unknown or the entries are not a power of two
+     */
+    public static BranchPredictor create(String spec) {
+        String[] parts = spec.trim().toLowerCase().split("/");
+        int entries;
+        try {
+            entries = (parts.length > 1) ? Integer.parseInt(parts[1].trim()) : DEFAULT_ENTRIES;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed predictor: " + spec, e);
+        }
+        switch (parts[0]) {
+            case "not-taken":
+                return new StaticNotTaken();
+            case "1-bit":
+                return new OneBitPredictor(entries);
+            case "2-bit":
+                return new TwoBitPredictor(entries);
+            case "gshare":
+                return new GSharePredictor(entries);
+            case "btb":
+                return new BranchTargetBuffer(entries);
+            default:
+                throw new IllegalArgumentException(String.format("Unknown predictor %s, expected one of %s", spec, NAMES));
+        }
+    }
+
+    /**
+     * @param specs Comma separated names, as for {@link BranchPredictors#create(String)}
+     */
+    public static List<BranchPredictor> createAll(String specs) {
+        List<BranchPredictor> predictors = new ArrayList<>();
+        for (String spec : specs.split(",")) {
+            predictors.add(create(spec));
+        }
+        return predictors;
+    }
+
+    /**
+     * Predicts a transfer whose outcome is known, without teaching the predictor.
+     *
+     * @param mispredictPenalty The cycles lost when the direction is wrong
+     * @return The cycles the prediction loses: none if fetch went on at the right address, the
+     * mispredict penalty if the direction was wrong, and at most {@link BranchPredictors#TARGET_PENALTY}
+     * if the transfer jumped as predicted but the target was not known or wrong
+     */
+    public static int penalty(BranchPredictor predictor, int pc, boolean taken, int target, int mispredictPenalty) {
+        if (predictor.predict(pc) != taken) {
+            return mispredictPenalty;
+        }
+        if (taken && predictor.predictTarget(pc) != target) {
+            return Math.min(TARGET_PENALTY, mispredictPenalty);
+        }
+        return 0;
+    }
+
+    static int checkEntries(int entries) {
+        if (entries <= 0 || Integer.bitCount(entries) != 1) {
+            throw new IllegalArgumentException("Predictor tables need a power of two entries, not " + entries);
+        }
+        return entries;
+    }
+}
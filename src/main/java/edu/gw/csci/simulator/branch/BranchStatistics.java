@@ -0,0 +1,197 @@
+package edu.gw.csci.simulator.branch;
+
+import edu.gw.csci.simulator.isa.InstructionType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Runs several {@link BranchPredictor predictors} side by side on the conditional transfers of one
+ * run. Every transfer is predicted by each predictor before any of them learns its outcome, so
+ * one pass over the program compares them all, as if it had been run once per predictor. Counts are
+ * kept per predictor and per address of a transfer, in primitive arrays.
+ */
+public class BranchStatistics {
+
+    /**
+     * The cycles a wrong direction costs with transfers resolved in EX
+     */
+    public static final int DEFAULT_MISPREDICT_PENALTY = 2;
+
+    private final List<BranchPredictor> predictors;
+    private int mispredictPenalty = DEFAULT_MISPREDICT_PENALTY;
+
+    private long branches, taken;
+    private final long[] mispredicts;
+    private final long[] penaltyCycles;
+
+    private final long[] executions;
+    private final long[] takenAt;
+    private final long[][] mispredictsAt;
+    private final InstructionType[] types;
+
+    /**
+     * @param predictors The predictors to compare, in the order to report them
+     * @param memorySize The number of addresses a transfer can be at
+     */
+    public BranchStatistics(List<BranchPredictor> predictors, int memorySize) {
+        if (predictors.isEmpty()) {
+            throw new IllegalArgumentException("No predictors to compare");
+        }
+        this.predictors = new ArrayList<>(predictors);
+        this.mispredicts = new long[predictors.size()];
+        this.penaltyCycles = new long[predictors.size()];
+        this.executions = new long[memorySize];
+        this.takenAt = new long[memorySize];
+        this.mispredictsAt = new long[predictors.size()][memorySize];
+        this.types = new InstructionType[memorySize];
+    }
+
+    /**
+     * @param mispredictPenalty The cycles a wrong direction costs, 1 with transfers resolved in ID
+     */
+    public void setMispredictPenalty(int mispredictPenalty) {
+        this.mispredictPenalty = mispredictPenalty;
+    }
+
+    public int getMispredictPenalty() {
+        return mispredictPenalty;
+    }
+
+    /**
+     * Predicts a resolved transfer with every predictor, then teaches them the outcome.
+     *
+     * @param pc     The address of the transfer
+     * @param type   The transfer, one of JZ, JNE, JCC, JGE and SOB
+     * @param taken  True if it jumped
+     * @param target The address it jumped to, if it did
+     */
+    public void record(int pc, InstructionType type, boolean taken, int target) {
+        branches++;
+        executions[pc]++;
+        types[pc] = type;
+        if (taken) {
+            this.taken++;
+            takenAt[pc]++;
+        }
+        for (int i = 0; i < predictors.size(); i++) {
+            BranchPredictor predictor = predictors.get(i);
+            int cycles = BranchPredictors.penalty(predictor, pc, taken, target, mispredictPenalty);
+            if (predictor.predict(pc) != taken) {
+                mispredicts[i]++;
+                mispredictsAt[i][pc]++;
+            }
+            penaltyCycles[i] += cycles;
+            predictor.update(pc, taken, target);
+        }
+    }
+
+    /**
+     * Drops the counts and resets every predictor.
+     */
+    public void clear() {
+        branches = 0;
+        taken = 0;
+        Arrays.fill(mispredicts, 0);
+        Arrays.fill(penaltyCycles, 0);
+        Arrays.fill(executions, 0);
+        Arrays.fill(takenAt, 0);
+        Arrays.fill(types, null);
+        for (long[] counts : mispredictsAt) {
+            Arrays.fill(counts, 0);
+        }
+        for (BranchPredictor predictor : predictors) {
+            predictor.reset();
+        }
+    }
+
+    public List<BranchPredictor> getPredictors() {
+        return Collections.unmodifiableList(predictors);
+    }
+
+    /**
+     * @return The number of conditional transfers executed
+     */
+    public long getBranches() {
+        return branches;
+    }
+
+    public long getTaken() {
+        return taken;
+    }
+
+    public long getMispredicts(BranchPredictor predictor) {
+        return mispredicts[indexOf(predictor)];
+    }
+
+    /**
+     * @return The share of transfers the predictor got the direction of right, 1 if there were none
+     */
+    public double getAccuracy(BranchPredictor predictor) {
+        return (branches == 0) ? 1 : 1 - (double) getMispredicts(predictor) / branches;
+    }
+
+    /**
+     * @return The cycles the predictions cost, see {@link BranchPredictors#penalty}
+     */
+    public long getPenaltyCycles(BranchPredictor predictor) {
+        return penaltyCycles[indexOf(predictor)];
+    }
+
+    public long getExecutions(int pc) {
+        return executions[pc];
+    }
+
+    public long getTaken(int pc) {
+        return takenAt[pc];
+    }
+
+    public long getMispredicts(BranchPredictor predictor, int pc) {
+        return mispredictsAt[indexOf(predictor)][pc];
+    }
+
+    private int indexOf(BranchPredictor predictor) {
+        int index = predictors.indexOf(predictor);
+        if (index < 0) {
+            throw new IllegalArgumentException("Not one of the predictors compared: " + predictor.getName());
+        }
+        return index;
+    }
+
+    /**
+     * Lists each predictor, then the most executed transfers with the mispredicts of each predictor.
+     *
+     * @param top The number of transfers to list
+     */
+    public String getReport(int top) {
+        StringBuilder report = new StringBuilder(String.format(
+                "Branches: %d conditional transfers, %.1f%% taken, %d cycle mispredict penalty",
+                branches, percent(taken, branches), mispredictPenalty));
+        for (int i = 0; i < predictors.size(); i++) {
+            report.append(String.format("%n  %-14s %7.2f%% accurate %10d mispredicts %10d penalty cycles",
+                    predictors.get(i).getName(), 100 * getAccuracy(predictors.get(i)), mispredicts[i],
+                    penaltyCycles[i]));
+        }
+        List<Integer> addresses = new ArrayList<>();
+        for (int pc = 0; pc < executions.length; pc++) {
+            if (executions[pc] > 0) {
+                addresses.add(pc);
+            }
+        }
+        addresses.sort((a, b) -> Long.compare(executions[b], executions[a]));
+        for (int pc : addresses.subList(0, Math.min(top, addresses.size()))) {
+            report.append(String.format("%n  %5d %-4s %10d executed %5.1f%% taken, mispredicts:", pc, types[pc],
+                    executions[pc], percent(takenAt[pc], executions[pc])));
+            for (int i = 0; i < predictors.size(); i++) {
+                report.append(String.format(" %s %d", predictors.get(i).getName(), mispredictsAt[i][pc]));
+            }
+        }
+        return report.toString();
+    }
+
+    private static double percent(long part, long whole) {
+        return (whole == 0) ? 0 : 100.0 * part / whole;
+    }
+}
@@ -0,0 +1,71 @@
+package edu.gw.csci.simulator.branch;
+
+import java.util.Arrays;
+
+/**
+ * A direct mapped branch target buffer keyed on the address of the transfer. Each entry holds the
+ * full address as its tag, the last target and a two bit counter. A transfer that misses is
+ * predicted not to jump; one that hits is predicted by its counter, and jumps straight to the
+ * target, without waiting for decode. Transfers enter the buffer the first time they jump.
+ */
+public class BranchTargetBuffer implements BranchPredictor {
+
+    private static final int EMPTY = -1;
+
+    private final int[] tags;
+    private final int[] targets;
+    private final byte[] counters;
+    private final int mask;
+
+    /**
+     * @param entries The size of the buffer, a power of two
+     */
+    public BranchTargetBuffer(int entries) {
+        this.mask = BranchPredictors.checkEntries(entries) - 1;
+        this.tags = new int[entries];
+        this.targets = new int[entries];
+        this.counters = new byte[entries];
+        reset();
+    }
+
+    @Override
+    public String getName() {
+        return "btb/" + tags.length;
+    }
+
+    @Override
+    public boolean predict(int pc) {
+        int index = pc & mask;
+        return tags[index] == pc && counters[index] >= TwoBitPredictor.WEAKLY_TAKEN;
+    }
+
+    @Override
+    public int predictTarget(int pc) {
+        int index = pc & mask;
+        return (tags[index] == pc) ? targets[index] : NO_TARGET;
+    }
+
+    @Override
+    public void update(int pc, boolean taken, int target) {
+        int index = pc & mask;
+        if (tags[index] != pc) {
+            if (!taken) {
+                return;
+            }
+            tags[index] = pc;
+            counters[index] = TwoBitPredictor.WEAKLY_TAKEN;
+            targets[index] = target;
+            return;
+        }
+        counters[index] = TwoBitPredictor.count(counters[index], taken);
+        if (taken) {
+            targets[index] = target;
+        }
+    }
+
+    @Override
+    public void reset() {
+        Arrays.fill(tags, EMPTY);
+        Arrays.fill(counters, (byte) 0);
+    }
+}
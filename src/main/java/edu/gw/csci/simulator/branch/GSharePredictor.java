@@ -0,0 +1,47 @@
+package edu.gw.csci.simulator.branch;
+
+import java.util.Arrays;
+
+/**
+ * Predicts from two bit saturating counters indexed by the address exclusive-or the global history,
+ * the outcomes of the last transfers, one bit each, so transfers that depend on each other
+ * predict each other.
+ */
+public class GSharePredictor implements BranchPredictor {
+
+    private final byte[] counters;
+    private final int mask;
+    private int history;
+
+    /**
+     * @param entries The size of the table, a power of two, which sets the bits of history kept
+     */
+    public GSharePredictor(int entries) {
+        this.mask = BranchPredictors.checkEntries(entries) - 1;
+        this.counters = new byte[entries];
+        reset();
+    }
+
+    @Override
+    public String getName() {
+        return "gshare/" + counters.length;
+    }
+
+    @Override
+    public boolean predict(int pc) {
+        return counters[(pc ^ history) & mask] >= TwoBitPredictor.WEAKLY_TAKEN;
+    }
+
+    @Override
+    public void update(int pc, boolean taken, int target) {
+        int index = (pc ^ history) & mask;
+        counters[index] = TwoBitPredictor.count(counters[index], taken);
+        history = ((history << 1) | (taken ? 1 : 0)) & mask;
+    }
+
+    @Override
+    public void reset() {
+        Arrays.fill(counters, TwoBitPredictor.WEAKLY_NOT_TAKEN);
+        history = 0;
+    }
+}
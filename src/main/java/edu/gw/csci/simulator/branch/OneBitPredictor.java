@@ -0,0 +1,41 @@
+package edu.gw.csci.simulator.branch;
+
+import java.util.Arrays;
+
+/**
+ * Predicts that a transfer does what it did last time, from a table of one bit per entry indexed by
+ * the low bits of its address.
+ */
+public class OneBitPredictor implements BranchPredictor {
+
+    private final boolean[] taken;
+    private final int mask;
+
+    /**
+     * @param entries The size of the table, a power of two
+     */
+    public OneBitPredictor(int entries) {
+        this.mask = BranchPredictors.checkEntries(entries) - 1;
+        this.taken = new boolean[entries];
+    }
+
+    @Override
+    public String getName() {
+        return "1-bit/" + taken.length;
+    }
+
+    @Override
+    public boolean predict(int pc) {
+        return taken[pc & mask];
+    }
+
+    @Override
+    public void update(int pc, boolean taken, int target) {
+        this.taken[pc & mask] = taken;
+    }
+
+    @Override
+    public void reset() {
+        Arrays.fill(taken, false);
+    }
+}
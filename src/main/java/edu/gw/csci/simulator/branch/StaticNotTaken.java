@@ -0,0 +1,25 @@
+package edu.gw.csci.simulator.branch;
+
+/**
+ * Predicts that no transfer jumps, which is what fetching the next address amounts to.
+ */
+public class StaticNotTaken implements BranchPredictor {
+
+    @Override
+    public String getName() {
+        return "not-taken";
+    }
+
+    @Override
+    public boolean predict(int pc) {
+        return false;
+    }
+
+    @Override
+    public void update(int pc, boolean taken, int target) {
+    }
+
+    @Override
+    public void reset() {
+    }
+}
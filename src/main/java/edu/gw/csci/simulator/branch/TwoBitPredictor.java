@@ -0,0 +1,55 @@
+package edu.gw.csci.simulator.branch;
+
+import java.util.Arrays;
+
+/**
+ * Predicts from a table of two bit saturating counters indexed by the low bits of the address, so a
+ * loop branch mispredicts only once when the loop ends, not again when it is entered next time.
+ * Counters start at weakly not taken.
+ */
+public class TwoBitPredictor implements BranchPredictor {
+
+    static final byte WEAKLY_NOT_TAKEN = 1, WEAKLY_TAKEN = 2, STRONGLY_TAKEN = 3;
+
+    private final byte[] counters;
+    private final int mask;
+
+    /**
+     * @param entries The size of the table, a power of two
+     */
+    public TwoBitPredictor(int entries) {
+        this.mask = BranchPredictors.checkEntries(entries) - 1;
+        this.counters = new byte[entries];
+        reset();
+    }
+
+    @Override
+    public String getName() {
+        return "2-bit/" + counters.length;
+    }
+
+    @Override
+    public boolean predict(int pc) {
+        return counters[pc & mask] >= WEAKLY_TAKEN;
+    }
+
+    @Override
+    public void update(int pc, boolean taken, int target) {
+        counters[pc & mask] = count(counters[pc & mask], taken);
+    }
+
+    /**
+     * @return The counter moved one step towards the outcome, saturating at 0 and 3
+     */
+    static byte count(byte counter, boolean taken) {
+        if (taken) {
+            return (counter < STRONGLY_TAKEN) ? (byte) (counter + 1) : counter;
+        }
+        return (counter > 0) ? (byte) (counter - 1) : counter;
+    }
+
+    @Override
+    public void reset() {
+        Arrays.fill(counters, WEAKLY_NOT_TAKEN);
+    }
+}
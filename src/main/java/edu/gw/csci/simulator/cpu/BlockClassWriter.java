@@ -0,0 +1,260 @@
+package edu.gw.csci.simulator.cpu;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes the class file for a {@link TranslatedBlock}: a class with a single
+ * {@code public static void run(BlockRuntime, DecodedInstruction[])} method whose body is straight
+ * line code, made of constants, array loads and calls to the static helpers in {@link BlockRuntime}.
+ * With no branches and no exception handlers the method needs no stack map frames, which keeps
+ * this writer small enough not to need a bytecode library.
+ */
+class BlockClassWriter {
+
+    static final String METHOD_NAME = "run";
+
+    private static final String RUNTIME = "edu/gw/csci/simulator/cpu/BlockRuntime",
+            DECODED = "edu/gw/csci/simulator/isa/DecodedInstruction",
+            METHOD_DESCRIPTOR = "(L" + RUNTIME + ";[L" + DECODED + ";)V";
+
+    private static final int MAGIC = 0xCAFEBABE,
+            //Java 8 class files, straight line code verifies without a StackMapTable
+            MAJOR_VERSION = 52,
+            ACC_PUBLIC = 0x0001,
+            ACC_STATIC = 0x0008,
+            ACC_FINAL = 0x0010,
+            ACC_SUPER = 0x0020,
+            MAX_STACK = 8,
+            MAX_LOCALS = 2;
+
+    private static final byte CONSTANT_UTF8 = 1,
+            CONSTANT_INTEGER = 3,
+            CONSTANT_CLASS = 7,
+            CONSTANT_METHODREF = 10,
+            CONSTANT_NAME_AND_TYPE = 12;
+
+    private static final int ICONST_0 = 0x03,
+            BIPUSH = 0x10,
+            SIPUSH = 0x11,
+            LDC_W = 0x13,
+            ALOAD_0 = 0x2a,
+            ALOAD_1 = 0x2b,
+            AALOAD = 0x32,
+            RETURN = 0xb1,
+            INVOKESTATIC = 0xb8;
+
+    private final ByteArrayOutputStream constantBytes = new ByteArrayOutputStream();
+    private final DataOutputStream constants = new DataOutputStream(constantBytes);
+    private final Map<String, Integer> constantIndex = new HashMap<>();
+    private int constantCount = 1;
+
+    private final ByteArrayOutputStream codeBytes = new ByteArrayOutputStream();
+    private final DataOutputStream code = new DataOutputStream(codeBytes);
+
+    private final String className;
+    private final int runtimeClass;
+
+    /**
+     * @param className The internal name of the class to write, with / as the package separator
+     */
+    BlockClassWriter(String className) {
+        this.className = className;
+        this.runtimeClass = classConstant(RUNTIME);
+    }
+
+    /**
+     * Emits {@code aload_0}, the {@link BlockRuntime} argument.
+     */
+    BlockClassWriter loadRuntime() {
+        return op(ALOAD_0);
+    }
+
+    /**
+     * Emits {@code aload_1; <index>; aaload}, the decoded instruction at the index of the block.
+     */
+    BlockClassWriter loadDecoded(int index) {
+        op(ALOAD_1);
+        pushInt(index);
+        return op(AALOAD);
+    }
+
+    /**
+     * Emits the shortest instruction that pushes the constant.
+     */
+    BlockClassWriter pushInt(int value) {
+        if (value >= -1 && value <= 5) {
+            return op(ICONST_0 + value);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            op(BIPUSH);
+            return op(value & 0xFF);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            op(SIPUSH);
+            return u2(value);
+        }
+        op(LDC_W);
+        return u2(integerConstant(value));
+    }
+
+    /**
+     * Emits a call to a static helper of {@link BlockRuntime}.
+     *
+     * @param name       The name of the helper
+     * @param descriptor The JVM descriptor of the helper
+     */
+    BlockClassWriter invokeRuntime(String name, String descriptor) {
+        op(INVOKESTATIC);
+        return u2(methodConstant(runtimeClass, name, descriptor));
+    }
+
+    /**
+     * Ends the method, and returns the class file.
+     */
+    byte[] toByteArray() {
+        op(RETURN);
+        int thisClass = classConstant(className);
+        int superClass = classConstant("java/lang/Object");
+        int methodName = utf8Constant(METHOD_NAME);
+        int methodDescriptor = utf8Constant(METHOD_DESCRIPTOR);
+        int codeName = utf8Constant("Code");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(MAGIC);
+            out.writeShort(0);
+            out.writeShort(MAJOR_VERSION);
+            out.writeShort(constantCount);
+            constants.flush();
+            constantBytes.writeTo(out);
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            //No interfaces or fields
+            out.writeShort(0);
+            out.writeShort(0);
+            //The run method
+            out.writeShort(1);
+            out.writeShort(ACC_PUBLIC | ACC_STATIC);
+            out.writeShort(methodName);
+            out.writeShort(methodDescriptor);
+            out.writeShort(1);
+            code.flush();
+            out.writeShort(codeName);
+            out.writeInt(12 + codeBytes.size());
+            out.writeShort(MAX_STACK);
+            out.writeShort(MAX_LOCALS);
+            out.writeInt(codeBytes.size());
+            codeBytes.writeTo(out);
+            //No exception table, or code attributes
+            out.writeShort(0);
+            out.writeShort(0);
+            //No class attributes
+            out.writeShort(0);
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private BlockClassWriter op(int opcode) {
+        try {
+            code.writeByte(opcode);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return this;
+    }
+
+    private BlockClassWriter u2(int value) {
+        try {
+            code.writeShort(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return this;
+    }
+
+    private int utf8Constant(String value) {
+        String key = "U" + value;
+        Integer index = constantIndex.get(key);
+        if (index != null) {
+            return index;
+        }
+        try {
+            constants.writeByte(CONSTANT_UTF8);
+            constants.writeUTF(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return addConstant(key);
+    }
+
+    private int integerConstant(int value) {
+        String key = "I" + value;
+        Integer index = constantIndex.get(key);
+        if (index != null) {
+            return index;
+        }
+        try {
+            constants.writeByte(CONSTANT_INTEGER);
+            constants.writeInt(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return addConstant(key);
+    }
+
+    private int classConstant(String internalName) {
+        String key = "C" + internalName;
+        Integer index = constantIndex.get(key);
+        if (index != null) {
+            return index;
+        }
+        int name = utf8Constant(internalName);
+        try {
+            constants.writeByte(CONSTANT_CLASS);
+            constants.writeShort(name);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return addConstant(key);
+    }
+
+    private int methodConstant(int owner, String name, String descriptor) {
+        String key = "M" + owner + "." + name + descriptor;
+        Integer index = constantIndex.get(key);
+        if (index != null) {
+            return index;
+        }
+        int nameIndex = utf8Constant(name);
+        int descriptorIndex = utf8Constant(descriptor);
+        try {
+            constants.writeByte(CONSTANT_NAME_AND_TYPE);
+            constants.writeShort(nameIndex);
+            constants.writeShort(descriptorIndex);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        int nameAndType = addConstant("N" + name + descriptor);
+        try {
+            constants.writeByte(CONSTANT_METHODREF);
+            constants.writeShort(owner);
+            constants.writeShort(nameAndType);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return addConstant(key);
+    }
+
+    private int addConstant(String key) {
+        int index = constantCount++;
+        constantIndex.put(key, index);
+        return index;
+    }
+}
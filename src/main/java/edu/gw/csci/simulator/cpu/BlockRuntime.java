@@ -0,0 +1,231 @@
+package edu.gw.csci.simulator.cpu;
+
+import edu.gw.csci.simulator.isa.DecodedInstruction;
+import edu.gw.csci.simulator.isa.Decoder;
+import edu.gw.csci.simulator.memory.AllMemory;
+import edu.gw.csci.simulator.registers.AllRegisters;
+import edu.gw.csci.simulator.registers.Register;
+import edu.gw.csci.simulator.registers.RegisterType;
+import edu.gw.csci.simulator.utils.BitConversion;
+
+/**
+ * The machine state a {@link TranslatedBlock} or a {@link Superinstruction} works on, and the static
+ * helpers they call. Registers are resolved to {@link Register} objects once, so helpers index plain arrays
+ * where the handlers look registers up by {@link RegisterType}. Operands that are known when the
+ * block is translated, such as register numbers and direct addresses, are passed in as constants,
+ * which lets the JIT fold them once it inlines the helpers into the block.
+ * <p>
+ * The helpers are public only because generated classes live in their own class loader; nothing
+ * else should call them. Each one mirrors the handler of the same instruction in
+ * {@link edu.gw.csci.simulator.isa.instructions}, without the per instruction info logging.
+ */
+public final class BlockRuntime {
+
+    private static final int WORD_MASK = 0xFFFF;
+
+    /**
+     * Thrown when the word fetched for an instruction is not the word the block was translated
+     * from, which happens when memory was written without going through {@link AllMemory}.
+     */
+    static final class StaleBlock extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private StaleBlock() {
+            super("Translated block no longer matches memory", null, false, false);
+        }
+    }
+
+    static final StaleBlock STALE_BLOCK = new StaleBlock();
+
+    private final CPU cpu;
+    private final AllMemory memory;
+    private final AllRegisters registers;
+    private final Decoder decoder;
+    private final Register pc, ir;
+    private final Register[] generalPurpose = new Register[4], index = new Register[4];
+
+    BlockRuntime(CPU cpu, AllMemory memory, Decoder decoder) {
+        this.cpu = cpu;
+        this.memory = memory;
+        this.registers = memory.getAllRegisters();
+        this.decoder = decoder;
+        this.pc = registers.getRegister(RegisterType.PC);
+        this.ir = registers.getRegister(RegisterType.IR);
+        for (int i = 0; i < generalPurpose.length; i++) {
+            generalPurpose[i] = registers.getRegister(RegisterType.getGeneralPurpose(i));
+        }
+        for (int i = 1; i < index.length; i++) {
+            index[i] = registers.getRegister(RegisterType.getIndex(i));
+        }
+    }
+
+    /**
+     * @return The address of the next instruction
+     */
+    int getPC() {
+        return pc.getWord();
+    }
+
+    /**
+     * Fetches the instruction at the address into the IR, as the interpreter does.
+     */
+    public static void fetch(BlockRuntime runtime, int address, int word) {
+        if (runtime.memory.fetchInstruction(address) != word) {
+            throw STALE_BLOCK;
+        }
+        runtime.ir.setWord(word);
+    }
+
+    /**
+     * Retires an instruction that falls through to the next address.
+     */
+    public static void next(BlockRuntime runtime, int address) {
+        runtime.cpu.countInstruction();
+        runtime.pc.setWord(address + 1);
+    }
+
+    /**
+     * Retires the transfer instruction that ends a block, which may have moved the PC.
+     */
+    public static void branched(BlockRuntime runtime) {
+        runtime.cpu.countInstruction();
+        runtime.pc.setWord(runtime.pc.getWord() + 1);
+    }
+
+    /**
+     * Runs an instruction without a helper through its shared handler.
+     */
+    public static void interpret(BlockRuntime runtime, DecodedInstruction decoded) {
+        runtime.decoder.getInstruction(decoded.getInstructionType())
+                .execute(decoded, runtime.memory, runtime.registers, runtime.cpu);
+    }
+
+    /**
+     * @return The effective address of a direct, indexed instruction
+     */
+    public static int indexed(BlockRuntime runtime, int ix, int address) {
+        return address + BitConversion.toSigned(runtime.index[ix].getWord());
+    }
+
+    /**
+     * @return The effective address of an indirect instruction
+     */
+    public static int effectiveAddress(BlockRuntime runtime, DecodedInstruction decoded) {
+        return runtime.memory.EA(decoded);
+    }
+
+    public static void load(BlockRuntime runtime, int r, int EA) {
+        runtime.generalPurpose[r].setWord(runtime.memory.fetchWord(EA));
+    }
+
+    public static void store(BlockRuntime runtime, int r, int EA) {
+        runtime.memory.storeWord(EA, runtime.generalPurpose[r].getWord());
+    }
+
+    public static void loadAddress(BlockRuntime runtime, int r, int EA) {
+        runtime.generalPurpose[r].setWord(BitConversion.toWord(EA));
+    }
+
+    public static void loadIndex(BlockRuntime runtime, int x, int EA) {
+        runtime.index[x].setWord(runtime.memory.fetchWord(EA));
+    }
+
+    public static void storeIndex(BlockRuntime runtime, int x, int EA) {
+        runtime.memory.storeWord(EA, runtime.index[x].getWord());
+    }
+
+    public static void addMemory(BlockRuntime runtime, int r, int EA) {
+        Register R = runtime.generalPurpose[r];
+        int RValue = BitConversion.toSigned(R.getWord());
+        int MemoryValue = BitConversion.toSigned(runtime.memory.fetchWord(EA));
+        runtime.registers.checkOverUnderFlow(RValue + MemoryValue);
+        R.setWord((RValue + MemoryValue) & WORD_MASK);
+    }
+
+    public static void subtractMemory(BlockRuntime runtime, int r, int EA) {
+        Register R = runtime.generalPurpose[r];
+        int RValue = BitConversion.toSigned(R.getWord());
+        int MemoryValue = BitConversion.toSigned(runtime.memory.fetchWord(EA));
+        runtime.registers.checkOverUnderFlow(RValue - MemoryValue);
+        R.setWord((RValue - MemoryValue) & WORD_MASK);
+    }
+
+    public static void addImmediate(BlockRuntime runtime, int r, int immediate) {
+        Register R = runtime.generalPurpose[r];
+        int RValue = BitConversion.toSigned(R.getWord());
+        if (immediate == 0) {
+            R.setWord(R.getWord());
+        } else if (RValue == 0) {
+            R.setWord(BitConversion.toWord(immediate));
+        } else {
+            runtime.registers.checkOverUnderFlow(RValue + immediate);
+            R.setWord((RValue + immediate) & WORD_MASK);
+        }
+    }
+
+    public static void subtractImmediate(BlockRuntime runtime, int r, int immediate) {
+        Register R = runtime.generalPurpose[r];
+        int RValue = BitConversion.toSigned(R.getWord());
+        if (immediate == 0) {
+            R.setWord(R.getWord());
+        } else if (RValue == 0) {
+            R.setWord(BitConversion.toWord(-immediate));
+        } else {
+            runtime.registers.checkOverUnderFlow(RValue - immediate);
+            R.setWord((RValue - immediate) & WORD_MASK);
+        }
+    }
+
+    public static void testRegisters(BlockRuntime runtime, int rx, int ry) {
+        runtime.registers.EQUALORNOT(runtime.generalPurpose[rx].getWord() == runtime.generalPurpose[ry].getWord());
+    }
+
+    public static void and(BlockRuntime runtime, int rx, int ry) {
+        Register Rx = runtime.generalPurpose[rx];
+        Rx.setWord(Rx.getWord() & runtime.generalPurpose[ry].getWord());
+    }
+
+    public static void or(BlockRuntime runtime, int rx, int ry) {
+        Register Rx = runtime.generalPurpose[rx];
+        Rx.setWord(Rx.getWord() | runtime.generalPurpose[ry].getWord());
+    }
+
+    public static void not(BlockRuntime runtime, int r) {
+        Register R = runtime.generalPurpose[r];
+        R.setWord(~R.getWord() & WORD_MASK);
+    }
+
+    public static void jumpZero(BlockRuntime runtime, int r, int EA) {
+        if (runtime.generalPurpose[r].getWord() == 0) {
+            jump(runtime, EA);
+        }
+    }
+
+    public static void jumpNotEqual(BlockRuntime runtime, int r, int EA) {
+        if (runtime.generalPurpose[r].getWord() != 0) {
+            jump(runtime, EA);
+        }
+    }
+
+    public static void jumpGreaterOrEqual(BlockRuntime runtime, int r, int EA) {
+        if (BitConversion.toSigned(runtime.generalPurpose[r].getWord()) >= 0) {
+            jump(runtime, EA);
+        }
+    }
+
+    public static void subtractOneAndBranch(BlockRuntime runtime, int r, int EA) {
+        Register R = runtime.generalPurpose[r];
+        int value = BitConversion.toSigned(R.getWord()) - 1;
+        R.setWord(BitConversion.toWord(value));
+        if (value > 0) {
+            jump(runtime, EA);
+        }
+    }
+
+    /**
+     * Points the PC one before the target, since {@link BlockRuntime#branched(BlockRuntime)} increments it.
+     */
+    public static void jump(BlockRuntime runtime, int EA) {
+        runtime.pc.setWord(BitConversion.toWord(EA - 1));
+    }
+}
@@ -0,0 +1,365 @@
+package edu.gw.csci.simulator.cpu;
+
+import edu.gw.csci.simulator.isa.DecodedInstruction;
+import edu.gw.csci.simulator.isa.Decoder;
+import edu.gw.csci.simulator.isa.InstructionType;
+import edu.gw.csci.simulator.memory.AllMemory;
+import edu.gw.csci.simulator.memory.MemoryBackend;
+import edu.gw.csci.simulator.memory.StoreListener;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Translates hot basic blocks into generated classes for the CPU to run instead of interpreting
+ * them one instruction at a time. A block starts at an address the interpreter reached at least
+ * {@link BlockTranslator#getHotThreshold()} times, and ends at the first transfer instruction
+ * (JZ, JNE, JCC, JMA, JSR, RFS, SOB, JGE). HLT, TRAP and illegal opcodes are never translated,
+ * so they always reach the interpreter.
+ * <p>
+ * Each block becomes a class with one static method of straight line code, defined in a class
+ * loader of its own so that it can be unloaded once the block is dropped, and called through a
+ * {@link MethodHandle}. The generated code fetches every instruction into the IR, updates the PC
+ * and counts instructions exactly like the interpreter, so traps, the memory cache and the GUI
+ * see the same machine either way.
+ * <p>
+ * Stores to an address covered by a block drop all blocks, so self modifying code is translated
+ * again from the new words.
+ */
+public class BlockTranslator implements StoreListener {
+
+    private static final Logger LOGGER = LogManager.getLogger(BlockTranslator.class);
+
+    /**
+     * Interpreted visits of an address before a block is translated from it
+     */
+    public static final int DEFAULT_HOT_THRESHOLD = 16;
+
+    /**
+     * Keeps the generated method far below the size the JIT refuses to compile
+     */
+    static final int MAX_BLOCK_LENGTH = 64;
+
+    private static final int NEVER = -1;
+
+    private static final String CLASS_NAME = "edu.gw.csci.simulator.cpu.generated.Block";
+
+    private static final String RUNTIME = "Ledu/gw/csci/simulator/cpu/BlockRuntime;",
+            DECODED = "Ledu/gw/csci/simulator/isa/DecodedInstruction;",
+            NO_OPERANDS = "(" + RUNTIME + ")V",
+            DECODED_OPERAND = "(" + RUNTIME + DECODED + ")V",
+            ONE_OPERAND = "(" + RUNTIME + "I)V",
+            TWO_OPERANDS = "(" + RUNTIME + "II)V",
+            INDEXED_ADDRESS = "(" + RUNTIME + "II)I",
+            INDIRECT_ADDRESS = "(" + RUNTIME + DECODED + ")I";
+
+    private static final MethodType RUN_TYPE =
+            MethodType.methodType(void.class, BlockRuntime.class, DecodedInstruction[].class);
+
+    private static final Set<InstructionType> TRANSFERS = EnumSet.of(
+            InstructionType.JZ, InstructionType.JNE, InstructionType.JCC, InstructionType.JMA,
+            InstructionType.JSR, InstructionType.RFS, InstructionType.SOB, InstructionType.JGE);
+
+    private final MemoryBackend memory;
+    private final Decoder decoder;
+    private final BlockRuntime runtime;
+    private final int hotThreshold;
+
+    private final TranslatedBlock[] blocks;
+    private final int[] heat;
+    private final boolean[] translated;
+
+    private long blocksTranslated;
+    private long blocksExecuted;
+    private long invalidations;
+
+    /**
+     * @param cpu          The CPU the blocks retire instructions on
+     * @param allMemory    The memory of the CPU
+     * @param decoder      The decoder of the CPU
+     * @param hotThreshold Interpreted visits of an address before a block is translated from it
+     */
+    BlockTranslator(CPU cpu, AllMemory allMemory, Decoder decoder, int hotThreshold) {
+        this.memory = allMemory.getMemory();
+        this.decoder = decoder;
+        this.runtime = new BlockRuntime(cpu, allMemory, decoder);
+        this.hotThreshold = hotThreshold;
+        int size = memory.getSize();
+        this.blocks = new TranslatedBlock[size];
+        this.heat = new int[size];
+        this.translated = new boolean[size];
+    }
+
+    /**
+     * Runs the block that starts at the PC, translating it first if the address just became hot.
+     *
+     * @param pc The address of the next instruction
+     * @return False if the interpreter has to execute the next instruction
+     */
+    boolean execute(int pc) {
+        if (pc >= blocks.length) {
+            return false;
+        }
+        TranslatedBlock block = blocks[pc];
+        if (block == null) {
+            if (heat[pc] == NEVER || ++heat[pc] < hotThreshold) {
+                return false;
+            }
+            block = translate(pc);
+            if (block == null) {
+                heat[pc] = NEVER;
+                return false;
+            }
+            blocks[pc] = block;
+        }
+        try {
+            block.execute(runtime);
+        } catch (BlockRuntime.StaleBlock e) {
+            //The PC is still on the instruction that changed, the interpreter picks it up from there
+            invalidateAll();
+            return false;
+        }
+        blocksExecuted++;
+        return true;
+    }
+
+    /**
+     * Drops every block that covers a stored address.
+     */
+    @Override
+    public void stored(int index, int word) {
+        if (translated[index]) {
+            invalidateAll();
+        }
+    }
+
+    @Override
+    public void replaced() {
+        invalidateAll();
+    }
+
+    /**
+     * Drops all translated blocks, and restarts counting visits.
+     */
+    public void invalidateAll() {
+        Arrays.fill(blocks, null);
+        Arrays.fill(heat, 0);
+        Arrays.fill(translated, false);
+        invalidations++;
+    }
+
+    /**
+     * Decodes the block at the start address straight from the memory backend, so that
+     * translating does not touch the MAR, MBR or the memory cache.
+     *
+     * @return The translated block, or null if the first instruction can't be translated
+     */
+    private TranslatedBlock translate(int start) {
+        List<DecodedInstruction> instructions = new ArrayList<>();
+        boolean endsWithTransfer = false;
+        for (int address = start; address < memory.getSize() && instructions.size() < MAX_BLOCK_LENGTH; address++) {
+            int word = memory.read(address);
+            if (!InstructionType.isOpCode(DecodedInstruction.opCode(word))) {
+                break;
+            }
+            DecodedInstruction decoded = decoder.decode(word);
+            InstructionType type = decoded.getInstructionType();
+            if (type == InstructionType.HLT || type == InstructionType.TRAP) {
+                break;
+            }
+            instructions.add(decoded);
+            if (TRANSFERS.contains(type)) {
+                endsWithTransfer = true;
+                break;
+            }
+        }
+        if (instructions.isEmpty()) {
+            return null;
+        }
+
+        DecodedInstruction[] decoded = instructions.toArray(new DecodedInstruction[0]);
+        MethodHandle code;
+        try {
+            code = define(start, decoded, endsWithTransfer);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            LOGGER.error("Could not translate the block at {}, interpreting it instead", start, e);
+            return null;
+        }
+        for (int i = 0; i < decoded.length; i++) {
+            translated[start + i] = true;
+        }
+        blocksTranslated++;
+        LOGGER.debug("Translated {} instructions at {}", decoded.length, start);
+        return new TranslatedBlock(start, decoded, code);
+    }
+
+    private static MethodHandle define(int start, DecodedInstruction[] decoded, boolean endsWithTransfer)
+            throws ReflectiveOperationException {
+        String className = CLASS_NAME + start;
+        BlockClassWriter writer = new BlockClassWriter(className.replace('.', '/'));
+        for (int i = 0; i < decoded.length; i++) {
+            int address = start + i;
+            writer.loadRuntime().pushInt(address).pushInt(decoded[i].getWord())
+                    .invokeRuntime("fetch", TWO_OPERANDS);
+            emitInstruction(writer, decoded[i], i);
+            if (endsWithTransfer && i == decoded.length - 1) {
+                writer.loadRuntime().invokeRuntime("branched", NO_OPERANDS);
+            } else {
+                writer.loadRuntime().pushInt(address).invokeRuntime("next", ONE_OPERAND);
+            }
+        }
+
+        BlockClassLoader loader = new BlockClassLoader(BlockTranslator.class.getClassLoader());
+        Class<?> blockClass = loader.define(className, writer.toByteArray());
+        return MethodHandles.publicLookup().findStatic(blockClass, BlockClassWriter.METHOD_NAME, RUN_TYPE);
+    }
+
+    /**
+     * Emits the call to the helper for the instruction, with the operands known now as constants.
+     * Instructions without a helper call their handler.
+     */
+    private static void emitInstruction(BlockClassWriter writer, DecodedInstruction decoded, int index) {
+        switch (decoded.getInstructionType()) {
+            case LDR:
+                emitMemory(writer, "load", decoded.getR(), decoded, index);
+                break;
+            case STR:
+                emitMemory(writer, "store", decoded.getR(), decoded, index);
+                break;
+            case LDA:
+                emitMemory(writer, "loadAddress", decoded.getR(), decoded, index);
+                break;
+            case LDX:
+                emitMemory(writer, "loadIndex", decoded.getIX(), decoded, index);
+                break;
+            case STX:
+                emitMemory(writer, "storeIndex", decoded.getIX(), decoded, index);
+                break;
+            case AMR:
+                emitMemory(writer, "addMemory", decoded.getR(), decoded, index);
+                break;
+            case SMR:
+                emitMemory(writer, "subtractMemory", decoded.getR(), decoded, index);
+                break;
+            case AIR:
+                emitMemory(writer, "addImmediate", decoded.getR(), decoded, index);
+                break;
+            case SIR:
+                emitMemory(writer, "subtractImmediate", decoded.getR(), decoded, index);
+                break;
+            case JZ:
+                emitMemory(writer, "jumpZero", decoded.getR(), decoded, index);
+                break;
+            case JNE:
+                emitMemory(writer, "jumpNotEqual", decoded.getR(), decoded, index);
+                break;
+            case JGE:
+                emitMemory(writer, "jumpGreaterOrEqual", decoded.getR(), decoded, index);
+                break;
+            case SOB:
+                emitMemory(writer, "subtractOneAndBranch", decoded.getR(), decoded, index);
+                break;
+            case JMA:
+                writer.loadRuntime();
+                emitEffectiveAddress(writer, decoded, index);
+                writer.invokeRuntime("jump", ONE_OPERAND);
+                break;
+            case TRR:
+                emitRegisters(writer, "testRegisters", decoded);
+                break;
+            case AND:
+                emitRegisters(writer, "and", decoded);
+                break;
+            case ORR:
+                emitRegisters(writer, "or", decoded);
+                break;
+            case NOT:
+                writer.loadRuntime().pushInt(decoded.getR()).invokeRuntime("not", ONE_OPERAND);
+                break;
+            default:
+                writer.loadRuntime().loadDecoded(index).invokeRuntime("interpret", DECODED_OPERAND);
+                break;
+        }
+    }
+
+    private static void emitMemory(BlockClassWriter writer, String helper, int register,
+                                   DecodedInstruction decoded, int index) {
+        writer.loadRuntime().pushInt(register);
+        emitEffectiveAddress(writer, decoded, index);
+        writer.invokeRuntime(helper, TWO_OPERANDS);
+    }
+
+    private static void emitRegisters(BlockClassWriter writer, String helper, DecodedInstruction decoded) {
+        writer.loadRuntime().pushInt(decoded.getR()).pushInt(decoded.getRy()).invokeRuntime(helper, TWO_OPERANDS);
+    }
+
+    /**
+     * Emits the effective address the way {@link AllMemory#EA(DecodedInstruction)} computes it:
+     * a constant for immediate and direct unindexed addresses, the index register plus a constant
+     * for direct indexed addresses, and a call back to memory for indirect ones.
+     */
+    private static void emitEffectiveAddress(BlockClassWriter writer, DecodedInstruction decoded, int index) {
+        int address = decoded.getAddress();
+        switch (decoded.getInstructionType().getAddressingMode()) {
+            case IMMEDIATE:
+                writer.pushInt(address);
+                return;
+            case INDEXED:
+                if (decoded.isIndirect()) {
+                    break;
+                }
+                if (decoded.getIX() == 0) {
+                    writer.pushInt(address);
+                } else {
+                    writer.loadRuntime().pushInt(decoded.getIX()).pushInt(address)
+                            .invokeRuntime("indexed", INDEXED_ADDRESS);
+                }
+                return;
+            default:
+                if (!decoded.isIndirect()) {
+                    writer.pushInt(address);
+                    return;
+                }
+                break;
+        }
+        writer.loadRuntime().loadDecoded(index).invokeRuntime("effectiveAddress", INDIRECT_ADDRESS);
+    }
+
+    public int getHotThreshold() {
+        return hotThreshold;
+    }
+
+    public long getBlocksTranslated() {
+        return blocksTranslated;
+    }
+
+    public long getBlocksExecuted() {
+        return blocksExecuted;
+    }
+
+    public long getInvalidations() {
+        return invalidations;
+    }
+
+    /**
+     * One loader per block, so the class goes away with the block.
+     */
+    private static final class BlockClassLoader extends ClassLoader {
+
+        BlockClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package edu.gw.csci.simulator.cpu;
+
+import edu.gw.csci.simulator.branch.BranchStatistics;
+import edu.gw.csci.simulator.isa.DecodedInstruction;
+import edu.gw.csci.simulator.isa.InstructionType;
+import edu.gw.csci.simulator.registers.AllRegisters;
+import edu.gw.csci.simulator.registers.Register;
+import edu.gw.csci.simulator.registers.RegisterType;
+
+/**
+ * Hands the outcome of every conditional transfer the CPU retires to {@link BranchStatistics}.
+ */
+class BranchRecorder {
+
+    private final BranchStatistics statistics;
+    private final Register pc, ir;
+
+    private boolean open;
+    private int address;
+
+    BranchRecorder(BranchStatistics statistics, AllRegisters registers) {
+        this.statistics = statistics;
+        this.pc = registers.getRegister(RegisterType.PC);
+        this.ir = registers.getRegister(RegisterType.IR);
+    }
+
+    void begin() {
+        address = pc.getWord();
+        open = true;
+    }
+
+    /**
+     * @param fault True if the instruction faulted instead of retiring
+     */
+    void finish(boolean fault) {
+        if (!open) {
+            return;
+        }
+        open = false;
+        InstructionType type = fault ? null : conditionalTransfer(ir.getWord());
+        if (type != null) {
+            int next = pc.getWord();
+            statistics.record(address, type, next != following(type, address), next);
+        }
+    }
+
+    /**
+     * @return The address fetched after the instruction if it does not transfer control. A HLT
+     * outside any routine leaves the PC on itself, and nothing follows it.
+     */
+    static int following(InstructionType type, int address) {
+        return (type == InstructionType.HLT) ? address : address + 1;
+    }
+
+    /**
+     * @return The transfer a predictor is asked about, or null for any other instruction
+     */
+    static InstructionType conditionalTransfer(int word) {
+        int opCode = DecodedInstruction.opCode(word);
+        if (opCode == InstructionType.JZ.getOpCode()) {
+            return InstructionType.JZ;
+        } else if (opCode == InstructionType.JNE.getOpCode()) {
+            return InstructionType.JNE;
+        } else if (opCode == InstructionType.JCC.getOpCode()) {
+            return InstructionType.JCC;
+        } else if (opCode == InstructionType.JGE.getOpCode()) {
+            return InstructionType.JGE;
+        } else if (opCode == InstructionType.SOB.getOpCode()) {
+            return InstructionType.SOB;
+        }
+        return null;
+    }
+
+    BranchStatistics getStatistics() {
+        return statistics;
+    }
+}
@@ -0,0 +1,222 @@
+package edu.gw.csci.simulator.cpu;
+
+import edu.gw.csci.simulator.memory.AllMemory;
+import edu.gw.csci.simulator.memory.WatchListener;
+import edu.gw.csci.simulator.registers.AllRegisters;
+import edu.gw.csci.simulator.registers.RegisterType;
+
+/**
+ * The breakpoints and watchpoints of a {@link CPU}. Addresses are flagged in one byte map that
+ * covers everything the PC can hold: the fetch loop looks up the PC in it, and {@link AllMemory}
+ * looks up every fetched and stored address, each with a single array load. While nothing is set,
+ * {@link CPU#execute(long)} does not look at the map at all.
+ * <p>
+ * A breakpoint stops the run before the instruction at its address executes; continuing the run
+ * executes that instruction. A watchpoint stops the run once the instruction that read or wrote its
+ * address, or wrote its register, has retired. Instruction fetches count as reads of their address.
+ * Register reads can't be watched, since every instruction reads the PC and most read more.
+ */
+public class Breakpoints implements WatchListener {
+
+    /**
+     * Flag for an address with a breakpoint, next to the {@link WatchListener} flags
+     */
+    public static final int EXECUTE = 4;
+
+    public enum Stop {
+        NONE, BREAKPOINT, READ, WRITE, REGISTER
+    }
+
+    private final byte[] flags;
+    private final AllRegisters registers;
+    private final boolean[] watchedRegisters = new boolean[RegisterType.values().length];
+    private int addressCount, registerCount;
+
+    private Stop stop = Stop.NONE;
+    private int stopAddress;
+    private RegisterType stopRegister;
+    private int passing = -1;
+
+    Breakpoints(AllMemory memory) {
+        this.registers = memory.getAllRegisters();
+        this.flags = new byte[Math.max(memory.getMemory().getSize(), 1 << RegisterType.PC.getSize())];
+        memory.setWatch(flags, this);
+    }
+
+    public void setBreakpoint(int address) {
+        setFlags(address, flags[checkAddress(address)] | EXECUTE);
+    }
+
+    public void removeBreakpoint(int address) {
+        setFlags(address, flags[checkAddress(address)] & ~EXECUTE);
+    }
+
+    public boolean isBreakpoint(int address) {
+        return (flags[checkAddress(address)] & EXECUTE) != 0;
+    }
+
+    /**
+     * Watches reads, writes or both of a memory address. Passing false for both removes the watch.
+     */
+    public void watchMemory(int address, boolean read, boolean write) {
+        int watch = (read ? READ : 0) | (write ? WRITE : 0);
+        setFlags(address, (flags[checkAddress(address)] & EXECUTE) | watch);
+    }
+
+    /**
+     * @return The {@link WatchListener#READ} and {@link WatchListener#WRITE} flags of the address
+     */
+    public int getMemoryWatch(int address) {
+        return flags[checkAddress(address)] & (READ | WRITE);
+    }
+
+    /**
+     * Watches writes to the register.
+     */
+    public void watchRegister(RegisterType registerType) {
+        if (!watchedRegisters[registerType.ordinal()]) {
+            watchedRegisters[registerType.ordinal()] = true;
+            registerCount++;
+            registers.setWriteWatch(registerType, () -> registerWritten(registerType));
+        }
+    }
+
+    public void unwatchRegister(RegisterType registerType) {
+        if (watchedRegisters[registerType.ordinal()]) {
+            watchedRegisters[registerType.ordinal()] = false;
+            registerCount--;
+            registers.setWriteWatch(registerType, null);
+        }
+    }
+
+    public boolean isWatched(RegisterType registerType) {
+        return watchedRegisters[registerType.ordinal()];
+    }
+
+    /**
+     * Removes every breakpoint and watchpoint.
+     */
+    public void clear() {
+        for (int address = 0; address < flags.length; address++) {
+            flags[address] = 0;
+        }
+        addressCount = 0;
+        for (RegisterType registerType : RegisterType.values()) {
+            unwatchRegister(registerType);
+        }
+    }
+
+    /**
+     * @return True if no breakpoint or watchpoint is set
+     */
+    public boolean isEmpty() {
+        return addressCount == 0 && registerCount == 0;
+    }
+
+    /**
+     * @return Why the last run stopped early, or {@link Stop#NONE}
+     */
+    public Stop getStop() {
+        return stop;
+    }
+
+    /**
+     * @return The address of the breakpoint or memory watchpoint the run stopped at
+     */
+    public int getStopAddress() {
+        return stopAddress;
+    }
+
+    /**
+     * @return The register whose watchpoint the run stopped at
+     */
+    public RegisterType getStopRegister() {
+        return stopRegister;
+    }
+
+    public String describeStop() {
+        switch (stop) {
+            case BREAKPOINT:
+                return "Breakpoint at " + stopAddress;
+            case READ:
+                return "Read of watched address " + stopAddress;
+            case WRITE:
+                return "Write to watched address " + stopAddress;
+            case REGISTER:
+                return "Write to watched register " + stopRegister;
+            default:
+                return "Not stopped";
+        }
+    }
+
+    @Override
+    public void watched(int index, boolean write) {
+        if (stop == Stop.NONE) {
+            stop = write ? Stop.WRITE : Stop.READ;
+            stopAddress = index;
+        }
+    }
+
+    private void registerWritten(RegisterType registerType) {
+        if (stop == Stop.NONE) {
+            stop = Stop.REGISTER;
+            stopRegister = registerType;
+        }
+    }
+
+    byte[] getFlags() {
+        return flags;
+    }
+
+    /**
+     * Called by the fetch loop for a PC with a breakpoint.
+     *
+     * @return True to stop, false if the run is continuing from this very breakpoint
+     */
+    boolean stopAt(int pc) {
+        if (pc == passing) {
+            return false;
+        }
+        stop = Stop.BREAKPOINT;
+        stopAddress = pc;
+        passing = pc;
+        return true;
+    }
+
+    /**
+     * Called after every instruction of a checked run, so a breakpoint is only passed once.
+     */
+    void executed() {
+        passing = -1;
+    }
+
+    /**
+     * Forgets the last stop, when a run starts or continues.
+     */
+    void resetStop() {
+        stop = Stop.NONE;
+    }
+
+    /**
+     * @return True if the last run or step stopped at a breakpoint or watchpoint
+     */
+    public boolean isStopped() {
+        return stop != Stop.NONE;
+    }
+
+    private void setFlags(int address, int newFlags) {
+        if (flags[address] == 0 && newFlags != 0) {
+            addressCount++;
+        } else if (flags[address] != 0 && newFlags == 0) {
+            addressCount--;
+        }
+        flags[address] = (byte) newFlags;
+    }
+
+    private int checkAddress(int address) {
+        if (address < 0 || address >= flags.length) {
+            throw new IllegalArgumentException(String.format("Address %d is outside [0,%d)", address, flags.length));
+        }
+        return address;
+    }
+}
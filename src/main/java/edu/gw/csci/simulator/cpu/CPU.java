@@ -1,18 +1,21 @@
 package edu.gw.csci.simulator.cpu;
 
+import edu.gw.csci.simulator.branch.BranchStatistics;
 import edu.gw.csci.simulator.exceptions.IllegalMemoryAccess;
 import edu.gw.csci.simulator.exceptions.IllegalOpcode;
 import edu.gw.csci.simulator.exceptions.MemoryOutOfBounds;
 import edu.gw.csci.simulator.exceptions.SimulatorException;
 import edu.gw.csci.simulator.gui.Program;
+import edu.gw.csci.simulator.isa.DecodedInstruction;
+import edu.gw.csci.simulator.isa.DecodedInstructionCache;
 import edu.gw.csci.simulator.isa.Decoder;
-import edu.gw.csci.simulator.isa.Instruction;
 import edu.gw.csci.simulator.isa.InstructionType;
 import edu.gw.csci.simulator.memory.AllMemory;
+import edu.gw.csci.simulator.memory.CacheHierarchy;
+import edu.gw.csci.simulator.memory.MemoryCache;
 import edu.gw.csci.simulator.registers.AllRegisters;
-import edu.gw.csci.simulator.registers.Register;
-import edu.gw.csci.simulator.registers.RegisterDecorator;
 import edu.gw.csci.simulator.registers.RegisterType;
+import edu.gw.csci.simulator.trace.TraceWriter;
 import edu.gw.csci.simulator.utils.BitConversion;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -39,21 +42,55 @@ public class CPU {
     public ArrayList<String> consoleInput;
     public ArrayList<String> consoleOutput;
     private Decoder decoder;
+    private final DecodedInstructionCache instructionCache;
+    private BlockTranslator translator;
+    private boolean translation;
+    private FusionPass fusionPass;
+    private boolean fusion;
+    private long instructionCount;
+
+    private static final int NO_TRAP = -1;
+    private static final int PROFILE_HOT_SPOTS = 10;
+    private static final int BRANCH_REPORT_ADDRESSES = 10;
+    private final TrapController trapController;
+    private final SimulatorFileReader fileReader;
+    private int pendingTrap = NO_TRAP;
+    private int trapDepth;
+    private UndoLog undoLog;
+    private final Breakpoints breakpoints;
+    private TraceRecorder traceRecorder;
+    private Profiler profiler;
+    private CycleCounter cycleCounter;
+    private PipelineModel pipelineModel;
+    private BranchRecorder branchRecorder;
 
     public CPU(AllMemory allMemory) {
         this.memory = allMemory;
         this.registers = allMemory.getAllRegisters();
         this.decoder = new Decoder();
+        this.instructionCache = new DecodedInstructionCache(decoder, allMemory.getMemory().getSize());
+        allMemory.addStoreListener(instructionCache);
         this.consoleInput = new ArrayList<>();
         this.consoleOutput = new ArrayList<>();
+        this.trapController = new TrapController(this);
+        this.fileReader = new SimulatorFileReader();
+        this.breakpoints = new Breakpoints(allMemory);
     }
 
+    /**
+     * The console input is filled by the GUI thread while a {@link CPURunner} executes, so both
+     * sides lock the list.
+     */
     public Optional<String> getNextInput() {
-
-        if (!consoleInput.isEmpty()) {
-            String current = consoleInput.get(0);
-            consoleInput.remove(0);
-            return Optional.of(current);
+        synchronized (consoleInput) {
+            if (!consoleInput.isEmpty()) {
+                String current = consoleInput.get(0);
+                consoleInput.remove(0);
+                if (undoLog != null) {
+                    undoLog.consumed(current);
+                }
+                return Optional.of(current);
+            }
         }
         return Optional.empty();
     }
@@ -68,53 +105,218 @@ public class CPU {
      * This is handy because unused memory will automatically indicate a halt, there is no need to explicitly
      * declare one in the program. The GUI restricts one ability to call this function
      * unless the machine has been initialized, and a program has been set.
+     * <p>
+     * Traps and faults don't leave this loop: entering a routine points the PC at it, and the HLT that
+     * ends the routine points the PC back at the saved location, so the loop just keeps fetching.
+     * Only a HLT outside any routine stops the machine, unless a {@link Breakpoints breakpoint or
+     * watchpoint} stops it first.
      */
     public void execute() {
-        //Set the first instruction to null
-        Instruction instruction = null;
+        while (!execute(Long.MAX_VALUE)) {
+            if (breakpoints.isStopped()) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Executes instructions like {@link CPU#execute()}, but gives control back once the budget of
+     * instructions has been retired, so a {@link CPURunner} can run the machine in time slices. Blocks
+     * and superinstructions retire several instructions at once, so a slice may run over budget by the
+     * rest of one translated block or one pass of a fused sequence.
+     * While {@link CPU#setUndoRecording(int) undo recording}, {@link CPU#setTraceWriter tracing},
+     * {@link CPU#setProfiling(boolean) profiling}, {@link CPU#setTimingModel timing}, a
+     * {@link CPU#setPipelineModel pipeline model} or {@link CPU#setBranchStatistics branch prediction}
+     * is on, or any breakpoint or watchpoint is set, every instruction is interpreted.
+     *
+     * @param budget The number of instructions to retire before returning
+     * @return True if the machine halted, false if the budget ran out or a breakpoint or watchpoint
+     * stopped it first, as told by {@link Breakpoints#getStop()}
+     */
+    public boolean execute(long budget) {
+        long start = instructionCount;
+        breakpoints.resetStop();
+        if (undoLog != null || traceRecorder != null || profiler != null || cycleCounter != null
+                || pipelineModel != null || branchRecorder != null || !breakpoints.isEmpty()) {
+            return executeChecked(start, budget);
+        }
+        while (instructionCount - start < budget) {
+            try {
+                //Blocks and superinstructions never contain a HLT or a TRAP, so they leave the loop running
+                if (translation && translator.execute(registers.getWord(RegisterType.PC))) {
+                    continue;
+                }
+                if (fusion && fusionPass.execute(registers.getWord(RegisterType.PC),
+                        budget - (instructionCount - start))) {
+                    continue;
+                }
+                if (executeNext()) {
+                    incrementPC();
+                    return true;
+                }
+            } catch (SimulatorException e) {
+                enterFault(e);
+            }
+        }
+        return false;
+    }
 
-        //Iterate until we get a halt
-        while (instruction == null || instruction.getInstructionType() != InstructionType.HLT) {
+    /**
+     * The loop of {@link CPU#execute(long)} that stops between any two instructions, for breakpoints
+     * and watchpoints, and for an undo log entry, trace record, profile count, cycle count, pipeline
+     * timing and branch prediction per instruction, which translated blocks and superinstructions
+     * can't give. The reports of the tools that are on are logged at the HLT.
+     */
+    private boolean executeChecked(long start, long budget) {
+        byte[] stops = breakpoints.getFlags();
+        while (instructionCount - start < budget) {
+            int pc = registers.getWord(RegisterType.PC);
+            if ((stops[pc] & Breakpoints.EXECUTE) != 0 && breakpoints.stopAt(pc)) {
+                return false;
+            }
+            boolean fault = false;
             try {
-                instruction = getNextInstruction(registers);
-                instruction.execute(memory, registers, this);
-                incrementPC();
+                if (executeNext()) {
+                    finishChecked(false);
+                    incrementPC();
+                    if (profiler != null) {
+                        LOGGER.info(profiler.getReport(PROFILE_HOT_SPOTS));
+                    }
+                    if (cycleCounter != null) {
+                        LOGGER.info(cycleCounter.getReport());
+                    }
+                    if (pipelineModel != null) {
+                        LOGGER.info(pipelineModel.getReport());
+                    }
+                    if (branchRecorder != null) {
+                        LOGGER.info(branchRecorder.getStatistics().getReport(BRANCH_REPORT_ADDRESSES));
+                    }
+                    return true;
+                }
             } catch (SimulatorException e) {
-                //Load the saved off PC
-                BitSet oldPC = memory.fetch(TrapController.TRAP_PC_LOCATION, false);
-                Register pc = registers.getRegister(RegisterType.PC);
-                LOGGER.info("Finished trap routine, resuming to {}", BitConversion.convert(oldPC));
-                pc.setData(oldPC);
+                enterFault(e);
+                fault = true;
             }
+            finishChecked(fault);
+            if (breakpoints.isStopped()) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private void finishChecked(boolean fault) {
+        if (undoLog != null) {
+            undoLog.finish();
+        }
+        if (traceRecorder != null) {
+            traceRecorder.finish(fault);
+        }
+        if (profiler != null) {
+            profiler.finish(fault);
+        }
+        if (cycleCounter != null) {
+            cycleCounter.finish(fault);
         }
+        if (pipelineModel != null) {
+            pipelineModel.finish(fault);
+        }
+        if (branchRecorder != null) {
+            branchRecorder.finish(fault);
+        }
+        breakpoints.executed();
     }
 
     /**
-     * This function returns the next instruction to execute by the CPU. It gets
-     * passed the {@link RegisterDecorator} of the PC so we don't have to continually
-     * create a new one, given that the current instruction index must be known.
+     * Executes the instruction at the PC, and moves the PC on: past the instruction, into the routine
+     * of a TRAP, or back to the saved PC from the HLT at the end of a routine.
      *
-     * @param allRegisters All Registers
-     * @return The next instruction to execute
+     * @return True if the instruction was a HLT outside any routine, which is left under the PC
+     * @throws SimulatorException If the instruction faults, which the caller enters the fault routine for
+     */
+    private boolean executeNext() throws SimulatorException {
+        if (undoLog != null) {
+            undoLog.record(instructionCount, trapDepth, consoleOutput.size());
+        }
+        if (traceRecorder != null) {
+            traceRecorder.begin();
+        }
+        if (profiler != null) {
+            profiler.begin();
+        }
+        if (cycleCounter != null) {
+            cycleCounter.begin();
+        }
+        if (pipelineModel != null) {
+            pipelineModel.begin();
+        }
+        if (branchRecorder != null) {
+            branchRecorder.begin();
+        }
+        DecodedInstruction decoded = getNextInstruction(registers);
+        if (traceRecorder != null) {
+            traceRecorder.decoded(decoded);
+        }
+        decoder.getInstruction(decoded.getInstructionType()).execute(decoded, memory, registers, this);
+        instructionCount++;
+        if (pendingTrap != NO_TRAP) {
+            int routine = pendingTrap;
+            pendingTrap = NO_TRAP;
+            trapController.setFault(routine, true);
+            trapDepth++;
+        } else if (decoded.getInstructionType() == InstructionType.HLT) {
+            if (trapDepth == 0) {
+                return true;
+            }
+            trapDepth--;
+            trapController.returnFromTrap();
+        } else {
+            incrementPC();
+        }
+        return false;
+    }
+
+    /**
+     * Points the PC at the fault routine, with the PC of the faulting instruction saved.
      */
-    private Instruction getNextInstruction(AllRegisters allRegisters) throws MemoryOutOfBounds, IllegalMemoryAccess, IllegalOpcode {
-        int nextInstructionIndex = getPCDecorator().toInt();
-        BitSet instructionData = memory.fetch(nextInstructionIndex, true);
-        Register IR = allRegisters.getRegister(RegisterType.IR);
-        IR.setData(instructionData);
-        return decoder.getInstruction(instructionData);
+    private void enterFault(SimulatorException e) {
+        pendingTrap = NO_TRAP;
+        trapController.setFault(e.getOpcode(), false);
+        trapDepth++;
     }
 
     /**
-     * This function creates a {@link RegisterDecorator} for the PC register.
+     * Signals a trap from the {@link edu.gw.csci.simulator.isa.instructions.Miscellaneous.TRAP TRAP}
+     * instruction. The CPU enters the routine once the instruction retires, instead of unwinding
+     * with an exception.
      *
-     * @return The PC register decorator
+     * @param routine The index of the routine in the trap table
      */
-    private RegisterDecorator getPCDecorator() {
-        Register pc = registers.getRegister(RegisterType.PC);
-        return new RegisterDecorator(pc);
+    public void trap(int routine) {
+        pendingTrap = routine;
     }
 
+    /**
+     * @return The number of trap and fault routines entered and not yet returned from
+     */
+    public int getTrapDepth() {
+        return trapDepth;
+    }
+
+    /**
+     * This function returns the next instruction to execute by the CPU. The word at the PC
+     * is fetched, placed in the IR, and decoded without going through a BitSet or a String.
+     * Words already decoded at the same address come from the {@link DecodedInstructionCache}.
+     *
+     * @param allRegisters All Registers
+     * @return The fields of the next instruction to execute
+     */
+    private DecodedInstruction getNextInstruction(AllRegisters allRegisters) throws MemoryOutOfBounds, IllegalMemoryAccess, IllegalOpcode {
+        int nextInstructionIndex = allRegisters.getWord(RegisterType.PC);
+        int instructionWord = memory.fetchInstruction(nextInstructionIndex);
+        allRegisters.setWord(RegisterType.IR, instructionWord);
+        return instructionCache.getDecoded(nextInstructionIndex, instructionWord);
+    }
 
     /**
      * This function receives a program from the GUI, and loads it into memory.
@@ -132,6 +334,15 @@ public class CPU {
             defaultLoadLocation++;
         }
         registers.setRegister(RegisterType.PC, programCounter);
+        pendingTrap = NO_TRAP;
+        trapDepth = 0;
+        clearUndoLog();
+        if (pipelineModel != null) {
+            pipelineModel.clear();
+        }
+        if (fusion) {
+            fusionPass.scan(program.getName(), BitConversion.convert(programCounter), lines.size());
+        }
     }
 
     /**
@@ -156,38 +367,446 @@ public class CPU {
             }
         }
         registers.setRegister(RegisterType.PC, programCounter);
+        pendingTrap = NO_TRAP;
+        trapDepth = 0;
+        clearUndoLog();
+        if (pipelineModel != null) {
+            pipelineModel.clear();
+        }
+        if (fusion) {
+            fusionPass.scan(program.getName(), start, defaultLoadLocation - start);
+        }
     }
 
 
     /**
      * This function grabs the next instruction, executes it, and
-     * adjusts the program counter. In the case of a trap, the trap
-     * routine will execute, and then return control back to the step
-     * method in order to resume the next logical instruction.
+     * adjusts the program counter. A trap or fault points the PC at its
+     * routine, which the following steps walk through until its HLT
+     * returns to the next logical instruction.
      */
     public void step() {
+        breakpoints.resetStop();
+        boolean fault = false;
         try {
-            Instruction instruction = getNextInstruction(registers);
-            instruction.execute(memory, registers, this);
-            if(!instruction.getInstructionType().equals(InstructionType.HLT))
-                incrementPC();
+            executeNext();
         } catch (SimulatorException e) {
-            //Load the old PC
-            BitSet oldPC = memory.fetch(TrapController.TRAP_PC_LOCATION, false);
-            Register pc = registers.getRegister(RegisterType.PC);
-            LOGGER.info("Finished trap routine, resuming to {}", BitConversion.convert(oldPC));
-            pc.setData(oldPC);
+            enterFault(e);
+            fault = true;
+        }
+        finishChecked(fault);
+    }
+
+    /**
+     * Turns on recording of the history {@link CPU#stepBack(int)} undoes, or turns it off. While it is
+     * on, {@link CPU#execute()} interprets every instruction, as translated blocks and
+     * superinstructions don't stop between instructions to record them.
+     *
+     * @param capacity The number of instructions to keep, rounded up to a power of two, or 0 to stop
+     *                 recording and drop the history
+     * @see UndoLog
+     */
+    public void setUndoRecording(int capacity) {
+        if (capacity == 0) {
+            undoLog = null;
+            memory.setOverwriteListener(null);
+        } else {
+            undoLog = new UndoLog(registers, capacity);
+            memory.setOverwriteListener(undoLog);
+        }
+    }
+
+    /**
+     * @return The undo log, or null if undo recording is off
+     */
+    public UndoLog getUndoLog() {
+        return undoLog;
+    }
+
+    /**
+     * Starts writing a record of every instruction to the trace, or stops. The CPU does not close
+     * the writer. While tracing, {@link CPU#execute()} interprets every instruction, as translated
+     * blocks and superinstructions don't stop between instructions to record them.
+     *
+     * @param traceWriter The trace to write to, or null to stop tracing
+     * @see edu.gw.csci.simulator.trace.TraceRecord
+     */
+    public void setTraceWriter(TraceWriter traceWriter) {
+        if (traceRecorder != null) {
+            memory.removeFetchListener(traceRecorder);
+            memory.removeStoreListener(traceRecorder);
+            traceRecorder = null;
+        }
+        if (traceWriter != null) {
+            traceRecorder = new TraceRecorder(traceWriter, memory);
+            memory.addFetchListener(traceRecorder);
+            memory.addStoreListener(traceRecorder);
+        }
+    }
+
+    /**
+     * @return The trace being written, or null if tracing is off
+     */
+    public TraceWriter getTraceWriter() {
+        return (traceRecorder == null) ? null : traceRecorder.getWriter();
+    }
+
+    /**
+     * Starts counting executions per opcode, per address and per transfer outcome, or stops and drops
+     * the counts. While profiling, {@link CPU#execute()} interprets every instruction, so the counts
+     * show where the program spends its instructions, not what translation or fusion make of them.
+     *
+     * @param profiling True to start a new profile, false to stop
+     * @see Profiler
+     */
+    public void setProfiling(boolean profiling) {
+        profiler = profiling ? new Profiler(registers, memory.getMemory().getSize()) : null;
+    }
+
+    /**
+     * @return The profile, or null if profiling is off
+     */
+    public Profiler getProfiler() {
+        return profiler;
+    }
+
+    /**
+     * Starts counting the cycles of the instructions executed from now on under a timing model, or
+     * stops. While timing, {@link CPU#execute()} interprets every instruction, so every instruction
+     * and memory access is costed; with timing off, nothing is counted and nothing is paid.
+     *
+     * @param timingModel The cost table, or null to stop timing
+     * @see CycleCounter
+     */
+    public void setTimingModel(TimingModel timingModel) {
+        if (cycleCounter != null) {
+            memory.removeFetchListener(cycleCounter);
+            memory.removeStoreListener(cycleCounter);
+            cycleCounter = null;
         }
+        if (timingModel != null) {
+            cycleCounter = new CycleCounter(timingModel, registers, memory);
+            memory.addFetchListener(cycleCounter);
+            memory.addStoreListener(cycleCounter);
+        }
+    }
+
+    /**
+     * @return The cycles counted so far, or null if timing is off
+     */
+    public CycleCounter getCycleCounter() {
+        return cycleCounter;
+    }
+
+    /**
+     * Starts timing the instructions executed from now on through a pipeline model, or stops. The
+     * model starts over whenever a program is loaded, so it reports on one program at a time. While
+     * it is on, {@link CPU#execute()} interprets every instruction.
+     *
+     * @param pipelineModel The model, made for the registers of this CPU, or null to stop
+     */
+    public void setPipelineModel(PipelineModel pipelineModel) {
+        this.pipelineModel = pipelineModel;
+    }
+
+    /**
+     * @return The pipeline model, or null if there is none
+     */
+    public PipelineModel getPipelineModel() {
+        return pipelineModel;
+    }
+
+    /**
+     * Starts predicting every conditional transfer executed from now on with the predictors of the
+     * statistics, all in the same run, or stops. While it is on, {@link CPU#execute()} interprets
+     * every instruction.
+     *
+     * @param branchStatistics The predictors to compare and their counts, or null to stop
+     */
+    public void setBranchStatistics(BranchStatistics branchStatistics) {
+        branchRecorder = (branchStatistics == null) ? null : new BranchRecorder(branchStatistics, registers);
+    }
+
+    /**
+     * @return The branch prediction counts, or null if prediction is off
+     */
+    public BranchStatistics getBranchStatistics() {
+        return (branchRecorder == null) ? null : branchRecorder.getStatistics();
+    }
+
+    /**
+     * Undoes the last instructions, newest first, putting back the registers, the memory they stored
+     * to, the console and the trap depth. Only instructions recorded since undo recording was turned
+     * on, and still in the log, can be undone.
+     *
+     * @param n The number of instructions to undo
+     * @return The number of instructions undone, less than n if the history ran out
+     */
+    public int stepBack(int n) {
+        int undone = 0;
+        while (undone < n && undoLog != null && undoLog.undo(this, memory)) {
+            undone++;
+        }
+        return undone;
+    }
+
+    /**
+     * Runs backwards until the PC is at the address again, leaving the machine just before the last
+     * execution of the instruction there, like running forwards to a breakpoint. At least one
+     * instruction is undone.
+     *
+     * @param address The address to stop at
+     * @return The number of instructions undone. If the history ran out first, the machine is left
+     * at the oldest recorded instruction.
+     */
+    public int runBackwardsTo(int address) {
+        int undone = 0;
+        while (undoLog != null && undoLog.undo(this, memory)) {
+            undone++;
+            if (registers.getWord(RegisterType.PC) == address) {
+                break;
+            }
+        }
+        return undone;
+    }
+
+    /**
+     * Runs backwards until the PC is at a {@link Breakpoints#setBreakpoint(int) breakpoint}, leaving
+     * the machine just before the instruction there. Running forwards from there executes the
+     * instruction instead of stopping at the same breakpoint again.
+     *
+     * @return The number of instructions undone. If the history ran out first, the machine is left
+     * at the oldest recorded instruction.
+     */
+    public int runBackwards() {
+        byte[] stops = breakpoints.getFlags();
+        int undone = 0;
+        while (undoLog != null && undoLog.undo(this, memory)) {
+            undone++;
+            int pc = registers.getWord(RegisterType.PC);
+            if ((stops[pc] & Breakpoints.EXECUTE) != 0) {
+                breakpoints.resetStop();
+                breakpoints.stopAt(pc);
+                break;
+            }
+        }
+        return undone;
+    }
+
+    /**
+     * Puts back the counters and console of an instruction being undone.
+     *
+     * @param input The console line the instruction read, or null
+     */
+    void undone(long instructionCount, int trapDepth, int outputSize, String input) {
+        this.instructionCount = instructionCount;
+        this.trapDepth = trapDepth;
+        this.pendingTrap = NO_TRAP;
+        synchronized (consoleOutput) {
+            while (consoleOutput.size() > outputSize) {
+                consoleOutput.remove(consoleOutput.size() - 1);
+            }
+        }
+        if (input != null) {
+            synchronized (consoleInput) {
+                consoleInput.add(0, input);
+            }
+        }
+    }
+
+    /**
+     * Turns translation of hot basic blocks on or off for {@link CPU#execute()}. {@link CPU#step()}
+     * always interprets. Translated blocks skip the per instruction info logging.
+     *
+     * @param translation True to run hot blocks as generated code
+     * @see BlockTranslator
+     */
+    public void setTranslation(boolean translation) {
+        if (translation && translator == null) {
+            translator = new BlockTranslator(this, memory, decoder, BlockTranslator.DEFAULT_HOT_THRESHOLD);
+            memory.addStoreListener(translator);
+        }
+        this.translation = translation;
+    }
+
+    public boolean isTranslation() {
+        return translation;
+    }
+
+    /**
+     * @return The block translator, or null if translation was never turned on
+     */
+    public BlockTranslator getTranslator() {
+        return translator;
+    }
+
+    /**
+     * Turns superinstruction fusion on or off for {@link CPU#execute()}. The fusion pass scans
+     * programs as they are loaded, so turn it on before loading. {@link CPU#step()} always interprets,
+     * and fused instructions skip the per instruction info logging.
+     *
+     * @param fusion True to run common instruction sequences as superinstructions
+     * @see FusionPass
+     */
+    public void setFusion(boolean fusion) {
+        if (fusion && fusionPass == null) {
+            fusionPass = new FusionPass(this, memory, decoder);
+            memory.addStoreListener(fusionPass);
+        }
+        this.fusion = fusion;
+    }
+
+    public boolean isFusion() {
+        return fusion;
+    }
+
+    /**
+     * @return The fusion pass, or null if fusion was never turned on
+     */
+    public FusionPass getFusionPass() {
+        return fusionPass;
+    }
+
+    /**
+     * Captures the whole machine, see {@link MachineSnapshot}. Only take one between instructions,
+     * from the thread that runs the CPU or while it is paused.
+     *
+     * @return The snapshot
+     */
+    public MachineSnapshot snapshot() {
+        RegisterType[] registerTypes = RegisterType.values();
+        char[] registerWords = new char[registerTypes.length];
+        for (RegisterType registerType : registerTypes) {
+            registerWords[registerType.ordinal()] = (char) registers.getWord(registerType);
+        }
+        char[] words = new char[memory.getMemory().getSize()];
+        memory.getMemory().copyTo(words);
+        List<MachineSnapshot.CacheContents> hierarchy = new ArrayList<>();
+        if (memory.getCacheHierarchy() != null) {
+            for (MemoryCache level : memory.getCacheHierarchy().getLevels()) {
+                hierarchy.add(MachineSnapshot.CacheContents.of(level));
+            }
+        }
+        List<String> input, output;
+        synchronized (consoleInput) {
+            input = new ArrayList<>(consoleInput);
+        }
+        synchronized (consoleOutput) {
+            output = new ArrayList<>(consoleOutput);
+        }
+        return new MachineSnapshot(registerWords, words, MachineSnapshot.CacheContents.of(memory.getMemoryCache()),
+                hierarchy, input, output, instructionCount, trapDepth);
+    }
+
+    /**
+     * Puts the machine back in the state of the snapshot. Memory is replaced with one array copy,
+     * and everything derived from it, such as decoded and translated instructions, is dropped. The
+     * cache, and each level of a cache hierarchy, gets its entries, dirty lines and waiting writes
+     * back; a cache of another geometry than the snapshot's takes them as it can, with a warning. A
+     * hierarchy with other levels than the snapshot's is emptied instead.
+     *
+     * @param snapshot A snapshot of a machine with the same memory size
+     */
+    public void restore(MachineSnapshot snapshot) {
+        for (RegisterType registerType : RegisterType.values()) {
+            registers.setWord(registerType, snapshot.getRegisters()[registerType.ordinal()]);
+        }
+        memory.replaceAll(snapshot.getMemory());
+        MemoryCache memoryCache = memory.getMemoryCache();
+        if (!snapshot.getCache().restoreInto(memoryCache)) {
+            LOGGER.warn("Restored the entries of a {} cache with a {} entry write buffer into a {} cache with {}",
+                    snapshot.getCacheSpec(), snapshot.getWriteBufferEntries(), memoryCache.getSpec(),
+                    memoryCache.getWriteBufferEntries());
+        }
+        restoreHierarchy(snapshot.getHierarchy());
+        synchronized (consoleInput) {
+            consoleInput.clear();
+            consoleInput.addAll(snapshot.getConsoleInput());
+        }
+        synchronized (consoleOutput) {
+            consoleOutput.clear();
+            consoleOutput.addAll(snapshot.getConsoleOutput());
+        }
+        instructionCount = snapshot.getInstructionCount();
+        trapDepth = snapshot.getTrapDepth();
+        pendingTrap = NO_TRAP;
+        clearUndoLog();
+    }
+
+    private void clearUndoLog() {
+        if (undoLog != null) {
+            undoLog.clear();
+        }
+    }
+
+    private void restoreHierarchy(List<MachineSnapshot.CacheContents> saved) {
+        CacheHierarchy cacheHierarchy = memory.getCacheHierarchy();
+        if (cacheHierarchy == null) {
+            return;
+        }
+        List<MemoryCache> levels = cacheHierarchy.getLevels();
+        if (levels.size() != saved.size()) {
+            LOGGER.warn("The snapshot has {} cache hierarchy levels, not {}, so the hierarchy starts empty",
+                    saved.size(), levels.size());
+            cacheHierarchy.clear();
+            return;
+        }
+        for (int i = 0; i < levels.size(); i++) {
+            if (!saved.get(i).restoreInto(levels.get(i))) {
+                LOGGER.warn("Restored the entries of a {} hierarchy level into a {} cache", saved.get(i).getSpec(),
+                        levels.get(i).getSpec());
+            }
+        }
+    }
+
+    /**
+     * Copies everything but memory from the CPU of the machine a fork was made from: registers, the
+     * entries of the cache and of each hierarchy level with their dirty bits and waiting writes,
+     * console queues, counters, and whether translation and fusion are on.
+     */
+    void copyStateFrom(CPU parent) {
+        for (RegisterType registerType : RegisterType.values()) {
+            registers.setWord(registerType, parent.registers.getWord(registerType));
+        }
+        memory.getMemoryCache().copyContentsFrom(parent.memory.getMemoryCache());
+        CacheHierarchy cacheHierarchy = memory.getCacheHierarchy();
+        CacheHierarchy parentHierarchy = parent.memory.getCacheHierarchy();
+        if (cacheHierarchy != null && parentHierarchy != null) {
+            List<MemoryCache> levels = cacheHierarchy.getLevels();
+            List<MemoryCache> parentLevels = parentHierarchy.getLevels();
+            for (int i = 0; i < levels.size(); i++) {
+                levels.get(i).copyContentsFrom(parentLevels.get(i));
+            }
+        }
+        synchronized (parent.consoleInput) {
+            consoleInput.addAll(parent.consoleInput);
+        }
+        synchronized (parent.consoleOutput) {
+            consoleOutput.addAll(parent.consoleOutput);
+        }
+        program = parent.program;
+        instructionCount = parent.instructionCount;
+        trapDepth = parent.trapDepth;
+        pendingTrap = NO_TRAP;
+        setTranslation(parent.translation);
+        setFusion(parent.fusion);
+        if (fusion) {
+            fusionPass.scanLike(parent.fusionPass);
+        }
+    }
+
+    /**
+     * Counts an instruction retired by a translated block or a superinstruction.
+     */
+    void countInstruction() {
+        instructionCount++;
     }
 
     /**
      * Increments the value of the PC register
      */
     private void incrementPC() {
-        Register pc = registers.getRegister(RegisterType.PC);
-        RegisterDecorator pcDecorator = new RegisterDecorator(pc);
-        int count = pcDecorator.toInt();
-        pcDecorator.setIntegerValue(count + 1);
+        registers.setWord(RegisterType.PC, registers.getWord(RegisterType.PC) + 1);
     }
 
 
@@ -197,10 +816,33 @@ public class CPU {
     }
 
     public void FileReader() {
-        SimulatorFileReader.readSentences("program2_paragraph.txt", this);
+        fileReader.readSentences("program2_paragraph.txt", this);
     }
 
     public AllMemory getAllMemory() {
         return memory;
     }
+
+    public Breakpoints getBreakpoints() {
+        return breakpoints;
+    }
+
+    public TrapController getTrapController() {
+        return trapController;
+    }
+
+    public SimulatorFileReader getFileReader() {
+        return fileReader;
+    }
+
+    public DecodedInstructionCache getInstructionCache() {
+        return instructionCache;
+    }
+
+    /**
+     * @return The number of instructions executed since the CPU was created, including trap routines
+     */
+    public long getInstructionCount() {
+        return instructionCount;
+    }
 }
@@ -0,0 +1,332 @@
+package edu.gw.csci.simulator.cpu;
+
+import edu.gw.csci.simulator.memory.AllMemory;
+import edu.gw.csci.simulator.memory.CacheHierarchy;
+import edu.gw.csci.simulator.memory.MemoryCache;
+import edu.gw.csci.simulator.registers.RegisterType;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.core.config.Configurator;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs a {@link CPU} on a worker thread, so the GUI thread stays free while a long program executes.
+ * The worker runs the machine in slices of a fixed number of instructions through
+ * {@link CPU#execute(long)}, and only looks at pause and stop requests between slices. At the end of
+ * every slice the machine is in a consistent state, and the worker publishes a {@link Frame}: an
+ * immutable copy of the registers, memory and cache counts, taken on its own thread. A display polls
+ * {@link CPURunner#getFrame()} once per frame and draws the copy, instead of redrawing on every
+ * register and memory write.
+ * <p>
+ * Nothing but the worker may touch the machine while the runner is {@link State#RUNNING}, not even to
+ * read it; a display draws the last frame instead. While it is {@link State#PAUSED} the worker is
+ * parked, so the machine can be inspected, edited and stepped. The instruction handlers log what every
+ * instruction does at info level, which would flood the log while running, so their loggers are held
+ * at warn while the runner is running, and follow the root level again while it is paused or idle.
+ * A {@link Breakpoints breakpoint or watchpoint} pauses the runner the same way as
+ * {@link CPURunner#pause()}, and resuming carries on from it.
+ */
+public class CPURunner {
+
+    private static final Logger LOGGER = LogManager.getLogger(CPURunner.class);
+
+    /**
+     * About a few milliseconds of interpreted instructions
+     */
+    public static final int DEFAULT_SLICE = 50000;
+
+    public enum State {
+        IDLE, RUNNING, PAUSED
+    }
+
+    /**
+     * The loggers of what single instructions do
+     */
+    private static final String[] INSTRUCTION_LOGGERS = {"edu.gw.csci.simulator.isa", "edu.gw.csci.simulator.registers"};
+
+    /**
+     * The machine as it was at the end of a slice, a pause or the run. Nothing in it changes.
+     */
+    public static final class Frame {
+
+        private final long number;
+        private final MachineSnapshot snapshot;
+        private final long cacheHits, cacheMisses;
+
+        Frame(long number, MachineSnapshot snapshot, long cacheHits, long cacheMisses) {
+            this.number = number;
+            this.snapshot = snapshot;
+            this.cacheHits = cacheHits;
+            this.cacheMisses = cacheMisses;
+        }
+
+        /**
+         * @return The value of {@link CPURunner#getPublished()} when the frame was published
+         */
+        public long getNumber() {
+            return number;
+        }
+
+        /**
+         * @return The registers, memory and console of the machine
+         */
+        public MachineSnapshot getSnapshot() {
+            return snapshot;
+        }
+
+        /**
+         * @return The hits of the single cache, or of both level 1 caches of a hierarchy
+         */
+        public long getCacheHits() {
+            return cacheHits;
+        }
+
+        /**
+         * @return The misses of the single cache, or of both level 1 caches of a hierarchy
+         */
+        public long getCacheMisses() {
+            return cacheMisses;
+        }
+    }
+
+    private final CPU cpu;
+    private volatile int slice;
+
+    private volatile State state = State.IDLE;
+    private volatile long published;
+    private final AtomicReference<Frame> frame = new AtomicReference<>();
+    private boolean pauseRequested, stopRequested;
+    private Thread worker;
+
+    private Runnable finishedListener;
+    private Runnable stopListener;
+
+    public CPURunner(CPU cpu, int slice) {
+        this.cpu = cpu;
+        setSlice(slice);
+    }
+
+    public CPURunner(CPU cpu) {
+        this(cpu, DEFAULT_SLICE);
+    }
+
+    /**
+     * Runs the listener on the worker thread once it stops, after a HLT or a {@link CPURunner#stop()}.
+     *
+     * @param finishedListener The callback, or null to remove it
+     */
+    public synchronized void setFinishedListener(Runnable finishedListener) {
+        this.finishedListener = finishedListener;
+    }
+
+    /**
+     * Runs the listener on the worker thread when a breakpoint or watchpoint pauses the run, before
+     * the worker parks.
+     *
+     * @param stopListener The callback, or null to remove it
+     */
+    public synchronized void setStopListener(Runnable stopListener) {
+        this.stopListener = stopListener;
+    }
+
+    /**
+     * Starts executing from the current PC on a new worker thread.
+     *
+     * @return False if the runner is already running or paused
+     */
+    public synchronized boolean start() {
+        if (state != State.IDLE) {
+            return false;
+        }
+        pauseRequested = false;
+        stopRequested = false;
+        state = State.RUNNING;
+        quietInstructionLogs(true);
+        worker = new Thread(this::run, "cpu-runner");
+        worker.setDaemon(true);
+        worker.start();
+        return true;
+    }
+
+    /**
+     * Parks the worker at the end of the current slice.
+     */
+    public synchronized void pause() {
+        if (state == State.RUNNING) {
+            pauseRequested = true;
+        }
+    }
+
+    /**
+     * Lets a paused worker go on. The runner is running again as soon as this returns, before the
+     * worker wakes, so the caller never sees a paused machine that is already executing.
+     */
+    public synchronized void resume() {
+        pauseRequested = false;
+        if (state == State.PAUSED) {
+            state = State.RUNNING;
+            quietInstructionLogs(true);
+        }
+        notifyAll();
+    }
+
+    /**
+     * Ends the run at the end of the current slice, or right away if paused. The PC is left on
+     * the next instruction, so the program can be stepped or run again from there.
+     */
+    public synchronized void stop() {
+        if (state != State.IDLE) {
+            stopRequested = true;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Waits for the worker to finish.
+     *
+     * @throws InterruptedException If the waiting thread is interrupted
+     */
+    public void join() throws InterruptedException {
+        Thread running;
+        synchronized (this) {
+            running = worker;
+        }
+        if (running != null) {
+            running.join();
+        }
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * @return The number of times the machine state was published, which changes after every slice
+     */
+    public long getPublished() {
+        return published;
+    }
+
+    /**
+     * @return The machine as it was when last published, or null if nothing was run yet
+     */
+    public Frame getFrame() {
+        return frame.get();
+    }
+
+    public int getSlice() {
+        return slice;
+    }
+
+    /**
+     * @param slice The number of instructions executed between two looks at pause and stop requests
+     */
+    public void setSlice(int slice) {
+        if (slice <= 0) {
+            throw new IllegalArgumentException("Slice must be positive: " + slice);
+        }
+        this.slice = slice;
+    }
+
+    private void run() {
+        LOGGER.info("Running from PC {} in slices of {} instructions",
+                cpu.getAllMemory().getAllRegisters().getWord(RegisterType.PC), slice);
+        boolean halted = false;
+        try {
+            while (!halted && awaitResume()) {
+                halted = cpu.execute(slice);
+                publish();
+                if (!halted && cpu.getBreakpoints().isStopped()) {
+                    pauseAtStop();
+                }
+            }
+        } catch (RuntimeException e) {
+            LOGGER.error("Execution stopped: {}", e.toString());
+        } finally {
+            Runnable listener;
+            synchronized (this) {
+                state = State.IDLE;
+                worker = null;
+                listener = finishedListener;
+            }
+            quietInstructionLogs(false);
+            publish();
+            LOGGER.info(halted ? "Program halted" : "Program stopped");
+            if (listener != null) {
+                listener.run();
+            }
+        }
+    }
+
+    private void pauseAtStop() {
+        Runnable listener;
+        synchronized (this) {
+            pauseRequested = true;
+            listener = stopListener;
+        }
+        LOGGER.info("Paused: {}", cpu.getBreakpoints().describeStop());
+        if (listener != null) {
+            listener.run();
+        }
+    }
+
+    /**
+     * Parks the worker while a pause is requested.
+     *
+     * @return False if the run has to stop
+     */
+    private synchronized boolean awaitResume() {
+        while (pauseRequested && !stopRequested) {
+            if (state != State.PAUSED) {
+                quietInstructionLogs(false);
+                publish();
+                state = State.PAUSED;
+            }
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        state = State.RUNNING;
+        return !stopRequested;
+    }
+
+    /**
+     * Copies the machine into a new frame, on the worker's thread
+     */
+    private void publish() {
+        long hits, misses;
+        AllMemory memory = cpu.getAllMemory();
+        CacheHierarchy hierarchy = memory.getCacheHierarchy();
+        if (hierarchy == null) {
+            MemoryCache memoryCache = memory.getMemoryCache();
+            hits = memoryCache.getCacheHit();
+            misses = memoryCache.getCacheMiss();
+        } else {
+            hits = hierarchy.getL1I().getCacheHit() + hierarchy.getL1D().getCacheHit();
+            misses = hierarchy.getL1I().getCacheMiss() + hierarchy.getL1D().getCacheMiss();
+        }
+        long number = published + 1;
+        frame.set(new Frame(number, cpu.snapshot(), hits, misses));
+        published = number;
+    }
+
+    /**
+     * Holds the instruction loggers at warn, unless the root logger is quieter, or lets them follow
+     * the root level again.
+     */
+    private static void quietInstructionLogs(boolean quiet) {
+        Level level = null;
+        if (quiet) {
+            Level root = LogManager.getRootLogger().getLevel();
+            level = root.isMoreSpecificThan(Level.WARN) ? root : Level.WARN;
+        }
+        for (String logger : INSTRUCTION_LOGGERS) {
+            Configurator.setLevel(logger, level);
+        }
+    }
+}
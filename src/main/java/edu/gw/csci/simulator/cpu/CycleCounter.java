@@ -0,0 +1,170 @@
+package edu.gw.csci.simulator.cpu;
+
+import edu.gw.csci.simulator.isa.DecodedInstruction;
+import edu.gw.csci.simulator.isa.InstructionType;
+import edu.gw.csci.simulator.memory.AllMemory;
+import edu.gw.csci.simulator.memory.CacheHierarchy;
+import edu.gw.csci.simulator.memory.FetchListener;
+import edu.gw.csci.simulator.memory.MemoryCache;
+import edu.gw.csci.simulator.memory.StoreListener;
+import edu.gw.csci.simulator.registers.AllRegisters;
+import edu.gw.csci.simulator.registers.Register;
+import edu.gw.csci.simulator.registers.RegisterType;
+
+/**
+ * Adds up the cycles of a run under a {@link TimingModel}, while the CPU is
+ * {@link CPU#setTimingModel(TimingModel) timed}. Each retired instruction costs the cycles of its
+ * opcode, and each memory access it makes, its own fetch included, costs the cache hit latency or
+ * the memory latency. Stores cost the memory latency when the {@link MemoryCache} writes them through
+ * unbuffered; when it {@link MemoryCache#isBufferingWrites() buffers them}, a store costs the cache hit
+ * latency, and every word the cache writes back or drains to memory costs the memory latency. With a
+ * {@link CacheHierarchy}, each access costs what the hierarchy says it cost instead. Entering a trap
+ * or fault routine costs the trap overhead on top.
+ */
+public class CycleCounter implements FetchListener, StoreListener {
+
+    private static final int TRAP = InstructionType.TRAP.getOpCode();
+
+    private final int[] opcodeCycles;
+    private final int memoryLatency, cacheHitLatency, trapOverhead;
+    private final Register ir;
+    private final AllMemory memory;
+    private final MemoryCache cache;
+    private long memoryWrites;
+
+    private boolean open;
+    private long instructions, executeCycles, memoryCycles, trapCycles;
+    private long hits, misses, stores, traps;
+
+    CycleCounter(TimingModel model, AllRegisters registers, AllMemory memory) {
+        this.opcodeCycles = model.getOpcodeCycles();
+        this.memoryLatency = model.getMemoryLatency();
+        this.cacheHitLatency = model.getCacheHitLatency();
+        this.trapOverhead = model.getTrapOverhead();
+        this.ir = registers.getRegister(RegisterType.IR);
+        this.memory = memory;
+        this.cache = memory.getMemoryCache();
+    }
+
+    /**
+     * Starts counting the accesses of the instruction at the PC.
+     */
+    void begin() {
+        open = true;
+        memoryWrites = cache.getMemoryWrites();
+    }
+
+    @Override
+    public void fetched(int index, int word, boolean hit) {
+        if (!open) {
+            return;
+        }
+        CacheHierarchy hierarchy = memory.getCacheHierarchy();
+        if (hit) {
+            hits++;
+            memoryCycles += (hierarchy == null) ? cacheHitLatency : hierarchy.getLastLatency();
+        } else {
+            misses++;
+            memoryCycles += (hierarchy == null) ? memoryLatency : hierarchy.getLastLatency();
+        }
+    }
+
+    @Override
+    public void stored(int index, int word) {
+        if (!open) {
+            return;
+        }
+        stores++;
+        CacheHierarchy hierarchy = memory.getCacheHierarchy();
+        if (hierarchy != null) {
+            memoryCycles += hierarchy.getLastLatency();
+        } else {
+            memoryCycles += cache.isBufferingWrites() ? cacheHitLatency : memoryLatency;
+        }
+    }
+
+    /**
+     * Adds the cycles of the instruction once it retires or faults.
+     *
+     * @param fault True if the instruction faulted instead of retiring
+     */
+    void finish(boolean fault) {
+        if (!open) {
+            return;
+        }
+        open = false;
+        if (memory.getCacheHierarchy() == null && cache.isBufferingWrites()) {
+            memoryCycles += memoryLatency * (cache.getMemoryWrites() - memoryWrites);
+        }
+        if (fault) {
+            traps++;
+            trapCycles += trapOverhead;
+            return;
+        }
+        int opCode = DecodedInstruction.opCode(ir.getWord());
+        instructions++;
+        executeCycles += opcodeCycles[opCode];
+        if (opCode == TRAP) {
+            traps++;
+            trapCycles += trapOverhead;
+        }
+    }
+
+    /**
+     * @return The cycles of the run: execution, memory accesses and trap overhead
+     */
+    public long getCycles() {
+        return executeCycles + memoryCycles + trapCycles;
+    }
+
+    /**
+     * @return The cycles per retired instruction, or 0 before the first one
+     */
+    public double getCPI() {
+        return (instructions == 0) ? 0 : (double) getCycles() / instructions;
+    }
+
+    public long getInstructions() {
+        return instructions;
+    }
+
+    public long getExecuteCycles() {
+        return executeCycles;
+    }
+
+    public long getMemoryCycles() {
+        return memoryCycles;
+    }
+
+    public long getTrapCycles() {
+        return trapCycles;
+    }
+
+    /**
+     * @return The number of reads that hit the cache
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getStores() {
+        return stores;
+    }
+
+    /**
+     * @return The number of traps and faults entered
+     */
+    public long getTraps() {
+        return traps;
+    }
+
+    public String getReport() {
+        return String.format("Cycles: %d for %d instructions, CPI %.3f (execute %d, memory %d from %d hits, "
+                        + "%d misses and %d stores, traps %d from %d entries)", getCycles(), instructions, getCPI(),
+                executeCycles, memoryCycles, hits, misses, stores, trapCycles, traps);
+    }
+}
@@ -0,0 +1,300 @@
+package edu.gw.csci.simulator.cpu;
+
+import edu.gw.csci.simulator.isa.DecodedInstruction;
+import edu.gw.csci.simulator.isa.Decoder;
+import edu.gw.csci.simulator.isa.InstructionType;
+import edu.gw.csci.simulator.memory.AllMemory;
+import edu.gw.csci.simulator.memory.MemoryBackend;
+import edu.gw.csci.simulator.memory.StoreListener;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * A load time pass that finds the common instruction sequences of a loaded program, listed in
+ * {@link FusionPattern}, and has the CPU run each one as a single {@link Superinstruction}.
+ * Sequences are matched on the words in memory right after loading; a store to a fused address
+ * makes the pass scan the program again before the next dispatch. The pass counts how much of the
+ * program it fused, and how many of the executed instructions ran fused, see
+ * {@link FusionPass#getCoverageReport()}.
+ */
+public class FusionPass implements StoreListener {
+
+    private static final Logger LOGGER = LogManager.getLogger(FusionPass.class);
+
+    /**
+     * The longest loop body, SOB included, that is fused
+     */
+    static final int MAX_LOOP_LENGTH = 16;
+
+    /**
+     * Straight line instructions the superinstructions have a helper for
+     */
+    private static final Set<InstructionType> STRAIGHT = EnumSet.of(
+            InstructionType.LDR, InstructionType.STR, InstructionType.LDA, InstructionType.LDX,
+            InstructionType.STX, InstructionType.AMR, InstructionType.SMR, InstructionType.AIR,
+            InstructionType.SIR, InstructionType.TRR, InstructionType.AND, InstructionType.ORR,
+            InstructionType.NOT);
+
+    private static final Set<InstructionType> OPERATE = EnumSet.of(
+            InstructionType.AMR, InstructionType.SMR, InstructionType.AIR, InstructionType.SIR);
+
+    private static final Set<InstructionType> BRANCH = EnumSet.of(
+            InstructionType.JZ, InstructionType.JNE, InstructionType.JGE);
+
+    private final CPU cpu;
+    private final MemoryBackend memory;
+    private final Decoder decoder;
+    private final BlockRuntime runtime;
+
+    private final Superinstruction[] fused;
+    private final boolean[] covered;
+    private boolean rescan;
+
+    private String programName;
+    private int programStart;
+    private int programLength;
+    private long executedAtLoad;
+    private final int[] sites = new int[FusionPattern.values().length];
+    private final int[] fusedInstructions = new int[FusionPattern.values().length];
+    private final long[] executed = new long[FusionPattern.values().length];
+
+    FusionPass(CPU cpu, AllMemory allMemory, Decoder decoder) {
+        this.cpu = cpu;
+        this.memory = allMemory.getMemory();
+        this.decoder = decoder;
+        this.runtime = new BlockRuntime(cpu, allMemory, decoder);
+        this.fused = new Superinstruction[memory.getSize()];
+        this.covered = new boolean[memory.getSize()];
+    }
+
+    /**
+     * Fuses the sequences of a program that was just loaded, and restarts the coverage counts.
+     *
+     * @param name   The name of the program, for the coverage report
+     * @param start  The address of the first instruction
+     * @param length The number of instructions
+     */
+    void scan(String name, int start, int length) {
+        this.programName = name;
+        this.programStart = start;
+        this.programLength = Math.min(length, memory.getSize() - start);
+        this.executedAtLoad = cpu.getInstructionCount();
+        Arrays.fill(executed, 0);
+        scan();
+        LOGGER.info(getCoverageReport());
+    }
+
+    /**
+     * Fuses the program another pass was scanning, for a forked machine. The coverage counts start over.
+     */
+    void scanLike(FusionPass other) {
+        this.programName = other.programName;
+        this.programStart = other.programStart;
+        this.programLength = other.programLength;
+        this.executedAtLoad = cpu.getInstructionCount();
+        Arrays.fill(executed, 0);
+        scan();
+    }
+
+    /**
+     * Runs the superinstruction entered at the PC, if there is one.
+     *
+     * @param pc     The address of the next instruction
+     * @param budget The number of instructions left in the caller's slice
+     * @return False if the interpreter has to execute the next instruction
+     */
+    boolean execute(int pc, long budget) {
+        if (rescan) {
+            scan();
+        }
+        Superinstruction superinstruction = (pc < fused.length) ? fused[pc] : null;
+        if (superinstruction == null) {
+            return false;
+        }
+        try {
+            executed[superinstruction.getPattern().ordinal()] += superinstruction.execute(runtime, budget);
+        } catch (BlockRuntime.StaleBlock e) {
+            //Memory changed under the pass, the PC is still on the changed instruction
+            rescan = true;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Scans the program again before the next dispatch if a fused instruction was overwritten.
+     */
+    @Override
+    public void stored(int index, int word) {
+        if (covered[index]) {
+            rescan = true;
+        }
+    }
+
+    @Override
+    public void replaced() {
+        rescan = true;
+    }
+
+    /**
+     * @return The static and dynamic fusion coverage of the last loaded program
+     */
+    public String getCoverageReport() {
+        int totalSites = 0, totalFused = 0;
+        long totalExecuted = 0;
+        for (FusionPattern pattern : FusionPattern.values()) {
+            totalSites += sites[pattern.ordinal()];
+            totalFused += fusedInstructions[pattern.ordinal()];
+            totalExecuted += executed[pattern.ordinal()];
+        }
+        long executedSinceLoad = cpu.getInstructionCount() - executedAtLoad;
+        StringBuilder report = new StringBuilder(String.format(
+                "Fusion coverage for %s: %d sites, %d of %d instructions fused (%.1f%%), %d of %d executed instructions fused (%.1f%%)",
+                programName, totalSites, totalFused, programLength, percent(totalFused, programLength),
+                totalExecuted, executedSinceLoad, percent(totalExecuted, executedSinceLoad)));
+        for (FusionPattern pattern : FusionPattern.values()) {
+            int i = pattern.ordinal();
+            report.append(String.format("%n  %-18s %3d sites %5d instructions %10d executed",
+                    pattern, sites[i], fusedInstructions[i], executed[i]));
+        }
+        return report.toString();
+    }
+
+    public int getSites(FusionPattern pattern) {
+        return sites[pattern.ordinal()];
+    }
+
+    public int getFusedInstructions(FusionPattern pattern) {
+        return fusedInstructions[pattern.ordinal()];
+    }
+
+    public long getExecuted(FusionPattern pattern) {
+        return executed[pattern.ordinal()];
+    }
+
+    /**
+     * Matches SOB loops first, since they cover the most executed instructions, then the
+     * remaining patterns left to right on what the loops did not cover.
+     */
+    private void scan() {
+        rescan = false;
+        Arrays.fill(fused, null);
+        Arrays.fill(covered, false);
+        Arrays.fill(sites, 0);
+        Arrays.fill(fusedInstructions, 0);
+        if (programName == null) {
+            return;
+        }
+
+        int end = programStart + programLength;
+        DecodedInstruction[] program = new DecodedInstruction[programLength];
+        for (int address = programStart; address < end; address++) {
+            int word = memory.read(address);
+            if (InstructionType.isOpCode(DecodedInstruction.opCode(word))) {
+                program[address - programStart] = decoder.decode(word);
+            }
+        }
+
+        for (int i = 0; i < program.length; i++) {
+            if (is(program[i], InstructionType.SOB)) {
+                fuseLoop(program, i);
+            }
+        }
+        for (int i = 0; i < program.length; i++) {
+            if (isFree(i, 3)
+                    && is(program[i], InstructionType.LDR)
+                    && isIn(program[i + 1], OPERATE)
+                    && is(program[i + 2], InstructionType.STR)
+                    && sameRegister(program, i, 3)) {
+                fuse(FusionPattern.LOAD_OPERATE_STORE, program, i, 3, false);
+            } else if (isFree(i, 2)
+                    && is(program[i], InstructionType.LDA)
+                    && is(program[i + 1], InstructionType.STR)
+                    && sameRegister(program, i, 2)) {
+                fuse(FusionPattern.LOAD_ADDRESS_STORE, program, i, 2, false);
+            } else if (isFree(i, 2)
+                    && isIn(program[i], OPERATE)
+                    && isIn(program[i + 1], BRANCH)
+                    && sameRegister(program, i, 2)) {
+                fuse(FusionPattern.OPERATE_BRANCH, program, i, 2, true);
+            }
+        }
+    }
+
+    /**
+     * Fuses the straight line instructions before the SOB at the index into a loop. As the target of
+     * an indexed SOB is only known at run time, every instruction of the body is an entry point.
+     */
+    private void fuseLoop(DecodedInstruction[] program, int sob) {
+        int first = sob;
+        while (first > 0 && sob - first + 1 < MAX_LOOP_LENGTH
+                && isIn(program[first - 1], STRAIGHT) && !covered[programStart + first - 1]) {
+            first--;
+        }
+        if (first == sob) {
+            return;
+        }
+        DecodedInstruction[] parts = Arrays.copyOfRange(program, first, sob + 1);
+        int base = programStart + first;
+        for (int i = 0; i < parts.length - 1; i++) {
+            fused[base + i] = new Superinstruction(FusionPattern.SOB_LOOP, base, i, parts, true);
+        }
+        cover(FusionPattern.SOB_LOOP, base, parts.length);
+    }
+
+    private void fuse(FusionPattern pattern, DecodedInstruction[] program, int index, int length,
+                      boolean endsWithTransfer) {
+        int base = programStart + index;
+        DecodedInstruction[] parts = Arrays.copyOfRange(program, index, index + length);
+        fused[base] = new Superinstruction(pattern, base, 0, parts, endsWithTransfer);
+        cover(pattern, base, length);
+    }
+
+    private void cover(FusionPattern pattern, int base, int length) {
+        for (int address = base; address < base + length; address++) {
+            covered[address] = true;
+        }
+        sites[pattern.ordinal()]++;
+        fusedInstructions[pattern.ordinal()] += length;
+    }
+
+    /**
+     * @return True if the instructions at the index are inside the program, and not fused yet
+     */
+    private boolean isFree(int index, int length) {
+        if (index + length > programLength) {
+            return false;
+        }
+        for (int address = programStart + index; address < programStart + index + length; address++) {
+            if (covered[address]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean is(DecodedInstruction decoded, InstructionType type) {
+        return decoded != null && decoded.getInstructionType() == type;
+    }
+
+    private static boolean isIn(DecodedInstruction decoded, Set<InstructionType> types) {
+        return decoded != null && types.contains(decoded.getInstructionType());
+    }
+
+    private static boolean sameRegister(DecodedInstruction[] program, int index, int length) {
+        for (int i = index + 1; i < index + length; i++) {
+            if (program[i].getR() != program[index].getR()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static double percent(long part, long whole) {
+        return (whole == 0) ? 0 : 100.0 * part / whole;
+    }
+}
@@ -0,0 +1,28 @@
+package edu.gw.csci.simulator.cpu;
+
+/**
+ * The instruction sequences the {@link FusionPass} runs as a single {@link Superinstruction}.
+ */
+public enum FusionPattern {
+
+    /**
+     * LDR r; AMR, SMR, AIR or SIR r; STR r
+     */
+    LOAD_OPERATE_STORE,
+
+    /**
+     * LDA r; STR r
+     */
+    LOAD_ADDRESS_STORE,
+
+    /**
+     * AMR, SMR, AIR or SIR r; JZ, JNE or JGE r
+     */
+    OPERATE_BRANCH,
+
+    /**
+     * A loop body of straight line instructions closed by a SOB, which repeats inside the
+     * superinstruction for as long as the SOB jumps back to where it was entered
+     */
+    SOB_LOOP
+}
@@ -0,0 +1,136 @@
+package edu.gw.csci.simulator.cpu;
+
+import edu.gw.csci.simulator.gui.Program;
+import edu.gw.csci.simulator.memory.AllMemory;
+import edu.gw.csci.simulator.memory.CopyOnWriteMemory;
+import edu.gw.csci.simulator.memory.MemoryBackend;
+import edu.gw.csci.simulator.memory.MemoryCache;
+import edu.gw.csci.simulator.memory.WordMemory;
+import edu.gw.csci.simulator.registers.AllRegisters;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * A complete simulated computer with no GUI attached. The {@link AllRegisters registers},
+ * {@link MemoryBackend memory}, {@link MemoryCache cache}, {@link CPU} and {@link TrapController} are
+ * wired the same way the GUI controller wires them, but nothing here loads JavaFX, so it can be
+ * driven from the command line or from tests. Nothing observes the memory either, so it is a
+ * plain {@link WordMemory} rather than the observable {@link edu.gw.csci.simulator.memory.Memory},
+ * or a {@link CopyOnWriteMemory} for a machine that is going to be {@link Machine#fork() forked}.
+ */
+public class Machine {
+
+    private static final Logger LOGGER = LogManager.getLogger(Machine.class);
+
+    public static final int DEFAULT_LOAD_LOCATION = 32;
+
+    private final AllRegisters allRegisters;
+    private final MemoryBackend memory;
+    private final AllMemory allMemory;
+    private final CPU cpu;
+    private final TrapController trapController;
+
+    public Machine() {
+        this(new WordMemory(), new MemoryCache());
+    }
+
+    /**
+     * @param memory      The memory backend, a {@link CopyOnWriteMemory} for a machine that will be forked
+     * @param memoryCache The cache in front of the memory
+     */
+    public Machine(MemoryBackend memory, MemoryCache memoryCache) {
+        this.allRegisters = new AllRegisters();
+        this.memory = memory;
+        this.allMemory = new AllMemory(memory, allRegisters, memoryCache);
+        this.cpu = new CPU(allMemory);
+        this.trapController = cpu.getTrapController();
+    }
+
+    /**
+     * Creates a machine in the same state as this one, which shares the pages of memory with it until
+     * either side writes to them. Only fork a machine that is not running; the fork can then run on
+     * another thread, with its own console input.
+     *
+     * @return The fork
+     * @throws IllegalStateException If this machine's memory is not a {@link CopyOnWriteMemory}
+     */
+    public Machine fork() {
+        if (!(memory instanceof CopyOnWriteMemory)) {
+            throw new IllegalStateException("Only a machine with copy on write memory can be forked");
+        }
+        MemoryCache memoryCache = allMemory.getMemoryCache();
+        Machine child = new Machine(((CopyOnWriteMemory) memory).fork(), memoryCache.emptyCopy());
+        if (allMemory.getCacheHierarchy() != null) {
+            child.allMemory.setCacheHierarchy(allMemory.getCacheHierarchy().emptyCopy());
+        }
+        child.cpu.copyStateFrom(cpu);
+        return child;
+    }
+
+    /**
+     * The headless equivalent of the IPL button: registers and memory are set to their
+     * initial state, the console is cleared and the default exception table is installed.
+     */
+    public void initialize() {
+        LOGGER.info("Initializing machine");
+        allRegisters.initialize();
+        memory.initialize();
+        cpu.consoleInput.clear();
+        cpu.consoleOutput.clear();
+        cpu.getFileReader().initializeFileReader();
+        trapController.setDefaultExceptionTable();
+    }
+
+    /**
+     * Loads the program into memory at the given location, and points the PC at it.
+     *
+     * @param program The program to load
+     * @param start   The memory location of the first instruction
+     */
+    public void load(Program program, int start) {
+        cpu.setProgram(program);
+        cpu.loadProgram(start);
+    }
+
+    /**
+     * Runs the CPU until it halts, or stops at a breakpoint or watchpoint, see
+     * {@link Breakpoints#getStop()}.
+     *
+     * @return The wall clock time of the run in nanoseconds
+     */
+    public long run() {
+        long start = System.nanoTime();
+        cpu.execute();
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * @return The state of the whole machine, see {@link CPU#snapshot()}
+     */
+    public MachineSnapshot snapshot() {
+        return cpu.snapshot();
+    }
+
+    /**
+     * Puts the whole machine back in the state of the snapshot, see {@link CPU#restore(MachineSnapshot)}.
+     */
+    public void restore(MachineSnapshot snapshot) {
+        cpu.restore(snapshot);
+    }
+
+    public CPU getCpu() {
+        return cpu;
+    }
+
+    public AllMemory getAllMemory() {
+        return allMemory;
+    }
+
+    public AllRegisters getAllRegisters() {
+        return allRegisters;
+    }
+
+    public TrapController getTrapController() {
+        return trapController;
+    }
+}
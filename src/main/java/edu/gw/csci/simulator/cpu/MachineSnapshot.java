@@ -0,0 +1,359 @@
+package edu.gw.csci.simulator.cpu;
+
+import edu.gw.csci.simulator.memory.CacheHierarchy;
+import edu.gw.csci.simulator.memory.MemoryCache;
+import edu.gw.csci.simulator.registers.RegisterType;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The full state of a machine at an instruction boundary: registers, memory (which holds the trap
+ * table), the contents of the memory cache, the console queues and the trap depth. The cache is kept
+ * as it was, not flushed: its entries with their dirty bits and the writes waiting in its write
+ * buffer, so a restored machine writes the same words back as the original would have, along with
+ * the geometry and write policy it had. With a {@link CacheHierarchy}, each of its levels is kept the
+ * same way, so a restored machine's hit rates carry on from where they were. Take one with
+ * {@link CPU#snapshot()} and put it back with {@link CPU#restore(MachineSnapshot)}; memory comes
+ * back with a single array copy. A snapshot never changes, so one can be restored any number of times
+ * and into any machine of the same memory size.
+ * <p>
+ * The binary form is a big endian stream: a magic number and version, the registers as 16 bit words
+ * in {@link RegisterType} order, the memory as 16 bit words, the cache geometry as a UTF string and
+ * its write buffer entries, the cache entries oldest first as address, word and dirty bit, the
+ * waiting writes oldest first as block and word mask, the number of hierarchy levels and each level
+ * as the cache, the console queues as UTF strings, then the instruction count and trap depth. A
+ * 2048 word machine takes a little over 4KB.
+ */
+public final class MachineSnapshot {
+
+    private static final int MAGIC = 0x43534E50; //"CSNP"
+    private static final int VERSION = 3;
+
+    /**
+     * What a cache holds, as {@link MemoryCache#restore(int[], int[], boolean[], int[], long[])} takes it
+     */
+    static final class CacheContents {
+
+        private final String spec;
+        private final int writeBufferEntries;
+        private final int[] addresses;
+        private final int[] words;
+        private final boolean[] dirty;
+        private final int[] waitingBlocks;
+        private final long[] waitingMasks;
+
+        private CacheContents(String spec, int writeBufferEntries, int[] addresses, int[] words, boolean[] dirty,
+                              int[] waitingBlocks, long[] waitingMasks) {
+            this.spec = spec;
+            this.writeBufferEntries = writeBufferEntries;
+            this.addresses = addresses;
+            this.words = words;
+            this.dirty = dirty;
+            this.waitingBlocks = waitingBlocks;
+            this.waitingMasks = waitingMasks;
+        }
+
+        static CacheContents of(MemoryCache cache) {
+            return new CacheContents(cache.getSpec(), cache.getWriteBufferEntries(), cache.getCachedAddresses(),
+                    cache.getCachedWords(), cache.getCachedDirty(), cache.getWaitingBlocks(), cache.getWaitingMasks());
+        }
+
+        /**
+         * Puts the contents back into a cache, which takes them as it can if its geometry differs.
+         *
+         * @return Whether the cache has the geometry and write buffer the contents were taken from
+         */
+        boolean restoreInto(MemoryCache cache) {
+            cache.restore(addresses, words, dirty, waitingBlocks, waitingMasks);
+            return cache.getSpec().equals(spec) && cache.getWriteBufferEntries() == writeBufferEntries;
+        }
+
+        String getSpec() {
+            return spec;
+        }
+
+        int getWriteBufferEntries() {
+            return writeBufferEntries;
+        }
+
+        int getDirtyWords() {
+            int count = 0;
+            for (boolean wordDirty : dirty) {
+                if (wordDirty) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        private void writeTo(DataOutputStream out) throws IOException {
+            out.writeUTF(spec);
+            out.writeInt(writeBufferEntries);
+            out.writeInt(addresses.length);
+            for (int i = 0; i < addresses.length; i++) {
+                out.writeChar(addresses[i]);
+                out.writeChar(words[i]);
+                out.writeBoolean(dirty[i]);
+            }
+            out.writeInt(waitingBlocks.length);
+            for (int i = 0; i < waitingBlocks.length; i++) {
+                out.writeInt(waitingBlocks[i]);
+                out.writeLong(waitingMasks[i]);
+            }
+        }
+
+        private static CacheContents readFrom(DataInputStream in) throws IOException {
+            String spec = in.readUTF();
+            int writeBufferEntries = in.readInt();
+            int size = readCount(in, "cache entry");
+            int[] addresses = new int[size];
+            int[] words = new int[size];
+            boolean[] dirty = new boolean[size];
+            for (int i = 0; i < size; i++) {
+                addresses[i] = in.readChar();
+                words[i] = in.readChar();
+                dirty[i] = in.readBoolean();
+            }
+            int waiting = readCount(in, "waiting write");
+            int[] waitingBlocks = new int[waiting];
+            long[] waitingMasks = new long[waiting];
+            for (int i = 0; i < waiting; i++) {
+                waitingBlocks[i] = in.readInt();
+                waitingMasks[i] = in.readLong();
+            }
+            return new CacheContents(spec, writeBufferEntries, addresses, words, dirty, waitingBlocks, waitingMasks);
+        }
+    }
+
+    private final char[] registers;
+    private final char[] memory;
+    private final CacheContents cache;
+    private final List<CacheContents> hierarchy;
+    private final List<String> consoleInput;
+    private final List<String> consoleOutput;
+    private final long instructionCount;
+    private final int trapDepth;
+
+    /**
+     * @param hierarchy The levels of the cache hierarchy, L1I, L1D then any L2, or none
+     */
+    MachineSnapshot(char[] registers, char[] memory, CacheContents cache, List<CacheContents> hierarchy,
+                    List<String> consoleInput, List<String> consoleOutput, long instructionCount, int trapDepth) {
+        this.registers = registers;
+        this.memory = memory;
+        this.cache = cache;
+        this.hierarchy = Collections.unmodifiableList(hierarchy);
+        this.consoleInput = Collections.unmodifiableList(consoleInput);
+        this.consoleOutput = Collections.unmodifiableList(consoleOutput);
+        this.instructionCount = instructionCount;
+        this.trapDepth = trapDepth;
+    }
+
+    /**
+     * @return The raw word the register held
+     */
+    public int getRegister(RegisterType registerType) {
+        return registers[registerType.ordinal()];
+    }
+
+    /**
+     * @return The raw word memory held at the address
+     */
+    public int getWord(int address) {
+        return memory[address];
+    }
+
+    public int getMemorySize() {
+        return memory.length;
+    }
+
+    public List<String> getConsoleInput() {
+        return consoleInput;
+    }
+
+    public List<String> getConsoleOutput() {
+        return consoleOutput;
+    }
+
+    public long getInstructionCount() {
+        return instructionCount;
+    }
+
+    /**
+     * @return The geometry and write policy of the cache, as given to
+     * {@link edu.gw.csci.simulator.memory.MemoryCache#create(String)}
+     */
+    public String getCacheSpec() {
+        return cache.getSpec();
+    }
+
+    public int getWriteBufferEntries() {
+        return cache.getWriteBufferEntries();
+    }
+
+    /**
+     * @return The number of cached words on dirty lines, which memory has yet to be written with, in
+     * the cache and every hierarchy level
+     */
+    public int getDirtyWords() {
+        int count = cache.getDirtyWords();
+        for (CacheContents level : hierarchy) {
+            count += level.getDirtyWords();
+        }
+        return count;
+    }
+
+    /**
+     * @return The geometry of each level of the cache hierarchy, L1I, L1D then any L2, or none
+     */
+    public List<String> getHierarchySpecs() {
+        List<String> specs = new ArrayList<>(hierarchy.size());
+        for (CacheContents level : hierarchy) {
+            specs.add(level.getSpec());
+        }
+        return specs;
+    }
+
+    char[] getRegisters() {
+        return registers;
+    }
+
+    char[] getMemory() {
+        return memory;
+    }
+
+    CacheContents getCache() {
+        return cache;
+    }
+
+    List<CacheContents> getHierarchy() {
+        return hierarchy;
+    }
+
+    int getTrapDepth() {
+        return trapDepth;
+    }
+
+    public void writeTo(OutputStream outputStream) throws IOException {
+        DataOutputStream out = new DataOutputStream(outputStream);
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        writeWords(out, registers);
+        writeWords(out, memory);
+        cache.writeTo(out);
+        out.writeInt(hierarchy.size());
+        for (CacheContents level : hierarchy) {
+            level.writeTo(out);
+        }
+        writeLines(out, consoleInput);
+        writeLines(out, consoleOutput);
+        out.writeLong(instructionCount);
+        out.writeInt(trapDepth);
+        out.flush();
+    }
+
+    public byte[] toByteArray() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(2 * (registers.length + memory.length) + 64);
+        try {
+            writeTo(bytes);
+        } catch (IOException e) {
+            //A byte array stream does not throw
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @throws IOException If the stream ends early, or does not hold a snapshot of this version
+     */
+    public static MachineSnapshot readFrom(InputStream inputStream) throws IOException {
+        DataInputStream in = new DataInputStream(inputStream);
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a machine snapshot");
+        }
+        int version = in.readUnsignedShort();
+        if (version != VERSION) {
+            throw new IOException(String.format("Unsupported snapshot version %d, expected %d", version, VERSION));
+        }
+        char[] registers = readWords(in);
+        if (registers.length != RegisterType.values().length) {
+            throw new IOException(String.format("Snapshot has %d registers, expected %d",
+                    registers.length, RegisterType.values().length));
+        }
+        char[] memory = readWords(in);
+        CacheContents cache = CacheContents.readFrom(in);
+        int levels = readCount(in, "hierarchy level");
+        if (levels != 0 && levels != 2 && levels != 3) {
+            throw new IOException("A cache hierarchy has 2 or 3 levels, not " + levels);
+        }
+        List<CacheContents> hierarchy = new ArrayList<>(levels);
+        for (int i = 0; i < levels; i++) {
+            hierarchy.add(CacheContents.readFrom(in));
+        }
+        List<String> consoleInput = readLines(in);
+        List<String> consoleOutput = readLines(in);
+        long instructionCount = in.readLong();
+        int trapDepth = in.readInt();
+        return new MachineSnapshot(registers, memory, cache, hierarchy, consoleInput, consoleOutput, instructionCount,
+                trapDepth);
+    }
+
+    public static MachineSnapshot fromByteArray(byte[] bytes) throws IOException {
+        return readFrom(new ByteArrayInputStream(bytes));
+    }
+
+    private static int readCount(DataInputStream in, String what) throws IOException {
+        int count = in.readInt();
+        if (count < 0) {
+            throw new IOException(String.format("Negative %s count %d", what, count));
+        }
+        return count;
+    }
+
+    private static void writeWords(DataOutputStream out, char[] words) throws IOException {
+        out.writeInt(words.length);
+        for (char word : words) {
+            out.writeChar(word);
+        }
+    }
+
+    private static char[] readWords(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Negative word count " + length);
+        }
+        char[] words = new char[length];
+        for (int i = 0; i < length; i++) {
+            words[i] = in.readChar();
+        }
+        return words;
+    }
+
+    private static void writeLines(DataOutputStream out, List<String> lines) throws IOException {
+        out.writeInt(lines.size());
+        for (String line : lines) {
+            out.writeUTF(line);
+        }
+    }
+
+    private static List<String> readLines(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        if (count < 0) {
+            throw new IOException("Negative line count " + count);
+        }
+        List<String> lines = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            lines.add(in.readUTF());
+        }
+        return lines;
+    }
+}
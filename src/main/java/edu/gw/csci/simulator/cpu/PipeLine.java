@@ -11,6 +11,9 @@ public class PipeLine {
     private int clock;
     public PipeLine(FloatingPointsCalculate[] floatingPointsCalculates,int clock){
         this.floatingPointsCalculates = floatingPointsCalculates;
+        for (int i = 0; i < floatingPointsCalculates.length; i++) {
+            floatingPointsCalculates[i].setFpncName(FloatingPointsCalculate.DEFAULT_NAME + ": " + (i + 1));
+        }
         this.clock = clock;
     }
     public void pipeline(){
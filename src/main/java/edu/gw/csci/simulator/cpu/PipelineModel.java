@@ -0,0 +1,428 @@
+package edu.gw.csci.simulator.cpu;
+
+import edu.gw.csci.simulator.branch.BranchPredictor;
+import edu.gw.csci.simulator.branch.BranchPredictors;
+import edu.gw.csci.simulator.isa.AddressingMode;
+import edu.gw.csci.simulator.isa.DecodedInstruction;
+import edu.gw.csci.simulator.isa.InstructionType;
+import edu.gw.csci.simulator.registers.AllRegisters;
+import edu.gw.csci.simulator.registers.Register;
+import edu.gw.csci.simulator.registers.RegisterType;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Times the instructions the CPU retires, while it is {@link CPU#setPipelineModel(PipelineModel)
+ * pipelined}, as if they went through a classic in order IF/ID/EX/MEM/WB pipeline, one stage per
+ * cycle. The CPU still executes one instruction at a time; the model works out from each retired
+ * instruction when it would have been fetched, and so how many cycles the program takes.
+ * <p>
+ * Data hazards are read after write hazards on R0-R3 and X1-X3. Results are produced at the end of
+ * EX, or of MEM for instructions that read memory, and are read in EX, except store data, read in
+ * MEM, and the operands of a transfer, read in the stage branches are resolved in. A result can
+ * reach a later instruction through the enabled {@link Forwarding forwarding paths}, or through the
+ * register file, which is written in the first half of WB and read in the second half of ID. With
+ * both paths, only a load followed by an instruction using its result stalls, for one cycle.
+ * <p>
+ * Control hazards: without a {@link BranchPredictor}, fetch goes on at the next address, so every
+ * transfer that jumps flushes the instructions fetched behind it until the stage it is resolved in.
+ * With one, conditional transfers flush only when mispredicted, or lose a cycle when predicted to
+ * jump without a known target, see {@link BranchPredictors#penalty}. Traps, faults and the return
+ * from a routine flush the pipeline up to MEM. Multi-cycle execution, such as for MLT, DVD and the
+ * floating point instructions, and memory latency are left to the {@link TimingModel}.
+ */
+public class PipelineModel {
+
+    /**
+     * The stages, in order
+     */
+    public enum Stage {
+        IF, ID, EX, MEM, WB
+    }
+
+    /**
+     * The forwarding paths, named after the pipeline register results are forwarded from
+     */
+    public enum Forwarding {
+        /**
+         * The result of EX, to the next instruction
+         */
+        EX_MEM,
+        /**
+         * The result of MEM, or of EX one cycle later, to the instruction after next
+         */
+        MEM_WB
+    }
+
+    private static final int STAGES = Stage.values().length;
+    private static final int EX = Stage.EX.ordinal(), MEM = Stage.MEM.ordinal(), WB = Stage.WB.ordinal();
+
+    /**
+     * R0-R3, then X1-X3
+     */
+    private static final int REGISTERS = 7;
+    private static final int INDEX_BASE = 3;
+
+    private static final InstructionType[] TYPES = new InstructionType[InstructionType.OPCODE_COUNT];
+
+    static {
+        for (InstructionType type : InstructionType.values()) {
+            TYPES[type.getOpCode()] = type;
+        }
+    }
+
+    private final Register pc, ir;
+    private final Set<Forwarding> forwarding = EnumSet.allOf(Forwarding.class);
+    private Stage branchStage = Stage.EX;
+    private BranchPredictor branchPredictor;
+
+    /**
+     * The fetch cycle and the result stage of the last writer of each register
+     */
+    private final long[] writerFetch = new long[REGISTERS];
+    private final int[] writerStage = new int[REGISTERS];
+    private final boolean[] written = new boolean[REGISTERS];
+
+    private boolean open;
+    private int address;
+    private long fetch = -1;
+    private int penalty;
+
+    /**
+     * Computed for each instruction
+     */
+    private long earliest;
+    private boolean loadUse;
+
+    private long instructions, dataStalls, loadUseStalls, controlStalls, flushes;
+
+    public PipelineModel(AllRegisters registers) {
+        this.pc = registers.getRegister(RegisterType.PC);
+        this.ir = registers.getRegister(RegisterType.IR);
+    }
+
+    /**
+     * Turns a forwarding path on or off, both are on to start with.
+     */
+    public void setForwarding(Forwarding path, boolean enabled) {
+        if (enabled) {
+            forwarding.add(path);
+        } else {
+            forwarding.remove(path);
+        }
+    }
+
+    public boolean isForwarding(Forwarding path) {
+        return forwarding.contains(path);
+    }
+
+    /**
+     * Sets the stage transfers are resolved in, EX to start with. Resolving in ID flushes one
+     * instruction instead of two, but the operands of the transfer are needed a cycle earlier.
+     *
+     * @param branchStage ID or EX
+     */
+    public void setBranchStage(Stage branchStage) {
+        if (branchStage != Stage.ID && branchStage != Stage.EX) {
+            throw new IllegalArgumentException("Branches are resolved in ID or EX, not " + branchStage);
+        }
+        this.branchStage = branchStage;
+    }
+
+    public Stage getBranchStage() {
+        return branchStage;
+    }
+
+    /**
+     * Predicts the conditional transfers, instead of fetching the next address behind them.
+     *
+     * @param branchPredictor The predictor, or null to predict that nothing jumps
+     */
+    public void setBranchPredictor(BranchPredictor branchPredictor) {
+        this.branchPredictor = branchPredictor;
+    }
+
+    public BranchPredictor getBranchPredictor() {
+        return branchPredictor;
+    }
+
+    /**
+     * Starts the instruction at the PC.
+     */
+    void begin() {
+        address = pc.getWord();
+        open = true;
+    }
+
+    /**
+     * Fetches the instruction as early as its hazards allow, once it retires or faults.
+     *
+     * @param fault True if the instruction faulted instead of retiring
+     */
+    void finish(boolean fault) {
+        if (!open) {
+            return;
+        }
+        open = false;
+        long next = fetch + 1 + penalty;
+        controlStalls += penalty;
+        penalty = 0;
+        earliest = next;
+        loadUse = false;
+
+        int word = ir.getWord();
+        int opCode = DecodedInstruction.opCode(word);
+        InstructionType type = TYPES[opCode];
+        if (fault || type == null) {
+            //Its operands don't matter, it never gets past the stage that faults
+            fetch = next;
+            redirect(MEM);
+            return;
+        }
+        int r = (word >>> 8) & 0b11;
+        int ix = (word >>> 6) & 0b11;
+        int branch = branchStage.ordinal();
+        if (type.getAddressingMode() == AddressingMode.INDEXED && ix != 0 && !isRegisterToRegister(type)) {
+            read(INDEX_BASE + ix, isTransfer(type) ? branch : EX);
+        }
+        switch (type) {
+            case LDR:
+            case LDA:
+            case IN:
+                break;
+            case STR:
+            case OUT:
+                read(r, type == InstructionType.STR ? MEM : EX);
+                break;
+            case STX:
+                read(INDEX_BASE + ix, MEM);
+                break;
+            case JZ:
+            case JNE:
+            case JGE:
+            case SOB:
+                read(r, branch);
+                break;
+            case RFS:
+                read(3, branch);
+                break;
+            case AMR:
+            case SMR:
+            case AIR:
+            case SIR:
+            case NOT:
+            case SRC:
+            case RRC:
+            case CNVRT:
+                read(r, EX);
+                break;
+            case MLT:
+            case DVD:
+            case TRR:
+            case AND:
+            case ORR:
+                read(r, EX);
+                read(ix, EX);
+                break;
+            default:
+                break;
+        }
+        if (earliest > next) {
+            dataStalls += earliest - next;
+            if (loadUse) {
+                loadUseStalls += earliest - next;
+            }
+        }
+        fetch = earliest;
+        instructions++;
+
+        switch (type) {
+            case LDR:
+            case AMR:
+            case SMR:
+            case CNVRT:
+                write(r, MEM);
+                break;
+            case LDX:
+                write(INDEX_BASE + ix, MEM);
+                break;
+            case LDA:
+            case IN:
+            case SOB:
+            case AIR:
+            case SIR:
+            case AND:
+            case ORR:
+            case NOT:
+            case SRC:
+            case RRC:
+                write(r, EX);
+                break;
+            case MLT:
+            case DVD:
+                write(r, EX);
+                write((r + 1) & 0b11, EX);
+                break;
+            case JSR:
+                write(3, EX);
+                break;
+            case RFS:
+                write(0, EX);
+                break;
+            default:
+                break;
+        }
+
+        int following = BranchRecorder.following(type, address);
+        int target = pc.getWord();
+        if (branchPredictor != null && BranchRecorder.conditionalTransfer(word) != null) {
+            boolean taken = target != following;
+            int cycles = BranchPredictors.penalty(branchPredictor, address, taken, target, branch);
+            branchPredictor.update(address, taken, target);
+            if (cycles > 0) {
+                penalty = cycles;
+                flushes++;
+            }
+        } else if (target != following) {
+            redirect(isTransfer(type) ? branch : MEM);
+        }
+    }
+
+    /**
+     * Delays the fetch of the instruction until the register can be read in the stage.
+     */
+    private void read(int register, int stage) {
+        if (!written[register]) {
+            return;
+        }
+        long producer = writerFetch[register];
+        int produced = writerStage[register];
+        //Through the register file, read in ID once WB has written it
+        long ready = producer + WB - 1;
+        if (produced == EX && forwarding.contains(Forwarding.EX_MEM)) {
+            ready = Math.min(ready, producer + MEM - stage);
+        }
+        if (forwarding.contains(Forwarding.MEM_WB)) {
+            ready = Math.min(ready, producer + WB - stage);
+        }
+        if (ready > earliest) {
+            earliest = ready;
+            loadUse = produced == MEM;
+        }
+    }
+
+    private void write(int register, int stage) {
+        writerFetch[register] = fetch;
+        writerStage[register] = stage;
+        written[register] = true;
+    }
+
+    /**
+     * Flushes the instructions fetched behind this one until it reaches the stage
+     */
+    private void redirect(int stage) {
+        penalty = stage;
+        flushes++;
+    }
+
+    private static boolean isTransfer(InstructionType type) {
+        switch (type) {
+            case JZ:
+            case JNE:
+            case JCC:
+            case JMA:
+            case JSR:
+            case RFS:
+            case SOB:
+            case JGE:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isRegisterToRegister(InstructionType type) {
+        switch (type) {
+            case MLT:
+            case DVD:
+            case TRR:
+            case AND:
+            case ORR:
+            case NOT:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Drops the counts and the register history, for the next program.
+     */
+    public void clear() {
+        fetch = -1;
+        penalty = 0;
+        open = false;
+        Arrays.fill(written, false);
+        if (branchPredictor != null) {
+            branchPredictor.reset();
+        }
+        instructions = 0;
+        dataStalls = 0;
+        loadUseStalls = 0;
+        controlStalls = 0;
+        flushes = 0;
+    }
+
+    /**
+     * @return The cycles from the first fetch until the last instruction leaves WB
+     */
+    public long getCycles() {
+        return (instructions == 0) ? 0 : fetch + STAGES;
+    }
+
+    public double getCPI() {
+        return (instructions == 0) ? 0 : (double) getCycles() / instructions;
+    }
+
+    public long getInstructions() {
+        return instructions;
+    }
+
+    /**
+     * @return The cycles fetch waited for a register, load-use stalls included
+     */
+    public long getDataStalls() {
+        return dataStalls;
+    }
+
+    /**
+     * @return The cycles fetch waited for the result of an instruction that reads memory, such as a load
+     */
+    public long getLoadUseStalls() {
+        return loadUseStalls;
+    }
+
+    /**
+     * @return The cycles lost to instructions flushed behind transfers, traps and faults
+     */
+    public long getControlStalls() {
+        return controlStalls;
+    }
+
+    /**
+     * @return The number of times the pipeline was flushed
+     */
+    public long getFlushes() {
+        return flushes;
+    }
+
+    public String getReport() {
+        return String.format("Pipeline (forwarding %s, branches resolved in %s, predicted %s): %d instructions in "
+                        + "%d cycles, CPI %.3f, %d data stall cycles (%d load-use), %d control stall cycles from %d flushes",
+                forwarding.isEmpty() ? "off" : forwarding, branchStage,
+                (branchPredictor == null) ? "not taken" : "by " + branchPredictor.getName(), instructions, getCycles(), getCPI(),
+                dataStalls, loadUseStalls, controlStalls, flushes);
+    }
+}
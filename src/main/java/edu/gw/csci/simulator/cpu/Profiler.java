@@ -0,0 +1,373 @@
+package edu.gw.csci.simulator.cpu;
+
+import edu.gw.csci.simulator.isa.DecodedInstruction;
+import edu.gw.csci.simulator.isa.Decoder;
+import edu.gw.csci.simulator.isa.Instruction;
+import edu.gw.csci.simulator.isa.InstructionType;
+import edu.gw.csci.simulator.isa.instructions.Transfer;
+import edu.gw.csci.simulator.registers.AllRegisters;
+import edu.gw.csci.simulator.registers.Register;
+import edu.gw.csci.simulator.registers.RegisterType;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Counts what the CPU executes while {@link CPU#setProfiling(boolean) profiling} is on: executions
+ * per {@link InstructionType}, executions per PC, and taken and not taken transfers per PC. The time
+ * of instructions is added up per opcode and per opcode class, the class being
+ * the group of Java handlers the instruction belongs to, such as LoadStore or Transfer. All counts
+ * are kept in primitive arrays indexed by opcode or address, so profiling allocates nothing while
+ * the program runs.
+ * <p>
+ * Reading the clock costs more than most instructions, so only about one instruction in
+ * {@link Profiler#SAMPLE_INTERVAL} is timed, at random gaps so a loop can't line up with the
+ * samples, and the time of an opcode is its sampled time scaled up to all its executions. The counts
+ * are exact. The times include the decode and the dispatch of each instruction, less the cost of
+ * reading the clock as measured when the profiler is made, so they are best compared with each
+ * other rather than taken as absolute.
+ */
+public class Profiler {
+
+    /**
+     * The mean number of instructions per timed instruction
+     */
+    public static final int SAMPLE_INTERVAL = 16;
+
+    private static final int CLOCK_CALIBRATION_READS = 1000;
+
+    private final Register pc, ir;
+
+    private final long[] opcodeCounts = new long[InstructionType.OPCODE_COUNT];
+    private final long[] opcodeNanos = new long[InstructionType.OPCODE_COUNT];
+    private final long[] opcodeSamples = new long[InstructionType.OPCODE_COUNT];
+    private final long[] pcCounts;
+    private final long[] taken;
+    private final long[] notTaken;
+    private final InstructionType[] pcTypes;
+    private long faults;
+
+    /**
+     * The opcode class of each opcode, an index into classNames
+     */
+    private final int[] opcodeClasses = new int[InstructionType.OPCODE_COUNT];
+    private final List<String> classNames = new ArrayList<>();
+    private final boolean[] transfers = new boolean[InstructionType.OPCODE_COUNT];
+    private final InstructionType[] types = new InstructionType[InstructionType.OPCODE_COUNT];
+
+    private boolean open, timing;
+    private int address;
+    private long started;
+    private int untilSample = 1;
+    private int random = 0x2545F491;
+    private final long clockCost;
+
+    /**
+     * @param registers  The registers of the CPU being profiled
+     * @param memorySize The number of addresses to count executions for
+     */
+    public Profiler(AllRegisters registers, int memorySize) {
+        this.pc = registers.getRegister(RegisterType.PC);
+        this.ir = registers.getRegister(RegisterType.IR);
+        this.pcCounts = new long[memorySize];
+        this.taken = new long[memorySize];
+        this.notTaken = new long[memorySize];
+        this.pcTypes = new InstructionType[memorySize];
+        Decoder decoder = new Decoder();
+        for (InstructionType type : InstructionType.values()) {
+            Instruction instruction = decoder.getInstruction(type);
+            int index = classNames.indexOf(instruction.getInstructionClass());
+            if (index < 0) {
+                index = classNames.size();
+                classNames.add(instruction.getInstructionClass());
+            }
+            opcodeClasses[type.getOpCode()] = index;
+            types[type.getOpCode()] = type;
+            transfers[type.getOpCode()] = instruction.getClass().getEnclosingClass() == Transfer.class;
+        }
+        this.clockCost = measureClockCost();
+    }
+
+    /**
+     * @return The least time seen between two reads of the clock
+     */
+    private static long measureClockCost() {
+        long least = Long.MAX_VALUE;
+        for (int i = 0; i < CLOCK_CALIBRATION_READS; i++) {
+            long start = System.nanoTime();
+            least = Math.min(least, System.nanoTime() - start);
+        }
+        return least;
+    }
+
+    /**
+     * Starts timing the instruction at the PC.
+     */
+    void begin() {
+        address = pc.getWord();
+        open = true;
+        if (--untilSample == 0) {
+            //xorshift, for a gap between 1 and twice the interval
+            random ^= random << 13;
+            random ^= random >>> 17;
+            random ^= random << 5;
+            untilSample = 1 + (random >>> 1) % (2 * SAMPLE_INTERVAL - 1);
+            timing = true;
+            started = System.nanoTime();
+        }
+    }
+
+    /**
+     * Counts the instruction once it retires or faults. A transfer is taken if the PC did not move
+     * on to the next address.
+     *
+     * @param fault True if the instruction faulted instead of retiring
+     */
+    void finish(boolean fault) {
+        boolean timed = timing;
+        long elapsed = timed ? Math.max(0, System.nanoTime() - started - clockCost) : 0;
+        if (!open) {
+            return;
+        }
+        open = false;
+        timing = false;
+        if (address >= pcCounts.length) {
+            return;
+        }
+        pcCounts[address]++;
+        int opCode = DecodedInstruction.opCode(ir.getWord());
+        if (fault || !InstructionType.isOpCode(opCode)) {
+            //An illegal opcode or address, its time goes to the fault routine that follows
+            faults++;
+            return;
+        }
+        opcodeCounts[opCode]++;
+        if (timed) {
+            opcodeNanos[opCode] += elapsed;
+            opcodeSamples[opCode]++;
+        }
+        pcTypes[address] = types[opCode];
+        if (transfers[opCode]) {
+            if (pc.getWord() == address + 1) {
+                notTaken[address]++;
+            } else {
+                taken[address]++;
+            }
+        }
+    }
+
+    /**
+     * Drops every count, to profile the next run on its own.
+     */
+    public void clear() {
+        Arrays.fill(opcodeCounts, 0);
+        Arrays.fill(opcodeNanos, 0);
+        Arrays.fill(opcodeSamples, 0);
+        Arrays.fill(pcCounts, 0);
+        Arrays.fill(taken, 0);
+        Arrays.fill(notTaken, 0);
+        Arrays.fill(pcTypes, null);
+        faults = 0;
+        open = false;
+    }
+
+    public long getCount(InstructionType type) {
+        return opcodeCounts[type.getOpCode()];
+    }
+
+    /**
+     * @return The estimated nanoseconds spent executing instructions of the type
+     */
+    public long getNanos(InstructionType type) {
+        return estimatedNanos(type.getOpCode());
+    }
+
+    private long estimatedNanos(int opCode) {
+        long samples = opcodeSamples[opCode];
+        return (samples == 0) ? 0 : Math.round((double) opcodeNanos[opCode] * opcodeCounts[opCode] / samples);
+    }
+
+    /**
+     * @return The number of times the instruction at the address was executed, faults included
+     */
+    public long getCount(int address) {
+        return pcCounts[address];
+    }
+
+    /**
+     * @return The number of times the transfer at the address jumped
+     */
+    public long getTaken(int address) {
+        return taken[address];
+    }
+
+    /**
+     * @return The number of times the transfer at the address fell through to the next address
+     */
+    public long getNotTaken(int address) {
+        return notTaken[address];
+    }
+
+    public long getFaults() {
+        return faults;
+    }
+
+    /**
+     * @return The number of instructions counted, faults included
+     */
+    public long getTotal() {
+        long total = faults;
+        for (long count : opcodeCounts) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * @return The names of the opcode classes, such as LoadStore
+     */
+    public List<String> getOpcodeClasses() {
+        return new ArrayList<>(classNames);
+    }
+
+    /**
+     * @return The number of executions of the instructions of the class
+     */
+    public long getClassCount(String opcodeClass) {
+        int index = classNames.indexOf(opcodeClass);
+        long sum = 0;
+        for (int opCode = 0; opCode < InstructionType.OPCODE_COUNT; opCode++) {
+            if (index >= 0 && opcodeClasses[opCode] == index && InstructionType.isOpCode(opCode)) {
+                sum += opcodeCounts[opCode];
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * @return The estimated nanoseconds spent executing instructions of the class
+     */
+    public long getClassNanos(String opcodeClass) {
+        int index = classNames.indexOf(opcodeClass);
+        long sum = 0;
+        for (int opCode = 0; opCode < InstructionType.OPCODE_COUNT; opCode++) {
+            if (index >= 0 && opcodeClasses[opCode] == index && InstructionType.isOpCode(opCode)) {
+                sum += estimatedNanos(opCode);
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * @param top The number of hot spots to list
+     * @return The executed addresses, most executed first
+     */
+    public int[] getHotSpots(int top) {
+        List<Integer> addresses = new ArrayList<>();
+        for (int address = 0; address < pcCounts.length; address++) {
+            if (pcCounts[address] > 0) {
+                addresses.add(address);
+            }
+        }
+        addresses.sort((a, b) -> (pcCounts[a] != pcCounts[b]) ? Long.compare(pcCounts[b], pcCounts[a])
+                : Integer.compare(a, b));
+        int[] hotSpots = new int[Math.min(top, addresses.size())];
+        for (int i = 0; i < hotSpots.length; i++) {
+            hotSpots[i] = addresses.get(i);
+        }
+        return hotSpots;
+    }
+
+    /**
+     * @return The opcodes executed, most executed first
+     */
+    private List<InstructionType> executedTypes() {
+        List<InstructionType> types = new ArrayList<>();
+        for (InstructionType type : InstructionType.values()) {
+            if (getCount(type) > 0) {
+                types.add(type);
+            }
+        }
+        types.sort((a, b) -> Long.compare(getCount(b), getCount(a)));
+        return types;
+    }
+
+    /**
+     * Lists the opcode classes, the opcodes and the hottest addresses, with their share of the
+     * instructions and of the time.
+     *
+     * @param top The number of hot spots to list
+     */
+    public String getReport(int top) {
+        long total = getTotal();
+        long nanos = 0;
+        for (int opCode = 0; opCode < InstructionType.OPCODE_COUNT; opCode++) {
+            nanos += estimatedNanos(opCode);
+        }
+        StringBuilder report = new StringBuilder(String.format(
+                "Profile: %d instructions, %d faults, %.3f ms estimated", total, faults, nanos / 1e6));
+        report.append(String.format("%n  Opcode classes:"));
+        for (String name : classNames) {
+            long count = getClassCount(name);
+            if (count > 0) {
+                long classNanos = getClassNanos(name);
+                report.append(String.format("%n    %-20s %12d %5.1f%% %10.3f ms %5.1f%% %7.1f ns/instr",
+                        name, count, percent(count, total), classNanos / 1e6, percent(classNanos, nanos),
+                        (double) classNanos / count));
+            }
+        }
+        report.append(String.format("%n  Opcodes:"));
+        for (InstructionType type : executedTypes()) {
+            long count = getCount(type);
+            report.append(String.format("%n    %-20s %12d %5.1f%% %10.3f ms %5.1f%% %7.1f ns/instr",
+                    type, count, percent(count, total), getNanos(type) / 1e6, percent(getNanos(type), nanos),
+                    (double) getNanos(type) / count));
+        }
+        report.append(String.format("%n  Hot spots:"));
+        for (int address : getHotSpots(top)) {
+            report.append(String.format("%n    %5d %-14s %12d %5.1f%%", address, name(address),
+                    pcCounts[address], percent(pcCounts[address], total)));
+            if (taken[address] + notTaken[address] > 0) {
+                report.append(String.format(" taken %d, not taken %d", taken[address], notTaken[address]));
+            }
+        }
+        return report.toString();
+    }
+
+    /**
+     * Writes every count as CSV, one row per opcode class, opcode and executed address, under the
+     * header kind,name,address,count,taken,not_taken,nanos. Columns that don't apply to a row are empty.
+     */
+    public void writeCsv(Appendable out) throws IOException {
+        out.append("kind,name,address,count,taken,not_taken,nanos\n");
+        for (String name : classNames) {
+            long count = getClassCount(name);
+            if (count > 0) {
+                out.append(String.format("class,%s,,%d,,,%d\n", name, count, getClassNanos(name)));
+            }
+        }
+        for (InstructionType type : executedTypes()) {
+            out.append(String.format("opcode,%s,,%d,,,%d\n", type, getCount(type), getNanos(type)));
+        }
+        for (int address = 0; address < pcCounts.length; address++) {
+            if (pcCounts[address] > 0) {
+                boolean transfer = taken[address] + notTaken[address] > 0;
+                out.append(String.format("pc,%s,%d,%d,%s,%s,\n", name(address), address, pcCounts[address],
+                        transfer ? taken[address] : "", transfer ? notTaken[address] : ""));
+            }
+        }
+    }
+
+    /**
+     * @return The instruction last retired at the address, or FAULT if none ever did
+     */
+    private String name(int address) {
+        return (pcTypes[address] == null) ? "FAULT" : pcTypes[address].toString();
+    }
+
+    private static double percent(long part, long whole) {
+        return (whole == 0) ? 0 : 100.0 * part / whole;
+    }
+}
@@ -5,23 +5,30 @@ import java.io.FileInputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.util.HashMap;
+import java.util.Random;
 
+/**
+ * Reads the sentences of a text file into memory, one word code per location, for program 2.
+ * Each {@link CPU} owns a reader, since the word codes handed out so far are part of the state of
+ * that machine.
+ */
 public class SimulatorFileReader {
     private static final int DEFAULT_WORD_STORE_INDEX = 512;
     private static final int DEFAULT_CODE = 32;
-    public static HashMap<String, Integer> WordMap = new HashMap<>();
-    private static int code = DEFAULT_CODE;
-    private static int WordStoreIndex = DEFAULT_WORD_STORE_INDEX;
+    private final HashMap<String, Integer> WordMap = new HashMap<>();
+    private final Random random = new Random();
+    private int code = DEFAULT_CODE;
+    private int WordStoreIndex = DEFAULT_WORD_STORE_INDEX;
 
 
-    public static void initializeFileReader() {
+    public void initializeFileReader() {
         WordMap.clear();
         code = DEFAULT_CODE;
         WordStoreIndex = DEFAULT_WORD_STORE_INDEX;
     }
 
 
-    public static void readSentences(String fileName, CPU cpu) {
+    public void readSentences(String fileName, CPU cpu) {
         File file = new File(fileName);
         try (Reader reader = new InputStreamReader(new FileInputStream(file))) {
             int tempChar;
@@ -61,18 +68,22 @@ public class SimulatorFileReader {
         }
     }
 
-    public static void encode(String word) {
+    public void encode(String word) {
         if (!WordMap.containsKey(word)) {
             WordMap.put(word, code);
-            code += (int) (Math.random() * 8 + 1);
+            code += random.nextInt(8) + 1;
         }
     }
 
-    public static int getCode(String word) {
+    public boolean isEncoded(String word) {
+        return WordMap.containsKey(word);
+    }
+
+    public int getCode(String word) {
         return WordMap.get(word);
     }
 
-    private static void StoreToMemory(int index, int value, CPU cpu) {
+    private void StoreToMemory(int index, int value, CPU cpu) {
         cpu.StoreValue(index, value);
     }
 }
@@ -0,0 +1,136 @@
+package edu.gw.csci.simulator.cpu;
+
+import edu.gw.csci.simulator.isa.DecodedInstruction;
+
+/**
+ * A fused handler for a sequence of instructions found by the {@link FusionPass}. One dispatch runs
+ * the whole sequence through the {@link BlockRuntime} helpers, skipping the decode and handler
+ * lookups of the interpreter. Every component is still fetched into the IR, retired and followed by a
+ * PC update exactly as the interpreter does it, so a trap raised by any component sees the same PC,
+ * MAR, MBR and CC as it would without fusion.
+ */
+final class Superinstruction {
+
+    private final FusionPattern pattern;
+    private final int base;
+    private final int first;
+    private final DecodedInstruction[] parts;
+    private final boolean endsWithTransfer;
+
+    /**
+     * @param pattern          The pattern the sequence matched
+     * @param base             The address of the first part
+     * @param first            The index of the part the superinstruction is entered at
+     * @param parts            The decoded sequence, which entries of a loop share
+     * @param endsWithTransfer True if the last part may move the PC
+     */
+    Superinstruction(FusionPattern pattern, int base, int first, DecodedInstruction[] parts, boolean endsWithTransfer) {
+        this.pattern = pattern;
+        this.base = base;
+        this.first = first;
+        this.parts = parts;
+        this.endsWithTransfer = endsWithTransfer;
+    }
+
+    /**
+     * Runs the sequence from the entry address. A {@link FusionPattern#SOB_LOOP} runs again for as
+     * long as its SOB jumps back to the entry address and the budget isn't used up, so it retires at
+     * most one pass of the sequence more than the budget.
+     *
+     * @param runtime The machine state to run on
+     * @param budget  The number of instructions the caller still wants retired
+     * @return The number of instructions retired, which is not returned if a component traps
+     */
+    int execute(BlockRuntime runtime, long budget) {
+        int entry = base + first;
+        int retired = 0;
+        do {
+            for (int i = first; i < parts.length; i++) {
+                int address = base + i;
+                DecodedInstruction decoded = parts[i];
+                BlockRuntime.fetch(runtime, address, decoded.getWord());
+                step(runtime, decoded);
+                if (endsWithTransfer && i == parts.length - 1) {
+                    BlockRuntime.branched(runtime);
+                } else {
+                    BlockRuntime.next(runtime, address);
+                }
+                retired++;
+            }
+        } while (pattern == FusionPattern.SOB_LOOP && runtime.getPC() == entry && retired < budget);
+        return retired;
+    }
+
+    FusionPattern getPattern() {
+        return pattern;
+    }
+
+    /**
+     * @return The number of instructions from the entry address to the end of the sequence
+     */
+    int getLength() {
+        return parts.length - first;
+    }
+
+    /**
+     * Executes one component of the sequence.
+     */
+    private static void step(BlockRuntime runtime, DecodedInstruction decoded) {
+        switch (decoded.getInstructionType()) {
+            case LDR:
+                BlockRuntime.load(runtime, decoded.getR(), BlockRuntime.effectiveAddress(runtime, decoded));
+                break;
+            case STR:
+                BlockRuntime.store(runtime, decoded.getR(), BlockRuntime.effectiveAddress(runtime, decoded));
+                break;
+            case LDA:
+                BlockRuntime.loadAddress(runtime, decoded.getR(), BlockRuntime.effectiveAddress(runtime, decoded));
+                break;
+            case LDX:
+                BlockRuntime.loadIndex(runtime, decoded.getIX(), BlockRuntime.effectiveAddress(runtime, decoded));
+                break;
+            case STX:
+                BlockRuntime.storeIndex(runtime, decoded.getIX(), BlockRuntime.effectiveAddress(runtime, decoded));
+                break;
+            case AMR:
+                BlockRuntime.addMemory(runtime, decoded.getR(), BlockRuntime.effectiveAddress(runtime, decoded));
+                break;
+            case SMR:
+                BlockRuntime.subtractMemory(runtime, decoded.getR(), BlockRuntime.effectiveAddress(runtime, decoded));
+                break;
+            case AIR:
+                BlockRuntime.addImmediate(runtime, decoded.getR(), decoded.getAddress());
+                break;
+            case SIR:
+                BlockRuntime.subtractImmediate(runtime, decoded.getR(), decoded.getAddress());
+                break;
+            case TRR:
+                BlockRuntime.testRegisters(runtime, decoded.getR(), decoded.getRy());
+                break;
+            case AND:
+                BlockRuntime.and(runtime, decoded.getR(), decoded.getRy());
+                break;
+            case ORR:
+                BlockRuntime.or(runtime, decoded.getR(), decoded.getRy());
+                break;
+            case NOT:
+                BlockRuntime.not(runtime, decoded.getR());
+                break;
+            case JZ:
+                BlockRuntime.jumpZero(runtime, decoded.getR(), BlockRuntime.effectiveAddress(runtime, decoded));
+                break;
+            case JNE:
+                BlockRuntime.jumpNotEqual(runtime, decoded.getR(), BlockRuntime.effectiveAddress(runtime, decoded));
+                break;
+            case JGE:
+                BlockRuntime.jumpGreaterOrEqual(runtime, decoded.getR(), BlockRuntime.effectiveAddress(runtime, decoded));
+                break;
+            case SOB:
+                BlockRuntime.subtractOneAndBranch(runtime, decoded.getR(), BlockRuntime.effectiveAddress(runtime, decoded));
+                break;
+            default:
+                BlockRuntime.interpret(runtime, decoded);
+                break;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package edu.gw.csci.simulator.cpu;
+
+import edu.gw.csci.simulator.isa.Decoder;
+import edu.gw.csci.simulator.isa.InstructionType;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * The cost table of a machine design, in cycles: the cycles each instruction takes to execute, by
+ * opcode class or by opcode, the latency of a memory access and of a hit in the
+ * {@link edu.gw.csci.simulator.memory.MemoryCache}, and the overhead of entering a trap or fault
+ * routine. A {@link CycleCounter} adds up the cycles of a run from the table.
+ * <p>
+ * Tables are loaded from properties files such as docs/timing.properties:
+ * <pre>
+ * class.LoadStore = 2        cycles of every instruction in an opcode class
+ * opcode.MLT = 8             cycles of one opcode, over its class
+ * memory.latency = 10        cycles of a read that misses the cache, and of every store
+ * cache.hit.latency = 1      cycles of a read that hits the cache
+ * trap.overhead = 20         cycles of entering a trap or fault routine
+ * </pre>
+ * Anything left out keeps its default. The classes are the groups of instruction handlers, see
+ * {@link edu.gw.csci.simulator.isa.Instruction#getInstructionClass()}.
+ */
+public class TimingModel {
+
+    public static final int DEFAULT_INSTRUCTION_CYCLES = 1;
+    public static final int DEFAULT_MEMORY_LATENCY = 10;
+    public static final int DEFAULT_CACHE_HIT_LATENCY = 1;
+    public static final int DEFAULT_TRAP_OVERHEAD = 10;
+
+    private static final String CLASS_PREFIX = "class.";
+    private static final String OPCODE_PREFIX = "opcode.";
+    private static final String MEMORY_LATENCY = "memory.latency";
+    private static final String CACHE_HIT_LATENCY = "cache.hit.latency";
+    private static final String TRAP_OVERHEAD = "trap.overhead";
+
+    private static final Decoder DECODER = new Decoder();
+
+    private final int[] opcodeCycles = new int[InstructionType.OPCODE_COUNT];
+    private int memoryLatency = DEFAULT_MEMORY_LATENCY;
+    private int cacheHitLatency = DEFAULT_CACHE_HIT_LATENCY;
+    private int trapOverhead = DEFAULT_TRAP_OVERHEAD;
+
+    public TimingModel() {
+        for (InstructionType type : InstructionType.values()) {
+            opcodeCycles[type.getOpCode()] = DEFAULT_INSTRUCTION_CYCLES;
+        }
+    }
+
+    /**
+     * Reads a cost table, class entries first so that opcode entries override them.
+     *
+     * @param path The properties file
+     * @return The model, with defaults for whatever the file leaves out
+     * @throws IOException If the file can't be read, or has an unknown key or a value that is not
+     *                     a count of cycles
+     */
+    public static TimingModel load(Path path) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(path)) {
+            properties.load(reader);
+        }
+        TimingModel model = new TimingModel();
+        List<String> opcodeKeys = new ArrayList<>();
+        for (String key : properties.stringPropertyNames()) {
+            int cycles = parseCycles(path, key, properties.getProperty(key));
+            if (key.startsWith(CLASS_PREFIX)) {
+                String opcodeClass = key.substring(CLASS_PREFIX.length());
+                if (!model.setClassCycles(opcodeClass, cycles)) {
+                    throw new IOException(String.format("Unknown opcode class %s in %s", opcodeClass, path));
+                }
+            } else if (key.startsWith(OPCODE_PREFIX)) {
+                opcodeKeys.add(key);
+            } else if (key.equals(MEMORY_LATENCY)) {
+                model.setMemoryLatency(cycles);
+            } else if (key.equals(CACHE_HIT_LATENCY)) {
+                model.setCacheHitLatency(cycles);
+            } else if (key.equals(TRAP_OVERHEAD)) {
+                model.setTrapOverhead(cycles);
+            } else {
+                throw new IOException(String.format("Unknown timing key %s in %s", key, path));
+            }
+        }
+        for (String key : opcodeKeys) {
+            String opcode = key.substring(OPCODE_PREFIX.length());
+            try {
+                model.setOpcodeCycles(InstructionType.valueOf(opcode.toUpperCase()),
+                        parseCycles(path, key, properties.getProperty(key)));
+            } catch (IllegalArgumentException e) {
+                throw new IOException(String.format("Unknown opcode %s in %s", opcode, path));
+            }
+        }
+        return model;
+    }
+
+    private static int parseCycles(Path path, String key, String value) throws IOException {
+        try {
+            int cycles = Integer.parseInt(value.trim());
+            if (cycles >= 0) {
+                return cycles;
+            }
+        } catch (NumberFormatException e) {
+            //Reported below
+        }
+        throw new IOException(String.format("%s in %s is not a count of cycles: %s", key, path, value));
+    }
+
+    /**
+     * Sets the cycles of every opcode of a class.
+     *
+     * @param opcodeClass The class, such as LoadStore
+     * @return False if no opcode belongs to the class
+     */
+    public boolean setClassCycles(String opcodeClass, int cycles) {
+        boolean found = false;
+        for (InstructionType type : InstructionType.values()) {
+            if (DECODER.getInstruction(type).getInstructionClass().equals(opcodeClass)) {
+                opcodeCycles[type.getOpCode()] = cycles;
+                found = true;
+            }
+        }
+        return found;
+    }
+
+    public void setOpcodeCycles(InstructionType type, int cycles) {
+        opcodeCycles[type.getOpCode()] = cycles;
+    }
+
+    /**
+     * @return The cycles the instruction takes to execute, not counting its memory accesses
+     */
+    public int getOpcodeCycles(InstructionType type) {
+        return opcodeCycles[type.getOpCode()];
+    }
+
+    public int getMemoryLatency() {
+        return memoryLatency;
+    }
+
+    public void setMemoryLatency(int memoryLatency) {
+        this.memoryLatency = memoryLatency;
+    }
+
+    public int getCacheHitLatency() {
+        return cacheHitLatency;
+    }
+
+    public void setCacheHitLatency(int cacheHitLatency) {
+        this.cacheHitLatency = cacheHitLatency;
+    }
+
+    public int getTrapOverhead() {
+        return trapOverhead;
+    }
+
+    public void setTrapOverhead(int trapOverhead) {
+        this.trapOverhead = trapOverhead;
+    }
+
+    /**
+     * @return The cycles of every opcode, indexed by opcode
+     */
+    int[] getOpcodeCycles() {
+        return opcodeCycles.clone();
+    }
+}
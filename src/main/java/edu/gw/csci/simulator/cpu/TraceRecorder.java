@@ -0,0 +1,169 @@
+package edu.gw.csci.simulator.cpu;
+
+import edu.gw.csci.simulator.isa.AddressingMode;
+import edu.gw.csci.simulator.isa.DecodedInstruction;
+import edu.gw.csci.simulator.isa.InstructionType;
+import edu.gw.csci.simulator.memory.AllMemory;
+import edu.gw.csci.simulator.memory.FetchListener;
+import edu.gw.csci.simulator.memory.StoreListener;
+import edu.gw.csci.simulator.registers.AllRegisters;
+import edu.gw.csci.simulator.registers.Register;
+import edu.gw.csci.simulator.registers.RegisterType;
+import edu.gw.csci.simulator.trace.TraceRecord;
+import edu.gw.csci.simulator.trace.TraceWriter;
+import edu.gw.csci.simulator.utils.BitConversion;
+
+/**
+ * Collects what one instruction does, from the memory listeners and the registers around it, and
+ * hands it to a {@link TraceWriter} as one record once the instruction retires or faults. The first
+ * read and write go into the record, any further ones into the side stream as they happen. The
+ * effective address comes from the decoded instruction: its fields and index register for a direct
+ * address, and the first read, which is the pointer, for an indirect one.
+ */
+class TraceRecorder implements FetchListener, StoreListener {
+
+    private final TraceWriter writer;
+    private final Register pc, ir, cc;
+    private final Register[] index;
+
+    private boolean open, indirect;
+    private int address, ccBefore, flags, ea;
+    private int readAddress, readWord, writeAddress, writeWord;
+
+    TraceRecorder(TraceWriter writer, AllMemory memory) {
+        this.writer = writer;
+        AllRegisters registers = memory.getAllRegisters();
+        this.pc = registers.getRegister(RegisterType.PC);
+        this.ir = registers.getRegister(RegisterType.IR);
+        this.cc = registers.getRegister(RegisterType.CC);
+        this.index = new Register[]{null, registers.getRegister(RegisterType.X1),
+                registers.getRegister(RegisterType.X2), registers.getRegister(RegisterType.X3)};
+    }
+
+    /**
+     * Starts the record of the instruction at the PC, before it is fetched.
+     */
+    void begin() {
+        address = pc.getWord();
+        this.ccBefore = cc.getWord();
+        flags = 0;
+        indirect = false;
+        open = true;
+    }
+
+    /**
+     * Takes the effective address of the fetched instruction, before it executes. No index register
+     * is changed by an instruction that indexes, so the address is the one the instruction forms.
+     */
+    void decoded(DecodedInstruction decoded) {
+        InstructionType type = decoded.getInstructionType();
+        if (!formsAddress(type)) {
+            return;
+        }
+        AddressingMode mode = type.getAddressingMode();
+        if (mode != AddressingMode.IMMEDIATE && decoded.isIndirect()) {
+            indirect = true;
+            return;
+        }
+        ea = decoded.getAddress();
+        if (mode == AddressingMode.INDEXED && decoded.getIX() != 0) {
+            ea += BitConversion.toSigned(index[decoded.getIX()].getWord());
+        }
+        flags |= TraceRecord.HAS_EA;
+    }
+
+    /**
+     * The instruction's own fetch is not one of its reads.
+     */
+    @Override
+    public void fetchedInstruction(int index, int word, boolean hit) {
+    }
+
+    @Override
+    public void fetched(int index, int word, boolean hit) {
+        if (!open) {
+            return;
+        }
+        if ((flags & TraceRecord.HAS_READ) != 0) {
+            flags |= TraceRecord.MORE_READS;
+            writer.writeAccess(false, index, word);
+            return;
+        }
+        flags |= TraceRecord.HAS_READ;
+        readAddress = index;
+        readWord = word;
+    }
+
+    @Override
+    public void stored(int index, int word) {
+        if (!open) {
+            return;
+        }
+        if ((flags & TraceRecord.HAS_WRITE) != 0) {
+            flags |= TraceRecord.MORE_WRITES;
+            writer.writeAccess(true, index, word);
+            return;
+        }
+        flags |= TraceRecord.HAS_WRITE;
+        writeAddress = index;
+        writeWord = word;
+    }
+
+    /**
+     * Writes the record of the instruction.
+     *
+     * @param fault True if the instruction faulted instead of retiring
+     */
+    void finish(boolean fault) {
+        if (!open) {
+            return;
+        }
+        open = false;
+        if (indirect && (flags & TraceRecord.HAS_READ) != 0) {
+            //Faulting on the pointer leaves no read, and no address
+            ea = readWord;
+            flags |= TraceRecord.HAS_EA;
+        }
+        int ccAfter = cc.getWord();
+        if (ccAfter != ccBefore) {
+            flags |= TraceRecord.CC_CHANGED;
+        }
+        if (fault) {
+            flags |= TraceRecord.FAULT;
+        }
+        //Fields left over from an earlier instruction are dropped by their flag
+        boolean read = (flags & TraceRecord.HAS_READ) != 0;
+        boolean write = (flags & TraceRecord.HAS_WRITE) != 0;
+        writer.write(address, ir.getWord(), (flags & TraceRecord.HAS_EA) != 0 ? ea : 0, ccAfter, flags,
+                read ? readAddress : 0, read ? readWord : 0,
+                write ? writeAddress : 0, write ? writeWord : 0);
+    }
+
+    TraceWriter getWriter() {
+        return writer;
+    }
+
+    /**
+     * @return Whether the instruction's handler forms an effective address, which all do but HLT,
+     * TRAP, the register to register, shift and rotate, and IO instructions
+     */
+    private static boolean formsAddress(InstructionType type) {
+        switch (type) {
+            case HLT:
+            case TRAP:
+            case MLT:
+            case DVD:
+            case TRR:
+            case AND:
+            case ORR:
+            case NOT:
+            case SRC:
+            case RRC:
+            case IN:
+            case OUT:
+                return false;
+            default:
+                return true;
+        }
+    }
+}
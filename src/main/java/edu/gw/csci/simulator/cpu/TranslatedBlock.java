@@ -0,0 +1,56 @@
+package edu.gw.csci.simulator.cpu;
+
+import edu.gw.csci.simulator.isa.DecodedInstruction;
+
+import java.lang.invoke.MethodHandle;
+
+/**
+ * A basic block that the {@link BlockTranslator} compiled into a generated class. The block runs
+ * from its start address up to and including a transfer instruction, or up to the instruction
+ * before a HLT, TRAP or illegal opcode, which are left to the interpreter.
+ */
+final class TranslatedBlock {
+
+    private final int start;
+    private final DecodedInstruction[] decoded;
+    private final MethodHandle code;
+
+    /**
+     * @param start   The address of the first instruction
+     * @param decoded The instructions of the block, in order
+     * @param code    The static run method of the generated class
+     */
+    TranslatedBlock(int start, DecodedInstruction[] decoded, MethodHandle code) {
+        this.start = start;
+        this.decoded = decoded;
+        this.code = code;
+    }
+
+    /**
+     * Runs the block. A {@link edu.gw.csci.simulator.exceptions.SimulatorException} leaves it at the
+     * instruction that raised it, with the instructions before it retired.
+     *
+     * @param runtime The machine state to run on
+     */
+    void execute(BlockRuntime runtime) {
+        try {
+            code.invokeExact(runtime, decoded);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            //run declares no checked exceptions
+            throw new IllegalStateException(e);
+        }
+    }
+
+    int getStart() {
+        return start;
+    }
+
+    /**
+     * @return The number of instructions in the block
+     */
+    int getLength() {
+        return decoded.length;
+    }
+}
@@ -1,28 +1,19 @@
 package edu.gw.csci.simulator.cpu;
 
-import edu.gw.csci.simulator.Bits;
 import edu.gw.csci.simulator.exceptions.*;
 import edu.gw.csci.simulator.memory.AllMemory;
-import edu.gw.csci.simulator.memory.Memory;
-import edu.gw.csci.simulator.memory.MemoryChunk;
+import edu.gw.csci.simulator.memory.MemoryBackend;
 import edu.gw.csci.simulator.registers.AllRegisters;
-import edu.gw.csci.simulator.registers.Register;
-import edu.gw.csci.simulator.registers.RegisterDecorator;
 import edu.gw.csci.simulator.registers.RegisterType;
-import edu.gw.csci.simulator.utils.BitConversion;
-import javafx.scene.control.TableView;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import java.util.BitSet;
-
 public class TrapController {
 
-    private CPU cpu;
     private AllMemory allMemory;
     private AllRegisters allRegisters;
 
-    private TableView<? extends Bits> registerTable, memoryTable;
+    private Runnable faultListener;
 
     private static final Logger LOGGER = LogManager.getLogger(SimulatorException.class);
 
@@ -35,102 +26,93 @@ public class TrapController {
             EXCEPTION_TABLE_SIZE = 16;
 
     public TrapController(CPU cpu) {
-        this.cpu = cpu;
         this.allMemory = cpu.getAllMemory();
         this.allRegisters = allMemory.getAllRegisters();
     }
 
     /**
-     * In the case of a cell edit event, we want to ensure that the
-     * event is closed in case of a fault. This setter provides the
-     * means to do this.
+     * In the case of a cell edit event, the GUI wants to ensure that the
+     * event is closed in case of a fault. The listener is run once the PC
+     * has been pointed at a trap or fault routine; headless runs leave it unset.
      *
-     * @param registerTable The register table when running the GUI
-     * @param memoryTable   The memory table when running the GUI
+     * @param faultListener The callback, or null to remove it
      */
-    public void setTables(TableView<Register> registerTable, TableView<MemoryChunk> memoryTable) {
-        this.registerTable = registerTable;
-        this.memoryTable = memoryTable;
+    public void setFaultListener(Runnable faultListener) {
+        this.faultListener = faultListener;
     }
 
 
     /**
-     * Performs all of the logic associated with a trap, meaning that
-     * we save the contents of PC to memory location {@link TrapController#TRAP_PC_LOCATION}, and load the
-     * PC with the contents of memory location {@link TrapController#HALT_POINTER_ROUTINE}. This value is defaulted
-     * to 6, which if unmodified, instructs the simulator to halt.
+     * Enters a trap or fault routine. The contents of PC plus 1 are saved to memory location
+     * {@link TrapController#TRAP_PC_LOCATION}, and the PC is loaded with the routine. Trap routines are found
+     * through the table pointed to by memory location {@link TrapController#HALT_POINTER_ROUTINE}, faults go to the
+     * location in {@link TrapController#HALT_POINTER_FAULT_LOCATION}. Both default to
+     * {@link TrapController#HALT_LOCATION}, whose HLT returns straight to the saved PC.
+     * <p>
+     * Nothing is executed here: the CPU carries on fetching from the routine, and its HLT
+     * returns to the saved PC, see {@link CPU#execute()}.
+     *
+     * @param opCode     The trap code, or the {@link SimulatorException#getOpcode() op code} of the fault
+     * @param runRoutine True for the TRAP instruction, false for a machine fault
      */
     public void setFault(int opCode, boolean runRoutine) {
         //Set the machine fault register
-        Register machineFaultRegister = allRegisters.getRegister(RegisterType.MFR);
-        new RegisterDecorator(machineFaultRegister).setIntegerValue(opCode);
+        allRegisters.setWord(RegisterType.MFR, opCode);
 
         //Save off the current PC, plus 1
-        Register pcRegister = allRegisters.getRegister(RegisterType.PC);
-        RegisterDecorator pcDecorator = new RegisterDecorator(pcRegister);
-        int nextValue = pcDecorator.toInt() + 1;
-        allMemory.store(TRAP_PC_LOCATION, BitConversion.convert(nextValue), false);
+        int nextValue = allRegisters.getWord(RegisterType.PC) + 1;
+        allMemory.storeWord(TRAP_PC_LOCATION, nextValue, false);
 
         //Set the next instruction to the trap routine
         int pointTo = (runRoutine) ? HALT_POINTER_ROUTINE : HALT_POINTER_FAULT_LOCATION;
-        LOGGER.info("Error routine pointing to {}", pointTo);
-
-        BitSet trapMemory = allMemory.fetch(pointTo, false);
-        int pointer = (runRoutine) ? BitConversion.convert(trapMemory) + opCode: BitConversion.convert(trapMemory);
-        if(runRoutine){
-            LOGGER.info("Resolved routine at location: {}", pointer);
+        int trapMemory = allMemory.fetchWord(pointTo, false);
+        int pointer = (runRoutine) ? trapMemory + opCode : trapMemory;
+        if (LOGGER.isInfoEnabled()) {
+            LOGGER.info("Error routine pointing to {}", pointTo);
+            if (runRoutine) {
+                LOGGER.info("Resolved routine at location: {}", pointer);
+            }
+            String mess = (runRoutine) ? String.format("Excecuting trap routine: %d ", opCode) :
+                    String.format("Exception occured, executing fault location: %d", HALT_POINTER_FAULT_LOCATION);
+            LOGGER.info(mess);
         }
-        pcDecorator.setIntegerValue(pointer);
+        allRegisters.setWord(RegisterType.PC, pointer);
 
-        //If the fault occurs while editing, refresh
-        if (registerTable != null) {
-            registerTable.edit(-1, null);
-            registerTable.refresh();
+        //If the fault occurs while editing, let the GUI refresh
+        if (faultListener != null) {
+            faultListener.run();
         }
-        if (memoryTable != null) {
-            memoryTable.edit(-1, null);
-            memoryTable.refresh();
-        }
-
-        //LOGGER.info("Excecuting trap routine {} ", opCode);
-        String mess = (runRoutine) ? String.format("Excecuting trap routine: %d ", opCode) :
-                String.format("Exception occured, executing fault location: %d", HALT_POINTER_FAULT_LOCATION);
-
-        LOGGER.info(mess);
-        cpu.execute();
     }
 
+    /**
+     * Leaves a trap or fault routine, by loading the PC saved at memory location {@link TrapController#TRAP_PC_LOCATION}.
+     */
+    public void returnFromTrap() {
+        int oldPC = allMemory.fetchWord(TRAP_PC_LOCATION, false);
+        LOGGER.info("Finished trap routine, resuming to {}", oldPC);
+        allRegisters.setWord(RegisterType.PC, oldPC);
+    }
 
     /**
      * This routine is used by the {@link edu.gw.csci.simulator.isa.instructions.Miscellaneous.TRAP TRAP} instruction
-     * in order to determine what type of exception to raise. This method returns the proper exception, with a
-     * default case of {@link IllegalTrapCode}, in order for another routine to throw.
+     * in order to determine which routine to run. Known trap codes select their own routine, any other
+     * code selects the routine of {@link IllegalTrapCode}.
      *
-     * @param value The error code
-     * @return The desired exception
+     * @param value The trap code of the instruction
+     * @return The index of the routine in the trap table
      */
-    public static SimulatorException getRoutineException(int value) {
-        SimulatorException ex;
+    public static int getRoutineCode(int value) {
         switch (value) {
             case IllegalMemoryAccess.OP_CODE:
-                ex = new IllegalMemoryAccess("Received trap code: illegal memory access", true);
-                break;
             case IllegalOpcode.OP_CODE:
-                ex = new IllegalOpcode("Received trap code: illegal op code", true);
-                break;
             case IllegalRegisterAccess.OP_CODE:
-                ex = new IllegalRegisterAccess("Received trap code: illegal register access", true);
-                break;
             case IllegalValue.OP_CODE:
-                ex = new IllegalValue("Received trap code: illegal values", true);
-                break;
             case MemoryOutOfBounds.OP_CODE:
-                ex = new MemoryOutOfBounds("Received trap code: memory out of bounds", true);
-                break;
+                return value;
             default:
-                ex = new IllegalTrapCode("Received trap code: illegal trap code", true);
+                LOGGER.error("Received trap code: illegal trap code");
+                return IllegalTrapCode.OP_CODE;
         }
-        return ex;
     }
 
     /**
@@ -144,13 +126,12 @@ public class TrapController {
                 EXCEPTION_TABLE_SIZE,
                 HALT_LOCATION
         );
-        Memory memory = allMemory.getMemory();
-        memory.set(HALT_POINTER_ROUTINE, BitConversion.convert(EXCEPTION_TABLE_POINTER));
-        BitSet defaultPointer = BitConversion.convert(HALT_LOCATION);
+        MemoryBackend memory = allMemory.getMemory();
+        memory.write(HALT_POINTER_ROUTINE, EXCEPTION_TABLE_POINTER);
         for (int i = 0; i < EXCEPTION_TABLE_SIZE; i++) {
-            memory.set(EXCEPTION_TABLE_POINTER + i, defaultPointer);
+            memory.write(EXCEPTION_TABLE_POINTER + i, HALT_LOCATION);
         }
         LOGGER.info("Setting default machine fault pointer to {}", HALT_LOCATION);
-        memory.set(HALT_POINTER_FAULT_LOCATION, BitConversion.convert(HALT_LOCATION));
+        memory.write(HALT_POINTER_FAULT_LOCATION, HALT_LOCATION);
     }
 }
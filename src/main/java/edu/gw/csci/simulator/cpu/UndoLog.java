@@ -0,0 +1,218 @@
+package edu.gw.csci.simulator.cpu;
+
+import edu.gw.csci.simulator.memory.AllMemory;
+import edu.gw.csci.simulator.memory.OverwriteListener;
+import edu.gw.csci.simulator.registers.AllRegisters;
+import edu.gw.csci.simulator.registers.Register;
+import edu.gw.csci.simulator.registers.RegisterType;
+
+import java.util.ArrayDeque;
+
+/**
+ * The history {@link CPU#stepBack(int)} walks back through: for each of the last instructions, the
+ * register words, counters and console position from before it, and the words its stores overwrote.
+ * <p>
+ * Everything lives in primitive arrays used as rings, one entry per instruction and one per
+ * overwritten word, so recording an instruction doesn't allocate. Once either ring is full, the
+ * oldest instructions are forgotten; if a single instruction stores more words than the word ring
+ * holds, the ring doubles instead, so every instruction in the log can be undone in full. The
+ * lines read by IN are the exception, and are kept in a deque. Recording an instruction copies {@link RegisterType every register}, which is cheap
+ * next to executing it, so the log can stay on for long runs.
+ */
+public class UndoLog implements OverwriteListener {
+
+    /**
+     * The number of instructions kept by default
+     */
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    /**
+     * Stores per instruction the word ring is sized for. Most instructions store at most one word,
+     * a fault stores one more, and the vector instructions store a few.
+     */
+    private static final int WRITES_PER_INSTRUCTION = 2;
+
+    private final Register[] registers;
+    private final int capacity, mask;
+    private int writeCapacity, writeMask;
+
+    private final char[] registerWords;
+    private final long[] instructionCounts;
+    private final int[] trapDepths;
+    private final int[] outputSizes;
+    private final long[] firstWrites;
+    private final boolean[] consumedInput;
+
+    private int[] writeAddresses;
+    private char[] writeWords;
+
+    /**
+     * Lines read by IN, oldest first, for the instructions still in the log
+     */
+    private final ArrayDeque<String> inputs = new ArrayDeque<>();
+
+    //Absolute positions: entries in [tail, head) and words in [writeTail, writeHead) are in the log
+    private long head, tail, writeHead, writeTail;
+    private boolean open;
+
+    /**
+     * @param capacity The number of instructions to keep, rounded up to a power of two so positions
+     *                 wrap with a mask
+     */
+    UndoLog(AllRegisters allRegisters, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Undo log capacity must be positive: " + capacity);
+        }
+        RegisterType[] registerTypes = RegisterType.values();
+        this.registers = new Register[registerTypes.length];
+        for (RegisterType registerType : registerTypes) {
+            registers[registerType.ordinal()] = allRegisters.getRegister(registerType);
+        }
+        this.capacity = (capacity == 1) ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.writeCapacity = Math.max(this.capacity * WRITES_PER_INSTRUCTION, 64);
+        this.mask = this.capacity - 1;
+        this.writeMask = writeCapacity - 1;
+        this.registerWords = new char[this.capacity * registers.length];
+        this.instructionCounts = new long[this.capacity];
+        this.trapDepths = new int[this.capacity];
+        this.outputSizes = new int[this.capacity];
+        this.firstWrites = new long[this.capacity];
+        this.consumedInput = new boolean[this.capacity];
+        this.writeAddresses = new int[writeCapacity];
+        this.writeWords = new char[writeCapacity];
+    }
+
+    /**
+     * Opens the entry of the instruction about to run. Stores and console reads until
+     * {@link UndoLog#finish()} belong to it.
+     */
+    void record(long instructionCount, int trapDepth, int outputSize) {
+        if (head - tail == capacity) {
+            forgetOldest();
+        }
+        int slot = ((int) head & mask);
+        int base = slot * registers.length;
+        for (int i = 0; i < registers.length; i++) {
+            registerWords[base + i] = (char) registers[i].getWord();
+        }
+        instructionCounts[slot] = instructionCount;
+        trapDepths[slot] = trapDepth;
+        outputSizes[slot] = outputSize;
+        firstWrites[slot] = writeHead;
+        consumedInput[slot] = false;
+        head++;
+        open = true;
+    }
+
+    /**
+     * Closes the entry of the instruction that just retired or faulted.
+     */
+    void finish() {
+        open = false;
+    }
+
+    @Override
+    public void overwriting(int index, int oldWord) {
+        if (!open) {
+            //A store outside any instruction, such as from the GUI, is not part of the history
+            return;
+        }
+        //Make room by forgetting whole instructions, but never the one being recorded
+        while (writeHead - writeTail == writeCapacity && head - tail > 1) {
+            forgetOldest();
+        }
+        if (writeHead - writeTail == writeCapacity) {
+            growWrites();
+        }
+        int slot = ((int) writeHead & writeMask);
+        writeAddresses[slot] = index;
+        writeWords[slot] = (char) oldWord;
+        writeHead++;
+    }
+
+    /**
+     * Notes that the instruction being recorded read a line of console input.
+     */
+    void consumed(String input) {
+        if (!open) {
+            return;
+        }
+        consumedInput[((int) (head - 1) & mask)] = true;
+        inputs.addLast(input);
+    }
+
+    /**
+     * Undoes the newest instruction in the log: its stores are put back newest first, then the
+     * registers, and the CPU gets its counters and console back.
+     *
+     * @return False if the log was empty
+     */
+    boolean undo(CPU cpu, AllMemory memory) {
+        if (head == tail) {
+            return false;
+        }
+        open = false;
+        head--;
+        int slot = ((int) head & mask);
+        long firstWrite = Math.max(firstWrites[slot], writeTail);
+        while (writeHead > firstWrite) {
+            writeHead--;
+            int writeSlot = ((int) writeHead & writeMask);
+            memory.restoreWord(writeAddresses[writeSlot], writeWords[writeSlot]);
+        }
+        int base = slot * registers.length;
+        for (int i = 0; i < registers.length; i++) {
+            registers[i].setWord(registerWords[base + i]);
+        }
+        String input = consumedInput[slot] ? inputs.pollLast() : null;
+        cpu.undone(instructionCounts[slot], trapDepths[slot], outputSizes[slot], input);
+        return true;
+    }
+
+    /**
+     * Doubles the word ring, for an instruction that stored more words than it held.
+     */
+    private void growWrites() {
+        int[] addresses = new int[writeCapacity * 2];
+        char[] words = new char[writeCapacity * 2];
+        int newMask = addresses.length - 1;
+        for (long position = writeTail; position < writeHead; position++) {
+            addresses[(int) position & newMask] = writeAddresses[(int) position & writeMask];
+            words[(int) position & newMask] = writeWords[(int) position & writeMask];
+        }
+        writeAddresses = addresses;
+        writeWords = words;
+        writeCapacity = addresses.length;
+        writeMask = newMask;
+    }
+
+    private void forgetOldest() {
+        int slot = ((int) tail & mask);
+        if (consumedInput[slot]) {
+            inputs.pollFirst();
+        }
+        tail++;
+        writeTail = (tail == head) ? writeHead : Math.max(writeTail, firstWrites[((int) tail & mask)]);
+    }
+
+    /**
+     * Forgets every instruction, such as after the machine was changed outside of execution.
+     */
+    public void clear() {
+        open = false;
+        tail = head;
+        writeTail = writeHead;
+        inputs.clear();
+    }
+
+    /**
+     * @return The number of instructions that can be stepped back
+     */
+    public int size() {
+        return (int) (head - tail);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+}
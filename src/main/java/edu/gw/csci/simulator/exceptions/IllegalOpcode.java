@@ -43,9 +43,6 @@ public class IllegalOpcode extends SimulatorException {
     public IllegalOpcode(String message) {
         super(message);
     }
-    public IllegalOpcode(String message, boolean runRoutine) {
-        super(message, runRoutine);
-    }
 
     @Override
     public int getOpcode() {
@@ -0,0 +1,133 @@
+package edu.gw.csci.simulator.farm;
+
+import edu.gw.csci.simulator.cpu.Machine;
+import edu.gw.csci.simulator.gui.Program;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One run of a program on its own {@link Machine} in a {@link SimulationFarm}: the program, the
+ * console input and preset memory it starts with, and how the machine is configured. Jobs may share
+ * a {@link Program}, since loading only reads its lines.
+ * <p>
+ * A job can also carry on with a machine that is already set up, such as a {@link Machine#fork() fork}
+ * of a paused machine. Nothing is loaded then: the inputs and stores are added to the machine as it
+ * is, and translation and fusion stay as the machine has them.
+ */
+public class FarmJob {
+
+    /**
+     * No limit on the number of instructions
+     */
+    public static final long UNLIMITED = Long.MAX_VALUE;
+
+    private final String name;
+    private final Program program;
+    private final int start;
+    private final Machine machine;
+    private final List<String> inputs = new ArrayList<>();
+    private final Map<Integer, Integer> stores = new LinkedHashMap<>();
+    private boolean translation;
+    private boolean fusion;
+    private long instructionLimit = UNLIMITED;
+
+    public FarmJob(String name, Program program, int start) {
+        this.name = name;
+        this.program = program;
+        this.start = start;
+        this.machine = null;
+    }
+
+    /**
+     * @param machine A machine to run from its current PC, which no other job or thread may use
+     */
+    public FarmJob(String name, Machine machine) {
+        this.name = name;
+        this.program = null;
+        this.start = Machine.DEFAULT_LOAD_LOCATION;
+        this.machine = machine;
+    }
+
+    public FarmJob(String name, Program program) {
+        this(name, program, Machine.DEFAULT_LOAD_LOCATION);
+    }
+
+    /**
+     * Queues a line of console input, read by the IN instruction.
+     */
+    public void addInput(String input) {
+        inputs.add(input);
+    }
+
+    /**
+     * Presets a memory location before the program is loaded.
+     */
+    public void store(int address, int value) {
+        stores.put(address, value);
+    }
+
+    public void setTranslation(boolean translation) {
+        this.translation = translation;
+    }
+
+    public void setFusion(boolean fusion) {
+        this.fusion = fusion;
+    }
+
+    /**
+     * Caps the run, so a program that never halts can't hold a worker forever.
+     *
+     * @param instructionLimit The number of instructions after which the job is stopped
+     */
+    public void setInstructionLimit(long instructionLimit) {
+        if (instructionLimit <= 0) {
+            throw new IllegalArgumentException("Instruction limit must be positive: " + instructionLimit);
+        }
+        this.instructionLimit = instructionLimit;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return The program to load, or null for a job on a prepared machine
+     */
+    public Program getProgram() {
+        return program;
+    }
+
+    /**
+     * @return The prepared machine, or null if the job builds its own
+     */
+    public Machine getMachine() {
+        return machine;
+    }
+
+    public int getStart() {
+        return start;
+    }
+
+    public List<String> getInputs() {
+        return inputs;
+    }
+
+    public Map<Integer, Integer> getStores() {
+        return stores;
+    }
+
+    public boolean isTranslation() {
+        return translation;
+    }
+
+    public boolean isFusion() {
+        return fusion;
+    }
+
+    public long getInstructionLimit() {
+        return instructionLimit;
+    }
+}
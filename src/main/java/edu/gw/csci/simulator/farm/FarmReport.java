@@ -0,0 +1,64 @@
+package edu.gw.csci.simulator.farm;
+
+import java.util.List;
+
+/**
+ * The results of one {@link SimulationFarm#run(List)}, in job order, with the aggregate throughput.
+ */
+public class FarmReport {
+
+    private final List<FarmResult> results;
+    private final long wallNanos;
+    private final int parallelism;
+
+    FarmReport(List<FarmResult> results, long wallNanos, int parallelism) {
+        this.results = results;
+        this.wallNanos = wallNanos;
+        this.parallelism = parallelism;
+    }
+
+    public List<FarmResult> getResults() {
+        return results;
+    }
+
+    public long getWallNanos() {
+        return wallNanos;
+    }
+
+    public long getTotalInstructions() {
+        long total = 0;
+        for (FarmResult result : results) {
+            total += result.getInstructionCount();
+        }
+        return total;
+    }
+
+    public int getFailures() {
+        int failures = 0;
+        for (FarmResult result : results) {
+            if (result.getError() != null) {
+                failures++;
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * @return Instructions per second over all jobs, against the wall clock time of the whole farm run
+     */
+    public double getInstructionsPerSecond() {
+        return (wallNanos == 0) ? 0 : getTotalInstructions() / (wallNanos / 1e9);
+    }
+
+    public double getJobsPerSecond() {
+        return (wallNanos == 0) ? 0 : results.size() / (wallNanos / 1e9);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Farm ran %d jobs (%d failed) on %d workers in %.3f ms: %d instructions, " +
+                        "%.0f instructions/second, %.1f jobs/second",
+                results.size(), getFailures(), parallelism, wallNanos / 1e6, getTotalInstructions(),
+                getInstructionsPerSecond(), getJobsPerSecond());
+    }
+}
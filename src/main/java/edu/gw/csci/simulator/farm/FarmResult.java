@@ -0,0 +1,82 @@
+package edu.gw.csci.simulator.farm;
+
+import edu.gw.csci.simulator.registers.AllRegisters;
+import edu.gw.csci.simulator.registers.RegisterType;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * What a {@link FarmJob} left behind: its console output, the final registers, and how long it ran.
+ */
+public class FarmResult {
+
+    private final String name;
+    private final boolean halted;
+    private final long instructionCount;
+    private final long elapsedNanos;
+    private final List<String> output;
+    private final Map<RegisterType, Integer> registers;
+    private final String error;
+
+    FarmResult(String name, boolean halted, long instructionCount, long elapsedNanos, List<String> output,
+               AllRegisters allRegisters, String error) {
+        this.name = name;
+        this.halted = halted;
+        this.instructionCount = instructionCount;
+        this.elapsedNanos = elapsedNanos;
+        this.output = output;
+        this.registers = new EnumMap<>(RegisterType.class);
+        if (allRegisters != null) {
+            for (RegisterType registerType : RegisterType.values()) {
+                registers.put(registerType, allRegisters.getWord(registerType));
+            }
+        }
+        this.error = error;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return True if the program reached HLT, false if it hit the instruction limit or failed
+     */
+    public boolean isHalted() {
+        return halted;
+    }
+
+    public long getInstructionCount() {
+        return instructionCount;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public List<String> getOutput() {
+        return output;
+    }
+
+    /**
+     * @return The final value of the register, or null if the job failed before it had a machine
+     */
+    public Integer getRegister(RegisterType registerType) {
+        return registers.get(registerType);
+    }
+
+    /**
+     * @return What stopped the job, or null if it ran normally
+     */
+    public String getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        String status = (error != null) ? "failed: " + error : (halted ? "halted" : "stopped at limit");
+        return String.format("%s: %s after %d instructions in %.3f ms", name, status, instructionCount,
+                elapsedNanos / 1e6);
+    }
+}
@@ -0,0 +1,137 @@
+package edu.gw.csci.simulator.farm;
+
+import edu.gw.csci.simulator.cpu.CPU;
+import edu.gw.csci.simulator.cpu.Machine;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Runs many independent {@link FarmJob}s, such as a grading batch or a parameter sweep, across the
+ * cores of one JVM. Every job gets its own {@link Machine}, and machines share no mutable state, so
+ * jobs run on the workers of a {@link ForkJoinPool} without any locking.
+ */
+public class SimulationFarm implements AutoCloseable {
+
+    private static final Logger LOGGER = LogManager.getLogger(SimulationFarm.class);
+
+    private final ForkJoinPool pool;
+
+    /**
+     * @param parallelism The number of jobs run at the same time
+     */
+    public SimulationFarm(int parallelism) {
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * A farm with one worker per available processor.
+     */
+    public SimulationFarm() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Runs every job to HLT or to its instruction limit, and waits for all of them. A job that fails
+     * is reported in its result and does not affect the others.
+     *
+     * @param jobs The jobs to run
+     * @return The results in the order of the jobs
+     * @throws InterruptedException If the calling thread is interrupted while waiting
+     */
+    public FarmReport run(List<FarmJob> jobs) throws InterruptedException {
+        List<Callable<FarmResult>> tasks = new ArrayList<>(jobs.size());
+        for (FarmJob job : jobs) {
+            tasks.add(() -> runJob(job));
+        }
+
+        long start = System.nanoTime();
+        List<Future<FarmResult>> futures = pool.invokeAll(tasks);
+        List<FarmResult> results = new ArrayList<>(futures.size());
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                results.add(futures.get(i).get());
+            } catch (ExecutionException e) {
+                results.add(new FarmResult(jobs.get(i).getName(), false, 0, 0, new ArrayList<>(), null,
+                        e.getCause().toString()));
+            }
+        }
+        FarmReport report = new FarmReport(results, System.nanoTime() - start, pool.getParallelism());
+        LOGGER.info(report);
+        return report;
+    }
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    /**
+     * Forks the paused machine once per list of console input, and runs the forks side by side. The
+     * forks share the parent's memory pages until they write to them.
+     *
+     * @param parent The machine to fork, which must have a copy on write memory and must not be running
+     * @param inputs The console input of each fork
+     * @return The results, one per fork in the order of the inputs
+     * @throws InterruptedException If the calling thread is interrupted while waiting
+     */
+    public FarmReport runForks(Machine parent, List<List<String>> inputs) throws InterruptedException {
+        List<FarmJob> jobs = new ArrayList<>(inputs.size());
+        for (int i = 0; i < inputs.size(); i++) {
+            FarmJob job = new FarmJob("fork#" + i, parent.fork());
+            for (String input : inputs.get(i)) {
+                job.addInput(input);
+            }
+            jobs.add(job);
+        }
+        return run(jobs);
+    }
+
+    /**
+     * Builds a fresh machine for the job, the same way the headless runner does, or takes the job's
+     * prepared machine, and runs it.
+     */
+    static FarmResult runJob(FarmJob job) {
+        Machine machine = job.getMachine();
+        boolean load = (machine == null);
+        if (load) {
+            machine = new Machine();
+            machine.initialize();
+            machine.getCpu().setTranslation(job.isTranslation());
+            machine.getCpu().setFusion(job.isFusion());
+        }
+        CPU cpu = machine.getCpu();
+        synchronized (cpu.consoleInput) {
+            cpu.consoleInput.addAll(job.getInputs());
+        }
+        for (Map.Entry<Integer, Integer> store : job.getStores().entrySet()) {
+            cpu.StoreValue(store.getKey(), store.getValue());
+        }
+
+        boolean halted = false;
+        String error = null;
+        long start = System.nanoTime();
+        try {
+            if (load) {
+                machine.load(job.getProgram(), job.getStart());
+            }
+            halted = cpu.execute(job.getInstructionLimit());
+        } catch (RuntimeException e) {
+            error = e.toString();
+        }
+        long elapsed = System.nanoTime() - start;
+        return new FarmResult(job.getName(), halted, cpu.getInstructionCount(), elapsed,
+                new ArrayList<>(cpu.consoleOutput), machine.getAllRegisters(), error);
+    }
+}
@@ -1,6 +1,9 @@
 package edu.gw.csci.simulator.gui;
 
+import edu.gw.csci.simulator.cpu.Breakpoints;
 import edu.gw.csci.simulator.cpu.CPU;
+import edu.gw.csci.simulator.cpu.CPURunner;
+import edu.gw.csci.simulator.cpu.MachineSnapshot;
 import edu.gw.csci.simulator.cpu.PipeLine;
 import edu.gw.csci.simulator.cpu.SimulatorFileReader;
 import edu.gw.csci.simulator.cpu.TrapController;
@@ -12,9 +15,11 @@ import edu.gw.csci.simulator.registers.RegisterDecorator;
 import edu.gw.csci.simulator.registers.RegisterType;
 import edu.gw.csci.simulator.utils.FloatingPointConvert;
 import edu.gw.csci.simulator.utils.FloatingPointsCalculate;
+import javafx.animation.AnimationTimer;
 import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
+import javafx.event.EventHandler;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
 import javafx.scene.control.cell.TextFieldTableCell;
@@ -75,6 +80,12 @@ public class Controller {
     @FXML
     private TextField InputWord;
 
+    @FXML
+    private TextField breakTarget;
+
+    @FXML
+    private TextField cacheSpec;
+
     private AllRegisters allRegisters;
     private Memory memory;
     private HashMap<String, Program> programs;
@@ -84,6 +95,19 @@ public class Controller {
 
     private TrapController trapController;
 
+    private CPURunner runner;
+    private MachineSnapshot savedState;
+    private boolean tablesChanged;
+    private long shownSlices;
+    private int shownOutputLines;
+
+    /**
+     * What the tables draw while the runner is running, copied from its last frame
+     */
+    private final AllRegisters frameRegisters = new AllRegisters();
+    private final Memory frameMemory;
+    private boolean showingFrame;
+
     /**
      * Both memory and registers are initialized to their default values.
      * The reserved memory location 1 is set to 6, as to execute a halt
@@ -94,6 +118,9 @@ public class Controller {
      */
     @FXML
     protected void runIPL() {
+        if (isRunning("initializing")) {
+            return;
+        }
         LOGGER.info("Initializing simulator");
         allRegisters.initialize();
         memory.initialize();
@@ -105,16 +132,49 @@ public class Controller {
         trapController.setDefaultExceptionTable();
     }
 
+    /**
+     * Keeps a snapshot of the whole machine, such as memory prepared for a program, to come back to
+     * with {@link Controller#restoreState()} instead of repeating the setup.
+     */
+    @FXML
+    private void saveState() {
+        if (!initialized) {
+            LOGGER.error("Initialize the machine before saving its state");
+            return;
+        }
+        if (isRunning("saving the state")) {
+            return;
+        }
+        savedState = cpu.snapshot();
+        LOGGER.info("Saved the machine state after {} instructions", savedState.getInstructionCount());
+    }
+
+    @FXML
+    private void restoreState() {
+        if (savedState == null) {
+            LOGGER.error("Save a state before restoring one");
+            return;
+        }
+        if (isRunning("restoring a state")) {
+            return;
+        }
+        cpu.restore(savedState);
+        shownOutputLines = -1;
+        LOGGER.info("Restored the machine state saved after {} instructions", savedState.getInstructionCount());
+    }
+
     public Controller() {
         this.allRegisters = new AllRegisters();
         this.memory = new Memory();
         this.programs = new HashMap<>();
+        this.frameMemory = new Memory(memory.getSize(), memory.getWordSize());
+        frameMemory.initialize();
 
         AllMemory allMemory = new AllMemory(memory, allRegisters, new MemoryCache());
         CPU cpu = new CPU(allMemory);
         this.cpu = cpu;
-        trapController = new TrapController(cpu);
-        SimulatorException.setTrapController(trapController);
+        trapController = cpu.getTrapController();
+        runner = new CPURunner(cpu);
     }
 
     @FXML
@@ -122,7 +182,143 @@ public class Controller {
         initializeRegisters();
         initializeMemory();
         initializePrograms();
-        trapController.setTables(registerTable, memoryTable);
+        //Faults are entered on the runner's thread
+        trapController.setFaultListener(() -> Platform.runLater(() -> {
+            registerTable.edit(-1, null);
+            registerTable.refresh();
+            memoryTable.edit(-1, null);
+            memoryTable.refresh();
+        }));
+        runner.setFinishedListener(() -> Platform.runLater(this::watchChanges));
+        watchChanges();
+        initializeRefresh();
+    }
+
+    /**
+     * Register and memory writes only mark the tables as changed, and the tables are redrawn at most
+     * once per frame. While the {@link CPURunner} is running, the machine belongs to its thread, so
+     * the writes are not watched and the machine is not read at all: the tables and the console draw
+     * the copy the runner publishes at the end of every slice.
+     */
+    private void initializeRefresh() {
+        new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                //Only this thread starts or resumes the runner, and both mark it running before the
+                //worker goes on, so a machine seen not running stays so
+                if (runner.getState() == CPURunner.State.RUNNING) {
+                    showFrame(runner.getFrame());
+                    return;
+                }
+                long slices = runner.getPublished();
+                if (!tablesChanged && !showingFrame && slices == shownSlices) {
+                    return;
+                }
+                tablesChanged = false;
+                showingFrame = false;
+                shownSlices = slices;
+                registerTable.refresh();
+                memoryTable.refresh();
+                int outputLines;
+                synchronized (cpu.consoleOutput) {
+                    outputLines = cpu.consoleOutput.size();
+                }
+                if (outputLines != shownOutputLines) {
+                    shownOutputLines = outputLines;
+                    SetconsoleOutput();
+                }
+            }
+        }.start();
+    }
+
+    private void showFrame(CPURunner.Frame frame) {
+        if (frame == null || (showingFrame && frame.getNumber() == shownSlices)) {
+            return;
+        }
+        MachineSnapshot snapshot = frame.getSnapshot();
+        for (RegisterType registerType : RegisterType.values()) {
+            frameRegisters.getRegister(registerType).setWord(snapshot.getRegister(registerType));
+        }
+        for (int i = 0; i < snapshot.getMemorySize(); i++) {
+            frameMemory.write(i, snapshot.getWord(i));
+        }
+        showingFrame = true;
+        shownSlices = frame.getNumber();
+        registerTable.refresh();
+        memoryTable.refresh();
+        List<String> output = snapshot.getConsoleOutput();
+        if (output.size() != shownOutputLines) {
+            shownOutputLines = output.size();
+            showConsoleOutput(output);
+        }
+    }
+
+    /**
+     * @return The register to draw: the live one, or its copy in the runner's last frame
+     */
+    private Register shown(Register register) {
+        return showingFrame ? frameRegisters.getRegister(register.getRegisterType()) : register;
+    }
+
+    /**
+     * @return The memory chunk to draw: the live one, or its copy in the runner's last frame
+     */
+    private MemoryChunk shown(MemoryChunk memoryChunk) {
+        return showingFrame ? frameMemory.get(memoryChunk.getIndex()) : memoryChunk;
+    }
+
+    private void watchChanges() {
+        allRegisters.setChangeListener(this::markChanged);
+        memory.setChangeListener(this::markChanged);
+        tablesChanged = true;
+    }
+
+    private void unwatchChanges() {
+        allRegisters.setChangeListener(null);
+        memory.setChangeListener(null);
+    }
+
+    private void markChanged() {
+        tablesChanged = true;
+    }
+
+    /**
+     * Only the runner's thread may touch the machine while it is running. A paused machine can be
+     * edited and stepped.
+     *
+     * @param action What was attempted, for the log
+     * @return True if the action has to wait
+     */
+    private boolean isRunning(String action) {
+        if (runner.getState() == CPURunner.State.RUNNING) {
+            LOGGER.error("Pause or stop the program before {}", action);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Edits go straight to registers and memory, which raise a {@link SimulatorException} for values
+     * they can't hold. The edit is dropped and the tables are redrawn; it is not a fault of the program.
+     *
+     * @param handler The edit commit handler
+     * @return The handler, with faults caught
+     */
+    private <S> EventHandler<TableColumn.CellEditEvent<S, String>> rejectFaults(
+            EventHandler<TableColumn.CellEditEvent<S, String>> handler) {
+        return t -> {
+            if (isRunning("editing")) {
+                registerTable.refresh();
+                memoryTable.refresh();
+                return;
+            }
+            try {
+                handler.handle(t);
+            } catch (SimulatorException e) {
+                registerTable.refresh();
+                memoryTable.refresh();
+            }
+        };
     }
 
     private void initializeCPU() {
@@ -130,7 +326,7 @@ public class Controller {
         cpu.consoleInput.clear();
         cpu.consoleOutput.clear();
         //initialize FileReader
-        SimulatorFileReader.initializeFileReader();
+        cpu.getFileReader().initializeFileReader();
     }
 
     /**
@@ -140,12 +336,12 @@ public class Controller {
      * This provides convenience throughout the simulators operation. Registers are modifiable within the console itself.
      */
     private void initializeRegisters() {
-        registerNameColumn.setCellValueFactory(cellData -> new RegisterDecorator(cellData.getValue()).getRegisterName());
-        registerDescriptionColumn.setCellValueFactory(cellData -> new RegisterDecorator(cellData.getValue()).getRegisterDescription());
+        registerNameColumn.setCellValueFactory(cellData -> new RegisterDecorator(shown(cellData.getValue())).getRegisterName());
+        registerDescriptionColumn.setCellValueFactory(cellData -> new RegisterDecorator(shown(cellData.getValue())).getRegisterDescription());
 
-        registerBinaryColumn.setCellValueFactory(cellData -> new BitDecorator<>(cellData.getValue()).toBinaryObservableString());
+        registerBinaryColumn.setCellValueFactory(cellData -> new BitDecorator<>(shown(cellData.getValue())).toBinaryObservableString());
         registerBinaryColumn.setCellFactory(TextFieldTableCell.forTableColumn());
-        registerBinaryColumn.setOnEditCommit((TableColumn.CellEditEvent<Register, String> t) -> {
+        registerBinaryColumn.setOnEditCommit(rejectFaults((TableColumn.CellEditEvent<Register, String> t) -> {
             if (!initialized) {
                 LOGGER.error("Initialize the machine before editing");
                 registerTable.refresh();
@@ -155,11 +351,11 @@ public class Controller {
             RegisterDecorator rd = new RegisterDecorator(register);
             rd.setBinaryValue(t.getNewValue());
             LOGGER.info("Setting register {} to {}", register.getName(), rd.toBinaryString());
-        });
+        }));
 
-        registerDecimalColumn.setCellValueFactory(cellData -> new RegisterDecorator(cellData.getValue()).toFloatOrIntObservableString());
+        registerDecimalColumn.setCellValueFactory(cellData -> new RegisterDecorator(shown(cellData.getValue())).toFloatOrIntObservableString());
         registerDecimalColumn.setCellFactory(TextFieldTableCell.forTableColumn());
-        registerDecimalColumn.setOnEditCommit((TableColumn.CellEditEvent<Register, String> t) -> {
+        registerDecimalColumn.setOnEditCommit(rejectFaults((TableColumn.CellEditEvent<Register, String> t) -> {
             if (!initialized) {
                 LOGGER.error("Initialize the machine before editing");
                 registerTable.refresh();
@@ -176,11 +372,11 @@ public class Controller {
             }
 
             LOGGER.info("Setting register {} to {}", register.getName(), rd.toInt());
-        });
+        }));
 
-        registerFloatColumn.setCellValueFactory(cellData -> new BitDecorator<>(cellData.getValue()).toFloatObservableString());
+        registerFloatColumn.setCellValueFactory(cellData -> new BitDecorator<>(shown(cellData.getValue())).toFloatObservableString());
         registerFloatColumn.setCellFactory(TextFieldTableCell.forTableColumn());
-        registerFloatColumn.setOnEditCommit((TableColumn.CellEditEvent<Register, String> t) -> {
+        registerFloatColumn.setOnEditCommit(rejectFaults((TableColumn.CellEditEvent<Register, String> t) -> {
             if (!initialized) {
                 LOGGER.error("Initialize the machine before editing");
                 registerTable.refresh();
@@ -191,14 +387,13 @@ public class Controller {
             //rd.setIntegerValue(t.getNewValue());
             register.setData(FloatingPointConvert.FloatConvert(Float.valueOf(t.getNewValue())));
             LOGGER.info("Setting register {} to {}", register.getName(), FloatingPointConvert.FloatConvert(register.getData()));
-        });
+        }));
 
         ObservableList<Register> registerList = FXCollections.observableArrayList();
         for (Map.Entry<RegisterType, Register> registerEntry : allRegisters.getRegisters()) {
             registerList.add(registerEntry.getValue());
         }
         registerTable.setItems(registerList);
-        allRegisters.bindTableView(registerTable);
     }
 
     /**
@@ -208,11 +403,11 @@ public class Controller {
      * This provides convenience throughout the simulator's operation.  Memory is modifiable within the console itself.
      */
     private void initializeMemory() {
-        memoryIndexColumn.setCellValueFactory(cellData -> new MemoryChunkDecorator(cellData.getValue()).getIndex());
+        memoryIndexColumn.setCellValueFactory(cellData -> new MemoryChunkDecorator(shown(cellData.getValue())).getIndex());
         memoryIndexColumn.setComparator(Comparator.comparingInt(Integer::parseInt));
-        memoryBinaryColumn.setCellValueFactory(cellData -> new BitDecorator<>(cellData.getValue()).toBinaryObservableString());
+        memoryBinaryColumn.setCellValueFactory(cellData -> new BitDecorator<>(shown(cellData.getValue())).toBinaryObservableString());
         memoryBinaryColumn.setCellFactory(TextFieldTableCell.forTableColumn());
-        memoryBinaryColumn.setOnEditCommit((TableColumn.CellEditEvent<MemoryChunk, String> t) -> {
+        memoryBinaryColumn.setOnEditCommit(rejectFaults((TableColumn.CellEditEvent<MemoryChunk, String> t) -> {
             if (!initialized) {
                 LOGGER.error("Initialize the machine before editing");
                 memoryTable.refresh();
@@ -227,11 +422,11 @@ public class Controller {
             md.setBinaryValue(t.getNewValue());
             LOGGER.debug("Setting memory location {} to {}", md.getIndex().toString(), md.toBinaryString());
             memoryTable.refresh();
-        });
+        }));
 
-        memoryDecimalColumn.setCellValueFactory(cellData -> new BitDecorator<>(cellData.getValue()).toLongObservableString());
+        memoryDecimalColumn.setCellValueFactory(cellData -> new BitDecorator<>(shown(cellData.getValue())).toLongObservableString());
         memoryDecimalColumn.setCellFactory(TextFieldTableCell.forTableColumn());
-        memoryDecimalColumn.setOnEditCommit((TableColumn.CellEditEvent<MemoryChunk, String> t) -> {
+        memoryDecimalColumn.setOnEditCommit(rejectFaults((TableColumn.CellEditEvent<MemoryChunk, String> t) -> {
             if (!initialized) {
                 LOGGER.error("Initialize the machine before editing");
                 memoryTable.refresh();
@@ -245,11 +440,11 @@ public class Controller {
             MemoryChunkDecorator md = new MemoryChunkDecorator(mem);
             md.setIntegerValue(t.getNewValue());
             LOGGER.debug("Setting memory location {} to {}", md.getIndex().toString(), md.toInt());
-        });
+        }));
 
-        memoryFloatColumn.setCellValueFactory(cellData -> new BitDecorator<>(cellData.getValue()).toFloatObservableString());
+        memoryFloatColumn.setCellValueFactory(cellData -> new BitDecorator<>(shown(cellData.getValue())).toFloatObservableString());
         memoryFloatColumn.setCellFactory(TextFieldTableCell.forTableColumn());
-        memoryFloatColumn.setOnEditCommit((TableColumn.CellEditEvent<MemoryChunk, String> t) -> {
+        memoryFloatColumn.setOnEditCommit(rejectFaults((TableColumn.CellEditEvent<MemoryChunk, String> t) -> {
             if (!initialized) {
                 LOGGER.error("Initialize the machine before editing");
                 memoryTable.refresh();
@@ -261,15 +456,14 @@ public class Controller {
             }
             MemoryChunk mem = t.getTableView().getItems().get(tablePosition);
             MemoryChunkDecorator md = new MemoryChunkDecorator(mem);
-            md.setValue(FloatingPointConvert.FloatConvert(Float.valueOf(t.getNewValue())));
+            md.setIntegerValue(FloatingPointConvert.FloatConvert(Float.valueOf(t.getNewValue())));
             //md.setIntegerValue(t.getNewValue());
             LOGGER.debug("Setting memory location {} to {}", md.getIndex().toString(), FloatingPointConvert.FloatConvert(md.getData()));
-        });
+        }));
 
         ObservableList<MemoryChunk> memoryList = FXCollections.observableArrayList();
         memoryList.addAll(Arrays.asList(memory.getMemory()));
         memoryTable.setItems(memoryList);
-        memory.bindTableView(memoryTable);
         memoryPagination.setPageFactory(pageIndex -> {
             int fromIndex = pageIndex * 32;
             int toIndex = Math.min(fromIndex + 32, memory.getSize());
@@ -348,18 +542,106 @@ public class Controller {
         });
     }
 
+    /**
+     * Runs the program on the {@link CPURunner}'s thread until it halts or is stopped, so the GUI
+     * stays responsive; the tables follow the run once per frame.
+     */
     @FXML
     private void runProgram() {
         if (!initialized) {
             LOGGER.error("Initialize the machine before running");
             return;
         }
+        if (runner.getState() != CPURunner.State.IDLE) {
+            LOGGER.error("The program is already running, resume or stop it first");
+            return;
+        }
         LOGGER.info("Running Program");
         String programName = programNameSelector.getValue();
         Program program = programs.get(programName);
         cpu.setProgram(program);
-        cpu.execute();
-        SetconsoleOutput();
+        unwatchChanges();
+        runner.start();
+    }
+
+    @FXML
+    private void pauseProgram() {
+        runner.pause();
+    }
+
+    @FXML
+    private void resumeProgram() {
+        runner.resume();
+    }
+
+    @FXML
+    private void stopProgram() {
+        runner.stop();
+    }
+
+    /**
+     * Sets or removes a breakpoint at the address in the break field. A run pauses before the
+     * instruction there, and resuming executes it.
+     */
+    @FXML
+    private void toggleBreakpoint() {
+        if (isRunning("changing breakpoints")) {
+            return;
+        }
+        Breakpoints breakpoints = cpu.getBreakpoints();
+        try {
+            int address = Integer.parseInt(breakTarget.getText().trim());
+            if (breakpoints.isBreakpoint(address)) {
+                breakpoints.removeBreakpoint(address);
+                LOGGER.info("Removed the breakpoint at {}", address);
+            } else {
+                breakpoints.setBreakpoint(address);
+                LOGGER.info("Set a breakpoint at {}", address);
+            }
+        } catch (IllegalArgumentException e) {
+            LOGGER.error("Enter an address to break at: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Watches or stops watching what the break field names: reads and writes of a memory address,
+     * or writes of a register such as R0.
+     */
+    @FXML
+    private void toggleWatchpoint() {
+        if (isRunning("changing watchpoints")) {
+            return;
+        }
+        Breakpoints breakpoints = cpu.getBreakpoints();
+        String target = breakTarget.getText().trim();
+        try {
+            if (isNumeric(target) && !target.isEmpty()) {
+                int address = Integer.parseInt(target);
+                boolean watched = breakpoints.getMemoryWatch(address) != 0;
+                breakpoints.watchMemory(address, !watched, !watched);
+                LOGGER.info("{} address {}", watched ? "Stopped watching" : "Watching", address);
+            } else {
+                RegisterType registerType = RegisterType.valueOf(target.toUpperCase());
+                boolean watched = breakpoints.isWatched(registerType);
+                if (watched) {
+                    breakpoints.unwatchRegister(registerType);
+                } else {
+                    breakpoints.watchRegister(registerType);
+                }
+                LOGGER.info("{} register {}", watched ? "Stopped watching" : "Watching", registerType);
+            }
+        } catch (IllegalArgumentException e) {
+            LOGGER.error("Enter an address or a register to watch: {}", e.getMessage());
+        }
+    }
+
+    @FXML
+    private void clearBreakpoints() {
+        if (isRunning("changing breakpoints")) {
+            return;
+        }
+        cpu.getBreakpoints().clear();
+        LOGGER.info("Cleared all breakpoints and watchpoints");
     }
 
     @FXML
@@ -368,8 +650,10 @@ public class Controller {
             LOGGER.error("Initialize the machine before stepping");
             return;
         }
+        if (isRunning("stepping")) {
+            return;
+        }
         cpu.step();
-        SetconsoleOutput();
     }
 
     @FXML
@@ -378,6 +662,9 @@ public class Controller {
             LOGGER.error("Initialize the machine before loading");
             return;
         }
+        if (isRunning("loading")) {
+            return;
+        }
 
         LOGGER.info("Loading Program");
         String programName = programNameSelector.getValue();
@@ -413,25 +700,36 @@ public class Controller {
     @FXML
     private void input() {
         String[] lines = console.textProperty().get().split("\n");
-        for (String line : lines) {
-            if (isNumeric(line)) {
-                cpu.consoleInput.add(line.replace(" ", ""));
+        synchronized (cpu.consoleInput) {
+            for (String line : lines) {
+                if (isNumeric(line)) {
+                    cpu.consoleInput.add(line.replace(" ", ""));
+                }
             }
         }
         console.clear();
     }
 
     public void SetconsoleOutput() {
-        if (!cpu.consoleOutput.isEmpty()) {
+        synchronized (cpu.consoleOutput) {
+            showConsoleOutput(cpu.consoleOutput);
+        }
+    }
+
+    private void showConsoleOutput(List<String> output) {
+        if (!output.isEmpty()) {
             console.clear();
 
-            for (String line : cpu.consoleOutput)
+            for (String line : output)
                 console.appendText(line + "\n\r");
         }
     }
 
     @FXML
     private void LoadProgram1() {
+        if (isRunning("loading")) {
+            return;
+        }
         //only use to load program1
         LOGGER.info("Loading Program1");
         Program program = programs.get("Program1");
@@ -441,6 +739,9 @@ public class Controller {
 
     @FXML
     private void LoadProgram2() {
+        if (isRunning("loading")) {
+            return;
+        }
         //only use to load program2
         LOGGER.info("Loading Program2");
         Program program = programs.get("Program2");
@@ -450,6 +751,9 @@ public class Controller {
 
     @FXML
     private void LoadProgram3() {
+        if (isRunning("loading")) {
+            return;
+        }
       //only use to load program3
       LOGGER.info("Loading Program3");
       Program program = programs.get("Program3");
@@ -459,12 +763,18 @@ public class Controller {
 
     @FXML
     private void PreStoreMemoryForProgram1() {
+        if (isRunning("storing")) {
+            return;
+        }
         //only use to store some value to memory to run program1
         PreStoreMemory.PreStoreMemoryForProgram1(cpu);
     }
 
     @FXML
     private void PreStoreMemoryForProgram2() {
+        if (isRunning("storing")) {
+            return;
+        }
         //only use to store some value to memory to run program2
         PreStoreMemory.PreStoreMemoryForProgram2(cpu);
     }
@@ -477,6 +787,9 @@ public class Controller {
 
     @FXML
     private void ReadFile() {
+        if (isRunning("reading the file")) {
+            return;
+        }
         cpu.FileReader();
         SetconsoleOutput();
     }
@@ -484,13 +797,56 @@ public class Controller {
     @FXML
     private void InputAWord() {
         String word = InputWord.getText().toLowerCase();
-        if (SimulatorFileReader.WordMap.containsKey(word)) {
+        SimulatorFileReader fileReader = cpu.getFileReader();
+        if (fileReader.isEncoded(word)) {
             cpu.consoleOutput.add(word);
         } else {
-            SimulatorFileReader.encode(word);
+            fileReader.encode(word);
+        }
+        synchronized (cpu.consoleInput) {
+            cpu.consoleInput.add(String.valueOf(fileReader.getCode(word)));
+        }
+    }
+    /**
+     * Counts memory accesses against the cache hierarchy in the cache field, such as
+     * l1i=64,2,2,LRU;l1d=64,2,2,LRU;l2=512,8,4,LRU, or against the single cache if it is empty.
+     */
+    @FXML
+    private void setCaches() {
+        if (isRunning("changing the caches")) {
+            return;
         }
-        cpu.consoleInput.add(String.valueOf(SimulatorFileReader.getCode(word)));
+        AllMemory allMemory = cpu.getAllMemory();
+        String spec = cacheSpec.getText().trim();
+        if (spec.isEmpty()) {
+            allMemory.setCacheHierarchy(null);
+            LOGGER.info("Counting accesses against the single memory cache");
+            return;
+        }
+        try {
+            allMemory.setCacheHierarchy(CacheHierarchy.create(spec));
+            LOGGER.info("Counting accesses against the cache hierarchy {}", spec);
+        } catch (IllegalArgumentException e) {
+            LOGGER.error("Enter a cache hierarchy: {}", e.getMessage());
+        }
+    }
+
+    @FXML
+    private void reportCaches() {
+        AllMemory allMemory = cpu.getAllMemory();
+        if (runner.getState() == CPURunner.State.RUNNING) {
+            //The counters belong to the runner's thread, so report those of its last frame
+            CPURunner.Frame frame = runner.getFrame();
+            if (frame != null) {
+                LOGGER.info("Caches after {} instructions: {} hits, {} misses",
+                        frame.getSnapshot().getInstructionCount(), frame.getCacheHits(), frame.getCacheMisses());
+            }
+            return;
+        }
+        CacheHierarchy cacheHierarchy = allMemory.getCacheHierarchy();
+        LOGGER.info((cacheHierarchy == null) ? allMemory.getMemoryCache().getReport() : cacheHierarchy.getReport());
     }
+
     @FXML
     private void pipelineTest(){
         float f1 = 5.5f;
@@ -0,0 +1,23 @@
+package edu.gw.csci.simulator.isa;
+
+/**
+ * How an instruction forms its effective address from the IX, I and address fields.
+ * Every {@link InstructionType} declares one, which makes the set of types a per-opcode table.
+ */
+public enum AddressingMode {
+
+    /**
+     * IX and I both apply: EA = address, c(IX) + address, c(address) or c(c(IX) + address)
+     */
+    INDEXED,
+
+    /**
+     * The IX field names the register being loaded or stored, so only I applies: EA = address or c(address)
+     */
+    UNINDEXED,
+
+    /**
+     * IX and I are ignored and the address field is the value: EA = address
+     */
+    IMMEDIATE
+}
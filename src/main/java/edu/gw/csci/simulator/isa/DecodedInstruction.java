@@ -0,0 +1,127 @@
+package edu.gw.csci.simulator.isa;
+
+import edu.gw.csci.simulator.exceptions.IllegalOpcode;
+
+/**
+ * The fields of a 16 bit instruction word, pulled out with shifts and masks.
+ * The layout of the word is
+ * <pre>
+ *  15      10 9  8 7  6 5 4       0
+ * | opcode   | R  | IX | I| address |
+ * </pre>
+ * Register to register instructions read Rx from the R field and Ry from the IX field, shift and rotate
+ * instructions read A/L from bit 7, L/R from bit 6 and the count from bits 3-0, IO instructions read the
+ * device id from the address field, and TRAP reads its code from bits 3-0.
+ * Instances are immutable, so a decoded word can be kept and executed again.
+ */
+public final class DecodedInstruction {
+
+    private static final int OPCODE_SHIFT = 10,
+            R_SHIFT = 8,
+            IX_SHIFT = 6,
+            I_SHIFT = 5,
+            AL_SHIFT = 7,
+            LR_SHIFT = 6,
+            TWO_BITS = 0b11,
+            FOUR_BITS = 0b1111,
+            FIVE_BITS = 0b11111,
+            SIX_BITS = 0b111111;
+
+    private final int word;
+    private final InstructionType instructionType;
+    private final int r;
+    private final int ix;
+    private final boolean indirect;
+    private final int address;
+    private final int count;
+    private final boolean left;
+    private final boolean logical;
+
+    /**
+     * @param word The raw instruction word as retrieved from memory
+     * @throws IllegalOpcode If the opcode in the word is not part of the instruction set
+     */
+    public DecodedInstruction(int word) throws IllegalOpcode {
+        this.word = word;
+        this.instructionType = InstructionType.getInstructionType(opCode(word));
+        this.r = (word >>> R_SHIFT) & TWO_BITS;
+        this.ix = (word >>> IX_SHIFT) & TWO_BITS;
+        this.indirect = ((word >>> I_SHIFT) & 1) == 1;
+        this.address = word & FIVE_BITS;
+        this.count = word & FOUR_BITS;
+        this.left = ((word >>> LR_SHIFT) & 1) == 1;
+        this.logical = ((word >>> AL_SHIFT) & 1) == 1;
+    }
+
+    /**
+     * @param word A raw instruction word
+     * @return The six bit opcode of the word
+     */
+    public static int opCode(int word) {
+        return (word >>> OPCODE_SHIFT) & SIX_BITS;
+    }
+
+    /**
+     * @return The raw instruction word
+     */
+    public int getWord() {
+        return word;
+    }
+
+    public InstructionType getInstructionType() {
+        return instructionType;
+    }
+
+    /**
+     * @return The R field, which is also Rx for register to register instructions
+     */
+    public int getR() {
+        return r;
+    }
+
+    /**
+     * @return The IX field, which is also Ry for register to register instructions
+     */
+    public int getIX() {
+        return ix;
+    }
+
+    /**
+     * @return The Ry field of register to register instructions
+     */
+    public int getRy() {
+        return ix;
+    }
+
+    public boolean isIndirect() {
+        return indirect;
+    }
+
+    /**
+     * @return The address field, which is also the immediate value or the device id
+     */
+    public int getAddress() {
+        return address;
+    }
+
+    /**
+     * @return The shift/rotate count, which is also the trap code
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @return True if a shift or rotate is to the left
+     */
+    public boolean isLeft() {
+        return left;
+    }
+
+    /**
+     * @return True if a shift is logical, false if it is arithmetic
+     */
+    public boolean isLogical() {
+        return logical;
+    }
+}
@@ -0,0 +1,89 @@
+package edu.gw.csci.simulator.isa;
+
+import edu.gw.csci.simulator.exceptions.IllegalOpcode;
+import edu.gw.csci.simulator.memory.StoreListener;
+
+import java.util.Arrays;
+
+/**
+ * Sits in front of the {@link Decoder} and keeps the {@link DecodedInstruction} for every memory
+ * address that has been executed, so loop bodies are decoded once. Entries are dropped when
+ * {@link edu.gw.csci.simulator.memory.AllMemory} stores to their address. An entry is also only
+ * used if the word fetched still matches the word it was decoded from, which keeps
+ * the cache correct for writes that go straight to the memory backend, such as edits in the GUI.
+ */
+public class DecodedInstructionCache implements StoreListener {
+
+    private final Decoder decoder;
+    private final DecodedInstruction[] instructions;
+    private long cacheHit = 0, cacheMiss = 0, totalRequests = 0;
+
+    /**
+     * @param decoder The decoder used on a miss
+     * @param size    The number of memory addresses to cache, normally the size of memory
+     */
+    public DecodedInstructionCache(Decoder decoder, int size) {
+        this.decoder = decoder;
+        this.instructions = new DecodedInstruction[size];
+    }
+
+    /**
+     * Returns the decoded fields of the word fetched from the address, decoding it only if the
+     * address has not been seen, has been stored to, or now holds a different word.
+     *
+     * @param address The memory address the word was fetched from
+     * @param word    The raw instruction word
+     * @return The decoded instruction
+     * @throws IllegalOpcode If the word does not hold a valid opcode
+     */
+    public DecodedInstruction getDecoded(int address, int word) throws IllegalOpcode {
+        totalRequests++;
+        DecodedInstruction instruction = instructions[address];
+        if (instruction != null && instruction.getWord() == word) {
+            cacheHit++;
+            return instruction;
+        }
+        cacheMiss++;
+        instruction = decoder.decode(word);
+        instructions[address] = instruction;
+        return instruction;
+    }
+
+    /**
+     * Drops the cached instruction at the address, if any.
+     *
+     * @param address The memory address
+     */
+    public void invalidate(int address) {
+        instructions[address] = null;
+    }
+
+    /**
+     * Drops every cached instruction.
+     */
+    public void invalidateAll() {
+        Arrays.fill(instructions, null);
+    }
+
+    @Override
+    public void stored(int index, int word) {
+        invalidate(index);
+    }
+
+    @Override
+    public void replaced() {
+        invalidateAll();
+    }
+
+    public long getTotalRequests() {
+        return totalRequests;
+    }
+
+    public long getCacheMiss() {
+        return cacheMiss;
+    }
+
+    public long getCacheHit() {
+        return cacheHit;
+    }
+}
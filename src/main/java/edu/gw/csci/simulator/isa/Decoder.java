@@ -5,72 +5,108 @@ import edu.gw.csci.simulator.isa.instructions.*;
 import edu.gw.csci.simulator.utils.BitConversion;
 
 import java.util.BitSet;
-import java.util.HashMap;
 
+/**
+ * Turns instruction words into {@link Instruction instructions}. The fields are extracted by
+ * {@link DecodedInstruction} with shifts and masks, and the instruction is found through a
+ * table with one slot per six bit opcode, so decoding does no String work. Each slot holds the
+ * single, stateless instance of its instruction, shared by every decoder, so dispatch allocates nothing.
+ */
 public class Decoder {
 
-    private HashMap<InstructionType, InstructionFactory> instructions = new HashMap<>();
+    private static final Instruction[] instructions = new Instruction[InstructionType.OPCODE_COUNT];
 
-    public Decoder() {
+    static {
         //Miscellaneous
-        instructions.put(InstructionType.HLT, new InstructionFactory<>(Miscellaneous.HLT::new));
-        instructions.put(InstructionType.TRAP, new InstructionFactory<>(Miscellaneous.TRAP::new));
+        put(InstructionType.HLT, new Miscellaneous.HLT());
+        put(InstructionType.TRAP, new Miscellaneous.TRAP());
         //LoadStore
-        instructions.put(InstructionType.LDR, new InstructionFactory<>(LoadStore.LDR::new));
-        instructions.put(InstructionType.LDA, new InstructionFactory<>(LoadStore.LDA::new));
-        instructions.put(InstructionType.STR, new InstructionFactory<>(LoadStore.STR::new));
-        instructions.put(InstructionType.LDX, new InstructionFactory<>(LoadStore.LDX::new));
-        instructions.put(InstructionType.STX, new InstructionFactory<>(LoadStore.STX::new));
+        put(InstructionType.LDR, new LoadStore.LDR());
+        put(InstructionType.LDA, new LoadStore.LDA());
+        put(InstructionType.STR, new LoadStore.STR());
+        put(InstructionType.LDX, new LoadStore.LDX());
+        put(InstructionType.STX, new LoadStore.STX());
         //Transfer
-        instructions.put(InstructionType.JZ, new InstructionFactory<>(Transfer.JZ::new));
-        instructions.put(InstructionType.JNE, new InstructionFactory<>(Transfer.JNE::new));
-        instructions.put(InstructionType.JCC, new InstructionFactory<>(Transfer.JCC::new));
-        instructions.put(InstructionType.JMA, new InstructionFactory<>(Transfer.JMA::new));
-        instructions.put(InstructionType.JSR, new InstructionFactory<>(Transfer.JSR::new));
-        instructions.put(InstructionType.RFS, new InstructionFactory<>(Transfer.RFS::new));
-        instructions.put(InstructionType.SOB, new InstructionFactory<>(Transfer.SOB::new));
-        instructions.put(InstructionType.JGE, new InstructionFactory<>(Transfer.JGE::new));
+        put(InstructionType.JZ, new Transfer.JZ());
+        put(InstructionType.JNE, new Transfer.JNE());
+        put(InstructionType.JCC, new Transfer.JCC());
+        put(InstructionType.JMA, new Transfer.JMA());
+        put(InstructionType.JSR, new Transfer.JSR());
+        put(InstructionType.RFS, new Transfer.RFS());
+        put(InstructionType.SOB, new Transfer.SOB());
+        put(InstructionType.JGE, new Transfer.JGE());
         //ArithmeticLogic
-        instructions.put(InstructionType.AMR, new InstructionFactory<>(ArithmeticLogic.AMR::new));
-        instructions.put(InstructionType.SMR, new InstructionFactory<>(ArithmeticLogic.SMR::new));
-        instructions.put(InstructionType.AIR, new InstructionFactory<>(ArithmeticLogic.AIR::new));
-        instructions.put(InstructionType.SIR, new InstructionFactory<>(ArithmeticLogic.SIR::new));
-        instructions.put(InstructionType.MLT, new InstructionFactory<>(ArithmeticLogic.MLT::new));
-        instructions.put(InstructionType.DVD, new InstructionFactory<>(ArithmeticLogic.DVD::new));
-        instructions.put(InstructionType.TRR, new InstructionFactory<>(ArithmeticLogic.TRR::new));
-        instructions.put(InstructionType.AND, new InstructionFactory<>(ArithmeticLogic.AND::new));
-        instructions.put(InstructionType.ORR, new InstructionFactory<>(ArithmeticLogic.ORR::new));
-        instructions.put(InstructionType.NOT, new InstructionFactory<>(ArithmeticLogic.NOT::new));
+        put(InstructionType.AMR, new ArithmeticLogic.AMR());
+        put(InstructionType.SMR, new ArithmeticLogic.SMR());
+        put(InstructionType.AIR, new ArithmeticLogic.AIR());
+        put(InstructionType.SIR, new ArithmeticLogic.SIR());
+        put(InstructionType.MLT, new ArithmeticLogic.MLT());
+        put(InstructionType.DVD, new ArithmeticLogic.DVD());
+        put(InstructionType.TRR, new ArithmeticLogic.TRR());
+        put(InstructionType.AND, new ArithmeticLogic.AND());
+        put(InstructionType.ORR, new ArithmeticLogic.ORR());
+        put(InstructionType.NOT, new ArithmeticLogic.NOT());
         //ShiftRotate
-        instructions.put(InstructionType.SRC, new InstructionFactory<>(ShiftRotate.SRC::new));
-        instructions.put(InstructionType.RRC, new InstructionFactory<>(ShiftRotate.RRC::new));
+        put(InstructionType.SRC, new ShiftRotate.SRC());
+        put(InstructionType.RRC, new ShiftRotate.RRC());
 
         //IO
-        instructions.put(InstructionType.IN, new InstructionFactory<>(IO.IN::new));
-        instructions.put(InstructionType.OUT, new InstructionFactory<>(IO.OUT::new));
+        put(InstructionType.IN, new IO.IN());
+        put(InstructionType.OUT, new IO.OUT());
 
         //FloatingPointVector
-        instructions.put(InstructionType.FADD, new InstructionFactory<>(FloatingPointVector.FADD::new));
-        instructions.put(InstructionType.FSUB, new InstructionFactory<>(FloatingPointVector.FSUB::new));
-        instructions.put(InstructionType.VADD, new InstructionFactory<>(FloatingPointVector.VADD::new));
-        instructions.put(InstructionType.VSUB, new InstructionFactory<>(FloatingPointVector.VSUB::new));
-        instructions.put(InstructionType.CNVRT, new InstructionFactory<>(FloatingPointVector.CNVRT::new));
-        instructions.put(InstructionType.LDFR, new InstructionFactory<>(FloatingPointVector.LDFR::new));
-        instructions.put(InstructionType.STFR, new InstructionFactory<>(FloatingPointVector.STFR::new));
+        put(InstructionType.FADD, new FloatingPointVector.FADD());
+        put(InstructionType.FSUB, new FloatingPointVector.FSUB());
+        put(InstructionType.VADD, new FloatingPointVector.VADD());
+        put(InstructionType.VSUB, new FloatingPointVector.VSUB());
+        put(InstructionType.CNVRT, new FloatingPointVector.CNVRT());
+        put(InstructionType.LDFR, new FloatingPointVector.LDFR());
+        put(InstructionType.STFR, new FloatingPointVector.STFR());
+    }
+
+    private static void put(InstructionType instructionType, Instruction instruction) {
+        instruction.setInstructionType(instructionType);
+        instructions[instructionType.getOpCode()] = instruction;
     }
 
     /**
-     * This method receives a BitSet of data, determines the instruction type, and
-     * returns a new Instance of the specific instruction to be executed.
+     * This method receives a BitSet of data, and returns the instruction of its type.
      *
      * @param data The BitSet from Memory, deemed to be an instruction
-     * @return A new instance of the Instruction
+     * @return The shared instance of the Instruction
      */
     public Instruction getInstruction(BitSet data) throws IllegalOpcode {
-        String binary = BitConversion.toBinaryString(data, 16);
-        String typeString = binary.substring(0, 6);
-        String instructionData = binary.substring(6);
-        InstructionType instructionType = InstructionType.getInstructionType(typeString);
-        return instructions.get(instructionType).create(instructionType, instructionData);
+        return getInstruction(BitConversion.toWord(data));
+    }
+
+    /**
+     * This method receives a raw instruction word, and returns the instruction of its type.
+     *
+     * @param word The word from Memory, deemed to be an instruction
+     * @return The shared instance of the Instruction
+     */
+    public Instruction getInstruction(int word) throws IllegalOpcode {
+        return getInstruction(InstructionType.getInstructionType(DecodedInstruction.opCode(word)));
+    }
+
+    /**
+     * Dispatches through the opcode table.
+     *
+     * @param instructionType The type of instruction
+     * @return The shared instance of the Instruction
+     */
+    public Instruction getInstruction(InstructionType instructionType) {
+        return instructions[instructionType.getOpCode()];
+    }
+
+    /**
+     * Extracts the fields of an instruction word.
+     *
+     * @param word The word from Memory, deemed to be an instruction
+     * @return The decoded fields
+     * @throws IllegalOpcode If the word does not hold a valid opcode
+     */
+    public DecodedInstruction decode(int word) throws IllegalOpcode {
+        return new DecodedInstruction(word);
     }
-}
\ No newline at end of file
+}
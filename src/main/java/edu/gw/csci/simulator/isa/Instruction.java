@@ -6,21 +6,23 @@ import edu.gw.csci.simulator.registers.AllRegisters;
 
 /**
  * All instructions should extend this class in order to execute proper functionality.
- * Setting data and the instruction type is handled by the factory methods.
+ * The {@link Decoder} creates one instance of each instruction, which is shared by every word
+ * of that type, so instructions must not keep any state of their own; the fields of the word
+ * being executed are passed in as a {@link DecodedInstruction}.
  */
 public abstract class Instruction {
 
     private InstructionType instructionType;
-    private String data;
 
     /**
      * Execute the instruction logic
      *
+     * @param decoded The fields of the instruction word being executed
      * @param memory Availible memory
      * @param registers Availible registers
      * @param cpu CPU instance
      */
-    public abstract void execute(AllMemory memory, AllRegisters registers, CPU cpu);
+    public abstract void execute(DecodedInstruction decoded, AllMemory memory, AllRegisters registers, CPU cpu);
 
     /**
      *
@@ -31,25 +33,19 @@ public abstract class Instruction {
     }
 
     /**
-     * @param instructionType The type of instruction
+     * @return The name of the group the instruction is declared in, such as LoadStore or Transfer
      */
-    public void setInstructionType(InstructionType instructionType) {
-        this.instructionType = instructionType;
+    public String getInstructionClass() {
+        Class<?> group = getClass().getEnclosingClass();
+        return (group == null) ? getClass().getSimpleName() : group.getSimpleName();
     }
 
     /**
-     * @return The instruction data
-     */
-    public String getData() {
-        return data;
-    }
-
-    /**
-     * Sets the instruction data, not including the type, as retrieved
-     * from memory.
-     * @param data The instruction data
+     * Set once by the {@link Decoder} when the instruction is registered.
+     *
+     * @param instructionType The type of instruction
      */
-    public void setData(String data) {
-        this.data = data;
+    void setInstructionType(InstructionType instructionType) {
+        this.instructionType = instructionType;
     }
 }
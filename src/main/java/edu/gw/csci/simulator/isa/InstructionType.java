@@ -20,8 +20,8 @@ public enum InstructionType {
     LDR(1),
     STR(2),
     LDA(3),
-    LDX(41),
-    STX(42),
+    LDX(41, AddressingMode.UNINDEXED),
+    STX(42, AddressingMode.UNINDEXED),
 
     //Transfer instructions
     JZ(10),
@@ -29,15 +29,15 @@ public enum InstructionType {
     JCC(12),
     JMA(13),
     JSR(14),
-    RFS(15),
+    RFS(15, AddressingMode.IMMEDIATE),
     SOB(16),
     JGE(17),
 
     //Arithmetic and logic instructions
     AMR(4),
     SMR(5),
-    AIR(6),
-    SIR(7),
+    AIR(6, AddressingMode.IMMEDIATE),
+    SIR(7, AddressingMode.IMMEDIATE),
     MLT(20),
     DVD(21),
     TRR(22),
@@ -62,21 +62,34 @@ public enum InstructionType {
 
     private final int opCode;
     private final String binary;
+    private final AddressingMode addressingMode;
 
-    private static HashMap<String, InstructionType> instructionMap = new HashMap<>();
+    /**
+     * The number of distinct six bit opcodes
+     */
+    public static final int OPCODE_COUNT = 64;
+
+    private static final HashMap<String, InstructionType> instructionMap = new HashMap<>();
+    private static final InstructionType[] opCodeTable = new InstructionType[OPCODE_COUNT];
 
     static {
         for (InstructionType it : InstructionType.values()) {
             instructionMap.put(it.binary, it);
+            opCodeTable[it.opCode] = it;
         }
     }
 
     InstructionType(int opCode) {
+        this(opCode, AddressingMode.INDEXED);
+    }
+
+    InstructionType(int opCode, AddressingMode addressingMode) {
         //the OpCode above is in Octal, so we transfer them to decimal
         String decimal = Integer.valueOf(String.valueOf(opCode), 8).toString();
         int decimalOpCode = Integer.valueOf(decimal);
         this.opCode = decimalOpCode;
         this.binary = toPadded(decimalOpCode);
+        this.addressingMode = addressingMode;
     }
 
     private static String toPadded(int opCode) {
@@ -92,6 +105,32 @@ public enum InstructionType {
         }
     }
 
+    /**
+     * Looks up the instruction type by its decimal opcode, without going through a String.
+     *
+     * @param opCode A six bit opcode
+     * @return The instruction type
+     * @throws IllegalOpcode If the opcode is not part of the instruction set
+     */
+    public static InstructionType getInstructionType(int opCode) throws IllegalOpcode {
+        InstructionType it = (opCode >= 0 && opCode < OPCODE_COUNT) ? opCodeTable[opCode] : null;
+        if (it == null) {
+            String mess = String.format("Illegal Opcode: %s non supported operation", toPadded(opCode));
+            throw new IllegalOpcode(mess);
+        }
+        return it;
+    }
+
+    /**
+     * Checks an opcode without throwing {@link IllegalOpcode}.
+     *
+     * @param opCode A six bit opcode
+     * @return True if the opcode is part of the instruction set
+     */
+    public static boolean isOpCode(int opCode) {
+        return opCode >= 0 && opCode < OPCODE_COUNT && opCodeTable[opCode] != null;
+    }
+
     public int getOpCode() {
         return this.opCode;
     }
@@ -99,4 +138,11 @@ public enum InstructionType {
     public String getBinary() {
         return binary;
     }
+
+    /**
+     * @return How the instruction forms its effective address
+     */
+    public AddressingMode getAddressingMode() {
+        return addressingMode;
+    }
 }
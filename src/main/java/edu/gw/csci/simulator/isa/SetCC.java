@@ -1,17 +1,11 @@
 package edu.gw.csci.simulator.isa;
 
-import edu.gw.csci.simulator.registers.AllRegisters;
-import edu.gw.csci.simulator.registers.Register;
-import edu.gw.csci.simulator.registers.RegisterType;
-
 public class SetCC {
 
     public static final int MaxValue = (int) Math.pow(2, 15) - 1;
     public static final int MinValue = (int) -Math.pow(2, 15);
     public static final int ExtendMaxValue = (int) Math.pow(2, 31) - 1;
     public static final int ExtendMinValue = (int) -Math.pow(2, 31);
-    private static AllRegisters registers = new AllRegisters();
-    private static Register CC = registers.getRegister(RegisterType.CC);
 
 //    private static final Logger LOGGER = LogManager.getLogger(SetCC.class);
 //
@@ -1,6 +1,7 @@
 package edu.gw.csci.simulator.isa.instructions;
 
 import edu.gw.csci.simulator.cpu.CPU;
+import edu.gw.csci.simulator.isa.DecodedInstruction;
 import edu.gw.csci.simulator.isa.Instruction;
 import edu.gw.csci.simulator.isa.InstructionType;
 import edu.gw.csci.simulator.memory.AllMemory;
@@ -23,10 +24,10 @@ public class FloatingPointVector {
     public static class FADD extends Instruction {
 
         @Override
-        public void execute(AllMemory memory, AllRegisters registers, CPU cpu) {
-            String FRs = getData().substring(0, 2);
-            Register FR = registers.getRegister(RegisterType.getFloatingPoint(FRs));
-            int EA = memory.EA();
+        public void execute(DecodedInstruction decoded, AllMemory memory, AllRegisters registers, CPU cpu) {
+            int fr = decoded.getR();
+            Register FR = registers.getRegister(RegisterType.getFloatingPoint(fr));
+            int EA = memory.EA(decoded);
             BitSet RegisterBit = FR.getData();
             BitSet MemoryBit = memory.fetch(EA);
 
@@ -53,10 +54,10 @@ public class FloatingPointVector {
     public static class FSUB extends Instruction {
 
         @Override
-        public void execute(AllMemory memory, AllRegisters registers, CPU cpu) {
-            String FRs = getData().substring(0, 2);
-            Register FR = registers.getRegister(RegisterType.getFloatingPoint(FRs));
-            int EA = memory.EA();
+        public void execute(DecodedInstruction decoded, AllMemory memory, AllRegisters registers, CPU cpu) {
+            int fr = decoded.getR();
+            Register FR = registers.getRegister(RegisterType.getFloatingPoint(fr));
+            int EA = memory.EA(decoded);
             BitSet RegisterBit = FR.getData();
             BitSet MemoryBit = memory.fetch(EA);
 
@@ -82,10 +83,10 @@ public class FloatingPointVector {
     public static class VADD extends Instruction {
 
         @Override
-        public void execute(AllMemory memory, AllRegisters registers, CPU cpu) {
-            String FRs = getData().substring(0, 2);
-            Register FR = registers.getRegister(RegisterType.getFloatingPoint(FRs));
-            int EA = memory.EA();
+        public void execute(DecodedInstruction decoded, AllMemory memory, AllRegisters registers, CPU cpu) {
+            int fr = decoded.getR();
+            Register FR = registers.getRegister(RegisterType.getFloatingPoint(fr));
+            int EA = memory.EA(decoded);
             int size = (int) FloatingPointConvert.FloatConvert(FR.getData());
             int Vector1 = BitConversion.convert(memory.fetch(EA));
             int Vector2 = BitConversion.convert(memory.fetch(EA+1));
@@ -105,10 +106,10 @@ public class FloatingPointVector {
     public static class VSUB extends Instruction {
 
         @Override
-        public void execute(AllMemory memory, AllRegisters registers, CPU cpu) {
-            String FRs = getData().substring(0, 2);
-            Register FR = registers.getRegister(RegisterType.getFloatingPoint(FRs));
-            int EA = memory.EA();
+        public void execute(DecodedInstruction decoded, AllMemory memory, AllRegisters registers, CPU cpu) {
+            int fr = decoded.getR();
+            Register FR = registers.getRegister(RegisterType.getFloatingPoint(fr));
+            int EA = memory.EA(decoded);
             int size = (int) FloatingPointConvert.FloatConvert(FR.getData());
             int Vector1 = BitConversion.convert(memory.fetch(EA));
             int Vector2 = BitConversion.convert(memory.fetch(EA+1));
@@ -128,13 +129,13 @@ public class FloatingPointVector {
     public static class CNVRT extends Instruction {
 
         @Override
-        public void execute(AllMemory memory, AllRegisters registers, CPU cpu) {
-            String Rs = getData().substring(0, 2);
-            Register R = registers.getRegister(RegisterType.getGeneralPurpose(Rs));
+        public void execute(DecodedInstruction decoded, AllMemory memory, AllRegisters registers, CPU cpu) {
+            int r = decoded.getR();
+            Register R = registers.getRegister(RegisterType.getGeneralPurpose(r));
             Register FR0 = registers.getRegister(RegisterType.FR0);
             int RegisterValue = BitConversion.convert(R.getData());
             //The r register contains the value of F before the instruction is executed.
-            int EA = memory.EA();
+            int EA = memory.EA(decoded);
             BitSet MemoryBit = memory.fetch(EA);
             String mess;
             if(RegisterValue==0){
@@ -159,10 +160,10 @@ public class FloatingPointVector {
     public static class LDFR extends Instruction {
 
         @Override
-        public void execute(AllMemory memory, AllRegisters registers, CPU cpu) {
-            String FRs = getData().substring(0, 2);
-            Register FR = registers.getRegister(RegisterType.getFloatingPoint(FRs));
-            int EA = memory.EA();
+        public void execute(DecodedInstruction decoded, AllMemory memory, AllRegisters registers, CPU cpu) {
+            int fr = decoded.getR();
+            Register FR = registers.getRegister(RegisterType.getFloatingPoint(fr));
+            int EA = memory.EA(decoded);
             int MemoryValue1 = BitConversion.convert(memory.fetch(EA));
             float MemoryValue2 = FloatingPointConvert.DecimalRepresentationConvert(memory.fetch(EA+1));
             float f = MemoryValue1+MemoryValue2;
@@ -176,10 +177,10 @@ public class FloatingPointVector {
     public static class STFR extends Instruction {
 
         @Override
-        public void execute(AllMemory memory, AllRegisters registers, CPU cpu) {
-            String FRs = getData().substring(0, 2);
-            Register FR = registers.getRegister(RegisterType.getFloatingPoint(FRs));
-            int EA = memory.EA();
+        public void execute(DecodedInstruction decoded, AllMemory memory, AllRegisters registers, CPU cpu) {
+            int fr = decoded.getR();
+            Register FR = registers.getRegister(RegisterType.getFloatingPoint(fr));
+            int EA = memory.EA(decoded);
             float f = FloatingPointConvert.FloatConvert(FR.getData());
             int MemoryValue1 = (int) f;
             float MemoryValue2 = f -MemoryValue1;
@@ -1,11 +1,10 @@
 package edu.gw.csci.simulator.isa.instructions;
 
 import edu.gw.csci.simulator.cpu.CPU;
+import edu.gw.csci.simulator.isa.DecodedInstruction;
 import edu.gw.csci.simulator.isa.Instruction;
 import edu.gw.csci.simulator.memory.AllMemory;
 import edu.gw.csci.simulator.registers.AllRegisters;
-import edu.gw.csci.simulator.registers.Register;
-import edu.gw.csci.simulator.registers.RegisterDecorator;
 import edu.gw.csci.simulator.registers.RegisterType;
 import edu.gw.csci.simulator.utils.BitConversion;
 import org.apache.logging.log4j.LogManager;
@@ -17,32 +16,29 @@ public class IO {
 
     private static final Logger LOGGER = LogManager.getLogger(IO.class);
 
+    private static final int CONSOLE_KEYBOARD = 0,
+            CONSOLE_PRINTER = 1;
+
 
     public static class IN extends Instruction {
 
         @Override
-        public void execute(AllMemory memory, AllRegisters registers, CPU cpu) {
-            String Rs = getData().substring(0, 2);
-            Register R = registers.getRegister(RegisterType.getGeneralPurpose(Rs));
-            RegisterDecorator Rd = new RegisterDecorator(R);
-            String DevID = getData().substring(5, 10);
-            Register PC = registers.getRegister(RegisterType.PC);
-            RegisterDecorator PCd = new RegisterDecorator(PC);
+        public void execute(DecodedInstruction decoded, AllMemory memory, AllRegisters registers, CPU cpu) {
+            RegisterType R = RegisterType.getGeneralPurpose(decoded.getR());
+            int devId = decoded.getAddress();
 
-            if (DevID.equals("00000")) {
+            if (devId == CONSOLE_KEYBOARD) {
                 //Console Keyboard input
                 Optional<String> NextInput = cpu.getNextInput();
                 if (NextInput.isPresent()) {
                     int data = Integer.parseInt(NextInput.get());
-                    Rd.setIntegerValue(data);
-                    String mess = String.format("IN input Int:%d,Binary:%s to Register %s from Console Keyboard",
-                            Rd.toInt(), Rd.toBinaryString(), R.getName());
-                    LOGGER.info(mess);
-                    //registers.PCadder();
+                    registers.setWord(R, BitConversion.toWord(data));
+                    if (LOGGER.isInfoEnabled()) {
+                        String mess = String.format("IN input Int:%d,Binary:%s to Register %s from Console Keyboard",
+                                data, BitConversion.toBinaryString(data, 16), R);
+                        LOGGER.info(mess);
+                    }
                 } else {
-                    int PCindex = BitConversion.convert(PC.getData());
-                    //PCd.setIntegerValue(PCindex-1);
-                    //registers.PCadder();
                     LOGGER.info("Please input first.");
                 }
             }
@@ -52,18 +48,20 @@ public class IO {
     public static class OUT extends Instruction {
 
         @Override
-        public void execute(AllMemory memory, AllRegisters registers, CPU cpu) {
-            String Rs = getData().substring(0, 2);
-            Register R = registers.getRegister(RegisterType.getGeneralPurpose(Rs));
-            RegisterDecorator Rd = new RegisterDecorator(R);
-            String DevID = getData().substring(5, 10);
-            if (DevID.equals("00001")) {
+        public void execute(DecodedInstruction decoded, AllMemory memory, AllRegisters registers, CPU cpu) {
+            RegisterType R = RegisterType.getGeneralPurpose(decoded.getR());
+            int devId = decoded.getAddress();
+            if (devId == CONSOLE_PRINTER) {
                 //Console Printer output
-                String mess = String.format("OUT output Int :%d,Binary: %s from Register %s to Console Printer",
-                        Rd.toInt(), Rd.toBinaryString(), R.getName());
-                LOGGER.info(mess);
-                cpu.consoleOutput.add(String.valueOf(Rd.toInt()));
-                //registers.PCadder();
+                int value = BitConversion.toSigned(registers.getWord(R));
+                if (LOGGER.isInfoEnabled()) {
+                    String mess = String.format("OUT output Int :%d,Binary: %s from Register %s to Console Printer",
+                            value, BitConversion.toBinaryString(value, 16), R);
+                    LOGGER.info(mess);
+                }
+                synchronized (cpu.consoleOutput) {
+                    cpu.consoleOutput.add(String.valueOf(value));
+                }
             }
         }
     }
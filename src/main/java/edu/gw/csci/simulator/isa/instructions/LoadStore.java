@@ -1,12 +1,13 @@
 package edu.gw.csci.simulator.isa.instructions;
 
 import edu.gw.csci.simulator.cpu.CPU;
+import edu.gw.csci.simulator.isa.DecodedInstruction;
 import edu.gw.csci.simulator.isa.Instruction;
 import edu.gw.csci.simulator.memory.AllMemory;
 import edu.gw.csci.simulator.registers.AllRegisters;
 import edu.gw.csci.simulator.registers.Register;
-import edu.gw.csci.simulator.registers.RegisterDecorator;
 import edu.gw.csci.simulator.registers.RegisterType;
+import edu.gw.csci.simulator.utils.BitConversion;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -17,100 +18,95 @@ public class LoadStore {
     public static class LDR extends Instruction {
 
         @Override
-        public void execute(AllMemory memory, AllRegisters registers, CPU cpu) {
-            String Rs = getData().substring(0, 2);
-            Register R = registers.getRegister(RegisterType.getGeneralPurpose(Rs));
+        public void execute(DecodedInstruction decoded, AllMemory memory, AllRegisters registers, CPU cpu) {
+            RegisterType R = RegisterType.getGeneralPurpose(decoded.getR());
 
-            R.setData(memory.fetch(memory.EA()));
-            //registers.PCadder();
+            registers.setWord(R, memory.fetchWord(memory.EA(decoded)));
 
-            LOGGER.info("LDR");
-            logger(getData(), registers);
+            if (LOGGER.isInfoEnabled()) {
+                LOGGER.info("LDR");
+                logger(decoded, registers);
+            }
         }
     }
 
     public static class STR extends Instruction {
 
         @Override
-        public void execute(AllMemory memory, AllRegisters registers, CPU cpu) {
-            String Rs = getData().substring(0, 2);
-            Register R = registers.getRegister(RegisterType.getGeneralPurpose(Rs));
+        public void execute(DecodedInstruction decoded, AllMemory memory, AllRegisters registers, CPU cpu) {
+            RegisterType R = RegisterType.getGeneralPurpose(decoded.getR());
 
-            memory.store(memory.EA(), R.getData());
-            //registers.PCadder();
+            memory.storeWord(memory.EA(decoded), registers.getWord(R));
 
-            LOGGER.info("STR");
-            logger(getData(), registers);
+            if (LOGGER.isInfoEnabled()) {
+                LOGGER.info("STR");
+                logger(decoded, registers);
+            }
         }
     }
 
     public static class LDA extends Instruction {
 
         @Override
-        public void execute(AllMemory memory, AllRegisters registers, CPU cpu) {
-            LOGGER.info("LDA");
-            logger(getData(), registers);
+        public void execute(DecodedInstruction decoded, AllMemory memory, AllRegisters registers, CPU cpu) {
+            if (LOGGER.isInfoEnabled()) {
+                LOGGER.info("LDA");
+                logger(decoded, registers);
+            }
 
-            String Rs = getData().substring(0, 2);
-            Register R = registers.getRegister(RegisterType.getGeneralPurpose(Rs));
-            RegisterDecorator Rd = new RegisterDecorator(R);
+            RegisterType R = RegisterType.getGeneralPurpose(decoded.getR());
 
-            Rd.setIntegerValue(memory.EA());
-            //registers.PCadder();
+            registers.setWord(R, BitConversion.toWord(memory.EA(decoded)));
         }
     }
 
     public static class LDX extends Instruction {
 
         @Override
-        public void execute(AllMemory memory, AllRegisters registers, CPU cpu) {
-            String Xs = getData().substring(2, 4);
-            Register X = registers.getRegister(RegisterType.getIndex(Xs));
+        public void execute(DecodedInstruction decoded, AllMemory memory, AllRegisters registers, CPU cpu) {
+            RegisterType X = RegisterType.getIndex(decoded.getIX());
 
-            X.setData(memory.fetch(memory.EA()));
-            //registers.PCadder();
+            registers.setWord(X, memory.fetchWord(memory.EA(decoded)));
 
-            LOGGER.info("LDX");
-            logger(getData(), registers);
+            if (LOGGER.isInfoEnabled()) {
+                LOGGER.info("LDX");
+                logger(decoded, registers);
+            }
         }
     }
 
     public static class STX extends Instruction {
 
         @Override
-        public void execute(AllMemory memory, AllRegisters registers, CPU cpu) {
-            String Xs = getData().substring(2, 4);
-            Register X = registers.getRegister(RegisterType.getIndex(Xs));
+        public void execute(DecodedInstruction decoded, AllMemory memory, AllRegisters registers, CPU cpu) {
+            RegisterType X = RegisterType.getIndex(decoded.getIX());
 
-            memory.store(memory.EA(), X.getData());
-            //registers.PCadder();
+            memory.storeWord(memory.EA(decoded), registers.getWord(X));
 
-            LOGGER.info("STX");
-            logger(getData(), registers);
+            if (LOGGER.isInfoEnabled()) {
+                LOGGER.info("STX");
+                logger(decoded, registers);
+            }
         }
     }
 
-    private static void logger(String data, AllRegisters registers) {
-        String Rs = data.substring(0, 2);
-        String Xs = data.substring(2, 4);
-        String Is = data.substring(4, 5);
+    private static void logger(DecodedInstruction decoded, AllRegisters registers) {
         String I;
-        if (Is.equals("0")) {
+        if (!decoded.isIndirect()) {
             I = "direct";
         } else {
             I = "indirect";
         }
-        String AddressCode = data.substring(5);
-        Register R = registers.getRegister(RegisterType.getGeneralPurpose(Rs));
-        RegisterDecorator Rd = new RegisterDecorator(R);
+        int address = decoded.getAddress();
+        Register R = registers.getRegister(RegisterType.getGeneralPurpose(decoded.getR()));
         String xName = "null";
-        if (!Xs.equals("00")) {
-            Register X = registers.getRegister(RegisterType.getIndex(Xs));
+        if (decoded.getIX() != 0) {
+            Register X = registers.getRegister(RegisterType.getIndex(decoded.getIX()));
             xName = X.getName();
         }
 
         String mess = String.format("R:%s IX:%s I:%s Addr:%s(%d)",
-                R.getName(), xName, I, AddressCode, Integer.parseInt(AddressCode, 2));
+                R.getName(), xName, I, BitConversion.toBinaryString(address, 5), address);
         LOGGER.info(mess);
     }
 }
@@ -2,12 +2,11 @@ package edu.gw.csci.simulator.isa.instructions;
 
 import edu.gw.csci.simulator.cpu.CPU;
 import edu.gw.csci.simulator.cpu.TrapController;
-import edu.gw.csci.simulator.exceptions.SimulatorException;
+import edu.gw.csci.simulator.isa.DecodedInstruction;
 import edu.gw.csci.simulator.isa.Instruction;
 import edu.gw.csci.simulator.isa.InstructionType;
 import edu.gw.csci.simulator.memory.AllMemory;
 import edu.gw.csci.simulator.registers.AllRegisters;
-import edu.gw.csci.simulator.utils.BitConversion;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -18,7 +17,7 @@ public class Miscellaneous {
     public static class HLT extends Instruction {
 
         @Override
-        public void execute(AllMemory memory, AllRegisters registers, CPU cpu) {
+        public void execute(DecodedInstruction decoded, AllMemory memory, AllRegisters registers, CPU cpu) {
             LOGGER.info("HLT");
         }
     }
@@ -26,11 +25,10 @@ public class Miscellaneous {
     public static class TRAP extends Instruction {
 
         @Override
-        public void execute(AllMemory memory, AllRegisters registers, CPU cpu) throws SimulatorException {
+        public void execute(DecodedInstruction decoded, AllMemory memory, AllRegisters registers, CPU cpu) {
             LOGGER.info("TRAP");
-            String trapString = getData().substring(getData().length() - 4);
-            int trapCode = BitConversion.fromBinaryStringToInt(trapString);
-            throw TrapController.getRoutineException(trapCode);
+            int trapCode = decoded.getCount();
+            cpu.trap(TrapController.getRoutineCode(trapCode));
         }
     }
 }
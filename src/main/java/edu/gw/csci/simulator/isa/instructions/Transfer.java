@@ -1,11 +1,10 @@
 package edu.gw.csci.simulator.isa.instructions;
 
 import edu.gw.csci.simulator.cpu.CPU;
+import edu.gw.csci.simulator.isa.DecodedInstruction;
 import edu.gw.csci.simulator.isa.Instruction;
 import edu.gw.csci.simulator.memory.AllMemory;
 import edu.gw.csci.simulator.registers.AllRegisters;
-import edu.gw.csci.simulator.registers.Register;
-import edu.gw.csci.simulator.registers.RegisterDecorator;
 import edu.gw.csci.simulator.registers.RegisterType;
 import edu.gw.csci.simulator.utils.BitConversion;
 import org.apache.logging.log4j.LogManager;
@@ -15,174 +14,158 @@ public class Transfer {
 
     private static final Logger LOGGER = LogManager.getLogger(Transfer.class);
 
+    /**
+     * Points the PC one before the target, since the CPU increments it after every instruction.
+     *
+     * @param registers All registers
+     * @param EA        The address of the next instruction to execute
+     */
+    private static void jump(AllRegisters registers, int EA) {
+        registers.setWord(RegisterType.PC, BitConversion.toWord(EA - 1));
+    }
+
     public static class JZ extends Instruction {
 
 
         @Override
-        public void execute(AllMemory memory, AllRegisters registers, CPU cpu) {
-            String Rs = getData().substring(0, 2);
-            Register PC = registers.getRegister(RegisterType.PC);
-            RegisterDecorator PCd = new RegisterDecorator(PC);
-            int EA = memory.EA();
-            Register R = registers.getRegister(RegisterType.getGeneralPurpose(Rs));
-            if (R.getData().isEmpty()) {
-                PCd.setIntegerValue(EA - 1);
+        public void execute(DecodedInstruction decoded, AllMemory memory, AllRegisters registers, CPU cpu) {
+            int EA = memory.EA(decoded);
+            RegisterType R = RegisterType.getGeneralPurpose(decoded.getR());
+            if (registers.getWord(R) == 0) {
+                jump(registers, EA);
             }
-//            else{
-//                registers.PCadder();
-//            }
 
-            String mess = String.format("JZ Jump to %d when %s =0", EA, R.getName());
-            LOGGER.info(mess);
+            if (LOGGER.isInfoEnabled()) {
+                String mess = String.format("JZ Jump to %d when %s =0", EA, R);
+                LOGGER.info(mess);
+            }
         }
     }
 
     public static class JNE extends Instruction {
 
         @Override
-        public void execute(AllMemory memory, AllRegisters registers, CPU cpu) {
-            String Rs = getData().substring(0, 2);
-            Register PC = registers.getRegister(RegisterType.PC);
-            RegisterDecorator PCd = new RegisterDecorator(PC);
-            int EA = memory.EA();
-            Register R = registers.getRegister(RegisterType.getGeneralPurpose(Rs));
-
-            if (!R.getData().isEmpty()) {
-                PCd.setIntegerValue(EA - 1);
+        public void execute(DecodedInstruction decoded, AllMemory memory, AllRegisters registers, CPU cpu) {
+            int EA = memory.EA(decoded);
+            RegisterType R = RegisterType.getGeneralPurpose(decoded.getR());
+
+            if (registers.getWord(R) != 0) {
+                jump(registers, EA);
             }
 
-            String mess = String.format("JNE Jump to %d when %s !=0", EA, R.getName());
-            LOGGER.info(mess);
+            if (LOGGER.isInfoEnabled()) {
+                String mess = String.format("JNE Jump to %d when %s !=0", EA, R);
+                LOGGER.info(mess);
+            }
         }
     }
 
     public static class JCC extends Instruction {
 
         @Override
-        public void execute(AllMemory memory, AllRegisters registers, CPU cpu) {
-            Register PC = registers.getRegister(RegisterType.PC);
-            RegisterDecorator PCd = new RegisterDecorator(PC);
-            int EA = memory.EA();
+        public void execute(DecodedInstruction decoded, AllMemory memory, AllRegisters registers, CPU cpu) {
+            int EA = memory.EA(decoded);
 
-            Register CC = registers.getRegister(RegisterType.CC);
-            int bit = CC.getData().cardinality();
+            int bit = Integer.bitCount(registers.getWord(RegisterType.CC));
             if (bit == 1) {
-                PCd.setIntegerValue(EA - 1);
+                jump(registers, EA);
+            }
+            if (LOGGER.isInfoEnabled()) {
+                String mess = String.format("JCC Jump to %d if CC bit =1", EA);
+                LOGGER.info(mess);
             }
-//            else{
-//                registers.PCadder();
-//            }
-            String mess = String.format("JCC Jump to %d if CC bit =1", EA);
-            LOGGER.info(mess);
         }
     }
 
     public static class JMA extends Instruction {
 
         @Override
-        public void execute(AllMemory memory, AllRegisters registers, CPU cpu) {
-            Register PC = registers.getRegister(RegisterType.PC);
-            RegisterDecorator PCd = new RegisterDecorator(PC);
-            int EA = memory.EA();
+        public void execute(DecodedInstruction decoded, AllMemory memory, AllRegisters registers, CPU cpu) {
+            int EA = memory.EA(decoded);
 
-            PCd.setIntegerValue(EA - 1);
+            jump(registers, EA);
 
-            String mess = String.format("JMA Unconditional Jump To Address:%d", EA);
-            LOGGER.info(mess);
+            if (LOGGER.isInfoEnabled()) {
+                String mess = String.format("JMA Unconditional Jump To Address:%d", EA);
+                LOGGER.info(mess);
+            }
         }
     }
 
     public static class JSR extends Instruction {
 
         @Override
-        public void execute(AllMemory memory, AllRegisters registers, CPU cpu) {
-            Register PC = registers.getRegister(RegisterType.PC);
-            RegisterDecorator PCd = new RegisterDecorator(PC);
-            Register R3 = registers.getRegister(RegisterType.R3);
-            RegisterDecorator R3d = new RegisterDecorator(R3);
-            int EA = memory.EA();
-
-            int returnAddress = BitConversion.convert(PC.getData()) + 1;
-            R3d.setIntegerValue(returnAddress);
-            PCd.setIntegerValue(EA - 1);
-
-            String mess = String.format("JSR Jump to %d and Save Return Address:%d",
-                    EA, returnAddress);
-            LOGGER.info(mess);
+        public void execute(DecodedInstruction decoded, AllMemory memory, AllRegisters registers, CPU cpu) {
+            int EA = memory.EA(decoded);
+
+            int returnAddress = registers.getWord(RegisterType.PC) + 1;
+            registers.setWord(RegisterType.R3, BitConversion.toWord(returnAddress));
+            jump(registers, EA);
+
+            if (LOGGER.isInfoEnabled()) {
+                String mess = String.format("JSR Jump to %d and Save Return Address:%d",
+                        EA, returnAddress);
+                LOGGER.info(mess);
+            }
         }
     }
 
     public static class RFS extends Instruction {
 
         @Override
-        public void execute(AllMemory memory, AllRegisters registers, CPU cpu) {
-            Register PC = registers.getRegister(RegisterType.PC);
-            RegisterDecorator PCd = new RegisterDecorator(PC);
-            Register R0 = registers.getRegister(RegisterType.R0);
-            RegisterDecorator R0d = new RegisterDecorator(R0);
-            Register R3 = registers.getRegister(RegisterType.R3);
-
-            int EA = memory.EA();
-
+        public void execute(DecodedInstruction decoded, AllMemory memory, AllRegisters registers, CPU cpu) {
+            int EA = memory.EA(decoded);
 
-            R0d.setIntegerValue(EA);
-            int PCindex = BitConversion.convert(R3.getData());
-            PCd.setIntegerValue(PCindex - 1);
+            registers.setWord(RegisterType.R0, BitConversion.toWord(EA));
+            int PCindex = BitConversion.toSigned(registers.getWord(RegisterType.R3));
+            jump(registers, PCindex);
 
-            String mess = String.format("RFS Return from subroutine, R0=%d PC=R3=%d",
-                    EA, BitConversion.convert(R3.getData()));
-            LOGGER.info(mess);
+            if (LOGGER.isInfoEnabled()) {
+                String mess = String.format("RFS Return from subroutine, R0=%d PC=R3=%d",
+                        EA, PCindex);
+                LOGGER.info(mess);
+            }
         }
     }
 
     public static class SOB extends Instruction {
 
         @Override
-        public void execute(AllMemory memory, AllRegisters registers, CPU cpu) {
-            String Rs = getData().substring(0, 2);
-            Register PC = registers.getRegister(RegisterType.PC);
-            RegisterDecorator PCd = new RegisterDecorator(PC);
-            int EA = memory.EA();
-            Register R = registers.getRegister(RegisterType.getGeneralPurpose(Rs));
-            RegisterDecorator Rd = new RegisterDecorator(R);
-
-
-            Rd.setIntegerValue(BitConversion.convert(R.getData()) - 1);
-            if (BitConversion.convert(R.getData()) > 0) {
-                PCd.setIntegerValue(EA - 1);
+        public void execute(DecodedInstruction decoded, AllMemory memory, AllRegisters registers, CPU cpu) {
+            int EA = memory.EA(decoded);
+            RegisterType R = RegisterType.getGeneralPurpose(decoded.getR());
+
+            int value = BitConversion.toSigned(registers.getWord(R)) - 1;
+            registers.setWord(R, BitConversion.toWord(value));
+            if (value > 0) {
+                jump(registers, EA);
             }
-//            else{
-//                registers.PCadder();
-//            }
 
-            String mess = String.format("SOB %s = %s -1 =%d, if %s>0, jump to %d",
-                    R.getName(), R.getName(), BitConversion.convert(R.getData()), R.getName(), EA);
-            LOGGER.info(mess);
+            if (LOGGER.isInfoEnabled()) {
+                String mess = String.format("SOB %s = %s -1 =%d, if %s>0, jump to %d",
+                        R, R, value, R, EA);
+                LOGGER.info(mess);
+            }
         }
     }
 
     public static class JGE extends Instruction {
 
         @Override
-        public void execute(AllMemory memory, AllRegisters registers, CPU cpu) {
-            String Rs = getData().substring(0, 2);
-            Register PC = registers.getRegister(RegisterType.PC);
-            RegisterDecorator PCd = new RegisterDecorator(PC);
-            int EA = memory.EA();
-            Register R = registers.getRegister(RegisterType.getGeneralPurpose(Rs));
-            RegisterDecorator Rd = new RegisterDecorator(R);
+        public void execute(DecodedInstruction decoded, AllMemory memory, AllRegisters registers, CPU cpu) {
+            int EA = memory.EA(decoded);
+            RegisterType R = RegisterType.getGeneralPurpose(decoded.getR());
+            int value = BitConversion.toSigned(registers.getWord(R));
 
-
-            if (BitConversion.convert(R.getData()) >= 0) {
-                PCd.setIntegerValue(EA - 1);
+            if (value >= 0) {
+                jump(registers, EA);
             }
-//            else{
-//                registers.PCadder();
-//            }
 
-            String mess = String.format("JGE if %s(%d) >=0, jump to %d",
-                    R.getName(), BitConversion.convert(R.getData()), EA);
-            LOGGER.info(mess);
+            if (LOGGER.isInfoEnabled()) {
+                String mess = String.format("JGE if %s(%d) >=0, jump to %d",
+                        R, value, EA);
+                LOGGER.info(mess);
+            }
         }
     }
 }
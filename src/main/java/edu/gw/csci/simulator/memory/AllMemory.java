@@ -2,21 +2,27 @@ package edu.gw.csci.simulator.memory;
 
 import edu.gw.csci.simulator.cpu.TrapController;
 import edu.gw.csci.simulator.exceptions.IllegalMemoryAccess;
+import edu.gw.csci.simulator.exceptions.IllegalValue;
 import edu.gw.csci.simulator.exceptions.MemoryOutOfBounds;
-import edu.gw.csci.simulator.isa.InstructionType;
+import edu.gw.csci.simulator.isa.AddressingMode;
+import edu.gw.csci.simulator.isa.DecodedInstruction;
+import edu.gw.csci.simulator.isa.SetCC;
+import edu.gw.csci.simulator.prefetch.Prefetcher;
 import edu.gw.csci.simulator.registers.AllRegisters;
-import edu.gw.csci.simulator.registers.Register;
-import edu.gw.csci.simulator.registers.RegisterDecorator;
 import edu.gw.csci.simulator.registers.RegisterType;
 import edu.gw.csci.simulator.utils.BitConversion;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.util.Arrays;
 import java.util.BitSet;
-import java.util.Optional;
+import java.util.function.IntConsumer;
 
 /**
  * Provides abstraction of support operations for interaction between the simulated memory and the GUI framework.
+ * The {@link MemoryBackend} that holds the words is pluggable. {@link AllMemory#storeWord(int, int, boolean)} and
+ * {@link AllMemory#fetchWord(int, boolean)} move raw words without allocating; the {@link BitSet} methods are kept
+ * for callers that still work in BitSets.
  *
  * @version 20180918
  */
@@ -24,18 +30,28 @@ public class AllMemory {
 
     private static final Logger LOGGER = LogManager.getLogger(AllMemory.class);
 
-    private final Memory memory;
+    private final MemoryBackend memory;
     private final AllRegisters allRegisters;
     private final MemoryCache memoryCache;
+    private CacheHierarchy cacheHierarchy;
+    private Prefetcher prefetcher;
+    private final IntConsumer prefetchSink = this::prefetch;
+    private StoreListener[] storeListeners = new StoreListener[0];
+    private OverwriteListener overwriteListener;
+    private byte[] watchFlags;
+    private WatchListener watchListener;
+    private FetchListener[] fetchListeners = new FetchListener[0];
 
     private final static int highestReservedMemory = 5;
     private final int maxMemory;
 
-    public AllMemory(Memory memory, AllRegisters allRegisters, MemoryCache memoryCache) {
+    public AllMemory(MemoryBackend memory, AllRegisters allRegisters, MemoryCache memoryCache) {
         this.memory = memory;
         this.allRegisters = allRegisters;
         this.memoryCache = memoryCache;
+        memoryCache.setBackend(memory);
         this.maxMemory = memory.getSize() - 1;
+        this.watchFlags = new byte[memory.getSize()];
     }
 
     /**
@@ -66,18 +82,177 @@ public class AllMemory {
 
 
     public void store(int index, BitSet bitSet, boolean throwReserve) throws MemoryOutOfBounds, IllegalMemoryAccess {
+        if (bitSet.length() > memory.getWordSize()) {
+            //Keep the size check the memory chunks used to apply
+            String mess = String.format("Value is out of range:[%d,%d]", SetCC.MinValue, SetCC.MaxValue);
+            throw new IllegalValue(mess);
+        }
+        storeWord(index, BitConversion.toWord(bitSet), throwReserve);
+    }
+
+    /**
+     * This method overloads the {@link AllMemory#storeWord(int, int, boolean throwReserve)} to check for
+     * illegal memory access by default.
+     *
+     * @param index The index of the data to store in memory
+     * @param word  The raw word to store
+     * @throws MemoryOutOfBounds   When the memory index is out of bounds
+     * @throws IllegalMemoryAccess When the memory index is reserved
+     */
+    public void storeWord(int index, int word) throws MemoryOutOfBounds, IllegalMemoryAccess {
+        storeWord(index, word, true);
+    }
+
+    /**
+     * The allocation free form of {@link AllMemory#store(int, BitSet, boolean)}: the word is written to
+     * the backend, the MBR and the cache.
+     *
+     * @param index        The index of the data to store in memory
+     * @param word         The raw word to store
+     * @param throwReserve Whether modifications to reserved memory are illegal
+     * @throws MemoryOutOfBounds   When the memory index is out of bounds
+     * @throws IllegalMemoryAccess When the memory index is reserved, unless indicated otherwise
+     */
+    public void storeWord(int index, int word, boolean throwReserve) throws MemoryOutOfBounds, IllegalMemoryAccess {
         checkIndex(index, throwReserve);
         if (index == TrapController.HALT_LOCATION) {
             LOGGER.warn("Index 6 is reserved for halt during trap codes, this is not recommended");
         }
-        //We know that this conversion is safe because the data is stored in a BitSet already
-        int value = BitConversion.convert(bitSet);
-        String mess = String.format("Storing %d(%s) to memory index %d", value, BitConversion.toBinaryString(bitSet, 16), index);
-        LOGGER.debug(mess);
-        MemoryChunkDecorator memoryChunkDecorator = new MemoryChunkDecorator(memory.get(index));
-        memoryChunkDecorator.setIntegerValue(value);
-        allRegisters.setRegister(RegisterType.MBR, bitSet);
-        memoryCache.put(index, bitSet);
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug(String.format("Storing %d(%s) to memory index %d",
+                    BitConversion.toSigned(word), BitConversion.toBinaryString(BitConversion.fromWord(word), 16), index));
+        }
+        if (overwriteListener != null) {
+            overwriteListener.overwriting(index, memory.read(index));
+        }
+        memory.write(index, word);
+        allRegisters.setWord(RegisterType.MBR, word);
+        if (cacheHierarchy != null) {
+            cacheHierarchy.write(index, word);
+            memoryCache.updateWord(index, word);
+        } else {
+            memoryCache.writeWord(index, word);
+        }
+        for (StoreListener storeListener : storeListeners) {
+            storeListener.stored(index, word);
+        }
+        if ((watchFlags[index] & WatchListener.WRITE) != 0) {
+            watchListener.watched(index, true);
+        }
+    }
+
+    /**
+     * Puts back a word overwritten by a store, when undoing it. There are no checks and the MBR is
+     * left alone, since the caller restores the registers itself. A cached copy of the address is
+     * updated in place, and store listeners are told, but the overwrite listener is not.
+     *
+     * @param index The memory index to restore
+     * @param word  The raw word it held before the store
+     */
+    public void restoreWord(int index, int word) {
+        memory.write(index, word);
+        memoryCache.updateWord(index, word);
+        if (cacheHierarchy != null) {
+            cacheHierarchy.update(index, word);
+        }
+        for (StoreListener storeListener : storeListeners) {
+            storeListener.stored(index, word);
+        }
+    }
+
+    /**
+     * Replaces the whole of memory without the checks, MBR update and caching of a store, for
+     * restoring a snapshot. Store listeners are told once through {@link StoreListener#replaced()}.
+     *
+     * @param words The new contents, one raw word per address
+     */
+    public void replaceAll(char[] words) {
+        if (words.length != memory.getSize()) {
+            throw new IllegalArgumentException(String.format("Can't replace %d words of memory with %d",
+                    memory.getSize(), words.length));
+        }
+        memory.copyFrom(words);
+        for (StoreListener storeListener : storeListeners) {
+            storeListener.replaced();
+        }
+    }
+
+    /**
+     * Registers a listener to be told about every store made through this class. Writes made
+     * directly to the {@link MemoryBackend} are not reported.
+     *
+     * @param storeListener The listener to add
+     */
+    public void addStoreListener(StoreListener storeListener) {
+        StoreListener[] listeners = Arrays.copyOf(storeListeners, storeListeners.length + 1);
+        listeners[storeListeners.length] = storeListener;
+        this.storeListeners = listeners;
+    }
+
+    /**
+     * @param storeListener A listener added with {@link AllMemory#addStoreListener(StoreListener)}
+     */
+    public void removeStoreListener(StoreListener storeListener) {
+        for (int i = 0; i < storeListeners.length; i++) {
+            if (storeListeners[i] == storeListener) {
+                StoreListener[] listeners = Arrays.copyOf(storeListeners, storeListeners.length - 1);
+                System.arraycopy(storeListeners, i + 1, listeners, i, storeListeners.length - i - 1);
+                this.storeListeners = listeners;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Adds a listener told about every fetch, see {@link FetchListener}.
+     *
+     * @param fetchListener The listener to add
+     */
+    public void addFetchListener(FetchListener fetchListener) {
+        FetchListener[] listeners = Arrays.copyOf(fetchListeners, fetchListeners.length + 1);
+        listeners[fetchListeners.length] = fetchListener;
+        this.fetchListeners = listeners;
+    }
+
+    /**
+     * @param fetchListener A listener added with {@link AllMemory#addFetchListener(FetchListener)}
+     */
+    public void removeFetchListener(FetchListener fetchListener) {
+        for (int i = 0; i < fetchListeners.length; i++) {
+            if (fetchListeners[i] == fetchListener) {
+                FetchListener[] listeners = Arrays.copyOf(fetchListeners, fetchListeners.length - 1);
+                System.arraycopy(fetchListeners, i + 1, listeners, i, fetchListeners.length - i - 1);
+                this.fetchListeners = listeners;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Sets the one listener told about the old word before every store, see {@link OverwriteListener}.
+     *
+     * @param overwriteListener The listener, or null to remove it
+     */
+    public void setOverwriteListener(OverwriteListener overwriteListener) {
+        this.overwriteListener = overwriteListener;
+    }
+
+    /**
+     * Watches memory accesses through a map of {@link WatchListener#READ} and {@link WatchListener#WRITE}
+     * flags, one byte per address. Every fetch and store looks up its address in the map, which
+     * is a single array load, so an empty map costs next to nothing. The map is read as it is, so
+     * flags can be changed later without calling this again.
+     *
+     * @param watchFlags    The flags of each address, at least as long as memory
+     * @param watchListener The listener told about accesses to flagged addresses
+     */
+    public void setWatch(byte[] watchFlags, WatchListener watchListener) {
+        if (watchFlags.length < memory.getSize()) {
+            throw new IllegalArgumentException(String.format("Watch map of %d addresses is shorter than memory",
+                    watchFlags.length));
+        }
+        this.watchFlags = watchFlags;
+        this.watchListener = watchListener;
     }
 
     /**
@@ -105,17 +280,85 @@ public class AllMemory {
      * @throws IllegalMemoryAccess When the memory index is reserved, unless indicated otherwise
      */
     public BitSet fetch(int index, boolean throwReserve) throws MemoryOutOfBounds, IllegalMemoryAccess {
+        return BitConversion.fromWord(fetchWord(index, throwReserve));
+    }
+
+    /**
+     * This method overloads the {@link AllMemory#fetchWord(int, boolean throwReserve)} to check for
+     * illegal memory access by default.
+     *
+     * @param index The index to fetch
+     * @return The raw word from memory, or cache, as appropriate.
+     * @throws MemoryOutOfBounds   When the memory index is out of bounds
+     * @throws IllegalMemoryAccess When the memory index is reserved
+     */
+    public int fetchWord(int index) throws MemoryOutOfBounds, IllegalMemoryAccess {
+        return fetchWord(index, true);
+    }
+
+    /**
+     * The allocation free form of {@link AllMemory#fetch(int, boolean)}: the MAR and MBR are updated,
+     * and the word comes from the cache if present, otherwise from the backend.
+     *
+     * @param index        The index to fetch
+     * @param throwReserve Whether fetching from reserved memory is illegal
+     * @return The raw word from memory, or cache, as appropriate.
+     * @throws MemoryOutOfBounds   When the memory index is out of bounds
+     * @throws IllegalMemoryAccess When the memory index is reserved, unless indicated otherwise
+     */
+    public int fetchWord(int index, boolean throwReserve) throws MemoryOutOfBounds, IllegalMemoryAccess {
+        return fetchWord(index, throwReserve, false);
+    }
+
+    /**
+     * Fetches an instruction word, as {@link AllMemory#fetchWord(int)} does a data word. The two only
+     * differ with a {@link CacheHierarchy}, where instructions are looked for in its instruction cache.
+     *
+     * @param index The index of the instruction
+     * @return The raw word of the instruction
+     * @throws MemoryOutOfBounds   When the memory index is out of bounds
+     * @throws IllegalMemoryAccess When the memory index is reserved
+     */
+    public int fetchInstruction(int index) throws MemoryOutOfBounds, IllegalMemoryAccess {
+        return fetchWord(index, true, true);
+    }
+
+    private int fetchWord(int index, boolean throwReserve, boolean instruction)
+            throws MemoryOutOfBounds, IllegalMemoryAccess {
         checkIndex(index, throwReserve);
-        //We know that this conversion is safe because the instructions dictate as such
-        BitSet toFetch = BitConversion.convert(index);
-        allRegisters.setRegister(RegisterType.MAR, toFetch);
-
-        Optional<BitSet> bits = memoryCache.get(index);
-        BitSet fetched = bits.orElseGet(() -> memory.getChunkData(index));
-        allRegisters.setRegister(RegisterType.MBR, fetched);
-        int value = BitConversion.convert(fetched);
-        String mess = String.format("Fetching %d(%s) from memory index %d", value, BitConversion.toBinaryString(value, 16), index);
-        LOGGER.debug(mess);
+        allRegisters.setWord(RegisterType.MAR, index);
+
+        int fetched;
+        boolean hit;
+        if (cacheHierarchy != null) {
+            fetched = memory.read(index);
+            hit = cacheHierarchy.read(index, instruction);
+        } else {
+            fetched = memoryCache.getWord(index);
+            hit = fetched != MemoryCache.MISS;
+            if (!hit) {
+                fetched = memory.read(index);
+            }
+        }
+        allRegisters.setWord(RegisterType.MBR, fetched);
+        if (prefetcher != null && !instruction) {
+            MemoryCache target = (cacheHierarchy == null) ? memoryCache : cacheHierarchy.getL1D();
+            prefetcher.access(allRegisters.getWord(RegisterType.PC), index, target.getBlockSize(), !hit, prefetchSink);
+        }
+        if ((watchFlags[index] & WatchListener.READ) != 0) {
+            watchListener.watched(index, false);
+        }
+        for (FetchListener fetchListener : fetchListeners) {
+            if (instruction) {
+                fetchListener.fetchedInstruction(index, fetched, hit);
+            } else {
+                fetchListener.fetched(index, fetched, hit);
+            }
+        }
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug(String.format("Fetching %d(%s) from memory index %d",
+                    BitConversion.toSigned(fetched), BitConversion.toBinaryString(BitConversion.fromWord(fetched), 16), index));
+        }
         return fetched;
     }
 
@@ -146,73 +389,100 @@ public class AllMemory {
 
 
     /**
-     * This function will calculate the Effective Address for each instruction
+     * This function will calculate the Effective Address for the instruction in the IR.
+     * Instructions already have their decoded fields, and should call {@link AllMemory#EA(DecodedInstruction)}.
      */
     public int EA() {
-        int EA;
-        Register IR = allRegisters.getRegister(RegisterType.IR);
-        RegisterDecorator IRd = new RegisterDecorator(IR);
-        String instruction = IRd.toBinaryString();
-        String Opcode = instruction.substring(0, 6);
-        String IX_code = instruction.substring(8, 10);
-        String I_code = instruction.substring(10, 11);
-        String Address_code = instruction.substring(11, 16);
-
-        if (InstructionType.getInstructionType(Opcode).equals(InstructionType.RFS)) {
-            //I,IX is ignored in RFS
-            EA = Integer.parseInt(Address_code, 2);
-            return EA;
-        }
-        if (InstructionType.getInstructionType(Opcode).equals(InstructionType.AIR) ||
-                InstructionType.getInstructionType(Opcode).equals(InstructionType.SIR)) {
-            //I,IX is ignored in AIR,SIR
-            EA = Integer.parseInt(Address_code, 2);
-            return EA;
-        }
-        if (InstructionType.getInstructionType(Opcode).equals(InstructionType.LDX) ||
-                InstructionType.getInstructionType(Opcode).equals(InstructionType.STX)) {
-            //IX is not used in LDX,STX
-            if (I_code.equals("0")) {
-                return Integer.parseInt(Address_code, 2);
-            } else {
-                EA = BitConversion.convert(fetch(Integer.parseInt(Address_code, 2)));
-                return EA;
-            }
-        }
-        if (I_code.equals("0")) {
-            if (IX_code.equals("00")) {
-                EA = Integer.parseInt(Address_code, 2);
-                return EA;
+        return EA(new DecodedInstruction(allRegisters.getWord(RegisterType.IR)));
+    }
 
-            } else {
-                //int ixCode = BitConversion.fromBinaryString(IX_code);
-                RegisterType registerType = RegisterType.getIndex(IX_code);
-                Register register = allRegisters.getRegister(registerType);
-                RegisterDecorator Xd = new RegisterDecorator(register);
-                EA = Xd.toInt() + Integer.parseInt(Address_code, 2);
-                return EA;
-            }
-        } else {
-            if (IX_code.equals("00")) {
-                EA = BitConversion.convert(fetch(Integer.parseInt(Address_code, 2)));
-                return EA;
-            } else {
-                //int ixCode = BitConversion.fromBinaryString(IX_code);
-                RegisterType registerType = RegisterType.getIndex(IX_code);
-                Register register = allRegisters.getRegister(registerType);
-                RegisterDecorator Xd = new RegisterDecorator(register);
-                int index = Xd.toInt() + Integer.parseInt(Address_code, 2);
-                EA = BitConversion.convert(fetch(index));
-                return EA;
-            }
+    /**
+     * This function will calculate the Effective Address for a decoded instruction, using
+     * the {@link AddressingMode} of its type. Only the fields and the index registers are read,
+     * so nothing is allocated.
+     *
+     * @param decoded The decoded instruction
+     * @return The effective address
+     * @throws MemoryOutOfBounds   When an indirect address is out of bounds
+     * @throws IllegalMemoryAccess When an indirect address is reserved
+     */
+    public int EA(DecodedInstruction decoded) throws MemoryOutOfBounds, IllegalMemoryAccess {
+        int address = decoded.getAddress();
+        switch (decoded.getInstructionType().getAddressingMode()) {
+            case IMMEDIATE:
+                //I,IX is ignored in RFS,AIR,SIR
+                return address;
+            case INDEXED:
+                int ix = decoded.getIX();
+                if (ix != 0) {
+                    address += BitConversion.toSigned(allRegisters.getWord(RegisterType.getIndex(ix)));
+                }
+                break;
+            default:
+                //IX is not used in LDX,STX
+                break;
         }
+        if (decoded.isIndirect()) {
+            return BitConversion.toSigned(fetchWord(address));
+        }
+        return address;
     }
 
     public AllRegisters getAllRegisters() {
         return this.allRegisters;
     }
 
-    public Memory getMemory() {
+    public MemoryBackend getMemory() {
         return this.memory;
     }
+
+    /**
+     * Counts instruction fetches, data reads and stores against a hierarchy of caches instead of the
+     * single {@link MemoryCache}. The single cache counts nothing while the hierarchy is set, but the
+     * words it holds are kept current, so it serves the stored words once the hierarchy is taken away.
+     *
+     * @param cacheHierarchy The hierarchy, or null to go back to the single cache
+     */
+    public void setCacheHierarchy(CacheHierarchy cacheHierarchy) {
+        if (cacheHierarchy != null) {
+            cacheHierarchy.setBackend(memory);
+        }
+        this.cacheHierarchy = cacheHierarchy;
+    }
+
+    /**
+     * @return The hierarchy accesses are counted against, or null if they go through the single cache
+     */
+    public CacheHierarchy getCacheHierarchy() {
+        return cacheHierarchy;
+    }
+
+    /**
+     * Lets a prefetcher watch data reads and bring blocks into the cache ahead of them: the single
+     * cache, or the level 1 data cache of a hierarchy. Prefetches are filled from memory without
+     * costing cycles, as if the bus were otherwise idle; only demand reads and stores are charged.
+     *
+     * @param prefetcher The prefetcher, or null for none
+     */
+    public void setPrefetcher(Prefetcher prefetcher) {
+        this.prefetcher = prefetcher;
+    }
+
+    /**
+     * @return The prefetcher watching data reads, or null if there is none
+     */
+    public Prefetcher getPrefetcher() {
+        return prefetcher;
+    }
+
+    private void prefetch(int index) {
+        if (index < 0 || index > maxMemory) {
+            return;
+        }
+        ((cacheHierarchy == null) ? memoryCache : cacheHierarchy.getL1D()).prefetch(index);
+    }
+
+    public MemoryCache getMemoryCache() {
+        return this.memoryCache;
+    }
 }
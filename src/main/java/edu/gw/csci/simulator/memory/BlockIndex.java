@@ -0,0 +1,87 @@
+package edu.gw.csci.simulator.memory;
+
+import java.util.Arrays;
+
+/**
+ * Maps the block numbers held by a {@link MemoryCache} to their lines, so a lookup is one hash
+ * probe, rarely a few, however many ways a set has. An open addressed table of primitive arrays at
+ * most half full, with linear probing, and entries removed by shifting the run after them back, so
+ * nothing allocates and no tombstones pile up.
+ */
+class BlockIndex {
+
+    static final int NONE = -1;
+
+    private final int[] blocks;
+    private final int[] lines;
+    private final int mask, shift;
+
+    /**
+     * @param capacity The most blocks held at once
+     */
+    BlockIndex(int capacity) {
+        int slots = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1) << 1;
+        this.blocks = new int[slots];
+        this.lines = new int[slots];
+        this.mask = slots - 1;
+        this.shift = Integer.SIZE - Integer.numberOfTrailingZeros(slots);
+        Arrays.fill(blocks, NONE);
+    }
+
+    private int slot(int block) {
+        //Fibonacci hashing, so the blocks of a stride spread over the table
+        return (block * 0x9E3779B9) >>> shift;
+    }
+
+    /**
+     * @return The line of the block, or {@link BlockIndex#NONE}
+     */
+    int get(int block) {
+        for (int slot = slot(block); ; slot = (slot + 1) & mask) {
+            int held = blocks[slot];
+            if (held == block) {
+                return lines[slot];
+            }
+            if (held == NONE) {
+                return NONE;
+            }
+        }
+    }
+
+    /**
+     * Adds a block that is not held yet.
+     */
+    void put(int block, int line) {
+        int slot = slot(block);
+        while (blocks[slot] != NONE) {
+            slot = (slot + 1) & mask;
+        }
+        blocks[slot] = block;
+        lines[slot] = line;
+    }
+
+    void remove(int block) {
+        int slot = slot(block);
+        while (blocks[slot] != block) {
+            if (blocks[slot] == NONE) {
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        //Move back any later entry of the run that can no longer be reached past the gap
+        int gap = slot;
+        for (int next = (gap + 1) & mask; blocks[next] != NONE; next = (next + 1) & mask) {
+            int home = slot(blocks[next]);
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                blocks[gap] = blocks[next];
+                lines[gap] = lines[next];
+                gap = next;
+            }
+        }
+        blocks[gap] = NONE;
+    }
+
+    void clear() {
+        Arrays.fill(blocks, NONE);
+    }
+}
@@ -0,0 +1,349 @@
+package edu.gw.csci.simulator.memory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Split level 1 instruction and data caches, in front of an optional unified level 2 cache, for
+ * {@link AllMemory#setCacheHierarchy(CacheHierarchy) AllMemory} to count accesses against instead of
+ * its single {@link MemoryCache}. Instruction fetches look in L1I, and data reads and stores in L1D,
+ * so code and data no longer evict each other at level 1.
+ * <p>
+ * A read that misses a level looks in the next one, and the block is put into every level it missed,
+ * on the way back. The levels are neither inclusive nor exclusive: a block evicted from L2 stays in
+ * L1. Stores are written into L1D under its own write policy, and whatever it writes through or back
+ * goes into L2, then memory. A store also updates a copy of its address in L1I, so code written by the
+ * program is fetched as written. As with a single cache, the words themselves always come from the
+ * backend; the hierarchy only decides what each access costs.
+ * <p>
+ * A read costs the latency of every level it looks in, and of memory if it misses them all. A store
+ * costs the L1 latency, and every word that then reaches L2 or memory costs the latency of that level.
+ * The average memory access time is measured as the cycles of every access over the accesses.
+ */
+public class CacheHierarchy {
+
+    /**
+     * The cycles of a hit in L1 and in L2, and of a memory access, to start with
+     */
+    public static final int DEFAULT_L1_LATENCY = 1, DEFAULT_L2_LATENCY = 10, DEFAULT_MEMORY_LATENCY = 100;
+
+    private final MemoryCache l1i, l1d, l2;
+    private int l1Latency = DEFAULT_L1_LATENCY, l2Latency = DEFAULT_L2_LATENCY, memoryLatency = DEFAULT_MEMORY_LATENCY;
+
+    private MemoryBackend backend;
+
+    private long instructionReads, instructionCycles;
+    private long dataReads, dataWrites, dataCycles;
+    private int lastLatency;
+
+    /**
+     * @param l1i The level 1 instruction cache
+     * @param l1d The level 1 data cache
+     * @param l2  The unified level 2 cache, or null for L1 misses to go to memory
+     */
+    public CacheHierarchy(MemoryCache l1i, MemoryCache l1d, MemoryCache l2) {
+        if (l1i == l1d || (l2 != null && (l2 == l1i || l2 == l1d))) {
+            throw new IllegalArgumentException("Each level needs a cache of its own");
+        }
+        this.l1i = l1i;
+        this.l1d = l1d;
+        this.l2 = l2;
+        l1i.setNextLevel(l2);
+        l1d.setNextLevel(l2);
+    }
+
+    /**
+     * Parses a hierarchy such as "l1i=64,2,2,LRU;l1d=64,4,2,LRU,WRITE_BACK;l2=512,8,4,LRU;latency=1,10,100".
+     * Each cache is given as for {@link MemoryCache#create(String)}; l2 and the latencies of L1, L2 and
+     * memory can be left out.
+     *
+     * @param spec The levels, separated by semicolons
+     * @throws IllegalArgumentException If the spec is malformed, or a level is missing or not allowed
+     */
+    public static CacheHierarchy create(String spec) {
+        MemoryCache l1i = null, l1d = null, l2 = null;
+        int[] latencies = null;
+        for (String part : spec.split(";")) {
+            String[] pair = part.split("=", 2);
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("Expected level=geometry, not " + part);
+            }
+            switch (pair[0].trim().toLowerCase()) {
+                case "l1i":
+                    l1i = MemoryCache.create(pair[1]);
+                    break;
+                case "l1d":
+                    l1d = MemoryCache.create(pair[1]);
+                    break;
+                case "l2":
+                    l2 = MemoryCache.create(pair[1]);
+                    break;
+                case "latency":
+                    latencies = latencies(pair[1]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("No cache level called " + pair[0]);
+            }
+        }
+        if (l1i == null || l1d == null) {
+            throw new IllegalArgumentException("A hierarchy needs both l1i and l1d: " + spec);
+        }
+        CacheHierarchy hierarchy = new CacheHierarchy(l1i, l1d, l2);
+        if (latencies != null) {
+            hierarchy.setLatencies(latencies[0], latencies[1], latencies[2]);
+        }
+        return hierarchy;
+    }
+
+    private static int[] latencies(String spec) {
+        String[] parts = spec.split(",");
+        if (parts.length != 3) {
+            throw new IllegalArgumentException("Expected the latencies of L1, L2 and memory, not " + spec);
+        }
+        int[] latencies = new int[3];
+        for (int i = 0; i < 3; i++) {
+            try {
+                latencies[i] = Integer.parseInt(parts[i].trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Malformed latency: " + parts[i], e);
+            }
+        }
+        return latencies;
+    }
+
+    /**
+     * @return A hierarchy of empty caches with the same geometries, policies and latencies
+     */
+    public CacheHierarchy emptyCopy() {
+        CacheHierarchy copy = new CacheHierarchy(l1i.emptyCopy(), l1d.emptyCopy(), (l2 == null) ? null : l2.emptyCopy());
+        copy.setLatencies(l1Latency, l2Latency, memoryLatency);
+        return copy;
+    }
+
+    /**
+     * @param l1Latency     The cycles of an L1 access
+     * @param l2Latency     The cycles of an L2 access
+     * @param memoryLatency The cycles of a memory access
+     */
+    public void setLatencies(int l1Latency, int l2Latency, int memoryLatency) {
+        if (l1Latency < 0 || l2Latency < 0 || memoryLatency < 0) {
+            throw new IllegalArgumentException("Latencies can't be negative");
+        }
+        this.l1Latency = l1Latency;
+        this.l2Latency = l2Latency;
+        this.memoryLatency = memoryLatency;
+    }
+
+    /**
+     * Sets where blocks put into the levels are read from.
+     */
+    public void setBackend(MemoryBackend backend) {
+        this.backend = backend;
+        l1i.setBackend(backend);
+        l1d.setBackend(backend);
+        if (l2 != null) {
+            l2.setBackend(backend);
+        }
+    }
+
+    /**
+     * Counts an instruction fetch or a data read.
+     *
+     * @param index       The address read
+     * @param instruction True for an instruction fetch
+     * @return True if it hit in L1
+     */
+    public boolean read(int index, boolean instruction) {
+        long traffic = writeTraffic();
+        MemoryCache l1 = instruction ? l1i : l1d;
+        int cycles = l1Latency;
+        boolean hit = l1.getWord(index) != MemoryCache.MISS;
+        if (!hit) {
+            int word = backend.read(index);
+            if (l2 == null) {
+                cycles += memoryLatency;
+            } else {
+                cycles += l2Latency;
+                if (l2.getWord(index) == MemoryCache.MISS) {
+                    cycles += memoryLatency;
+                    l2.putWord(index, word);
+                }
+            }
+            l1.putWord(index, word);
+        }
+        cycles += writeTrafficCycles(traffic);
+        lastLatency = cycles;
+        if (instruction) {
+            instructionReads++;
+            instructionCycles += cycles;
+        } else {
+            dataReads++;
+            dataCycles += cycles;
+        }
+        return hit;
+    }
+
+    /**
+     * Counts a store.
+     *
+     * @param index The address stored to
+     * @param word  The raw word stored
+     */
+    public void write(int index, int word) {
+        long traffic = writeTraffic();
+        l1d.writeWord(index, word);
+        l1i.updateWord(index, word);
+        lastLatency = l1Latency + writeTrafficCycles(traffic);
+        dataWrites++;
+        dataCycles += lastLatency;
+    }
+
+    /**
+     * Updates a cached copy of an address in every level, without counting anything, as when a store
+     * is undone.
+     */
+    public void update(int index, int word) {
+        l1i.updateWord(index, word);
+        l1d.updateWord(index, word);
+        if (l2 != null) {
+            l2.updateWord(index, word);
+        }
+    }
+
+    /**
+     * @return The words written out of L1 and out of L2, weighted by the latency of where they went
+     */
+    private long writeTraffic() {
+        long l1Words = l1i.getMemoryWrites() + l1d.getMemoryWrites();
+        if (l2 == null) {
+            return l1Words * memoryLatency;
+        }
+        return l1Words * l2Latency + l2.getMemoryWrites() * memoryLatency;
+    }
+
+    private int writeTrafficCycles(long before) {
+        return (int) (writeTraffic() - before);
+    }
+
+    /**
+     * Writes every dirty line back, L1 before L2, as at the end of a run.
+     */
+    public void flush() {
+        l1i.flush();
+        l1d.flush();
+        if (l2 != null) {
+            l2.flush();
+        }
+    }
+
+    /**
+     * Drops every level's entries, leaving the counts alone.
+     */
+    public void clear() {
+        l1i.clear();
+        l1d.clear();
+        if (l2 != null) {
+            l2.clear();
+        }
+    }
+
+    public MemoryCache getL1I() {
+        return l1i;
+    }
+
+    public MemoryCache getL1D() {
+        return l1d;
+    }
+
+    /**
+     * @return The level 2 cache, or null if there is none
+     */
+    public MemoryCache getL2() {
+        return l2;
+    }
+
+    /**
+     * @return L1I, L1D, then L2 if there is one
+     */
+    public List<MemoryCache> getLevels() {
+        List<MemoryCache> levels = new ArrayList<>(3);
+        levels.add(l1i);
+        levels.add(l1d);
+        if (l2 != null) {
+            levels.add(l2);
+        }
+        return levels;
+    }
+
+    /**
+     * @return The cycles of the last access counted, for a timing model to charge
+     */
+    public int getLastLatency() {
+        return lastLatency;
+    }
+
+    public long getInstructionReads() {
+        return instructionReads;
+    }
+
+    public long getDataReads() {
+        return dataReads;
+    }
+
+    public long getDataWrites() {
+        return dataWrites;
+    }
+
+    /**
+     * @return The average cycles of an access, instruction fetches, data reads and stores together, 0 if none
+     */
+    public double getAverageAccessTime() {
+        long accesses = instructionReads + dataReads + dataWrites;
+        return (accesses == 0) ? 0 : (double) (instructionCycles + dataCycles) / accesses;
+    }
+
+    /**
+     * @return The average cycles of an instruction fetch, 0 if none
+     */
+    public double getInstructionAccessTime() {
+        return (instructionReads == 0) ? 0 : (double) instructionCycles / instructionReads;
+    }
+
+    /**
+     * @return The average cycles of a data read or store, 0 if none
+     */
+    public double getDataAccessTime() {
+        long accesses = dataReads + dataWrites;
+        return (accesses == 0) ? 0 : (double) dataCycles / accesses;
+    }
+
+    /**
+     * @return The share of lookups in the cache that hit, 0 if there were none
+     */
+    public static double getHitRate(MemoryCache cache) {
+        return (cache.getTotalRequests() == 0) ? 0 : (double) cache.getCacheHit() / cache.getTotalRequests();
+    }
+
+    public String getReport() {
+        StringBuilder report = new StringBuilder(String.format(
+                "Cache hierarchy (latencies L1 %d, L2 %d, memory %d): AMAT %.3f cycles, instructions %.3f, data %.3f",
+                l1Latency, l2Latency, memoryLatency, getAverageAccessTime(), getInstructionAccessTime(),
+                getDataAccessTime()));
+        appendLevel(report, "L1I", l1i);
+        appendLevel(report, "L1D", l1d);
+        if (l2 != null) {
+            appendLevel(report, "L2", l2);
+        }
+        return report.toString();
+    }
+
+    private static void appendLevel(StringBuilder report, String name, MemoryCache cache) {
+        report.append(String.format("%n  %-3s %5d lines of %2d words, %2d way %-6s %10d hits %10d misses "
+                        + "(%6.2f%% hit rate), %d words written out, %d write backs", name, cache.getLines(),
+                cache.getBlockSize(), cache.getAssociativity(), cache.getReplacement(), cache.getCacheHit(),
+                cache.getCacheMiss(), 100 * getHitRate(cache), cache.getMemoryWrites(), cache.getWriteBacks()));
+        if (cache.getPrefetches() + cache.getRedundantPrefetches() > 0) {
+            report.append(String.format("%n      prefetch: %s", cache.getPrefetchReport()));
+        }
+    }
+}
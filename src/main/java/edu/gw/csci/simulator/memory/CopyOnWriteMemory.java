@@ -0,0 +1,151 @@
+package edu.gw.csci.simulator.memory;
+
+/**
+ * A {@link MemoryBackend} split into fixed size pages that can be shared between forks of a machine.
+ * {@link CopyOnWriteMemory#fork()} hands the child the same pages as the parent, and from then on
+ * neither side owns them: the first write to a shared page copies it. Forking therefore costs one
+ * pointer per page, and each side only pays for the pages it goes on to write.
+ * <p>
+ * A shared page is never written, so forks can run on different threads as long as each fork is
+ * only used by one thread, and the fork is handed over with the usual happens-before, such as
+ * starting a thread or submitting a task.
+ */
+public class CopyOnWriteMemory implements MemoryBackend {
+
+    private static final int DEFAULT_MEMORY_SIZE = 2048,
+            MAX_WORD_SIZE = 16;
+
+    /**
+     * 64 words per page, 32 pages for the default memory
+     */
+    public static final int PAGE_SHIFT = 6;
+    public static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private static final int OFFSET_MASK = PAGE_SIZE - 1;
+
+    private final int size, wordSize, mask;
+    private final char[][] pages;
+    private final boolean[] owned;
+    private long copiedPages;
+
+    public CopyOnWriteMemory(int size, int wordSize) {
+        if (wordSize > MAX_WORD_SIZE) {
+            throw new IllegalArgumentException("Can't instantiate word memory with words larger than 16 bits");
+        }
+        this.size = size;
+        this.wordSize = wordSize;
+        this.mask = (1 << wordSize) - 1;
+        int pageCount = (size + PAGE_SIZE - 1) >> PAGE_SHIFT;
+        this.pages = new char[pageCount][];
+        this.owned = new boolean[pageCount];
+        for (int page = 0; page < pageCount; page++) {
+            pages[page] = new char[PAGE_SIZE];
+            owned[page] = true;
+        }
+    }
+
+    public CopyOnWriteMemory() {
+        this(DEFAULT_MEMORY_SIZE, MAX_WORD_SIZE);
+    }
+
+    private CopyOnWriteMemory(CopyOnWriteMemory parent) {
+        this.size = parent.size;
+        this.wordSize = parent.wordSize;
+        this.mask = parent.mask;
+        this.pages = parent.pages.clone();
+        this.owned = new boolean[pages.length];
+    }
+
+    /**
+     * Shares every page with a new memory. Both this memory and the fork copy a page before they
+     * first write to it.
+     *
+     * @return The fork
+     */
+    public CopyOnWriteMemory fork() {
+        CopyOnWriteMemory child = new CopyOnWriteMemory(this);
+        for (int page = 0; page < owned.length; page++) {
+            owned[page] = false;
+        }
+        return child;
+    }
+
+    @Override
+    public void initialize() {
+        for (int page = 0; page < pages.length; page++) {
+            pages[page] = new char[PAGE_SIZE];
+            owned[page] = true;
+        }
+    }
+
+    @Override
+    public int read(int index) {
+        return pages[index >> PAGE_SHIFT][index & OFFSET_MASK];
+    }
+
+    @Override
+    public void write(int index, int word) {
+        int page = index >> PAGE_SHIFT;
+        if (!owned[page]) {
+            pages[page] = pages[page].clone();
+            owned[page] = true;
+            copiedPages++;
+        }
+        pages[page][index & OFFSET_MASK] = (char) (word & mask);
+    }
+
+    @Override
+    public void copyTo(char[] words) {
+        for (int page = 0; page < pages.length; page++) {
+            int start = page << PAGE_SHIFT;
+            System.arraycopy(pages[page], 0, words, start, Math.min(PAGE_SIZE, size - start));
+        }
+    }
+
+    /**
+     * Replaces every page with a fresh one this memory owns, leaving any forks alone.
+     */
+    @Override
+    public void copyFrom(char[] words) {
+        for (int page = 0; page < pages.length; page++) {
+            int start = page << PAGE_SHIFT;
+            char[] copy = new char[PAGE_SIZE];
+            System.arraycopy(words, start, copy, 0, Math.min(PAGE_SIZE, size - start));
+            pages[page] = copy;
+            owned[page] = true;
+        }
+    }
+
+    /**
+     * @return The number of shared pages this memory had to copy before writing to them
+     */
+    public long getCopiedPages() {
+        return copiedPages;
+    }
+
+    /**
+     * @return The number of pages still shared with a parent or a fork
+     */
+    public int getSharedPages() {
+        int shared = 0;
+        for (boolean pageOwned : owned) {
+            if (!pageOwned) {
+                shared++;
+            }
+        }
+        return shared;
+    }
+
+    public int getPageCount() {
+        return pages.length;
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    @Override
+    public int getWordSize() {
+        return wordSize;
+    }
+}
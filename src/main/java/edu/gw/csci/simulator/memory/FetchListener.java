@@ -0,0 +1,23 @@
+package edu.gw.csci.simulator.memory;
+
+/**
+ * Notified by {@link AllMemory} after every fetch, the counterpart of {@link StoreListener} for
+ * reads, such as for tracing execution or counting the cycles of memory accesses.
+ */
+public interface FetchListener {
+
+    /**
+     * @param index The memory index read
+     * @param word  The raw word read, from the cache or the backend
+     * @param hit   True if the word came from the {@link MemoryCache}
+     */
+    void fetched(int index, int word, boolean hit);
+
+    /**
+     * Called in place of {@link FetchListener#fetched(int, int, boolean)} for the fetch of an
+     * instruction, which is a read like any other unless the listener tells them apart.
+     */
+    default void fetchedInstruction(int index, int word, boolean hit) {
+        fetched(index, word, hit);
+    }
+}
@@ -1,49 +1,83 @@
 package edu.gw.csci.simulator.memory;
 
-import javafx.scene.control.TableView;
+import edu.gw.csci.simulator.utils.BitConversion;
 
 import java.util.BitSet;
 
 /**
- * Simulates the computer's external (volatile) memory.
+ * Simulates the computer's external (volatile) memory for the GUI. The words themselves live in
+ * a {@link WordMemory}; this class adapts them into one {@link MemoryChunk} per address for the
+ * memory table, and runs a change listener on every write so the table can refresh.
  *
  * @version 20180918
  */
-public class Memory {
+public class Memory implements MemoryBackend {
 
     private static final int DEFAULT_MEMORY_SIZE = 2048,
             DEFAULT_WORD_SIZE = 16;
 
     private final int size, wordSize;
+    private final WordMemory words;
     private MemoryChunk[] memory;
+    private boolean initialized;
+    private Runnable changeListener;
 
     public Memory(int size, int wordSize) {
         this.size = size;
         this.wordSize = wordSize;
+        this.words = new WordMemory(size, wordSize);
         this.memory = new MemoryChunk[size];
         for (int i = 0; i < this.size; i++) {
-            this.memory[i] = new MemoryChunk(wordSize, i);
+            this.memory[i] = new MemoryChunk(this, i);
         }
     }
 
     public Memory() {
-        this.size = DEFAULT_MEMORY_SIZE;
-        this.wordSize = DEFAULT_WORD_SIZE;
-        this.memory = new MemoryChunk[DEFAULT_MEMORY_SIZE];
-        for (int i = 0; i < this.size; i++) {
-            this.memory[i] = new MemoryChunk(DEFAULT_WORD_SIZE, i);
-        }
+        this(DEFAULT_MEMORY_SIZE, DEFAULT_WORD_SIZE);
     }
 
+    @Override
     public void initialize() {
-        for (MemoryChunk memoryChunk : memory) {
-            memoryChunk.initialize();
-        }
+        words.initialize();
+        initialized = true;
+        notifyChange();
+    }
+
+    /**
+     * @return Whether {@link Memory#initialize()} has been called, until then every chunk displays as null
+     */
+    public boolean isInitialized() {
+        return initialized;
+    }
+
+    @Override
+    public int read(int index) {
+        return words.read(index);
+    }
+
+    @Override
+    public void write(int index, int word) {
+        words.write(index, word);
+        notifyChange();
+    }
+
+    @Override
+    public void copyTo(char[] words) {
+        this.words.copyTo(words);
+    }
+
+    /**
+     * Replaces every word with a single change notification.
+     */
+    @Override
+    public void copyFrom(char[] words) {
+        this.words.copyFrom(words);
+        initialized = true;
+        notifyChange();
     }
 
     public BitSet getChunkData(int index) {
-        MemoryChunk chunk = this.memory[index];
-        return chunk.getData();
+        return BitConversion.fromWord(read(index));
     }
 
     public MemoryChunk get(int index) {
@@ -55,9 +89,19 @@ public class Memory {
         memoryChunk.setData(bitSet);
     }
 
-    public void bindTableView(TableView tableView) {
-        for (MemoryChunk memoryChunk : memory) {
-            memoryChunk.getBitSetProperty().addListener((observable, oldValue, newValue) -> tableView.refresh());
+    /**
+     * Runs the listener whenever any memory chunk is written. The GUI uses this to refresh
+     * its memory table; nothing is registered when running headless.
+     *
+     * @param changeListener The callback, or null to remove it
+     */
+    public void setChangeListener(Runnable changeListener) {
+        this.changeListener = changeListener;
+    }
+
+    private void notifyChange() {
+        if (changeListener != null) {
+            changeListener.run();
         }
     }
 
@@ -65,10 +109,12 @@ public class Memory {
         return memory;
     }
 
+    @Override
     public int getSize() {
         return size;
     }
 
+    @Override
     public int getWordSize() {
         return wordSize;
     }
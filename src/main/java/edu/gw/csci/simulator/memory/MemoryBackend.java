@@ -0,0 +1,59 @@
+package edu.gw.csci.simulator.memory;
+
+/**
+ * Storage behind {@link AllMemory}. Words are passed around as raw, unsigned values
+ * (0 to 2^wordSize - 1), so storing and fetching through this interface never has to
+ * allocate. {@link WordMemory} is the flat implementation used for headless runs, and
+ * {@link Memory} adapts it into observable {@link MemoryChunk}s for the GUI.
+ */
+public interface MemoryBackend {
+
+    /**
+     * Sets every word to zero
+     */
+    void initialize();
+
+    /**
+     * @param index The address to read, which must be in bounds
+     * @return The raw word at the address
+     */
+    int read(int index);
+
+    /**
+     * @param index The address to write, which must be in bounds
+     * @param word  The raw word to write, only the low word size bits are kept
+     */
+    void write(int index, int word);
+
+    /**
+     * Copies every word out, for a snapshot.
+     *
+     * @param words The array to fill, as long as the memory
+     */
+    default void copyTo(char[] words) {
+        for (int i = 0; i < words.length; i++) {
+            words[i] = (char) read(i);
+        }
+    }
+
+    /**
+     * Replaces every word, for restoring a snapshot.
+     *
+     * @param words The new contents, as long as the memory
+     */
+    default void copyFrom(char[] words) {
+        for (int i = 0; i < words.length; i++) {
+            write(i, words[i]);
+        }
+    }
+
+    /**
+     * @return The number of words
+     */
+    int getSize();
+
+    /**
+     * @return The number of bits in a word
+     */
+    int getWordSize();
+}
@@ -1,55 +1,488 @@
 package edu.gw.csci.simulator.memory;
 
+import edu.gw.csci.simulator.utils.BitConversion;
+
 import java.util.*;
 
+/**
+ * A set associative cache of {@link #getLines() lines} holding {@link #getBlockSize() blocks} of
+ * consecutive words. An address maps to the set of its block number modulo the number of sets. Its
+ * line is found through a hash index of the cached blocks rather than by comparing every way, and
+ * under LRU and FIFO each set keeps its lines in a list from oldest to newest, so
+ * {@link MemoryCache#getWord(int)} and {@link MemoryCache#putWord(int, int)} take the same few steps
+ * however many ways a set has. Tags, words and the replacement state are kept in primitive arrays, so
+ * neither allocates.
+ * <p>
+ * When a put misses, the least recently used, first inserted, a random, or the tree pseudo least
+ * recently used way of the set is replaced, see {@link Replacement}, after any invalid way. The rest of
+ * the new block is filled from the {@link #setBackend(MemoryBackend) backend}; without one, those
+ * words miss until they are put. The default cache is the old one: 16 words, fully associative, first
+ * in, first out.
+ * <p>
+ * Stores are {@link #writeWord(int, int) written} under a {@link WritePolicy}: written through to
+ * memory, or only marked dirty and written back, a whole block at a time, when the line is evicted or
+ * the cache {@link #flush() flushed}. Either way the writes can go through a coalescing
+ * {@link #setWriteBufferEntries(int) write buffer}. The backend itself is always written by the caller
+ * at once, so the rest of the simulator sees every store; the policy decides how many words the
+ * stores would have written to memory, which is what {@link #getMemoryWrites()} counts.
+ */
 public class MemoryCache {
 
-    private final LinkedList<BitSet> cache;
+    /**
+     * Returned by {@link MemoryCache#getWord(int)} on a miss, no word can have this value
+     */
+    public static final int MISS = -1;
+
+    /**
+     * How the way to replace in a full set is chosen
+     */
+    public enum Replacement {
+        /**
+         * The way hit or put longest ago
+         */
+        LRU,
+        /**
+         * The way filled longest ago
+         */
+        FIFO,
+        /**
+         * Any way, from a seeded generator so runs repeat
+         */
+        RANDOM,
+        /**
+         * The way a binary tree of bits, flipped away from each access, points to. Needs a power of two ways
+         */
+        PLRU
+    }
+
+    /**
+     * When stores reach memory
+     */
+    public enum WritePolicy {
+        /**
+         * Every store is written to memory
+         */
+        WRITE_THROUGH,
+        /**
+         * A store only marks its line dirty, and a dirty line is written to memory when evicted
+         */
+        WRITE_BACK
+    }
 
-    private final HashMap<Integer, Integer> lookup;
+    private static final int INVALID = -1;
+    private static final int RANDOM_SEED = 0x2545F491;
 
     private final static int DEFAULT_CACHE_SIZE = 16;
-    private final int maxCacheSize;
+
+    private final int lines, ways, sets, blockSize;
+    private final int blockBits, setMask;
+    private final Replacement replacement;
+    private WritePolicy writePolicy = WritePolicy.WRITE_THROUGH;
+    private WriteBuffer writeBuffer;
+    private MemoryCache nextLevel;
+
+    /**
+     * The block number of each line, {@link #INVALID} if empty, and the words of its block
+     */
+    private final int[] tags;
+    private final int[] words;
+    private final boolean[] dirty;
+    /**
+     * Whether each line was prefetched and not used yet, and the block the last prefetch into it evicted
+     */
+    private final boolean[] prefetched;
+    private final int[] evictedByPrefetch;
+    private boolean prefetching;
+    /**
+     * The last access of each line under LRU, its fill otherwise, counted in puts and gets
+     */
+    private final long[] stamps;
+    /**
+     * Under LRU and FIFO, the lines of each set from the one to replace first to the one stamped last:
+     * the ends of each set's list, and the neighbours of each line in it
+     */
+    private final int[] oldest, newest;
+    private final int[] older, newer;
+    /**
+     * The ways in use of each set. Lines are only emptied all at once, so they are the first ways
+     */
+    private final int[] filled;
+    /**
+     * The line of each cached block, null for a direct mapped cache, where the set is the line
+     */
+    private final BlockIndex index;
+    /**
+     * The tree bits of each set under PLRU, bit i - 1 for node i, whose children are 2i and 2i + 1
+     */
+    private final long[] trees;
+    private long clock;
+    private int random = RANDOM_SEED;
+    private int size;
+
+    private MemoryBackend backend;
+
     private long cacheHit = 0, cacheMiss = 0, totalRequests = 0;
+    private long writes, memoryWrites, writeBacks;
+    private long prefetches, usefulPrefetches, uselessPrefetches, redundantPrefetches, pollution;
+    private final long[] setHits, setMisses, setEvictions;
 
     public MemoryCache() {
-        this.cache = new LinkedList<>();
-        this.lookup = new HashMap<>();
-        this.maxCacheSize = DEFAULT_CACHE_SIZE;
+        this(DEFAULT_CACHE_SIZE);
     }
 
+    /**
+     * A fully associative cache of single words with first in, first out replacement.
+     */
     public MemoryCache(int cacheSize) {
-        this.cache = new LinkedList<>();
-        this.lookup = new HashMap<>();
-        this.maxCacheSize = cacheSize;
+        this(cacheSize, cacheSize, 1, Replacement.FIFO);
+    }
+
+    /**
+     * @param lines         The number of blocks the cache holds
+     * @param associativity The number of ways in a set, which divides the lines into a power of two sets
+     * @param blockSize     The words in a block, a power of two
+     * @param replacement   How a way of a full set is chosen for a new block
+     * @throws IllegalArgumentException If the geometry is not one of these
+     */
+    public MemoryCache(int lines, int associativity, int blockSize, Replacement replacement) {
+        if (lines <= 0 || associativity <= 0 || lines % associativity != 0) {
+            throw new IllegalArgumentException(String.format("%d lines can't be split into sets of %d ways",
+                    lines, associativity));
+        }
+        this.lines = lines;
+        this.ways = associativity;
+        this.sets = lines / associativity;
+        this.blockSize = blockSize;
+        this.replacement = replacement;
+        if (Integer.bitCount(sets) != 1) {
+            throw new IllegalArgumentException(String.format("%d sets of %d ways is not a power of two sets",
+                    sets, ways));
+        }
+        if (blockSize <= 0 || Integer.bitCount(blockSize) != 1) {
+            throw new IllegalArgumentException("The block size must be a power of two, not " + blockSize);
+        }
+        if (replacement == Replacement.PLRU && (Integer.bitCount(ways) != 1 || ways > Long.SIZE)) {
+            throw new IllegalArgumentException("PLRU needs a power of two ways up to 64, not " + ways);
+        }
+        this.blockBits = Integer.numberOfTrailingZeros(blockSize);
+        this.setMask = sets - 1;
+        this.tags = new int[lines];
+        this.words = new int[lines * blockSize];
+        this.dirty = new boolean[lines];
+        this.prefetched = new boolean[lines];
+        this.evictedByPrefetch = new int[lines];
+        this.stamps = new long[lines];
+        this.oldest = new int[sets];
+        this.newest = new int[sets];
+        this.older = new int[lines];
+        this.newer = new int[lines];
+        this.filled = new int[sets];
+        this.index = (ways == 1) ? null : new BlockIndex(lines);
+        this.trees = new long[sets];
+        this.setHits = new long[sets];
+        this.setMisses = new long[sets];
+        this.setEvictions = new long[sets];
+        Arrays.fill(tags, INVALID);
+        Arrays.fill(evictedByPrefetch, INVALID);
+        resetOrder();
     }
 
     /**
-     * Puts a value into the cache. If the cache has reached its maximum size, the first
-     * value inserted will be evicted (FIFO).
+     * Parses a geometry such as "64,4,2,LRU", optionally followed by a write policy, as in
+     * "64,4,2,LRU,WRITE_BACK".
+     *
+     * @param spec The lines, associativity, block size, replacement and write policy, separated by commas
+     * @throws IllegalArgumentException If the spec is malformed or the geometry is not allowed
+     */
+    public static MemoryCache create(String spec) {
+        String[] parts = spec.split(",");
+        if (parts.length != 4 && parts.length != 5) {
+            throw new IllegalArgumentException(
+                    "Expected lines,associativity,block size,replacement[,write policy], not " + spec);
+        }
+        try {
+            MemoryCache cache = new MemoryCache(Integer.parseInt(parts[0].trim()), Integer.parseInt(parts[1].trim()),
+                    Integer.parseInt(parts[2].trim()), Replacement.valueOf(parts[3].trim().toUpperCase()));
+            if (parts.length == 5) {
+                cache.setWritePolicy(WritePolicy.valueOf(parts[4].trim().toUpperCase()));
+            }
+            return cache;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed cache geometry: " + spec, e);
+        }
+    }
+
+    /**
+     * @return The geometry and write policy, as given to {@link MemoryCache#create(String)}
+     */
+    public String getSpec() {
+        return String.format("%d,%d,%d,%s,%s", lines, ways, blockSize, replacement, writePolicy);
+    }
+
+    /**
+     * @return An empty cache with the same geometry, replacement, write policy and write buffer
+     */
+    public MemoryCache emptyCopy() {
+        MemoryCache copy = new MemoryCache(lines, ways, blockSize, replacement);
+        copy.setWritePolicy(writePolicy);
+        copy.setWriteBufferEntries(getWriteBufferEntries());
+        return copy;
+    }
+
+    /**
+     * Sets when stores reach memory, writing back any dirty line when leaving write back.
+     */
+    public void setWritePolicy(WritePolicy writePolicy) {
+        if (writePolicy != WritePolicy.WRITE_BACK) {
+            writeBackAll();
+        }
+        this.writePolicy = writePolicy;
+    }
+
+    public WritePolicy getWritePolicy() {
+        return writePolicy;
+    }
+
+    /**
+     * Sends the words this cache writes, through or back, into another cache instead of memory, as
+     * the level below it. The words are read from the backend, so both need one.
+     *
+     * @param nextLevel The level below, or null for memory
+     */
+    public void setNextLevel(MemoryCache nextLevel) {
+        this.nextLevel = nextLevel;
+    }
+
+    public MemoryCache getNextLevel() {
+        return nextLevel;
+    }
+
+    /**
+     * Puts a coalescing write buffer of the given size between the cache and memory, or takes it
+     * away, after draining it, with 0.
+     *
+     * @param entries The blocks the buffer holds, 0 for none
+     * @throws IllegalArgumentException If the entries are negative, or the blocks are over 64 words
+     */
+    public void setWriteBufferEntries(int entries) {
+        if (entries < 0) {
+            throw new IllegalArgumentException("A write buffer can't have " + entries + " entries");
+        }
+        if (entries > 0 && blockSize > Long.SIZE) {
+            throw new IllegalArgumentException("A write buffer holds blocks of up to 64 words, not " + blockSize);
+        }
+        if (writeBuffer != null) {
+            writeBuffer.drain();
+        }
+        writeBuffer = (entries == 0) ? null : new WriteBuffer(entries, (block, mask) -> writeDown(block << blockBits, mask));
+    }
+
+    public int getWriteBufferEntries() {
+        return (writeBuffer == null) ? 0 : writeBuffer.getEntries();
+    }
+
+    /**
+     * @return True if a store can be absorbed without writing memory, by a write back cache or a write buffer
+     */
+    public boolean isBufferingWrites() {
+        return writePolicy == WritePolicy.WRITE_BACK || writeBuffer != null;
+    }
+
+    /**
+     * Sets where the rest of a block put into the cache is read from.
+     *
+     * @param backend The memory behind the cache, or null to leave the rest of a block missing
+     */
+    public void setBackend(MemoryBackend backend) {
+        this.backend = backend;
+    }
+
+    /**
+     * Puts a value into the cache. If the set of its block is full, a way is replaced.
      *
      * @param memoryIndex The index of memory cached
      * @param data        The to be stored by the call
      */
     public void put(int memoryIndex, BitSet data) {
-        if (cache.size() == maxCacheSize) {
-            //Pop the first off the queue
-            cache.removeFirst();
-
-            //Remove the entry pointing to zero, and reduce downwards
-            Integer removeIndex = null;
-            for (Map.Entry<Integer, Integer> entry : lookup.entrySet()) {
-                if (entry.getValue() == 0) {
-                    removeIndex = entry.getKey();
-                } else {
-                    Integer newValue = entry.getValue() - 1;
-                    lookup.put(entry.getKey(), newValue);
-                }
+        putWord(memoryIndex, BitConversion.toWord(data));
+    }
+
+    /**
+     * Puts a raw word into the cache. A block that is already cached is updated in place, otherwise
+     * it replaces a way of its set, and the hit and miss counts are left alone either way.
+     *
+     * @param memoryIndex The index of memory cached
+     * @param word        The raw word to be stored
+     */
+    public void putWord(int memoryIndex, int word) {
+        put(memoryIndex, word);
+    }
+
+    /**
+     * @return The line the word was put in
+     */
+    private int put(int memoryIndex, int word) {
+        int block = memoryIndex >>> blockBits;
+        int set = block & setMask;
+        int line = find(set, block);
+        if (line == INVALID) {
+            line = victim(set);
+            fill(line, block);
+            stamp(set, line);
+        } else {
+            used(line);
+            if (replacement == Replacement.LRU) {
+                stamp(set, line);
+            }
+        }
+        touch(set, line);
+        words[(line << blockBits) + (memoryIndex & (blockSize - 1))] = word;
+        return line;
+    }
+
+    /**
+     * Brings in the block of an address ahead of a read, unless it is already cached. The block is
+     * filled from the backend, and counted as prefetched until it is first read or stored to, or
+     * evicted unused. The block it replaces is remembered, so a miss on it later counts as pollution.
+     *
+     * @param memoryIndex An address in the block
+     * @return True if the block was brought in
+     */
+    public boolean prefetch(int memoryIndex) {
+        int block = memoryIndex >>> blockBits;
+        int set = block & setMask;
+        if (find(set, block) != INVALID) {
+            redundantPrefetches++;
+            return false;
+        }
+        prefetching = true;
+        int line = victim(set);
+        if (tags[line] != INVALID) {
+            evictedByPrefetch[line] = tags[line];
+        }
+        fill(line, block);
+        stamp(set, line);
+        touch(set, line);
+        prefetched[line] = true;
+        prefetches++;
+        return true;
+    }
+
+    private void used(int line) {
+        if (prefetched[line]) {
+            prefetched[line] = false;
+            usefulPrefetches++;
+        }
+    }
+
+    /**
+     * Counts a miss on a block a prefetch evicted, once. Only misses with a prefetcher attached look,
+     * so this scan of the set stays off the path of every other access.
+     */
+    private void checkPollution(int set, int block) {
+        int first = set * ways;
+        for (int line = first; line < first + ways; line++) {
+            if (evictedByPrefetch[line] == block) {
+                evictedByPrefetch[line] = INVALID;
+                pollution++;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Writes a stored word into the cache, putting its block in if needed, and counts the memory
+     * traffic the store makes under the {@link WritePolicy} and write buffer.
+     *
+     * @param memoryIndex The index of memory stored to
+     * @param word        The raw word stored
+     */
+    public void writeWord(int memoryIndex, int word) {
+        writes++;
+        int line = put(memoryIndex, word);
+        if (writePolicy == WritePolicy.WRITE_BACK) {
+            dirty[line] = true;
+        } else {
+            toMemory(memoryIndex, 1L);
+        }
+    }
+
+    /**
+     * Sends words on to memory, through the write buffer if there is one
+     *
+     * @param first The address of the word of the mask's lowest bit
+     * @param mask  A bit for each of the 64 words from the first written, all in one block if buffered
+     */
+    private void toMemory(int first, long mask) {
+        if (writeBuffer != null) {
+            writeBuffer.write(first >>> blockBits, mask << (first & (blockSize - 1)));
+        } else {
+            writeDown(first, mask);
+        }
+    }
+
+    /**
+     * Writes words to memory, or into the next level
+     *
+     * @param first The address of the word of the mask's lowest bit
+     * @param mask  A bit for each of the 64 words from the first written
+     */
+    private void writeDown(int first, long mask) {
+        memoryWrites += Long.bitCount(mask);
+        if (nextLevel == null) {
+            return;
+        }
+        for (long bits = mask; bits != 0; bits &= bits - 1) {
+            int address = first + Long.numberOfTrailingZeros(bits);
+            nextLevel.writeWord(address, (backend == null) ? 0 : backend.read(address));
+        }
+    }
+
+    private void writeBack(int line) {
+        if (dirty[line]) {
+            dirty[line] = false;
+            writeBacks++;
+            //A mask covers 64 words, so longer blocks, which a write buffer never holds, go in pieces
+            int first = tags[line] << blockBits;
+            for (int offset = 0; offset < blockSize; offset += Long.SIZE) {
+                int words = blockSize - offset;
+                toMemory(first + offset, (words >= Long.SIZE) ? -1L : (1L << words) - 1);
+            }
+        }
+    }
+
+    private void writeBackAll() {
+        for (int line = 0; line < lines; line++) {
+            if (tags[line] != INVALID) {
+                writeBack(line);
             }
-            lookup.remove(removeIndex);
         }
-        cache.add(data);
-        lookup.put(memoryIndex, cache.size() - 1);
+    }
+
+    /**
+     * Writes every dirty line back and drains the write buffer, as at the end of a run, so the
+     * memory writes count every store. The lines stay cached, clean.
+     */
+    public void flush() {
+        writeBackAll();
+        if (writeBuffer != null) {
+            writeBuffer.drain();
+        }
+    }
+
+    /**
+     * Updates the word of an address only if it is already cached, without touching the replacement
+     * order or the hit and miss counts.
+     *
+     * @param memoryIndex The index of memory cached
+     * @param word        The raw word to be stored
+     */
+    public void updateWord(int memoryIndex, int word) {
+        int block = memoryIndex >>> blockBits;
+        int line = find(block & setMask, block);
+        if (line != INVALID) {
+            words[(line << blockBits) + (memoryIndex & (blockSize - 1))] = word;
+        }
     }
 
     /**
@@ -60,22 +493,354 @@ public class MemoryCache {
      * @return The memory data, if present.
      */
     public Optional<BitSet> get(int memoryIndex) {
+        int word = getWord(memoryIndex);
+        return (word == MISS) ? Optional.empty() : Optional.of(BitConversion.fromWord(word));
+    }
+
+    /**
+     * Gets the raw word from cache, if present, and adjusts counters for hit/miss.
+     *
+     * @param memoryIndex The memory index to fetch
+     * @return The raw word, or {@link MemoryCache#MISS}
+     */
+    public int getWord(int memoryIndex) {
         totalRequests++;
-        if (lookup.containsKey(memoryIndex)) {
-            cacheHit++;
-            BitSet data = cache.get(lookup.get(memoryIndex));
-            return Optional.of(data);
+        int block = memoryIndex >>> blockBits;
+        int set = block & setMask;
+        int line = find(set, block);
+        int word = (line == INVALID) ? MISS : words[(line << blockBits) + (memoryIndex & (blockSize - 1))];
+        if (word == MISS) {
+            cacheMiss++;
+            setMisses[set]++;
+            if (prefetching && line == INVALID) {
+                checkPollution(set, block);
+            }
+            return MISS;
+        }
+        cacheHit++;
+        setHits[set]++;
+        used(line);
+        if (replacement == Replacement.LRU) {
+            stamp(set, line);
+        }
+        touch(set, line);
+        return word;
+    }
+
+    private int find(int set, int block) {
+        if (index == null) {
+            return (tags[set] == block) ? set : INVALID;
+        }
+        return index.get(block);
+    }
+
+    /**
+     * @return The line of the set to put a new block in, after evicting what it held
+     */
+    private int victim(int set) {
+        int first = set * ways;
+        if (filled[set] < ways) {
+            size++;
+            return first + filled[set]++;
+        }
+        setEvictions[set]++;
+        int line = replace(set, first);
+        writeBack(line);
+        if (prefetched[line]) {
+            prefetched[line] = false;
+            uselessPrefetches++;
+        }
+        return line;
+    }
+
+    private int replace(int set, int first) {
+        switch (replacement) {
+            case RANDOM:
+                random ^= random << 13;
+                random ^= random >>> 17;
+                random ^= random << 5;
+                return first + (int) ((random & 0xFFFFFFFFL) % ways);
+            case PLRU:
+                //Follow the bits, each pointing away from the half used last
+                long tree = trees[set];
+                int node = 1;
+                while (node < ways) {
+                    node = 2 * node + (int) ((tree >>> (node - 1)) & 1);
+                }
+                return first + node - ways;
+            default:
+                return oldest[set];
+        }
+    }
+
+    /**
+     * Marks the line as filled or, under LRU, used now: it gets the newest stamp, and under LRU
+     * and FIFO moves to the newest end of its set's list.
+     */
+    private void stamp(int set, int line) {
+        stamps[line] = ++clock;
+        if ((replacement != Replacement.LRU && replacement != Replacement.FIFO) || newest[set] == line) {
+            return;
+        }
+        int before = older[line], after = newer[line];
+        if (before == INVALID) {
+            oldest[set] = after;
+        } else {
+            newer[before] = after;
+        }
+        older[after] = before;
+        older[line] = newest[set];
+        newer[newest[set]] = line;
+        newer[line] = INVALID;
+        newest[set] = line;
+    }
+
+    /**
+     * Lists the ways of every set in order, as they are filled while empty
+     */
+    private void resetOrder() {
+        for (int set = 0; set < sets; set++) {
+            int first = set * ways;
+            for (int line = first; line < first + ways; line++) {
+                older[line] = (line == first) ? INVALID : line - 1;
+                newer[line] = (line == first + ways - 1) ? INVALID : line + 1;
+            }
+            oldest[set] = first;
+            newest[set] = first + ways - 1;
+        }
+        Arrays.fill(filled, 0);
+    }
+
+    private void fill(int line, int block) {
+        if (index != null) {
+            if (tags[line] != INVALID) {
+                index.remove(tags[line]);
+            }
+            index.put(block, line);
+        }
+        tags[line] = block;
+        int base = line << blockBits;
+        int address = block << blockBits;
+        for (int i = 0; i < blockSize; i++) {
+            words[base + i] = (backend != null && address + i < backend.getSize()) ? backend.read(address + i) : MISS;
+        }
+    }
+
+    /**
+     * Points the tree bits of the set away from the line
+     */
+    private void touch(int set, int line) {
+        if (replacement != Replacement.PLRU) {
+            return;
+        }
+        long tree = trees[set];
+        int node = line - set * ways + ways;
+        while (node > 1) {
+            int parent = node >>> 1;
+            //The bit picks the right child when set, so point it at the sibling
+            if ((node & 1) == 0) {
+                tree |= 1L << (parent - 1);
+            } else {
+                tree &= ~(1L << (parent - 1));
+            }
+            node = parent;
+        }
+        trees[set] = tree;
+    }
+
+    /**
+     * Drops every entry, dirty or not, and the waiting writes, leaving the hit and miss counts alone.
+     */
+    public void clear() {
+        Arrays.fill(tags, INVALID);
+        Arrays.fill(dirty, false);
+        Arrays.fill(prefetched, false);
+        Arrays.fill(evictedByPrefetch, INVALID);
+        Arrays.fill(trees, 0);
+        resetOrder();
+        if (index != null) {
+            index.clear();
+        }
+        if (writeBuffer != null) {
+            writeBuffer.clear();
+        }
+        size = 0;
+    }
+
+    /**
+     * Drops the hit, miss and eviction counts.
+     */
+    public void clearCounts() {
+        cacheHit = 0;
+        cacheMiss = 0;
+        totalRequests = 0;
+        Arrays.fill(setHits, 0);
+        Arrays.fill(setMisses, 0);
+        Arrays.fill(setEvictions, 0);
+        writes = 0;
+        memoryWrites = 0;
+        writeBacks = 0;
+        prefetches = 0;
+        usefulPrefetches = 0;
+        uselessPrefetches = 0;
+        redundantPrefetches = 0;
+        pollution = 0;
+        if (writeBuffer != null) {
+            writeBuffer.clearCounts();
         }
-        cacheMiss++;
-        return Optional.empty();
     }
 
+    /**
+     * @return The lines in use, least recently used or first filled first
+     */
+    private Integer[] linesInOrder() {
+        Integer[] ret = new Integer[size];
+        int n = 0;
+        for (int line = 0; line < lines; line++) {
+            if (tags[line] != INVALID) {
+                ret[n++] = line;
+            }
+        }
+        Arrays.sort(ret, (a, b) -> Long.compare(stamps[a], stamps[b]));
+        return ret;
+    }
+
+    /**
+     * @return The cached addresses, oldest entry first, so putting them back in order rebuilds the
+     * cache, exactly so under LRU and FIFO
+     */
+    public int[] getCachedAddresses() {
+        return cached(true);
+    }
+
+    /**
+     * @return The cached raw words, in the order of {@link MemoryCache#getCachedAddresses()}
+     */
+    public int[] getCachedWords() {
+        return cached(false);
+    }
+
+    /**
+     * @return Whether the line of each cached address is dirty, in the order of
+     * {@link MemoryCache#getCachedAddresses()}
+     */
+    public boolean[] getCachedDirty() {
+        boolean[] ret = new boolean[lines * blockSize];
+        int n = 0;
+        for (int line : linesInOrder()) {
+            int base = line << blockBits;
+            for (int i = 0; i < blockSize; i++) {
+                if (words[base + i] != MISS) {
+                    ret[n++] = dirty[line];
+                }
+            }
+        }
+        return Arrays.copyOf(ret, n);
+    }
+
+    /**
+     * @return The blocks waiting in the write buffer, oldest first, none without a buffer
+     */
+    public int[] getWaitingBlocks() {
+        int[] ret = new int[(writeBuffer == null) ? 0 : writeBuffer.getSize()];
+        for (int i = 0; i < ret.length; i++) {
+            ret[i] = writeBuffer.getBlock(i);
+        }
+        return ret;
+    }
+
+    /**
+     * @return The words waiting of each block, in the order of {@link MemoryCache#getWaitingBlocks()}
+     */
+    public long[] getWaitingMasks() {
+        long[] ret = new long[(writeBuffer == null) ? 0 : writeBuffer.getSize()];
+        for (int i = 0; i < ret.length; i++) {
+            ret[i] = writeBuffer.getMask(i);
+        }
+        return ret;
+    }
+
+    /**
+     * Empties the cache and puts back what another cache held, as taken with the getters of the
+     * cached entries and the waiting writes, without counting hits, misses or stores. Dirty lines
+     * stay dirty in a write back cache, and the waiting writes go back into the write buffer. Into a
+     * cache of another geometry the entries are put as they fit; a cache that is not write back takes
+     * the dirty lines clean, and one without a buffer writes the waiting words to memory.
+     *
+     * @param addresses     The cached addresses, oldest entry first
+     * @param words         The word of each address
+     * @param dirty         Whether the line of each address was dirty
+     * @param waitingBlocks The blocks waiting to be written, oldest first
+     * @param waitingMasks  The words waiting of each block
+     */
+    public void restore(int[] addresses, int[] words, boolean[] dirty, int[] waitingBlocks, long[] waitingMasks) {
+        clear();
+        for (int i = 0; i < addresses.length; i++) {
+            int line = put(addresses[i], words[i]);
+            if (dirty[i] && writePolicy == WritePolicy.WRITE_BACK) {
+                this.dirty[line] = true;
+            }
+        }
+        for (int i = 0; i < waitingBlocks.length; i++) {
+            toMemory(waitingBlocks[i] << blockBits, waitingMasks[i]);
+        }
+    }
+
+    /**
+     * Empties the cache and puts back what another one holds, see
+     * {@link MemoryCache#restore(int[], int[], boolean[], int[], long[])}.
+     */
+    public void copyContentsFrom(MemoryCache other) {
+        restore(other.getCachedAddresses(), other.getCachedWords(), other.getCachedDirty(),
+                other.getWaitingBlocks(), other.getWaitingMasks());
+    }
+
+    private int[] cached(boolean addresses) {
+        int[] ret = new int[lines * blockSize];
+        int n = 0;
+        for (int line : linesInOrder()) {
+            int base = line << blockBits;
+            for (int i = 0; i < blockSize; i++) {
+                if (words[base + i] != MISS) {
+                    ret[n++] = addresses ? (tags[line] << blockBits) + i : words[base + i];
+                }
+            }
+        }
+        return Arrays.copyOf(ret, n);
+    }
+
+    /**
+     * @return The number of lines holding a block
+     */
     public long getSize() {
-        return this.cache.size();
+        return this.size;
     }
 
+    /**
+     * @return The number of lines
+     */
     public int getMaxCacheSize() {
-        return this.maxCacheSize;
+        return this.lines;
+    }
+
+    public int getLines() {
+        return lines;
+    }
+
+    public int getAssociativity() {
+        return ways;
+    }
+
+    public int getSets() {
+        return sets;
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    public Replacement getReplacement() {
+        return replacement;
     }
 
     public long getTotalRequests() {
@@ -90,9 +855,153 @@ public class MemoryCache {
         return cacheHit;
     }
 
+    public long getSetHits(int set) {
+        return setHits[set];
+    }
+
+    public long getSetMisses(int set) {
+        return setMisses[set];
+    }
+
+    /**
+     * @return The number of blocks replaced in the set to make room for another
+     */
+    public long getSetEvictions(int set) {
+        return setEvictions[set];
+    }
+
+    /**
+     * @return The number of stores written to the cache
+     */
+    public long getWrites() {
+        return writes;
+    }
+
+    /**
+     * @return The number of words the stores wrote to memory, or the next level, so far, through or
+     * back, after coalescing
+     */
+    public long getMemoryWrites() {
+        return memoryWrites;
+    }
+
+    /**
+     * @return The number of dirty lines written back, on eviction or flush
+     */
+    public long getWriteBacks() {
+        return writeBacks;
+    }
+
+    /**
+     * @return The number of words merged into a waiting entry of the write buffer
+     */
+    public long getCoalescedWrites() {
+        return (writeBuffer == null) ? 0 : writeBuffer.getCoalesced();
+    }
+
+    /**
+     * @return The words of write traffic saved against writing every store through, negative if
+     * writing whole blocks back cost more
+     */
+    public long getWriteTrafficSaved() {
+        return writes - memoryWrites;
+    }
+
+    public int getDirtyLines() {
+        int count = 0;
+        for (int line = 0; line < lines; line++) {
+            if (tags[line] != INVALID && dirty[line]) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return The number of blocks brought in by {@link #prefetch(int)}
+     */
+    public long getPrefetches() {
+        return prefetches;
+    }
+
+    /**
+     * @return The number of prefetched blocks read or stored to before they were evicted
+     */
+    public long getUsefulPrefetches() {
+        return usefulPrefetches;
+    }
+
+    /**
+     * @return The number of prefetched blocks evicted before they were used
+     */
+    public long getUselessPrefetches() {
+        return uselessPrefetches;
+    }
+
+    /**
+     * @return The number of prefetches of blocks already cached
+     */
+    public long getRedundantPrefetches() {
+        return redundantPrefetches;
+    }
+
+    /**
+     * @return The number of misses on blocks a prefetch had evicted
+     */
+    public long getPollution() {
+        return pollution;
+    }
+
+    /**
+     * @return The share of prefetched blocks that were used, 0 if none were brought in
+     */
+    public double getPrefetchAccuracy() {
+        return (prefetches == 0) ? 0 : (double) usefulPrefetches / prefetches;
+    }
+
+    /**
+     * @return The share of the misses there would have been without prefetching that prefetches saved
+     */
+    public double getPrefetchCoverage() {
+        long wouldMiss = usefulPrefetches + cacheMiss;
+        return (wouldMiss == 0) ? 0 : (double) usefulPrefetches / wouldMiss;
+    }
+
+    public String getPrefetchReport() {
+        return String.format("%d prefetches, %.2f%% accurate, %.2f%% coverage, %d useless, %d redundant, %d pollution misses",
+                prefetches, 100 * getPrefetchAccuracy(), 100 * getPrefetchCoverage(), uselessPrefetches,
+                redundantPrefetches, pollution);
+    }
+
+    /**
+     * @return The geometry, then a line per set with its hits, misses and evictions
+     */
+    public String getReport() {
+        StringBuilder report = new StringBuilder(String.format(
+                "Memory cache: %d lines of %d words, %d way %s, %d sets: %d hits, %d misses (%.2f%% hit rate)",
+                lines, blockSize, ways, replacement, sets, cacheHit, cacheMiss,
+                (totalRequests == 0) ? 0 : 100.0 * cacheHit / totalRequests));
+        report.append(String.format("%n  %s, %d entry write buffer: %d stores, %d memory writes (%d saved), "
+                        + "%d write backs, %d coalesced, %d dirty lines", writePolicy, getWriteBufferEntries(),
+                writes, memoryWrites, getWriteTrafficSaved(), writeBacks, getCoalescedWrites(), getDirtyLines()));
+        if (prefetches + redundantPrefetches > 0) {
+            report.append(String.format("%n  Prefetch: %s", getPrefetchReport()));
+        }
+        for (int set = 0; set < sets; set++) {
+            report.append(String.format("%n  set %4d %10d hits %10d misses %10d evictions",
+                    set, setHits[set], setMisses[set], setEvictions[set]));
+        }
+        return report.toString();
+    }
+
+    /**
+     * @return The cached data, oldest entry first
+     */
     public List<BitSet> getCacheData() {
         List<BitSet> ret = new ArrayList<>();
-        ret.addAll(cache);
+        for (int word : getCachedWords()) {
+            ret.add(BitConversion.fromWord(word));
+        }
         return ret;
     }
 }
@@ -3,26 +3,26 @@ package edu.gw.csci.simulator.memory;
 import edu.gw.csci.simulator.Bits;
 import edu.gw.csci.simulator.exceptions.IllegalValue;
 import edu.gw.csci.simulator.utils.BitConversion;
-import javafx.beans.property.ObjectProperty;
-import javafx.beans.property.SimpleObjectProperty;
 
 import java.util.BitSet;
 
+/**
+ * A single address of {@link Memory}, as displayed and edited in the GUI memory table.
+ * The chunk holds no data of its own, it reads and writes the word in its memory.
+ */
 public class MemoryChunk implements Bits {
 
-    private ObjectProperty<BitSet> data;
-    private final int wordSize, index;
+    private final Memory memory;
+    private final int index;
 
-    public MemoryChunk(int wordSize, int index) {
-        this.wordSize = wordSize;
+    public MemoryChunk(Memory memory, int index) {
+        this.memory = memory;
         this.index = index;
-        this.data = new SimpleObjectProperty<>();
     }
 
     @Override
     public void initialize() {
-        BitSet bitSet = new BitSet(wordSize);
-        data.set(bitSet);
+        memory.write(index, 0);
     }
 
     @Override
@@ -35,21 +35,20 @@ public class MemoryChunk implements Bits {
             );
             throw new IllegalValue(mess);
         }
-        data.setValue(bitSet);
+        memory.write(index, BitConversion.toWord(bitSet));
     }
 
     @Override
     public int getSize() {
-        return wordSize;
+        return memory.getWordSize();
     }
 
+    /**
+     * @return A copy of the word at this address, or null if the memory is not yet initialized
+     */
     @Override
     public BitSet getData() {
-        return data.getValue();
-    }
-
-    public ObjectProperty<BitSet> getBitSetProperty() {
-        return data;
+        return memory.isInitialized() ? memory.getChunkData(index) : null;
     }
 
     public int getIndex() {
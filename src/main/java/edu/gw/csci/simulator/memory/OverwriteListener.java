@@ -0,0 +1,14 @@
+package edu.gw.csci.simulator.memory;
+
+/**
+ * Notified by {@link AllMemory} just before a store replaces a word, with the word being lost, for
+ * keeping enough history to undo the store.
+ */
+public interface OverwriteListener {
+
+    /**
+     * @param index   The memory index about to be written
+     * @param oldWord The raw word held at the index until now
+     */
+    void overwriting(int index, int oldWord);
+}
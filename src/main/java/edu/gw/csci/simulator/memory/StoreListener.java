@@ -0,0 +1,21 @@
+package edu.gw.csci.simulator.memory;
+
+/**
+ * Notified by {@link AllMemory} after every store, for anything that holds state derived
+ * from the contents of memory.
+ */
+public interface StoreListener {
+
+    /**
+     * @param index The memory index written
+     * @param word  The raw word now held at the index
+     */
+    void stored(int index, int word);
+
+    /**
+     * Called after every word was replaced at once, such as by restoring a snapshot, in place of a
+     * call to {@link StoreListener#stored(int, int)} per word.
+     */
+    default void replaced() {
+    }
+}
@@ -0,0 +1,23 @@
+package edu.gw.csci.simulator.memory;
+
+/**
+ * Notified by {@link AllMemory} when an address flagged in its watch map is read or written.
+ */
+public interface WatchListener {
+
+    /**
+     * Flag for an address whose reads are watched
+     */
+    int READ = 1;
+
+    /**
+     * Flag for an address whose writes are watched
+     */
+    int WRITE = 2;
+
+    /**
+     * @param index The memory index accessed
+     * @param write True for a store, false for a fetch
+     */
+    void watched(int index, boolean write);
+}
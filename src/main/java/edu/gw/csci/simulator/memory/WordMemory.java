@@ -0,0 +1,64 @@
+package edu.gw.csci.simulator.memory;
+
+import java.util.Arrays;
+
+/**
+ * A {@link MemoryBackend} that keeps every word in a single char array, which is exactly
+ * one unsigned 16 bit word per element. Nothing is allocated after construction.
+ */
+public class WordMemory implements MemoryBackend {
+
+    private static final int DEFAULT_MEMORY_SIZE = 2048,
+            MAX_WORD_SIZE = 16;
+
+    private final char[] words;
+    private final int wordSize, mask;
+
+    public WordMemory(int size, int wordSize) {
+        if (wordSize > MAX_WORD_SIZE) {
+            throw new IllegalArgumentException("Can't instantiate word memory with words larger than 16 bits");
+        }
+        this.words = new char[size];
+        this.wordSize = wordSize;
+        this.mask = (1 << wordSize) - 1;
+    }
+
+    public WordMemory() {
+        this(DEFAULT_MEMORY_SIZE, MAX_WORD_SIZE);
+    }
+
+    @Override
+    public void initialize() {
+        Arrays.fill(words, (char) 0);
+    }
+
+    @Override
+    public int read(int index) {
+        return words[index];
+    }
+
+    @Override
+    public void write(int index, int word) {
+        words[index] = (char) (word & mask);
+    }
+
+    @Override
+    public void copyTo(char[] words) {
+        System.arraycopy(this.words, 0, words, 0, this.words.length);
+    }
+
+    @Override
+    public void copyFrom(char[] words) {
+        System.arraycopy(words, 0, this.words, 0, this.words.length);
+    }
+
+    @Override
+    public int getSize() {
+        return words.length;
+    }
+
+    @Override
+    public int getWordSize() {
+        return wordSize;
+    }
+}
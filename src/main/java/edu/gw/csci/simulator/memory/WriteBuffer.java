@@ -0,0 +1,139 @@
+package edu.gw.csci.simulator.memory;
+
+import java.util.Arrays;
+
+/**
+ * A coalescing write buffer between a {@link MemoryCache} and memory. Each entry holds the words
+ * written to one block, as a mask, so a write to a block that is already waiting is merged into its
+ * entry instead of costing another memory write. The buffer only drains when a write finds it full,
+ * oldest entry first, or when it is {@link #drain() drained}; a drained entry writes each of its words
+ * to memory once.
+ * <p>
+ * Like the cache's write policy, the buffer only counts traffic: the backend has already been written
+ * when a store reaches it.
+ */
+class WriteBuffer {
+
+    /**
+     * Told about each entry the buffer writes out
+     */
+    interface Sink {
+
+        /**
+         * @param block The block number
+         * @param mask  A bit for each word of the block written
+         */
+        void drained(int block, long mask);
+    }
+
+    private static final int EMPTY = -1;
+
+    private final Sink sink;
+
+    private final int[] blocks;
+    private final long[] masks;
+    private int oldest, size;
+
+    private long coalesced, drainedWords;
+
+    /**
+     * @param entries The number of blocks the buffer holds
+     * @param sink    Where drained entries are written
+     */
+    WriteBuffer(int entries, Sink sink) {
+        if (entries <= 0) {
+            throw new IllegalArgumentException("A write buffer needs at least one entry, not " + entries);
+        }
+        this.sink = sink;
+        this.blocks = new int[entries];
+        this.masks = new long[entries];
+        Arrays.fill(blocks, EMPTY);
+    }
+
+    /**
+     * Buffers words of a block, merging them into a waiting entry for the block if there is one.
+     *
+     * @param block The block number
+     * @param mask  A bit for each word of the block written
+     */
+    void write(int block, long mask) {
+        for (int i = 0; i < size; i++) {
+            int entry = (oldest + i) % blocks.length;
+            if (blocks[entry] == block) {
+                coalesced += Long.bitCount(masks[entry] & mask);
+                masks[entry] |= mask;
+                return;
+            }
+        }
+        if (size == blocks.length) {
+            drainOldest();
+        }
+        int entry = (oldest + size) % blocks.length;
+        blocks[entry] = block;
+        masks[entry] = mask;
+        size++;
+    }
+
+    private void drainOldest() {
+        int block = blocks[oldest];
+        long mask = masks[oldest];
+        blocks[oldest] = EMPTY;
+        oldest = (oldest + 1) % blocks.length;
+        size--;
+        drainedWords += Long.bitCount(mask);
+        sink.drained(block, mask);
+    }
+
+    /**
+     * Writes every waiting entry to memory.
+     */
+    void drain() {
+        while (size > 0) {
+            drainOldest();
+        }
+    }
+
+    /**
+     * Drops every entry without writing it.
+     */
+    void clear() {
+        Arrays.fill(blocks, EMPTY);
+        oldest = 0;
+        size = 0;
+    }
+
+    int getEntries() {
+        return blocks.length;
+    }
+
+    int getSize() {
+        return size;
+    }
+
+    /**
+     * @param i The position of a waiting entry, 0 for the oldest
+     */
+    int getBlock(int i) {
+        return blocks[(oldest + i) % blocks.length];
+    }
+
+    long getMask(int i) {
+        return masks[(oldest + i) % blocks.length];
+    }
+
+    /**
+     * @return The number of words written again while they were waiting, which never reached memory
+     */
+    long getCoalesced() {
+        return coalesced;
+    }
+
+    long getDrainedWords() {
+        return drainedWords;
+    }
+
+    void clearCounts() {
+        coalesced = 0;
+        drainedWords = 0;
+    }
+}
@@ -0,0 +1,39 @@
+package edu.gw.csci.simulator.prefetch;
+
+import java.util.function.IntConsumer;
+
+/**
+ * Brings in the blocks after a block that missed, however the program got there. Cheap, and right for
+ * sequential scans, but it pollutes the cache when the reads jump about.
+ */
+public class NextLinePrefetcher implements Prefetcher {
+
+    private final int degree;
+
+    /**
+     * @param degree The number of blocks to bring in after each miss
+     */
+    public NextLinePrefetcher(int degree) {
+        this.degree = Prefetchers.checkDegree(degree);
+    }
+
+    @Override
+    public String getName() {
+        return "next-line/" + degree;
+    }
+
+    @Override
+    public void access(int pc, int address, int blockSize, boolean miss, IntConsumer prefetch) {
+        if (!miss) {
+            return;
+        }
+        int block = address - address % blockSize;
+        for (int i = 1; i <= degree; i++) {
+            prefetch.accept(block + i * blockSize);
+        }
+    }
+
+    @Override
+    public void reset() {
+    }
+}
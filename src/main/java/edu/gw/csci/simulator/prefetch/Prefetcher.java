@@ -0,0 +1,32 @@
+package edu.gw.csci.simulator.prefetch;
+
+import java.util.function.IntConsumer;
+
+/**
+ * Watches the data reads that reach a cache and asks for blocks to be brought in before they are
+ * read. Only the addresses matter to a prefetcher; the cache fills what it is asked for, and ignores
+ * blocks it already holds, so a prefetcher can ask for the same block again without harm.
+ */
+public interface Prefetcher {
+
+    /**
+     * @return A short name for reports, such as stride/64
+     */
+    String getName();
+
+    /**
+     * Sees a data read, after the cache has looked it up.
+     *
+     * @param pc        The address of the instruction reading
+     * @param address   The address read
+     * @param blockSize The words in a block of the cache
+     * @param miss      True if the read missed the cache
+     * @param prefetch  Takes an address in each block to bring in
+     */
+    void access(int pc, int address, int blockSize, boolean miss, IntConsumer prefetch);
+
+    /**
+     * Forgets everything learnt.
+     */
+    void reset();
+}
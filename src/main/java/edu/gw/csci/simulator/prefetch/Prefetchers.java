@@ -0,0 +1,56 @@
+package edu.gw.csci.simulator.prefetch;
+
+/**
+ * Makes prefetchers by name, for command lines.
+ */
+public final class Prefetchers {
+
+    public static final int DEFAULT_DEGREE = 1;
+
+    /**
+     * The names {@link Prefetchers#create(String)} knows
+     */
+    public static final String NAMES = "next-line, stride, stream";
+
+    private Prefetchers() {
+    }
+
+    /**
+     * @param spec A name, optionally followed by /degree, such as stride/4
+     * @return A new prefetcher, with tables of the default size
+     * @throws IllegalArgumentException If the name is unknown or the degree is not positive
+     */
+    public static Prefetcher create(String spec) {
+        String[] parts = spec.trim().toLowerCase().split("/");
+        int degree;
+        try {
+            degree = (parts.length > 1) ? Integer.parseInt(parts[1]) : DEFAULT_DEGREE;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed prefetch degree: " + spec, e);
+        }
+        switch (parts[0]) {
+            case "next-line":
+                return new NextLinePrefetcher(degree);
+            case "stride":
+                return new StridePrefetcher(StridePrefetcher.DEFAULT_ENTRIES, degree);
+            case "stream":
+                return new StreamPrefetcher(StreamPrefetcher.DEFAULT_STREAMS, degree);
+            default:
+                throw new IllegalArgumentException(String.format("Unknown prefetcher %s, expected one of %s", spec, NAMES));
+        }
+    }
+
+    static int checkEntries(int entries) {
+        if (entries <= 0 || Integer.bitCount(entries) != 1) {
+            throw new IllegalArgumentException("Prefetcher tables need a power of two entries, not " + entries);
+        }
+        return entries;
+    }
+
+    static int checkDegree(int degree) {
+        if (degree <= 0) {
+            throw new IllegalArgumentException("A prefetcher brings in at least one block ahead, not " + degree);
+        }
+        return degree;
+    }
+}
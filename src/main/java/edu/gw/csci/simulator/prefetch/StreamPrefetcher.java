@@ -0,0 +1,91 @@
+package edu.gw.csci.simulator.prefetch;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Follows a few streams of reads to nearby blocks, whichever instructions make them. A miss within a
+ * window of blocks after or before the last block of a stream gives it a direction, and any read
+ * further along in that direction, hit or miss, moves the stream on and brings in the blocks ahead
+ * of it. Any other miss starts a new stream in place of the one used longest ago.
+ */
+public class StreamPrefetcher implements Prefetcher {
+
+    public static final int DEFAULT_STREAMS = 4;
+    public static final int WINDOW = 4;
+
+    private final int degree;
+    private final int[] lastBlocks;
+    private final int[] directions;
+    private final long[] used;
+    private long clock;
+
+    /**
+     * @param streams The number of streams followed at once
+     * @param degree  The number of blocks to bring in ahead of a confirmed stream
+     */
+    public StreamPrefetcher(int streams, int degree) {
+        if (streams <= 0) {
+            throw new IllegalArgumentException("A stream prefetcher needs at least one stream, not " + streams);
+        }
+        this.degree = Prefetchers.checkDegree(degree);
+        this.lastBlocks = new int[streams];
+        this.directions = new int[streams];
+        this.used = new long[streams];
+        reset();
+    }
+
+    @Override
+    public String getName() {
+        return "stream/" + lastBlocks.length + "/" + degree;
+    }
+
+    @Override
+    public void access(int pc, int address, int blockSize, boolean miss, IntConsumer prefetch) {
+        int block = address / blockSize;
+        clock++;
+        for (int stream = 0; stream < lastBlocks.length; stream++) {
+            int distance = block - lastBlocks[stream];
+            if (distance == 0) {
+                return;
+            }
+            if (Math.abs(distance) > WINDOW) {
+                continue;
+            }
+            int direction = Integer.signum(distance);
+            if (direction == directions[stream]) {
+                for (int i = 1; i <= degree; i++) {
+                    prefetch.accept((block + i * direction) * blockSize);
+                }
+            } else if (!miss) {
+                continue;
+            }
+            lastBlocks[stream] = block;
+            directions[stream] = direction;
+            used[stream] = clock;
+            return;
+        }
+        if (!miss) {
+            return;
+        }
+        //Replace the stream used longest ago
+        int oldest = 0;
+        for (int stream = 1; stream < lastBlocks.length; stream++) {
+            if (used[stream] < used[oldest]) {
+                oldest = stream;
+            }
+        }
+        lastBlocks[oldest] = block;
+        directions[oldest] = 0;
+        used[oldest] = clock;
+    }
+
+    @Override
+    public void reset() {
+        //Far enough apart that no block is in the window of a stream not yet started
+        Arrays.fill(lastBlocks, Integer.MIN_VALUE / 2);
+        Arrays.fill(directions, 0);
+        Arrays.fill(used, 0);
+        clock = 0;
+    }
+}
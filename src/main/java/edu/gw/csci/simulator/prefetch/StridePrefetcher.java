@@ -0,0 +1,78 @@
+package edu.gw.csci.simulator.prefetch;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Learns the stride of each load instruction in a direct mapped table indexed by the low bits of its
+ * address. Once a load has read at the same non zero stride twice in a row, the addresses the next
+ * reads at that stride will make are brought in, on hits as well as misses, so a loop walking an array
+ * stays ahead of it. A different stride drops the confidence, and replaces the stride once it is gone.
+ */
+public class StridePrefetcher implements Prefetcher {
+
+    public static final int DEFAULT_ENTRIES = 64;
+
+    private static final int NO_PC = -1;
+    private static final byte CONFIDENT = 1, MAX_CONFIDENCE = 3;
+
+    private final int degree;
+    private final int mask;
+    private final int[] pcs;
+    private final int[] lastAddresses;
+    private final int[] strides;
+    private final byte[] confidence;
+
+    /**
+     * @param entries The size of the table, a power of two
+     * @param degree  The number of strides to read ahead
+     */
+    public StridePrefetcher(int entries, int degree) {
+        this.mask = Prefetchers.checkEntries(entries) - 1;
+        this.degree = Prefetchers.checkDegree(degree);
+        this.pcs = new int[entries];
+        this.lastAddresses = new int[entries];
+        this.strides = new int[entries];
+        this.confidence = new byte[entries];
+        reset();
+    }
+
+    @Override
+    public String getName() {
+        return "stride/" + pcs.length + "/" + degree;
+    }
+
+    @Override
+    public void access(int pc, int address, int blockSize, boolean miss, IntConsumer prefetch) {
+        int entry = pc & mask;
+        if (pcs[entry] != pc) {
+            pcs[entry] = pc;
+            lastAddresses[entry] = address;
+            strides[entry] = 0;
+            confidence[entry] = 0;
+            return;
+        }
+        int stride = address - lastAddresses[entry];
+        lastAddresses[entry] = address;
+        if (stride == strides[entry]) {
+            if (confidence[entry] < MAX_CONFIDENCE) {
+                confidence[entry]++;
+            }
+        } else if (confidence[entry] > 0) {
+            confidence[entry]--;
+        } else {
+            strides[entry] = stride;
+        }
+        if (stride != 0 && stride == strides[entry] && confidence[entry] >= CONFIDENT) {
+            for (int i = 1; i <= degree; i++) {
+                prefetch.accept(address + i * stride);
+            }
+        }
+    }
+
+    @Override
+    public void reset() {
+        Arrays.fill(pcs, NO_PC);
+        Arrays.fill(confidence, (byte) 0);
+    }
+}
@@ -3,7 +3,6 @@ package edu.gw.csci.simulator.registers;
 
 import edu.gw.csci.simulator.isa.SetCC;
 import edu.gw.csci.simulator.utils.FloatingPointsCalculate;
-import javafx.scene.control.TableView;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -18,6 +17,11 @@ public class AllRegisters {
 
     private static final Logger LOGGER = LogManager.getLogger(AllRegisters.class);
 
+    private static final int EQUALORNOT_BIT = 0,
+            DIVZERO_BIT = 1,
+            UNDERFLOW_BIT = 2,
+            OVERFLOW_BIT = 3;
+
     private HashMap<RegisterType, Register> registerMap;
 
     public AllRegisters() {
@@ -34,12 +38,28 @@ public class AllRegisters {
         }
     }
 
-    public void bindTableView(TableView tableView) {
+    /**
+     * Runs the listener whenever any register is written. The GUI uses this to refresh
+     * its register table; nothing is registered when running headless.
+     *
+     * @param changeListener The callback, or null to remove it
+     */
+    public void setChangeListener(Runnable changeListener) {
         for (Register register : registerMap.values()) {
-            register.getBitSetProperty().addListener((observable, oldValue, newValue) -> tableView.refresh());
+            register.setChangeListener(changeListener);
         }
     }
 
+    /**
+     * Runs the callback whenever the register is written, for a watchpoint.
+     *
+     * @param registerType The register to watch
+     * @param writeWatch   The callback, or null to stop watching
+     */
+    public void setWriteWatch(RegisterType registerType, Runnable writeWatch) {
+        registerMap.get(registerType).setWriteWatch(writeWatch);
+    }
+
     public Set<Map.Entry<RegisterType, Register>> getRegisters() {
         return registerMap.entrySet();
     }
@@ -54,41 +74,47 @@ public class AllRegisters {
         return registerMap.get(registerType);
     }
 
+    /**
+     * @param registerType The register to read
+     * @return The raw, unsigned contents of the register
+     */
+    public int getWord(RegisterType registerType) {
+        return registerMap.get(registerType).getWord();
+    }
+
+    /**
+     * @param registerType The register to write
+     * @param word         The raw, unsigned contents to set
+     */
+    public void setWord(RegisterType registerType, int word) {
+        registerMap.get(registerType).setWord(word);
+    }
+
     public void OVERFLOW() {
-        Register CC = getRegister(RegisterType.CC);
-        BitSet bits = CC.getData();
-        bits.set(3);
-        CC.setData(bits);
+        setConditionCode(OVERFLOW_BIT, true);
         LOGGER.warn("OVERFLOW");
     }
 
     public void UNDERFLOW() {
-        Register CC = getRegister(RegisterType.CC);
-        BitSet bits = CC.getData();
-        bits.set(2);
-        CC.setData(bits);
+        setConditionCode(UNDERFLOW_BIT, true);
         LOGGER.warn("UNDERFLOW");
     }
 
     public void DIVZERO() {
-        Register CC = getRegister(RegisterType.CC);
-        BitSet bits = CC.getData();
-        bits.set(1);
-        CC.setData(bits);
+        setConditionCode(DIVZERO_BIT, true);
         LOGGER.warn("DIVIDE 0");
     }
 
     public void EQUALORNOT(boolean equal) {
-        Register CC = getRegister(RegisterType.CC);
-        BitSet bits = CC.getData();
-        if (equal) {
-            bits.set(0);
-            LOGGER.info("EQUAL");
-        } else {
-            bits.clear(0);
-            LOGGER.info("NOTEQUAL");
+        setConditionCode(EQUALORNOT_BIT, equal);
+        if (LOGGER.isInfoEnabled()) {
+            LOGGER.info(equal ? "EQUAL" : "NOTEQUAL");
         }
-        CC.setData(bits);
+    }
+
+    private void setConditionCode(int bit, boolean value) {
+        int cc = getWord(RegisterType.CC);
+        setWord(RegisterType.CC, value ? cc | (1 << bit) : cc & ~(1 << bit));
     }
 
     public void Over_UnderFlow(FloatingPointsCalculate floatingPointsCalculate) {
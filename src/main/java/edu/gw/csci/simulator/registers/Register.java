@@ -3,38 +3,51 @@ package edu.gw.csci.simulator.registers;
 import edu.gw.csci.simulator.Bits;
 import edu.gw.csci.simulator.exceptions.IllegalValue;
 import edu.gw.csci.simulator.utils.BitConversion;
-import javafx.beans.property.ObjectProperty;
-import javafx.beans.property.SimpleObjectProperty;
 
 import java.util.BitSet;
 
 /**
  * Leverages the defined register type to extend properties to other registers.
+ * The contents are held as a raw word, {@link Register#getWord()} and {@link Register#setWord(int)}
+ * give the CPU access to it without converting to and from a {@link BitSet}.
  *
  * @version 20180918
  */
 public class Register implements Bits {
 
     private final RegisterType registerType;
-    private ObjectProperty<BitSet> data;
+    private final int mask;
+    private int word;
+    private boolean initialized;
+    private Runnable changeListener;
+    private Runnable writeWatch;
 
     public Register(RegisterType registerType) {
-        if (registerType.getSize() > 64) {
-            throw new IllegalArgumentException("Can't instantiate register size larger than 64 bits");
+        if (registerType.getSize() > 32) {
+            throw new IllegalArgumentException("Can't instantiate register size larger than 32 bits");
         }
         this.registerType = registerType;
-        this.data = new SimpleObjectProperty<>();
+        this.mask = (int) ((1L << registerType.getSize()) - 1);
     }
 
     @Override
     public void initialize() {
-        BitSet bitSet = new BitSet(registerType.getSize());
-        data.set(bitSet);
+        setValue(0);
     }
 
+    /**
+     * @return A copy of the register contents, or null if the register is not yet initialized
+     */
     @Override
     public BitSet getData() {
-        return data.get();
+        return initialized ? BitConversion.fromWord(word) : null;
+    }
+
+    /**
+     * @return The raw, unsigned contents of the register
+     */
+    public int getWord() {
+        return word;
     }
 
     @Override
@@ -63,10 +76,54 @@ public class Register implements Bits {
             );
             throw new IllegalValue(mess);
         }
-        this.data.setValue(data);
+        setValue(BitConversion.toWord(data));
+    }
+
+    /**
+     * Sets the raw, unsigned contents of the register.
+     *
+     * @param word The raw word
+     * @throws IllegalValue If the word has bits set above the register size
+     */
+    public void setWord(int word) throws IllegalValue {
+        if ((word & ~mask) != 0) {
+            String mess = String.format(
+                    "Binary value %s is larger than maximum %d",
+                    Integer.toBinaryString(word),
+                    getSize()
+            );
+            throw new IllegalValue(mess);
+        }
+        setValue(word);
+    }
+
+    /**
+     * Registers a callback that is run every time the register is written. Only the GUI
+     * needs this, so headless runs leave it unset and pay nothing for it.
+     *
+     * @param changeListener The callback, or null to remove it
+     */
+    void setChangeListener(Runnable changeListener) {
+        this.changeListener = changeListener;
     }
 
-    ObjectProperty<BitSet> getBitSetProperty() {
-        return data;
+    /**
+     * Registers a callback that is run every time the register is written, for a watchpoint.
+     *
+     * @param writeWatch The callback, or null to remove it
+     */
+    void setWriteWatch(Runnable writeWatch) {
+        this.writeWatch = writeWatch;
+    }
+
+    private void setValue(int word) {
+        this.word = word;
+        this.initialized = true;
+        if (changeListener != null) {
+            changeListener.run();
+        }
+        if (writeWatch != null) {
+            writeWatch.run();
+        }
     }
 }
@@ -0,0 +1,185 @@
+package edu.gw.csci.simulator.trace;
+
+import edu.gw.csci.simulator.memory.AllMemory;
+import edu.gw.csci.simulator.memory.FetchListener;
+import edu.gw.csci.simulator.memory.StoreListener;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * The memory address stream of a run, in order, with each access tagged as an instruction fetch, a
+ * data read or a store. Attached to an {@link AllMemory}, it records every access that reaches it,
+ * whatever cache is in front; the words are left out, as a cache only needs the addresses to be
+ * replayed, see {@link CacheSweep}. Each access takes one int, the address shifted over its kind.
+ * <p>
+ * The binary form is a big endian stream: a magic number and version, the number of accesses, then
+ * each access as it is held.
+ */
+public class AddressTrace implements FetchListener, StoreListener {
+
+    public static final int FETCH = 0, READ = 1, WRITE = 2;
+
+    private static final int MAGIC = 0x43414452; //"CADR"
+    private static final int VERSION = 1;
+    private static final int KIND_BITS = 2, KIND_MASK = (1 << KIND_BITS) - 1;
+    private static final int INITIAL_CAPACITY = 1 << 12;
+
+    private int[] accesses;
+    private int size;
+    private final long[] counts = new long[3];
+    private int maxAddress = -1;
+
+    public AddressTrace() {
+        this.accesses = new int[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Starts recording the accesses of a memory.
+     */
+    public void attach(AllMemory memory) {
+        memory.addFetchListener(this);
+        memory.addStoreListener(this);
+    }
+
+    /**
+     * Stops recording the accesses of a memory.
+     */
+    public void detach(AllMemory memory) {
+        memory.removeFetchListener(this);
+        memory.removeStoreListener(this);
+    }
+
+    @Override
+    public void fetched(int index, int word, boolean hit) {
+        add(READ, index);
+    }
+
+    @Override
+    public void fetchedInstruction(int index, int word, boolean hit) {
+        add(FETCH, index);
+    }
+
+    @Override
+    public void stored(int index, int word) {
+        add(WRITE, index);
+    }
+
+    /**
+     * Appends an access.
+     *
+     * @param kind    {@link AddressTrace#FETCH}, {@link AddressTrace#READ} or {@link AddressTrace#WRITE}
+     * @param address The address accessed
+     */
+    public void add(int kind, int address) {
+        if (kind < FETCH || kind > WRITE || address < 0 || address > (Integer.MAX_VALUE >>> KIND_BITS)) {
+            throw new IllegalArgumentException(String.format("Can't record a kind %d access to %d", kind, address));
+        }
+        if (size == accesses.length) {
+            accesses = Arrays.copyOf(accesses, size * 2);
+        }
+        accesses[size++] = (address << KIND_BITS) | kind;
+        counts[kind]++;
+        maxAddress = Math.max(maxAddress, address);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getKind(int index) {
+        return kind(accesses[index]);
+    }
+
+    public int getAddress(int index) {
+        return address(accesses[index]);
+    }
+
+    /**
+     * @return The accesses as held, see {@link AddressTrace#kind(int)} and {@link AddressTrace#address(int)}
+     */
+    int[] getAccesses() {
+        return accesses;
+    }
+
+    static int kind(int access) {
+        return access & KIND_MASK;
+    }
+
+    static int address(int access) {
+        return access >>> KIND_BITS;
+    }
+
+    public long getFetches() {
+        return counts[FETCH];
+    }
+
+    public long getReads() {
+        return counts[READ];
+    }
+
+    public long getWrites() {
+        return counts[WRITE];
+    }
+
+    /**
+     * @return The highest address accessed, -1 if none
+     */
+    public int getMaxAddress() {
+        return maxAddress;
+    }
+
+    public void clear() {
+        size = 0;
+        Arrays.fill(counts, 0);
+        maxAddress = -1;
+    }
+
+    public void writeTo(OutputStream outputStream) throws IOException {
+        DataOutputStream out = new DataOutputStream(outputStream);
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            out.writeInt(accesses[i]);
+        }
+        out.flush();
+    }
+
+    /**
+     * @throws IOException If the stream ends early, or does not hold an address trace of this version
+     */
+    public static AddressTrace readFrom(InputStream inputStream) throws IOException {
+        DataInputStream in = new DataInputStream(inputStream);
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not an address trace");
+        }
+        int version = in.readUnsignedShort();
+        if (version != VERSION) {
+            throw new IOException(String.format("Unsupported address trace version %d, expected %d", version, VERSION));
+        }
+        int size = in.readInt();
+        if (size < 0) {
+            throw new IOException("Negative address trace size " + size);
+        }
+        AddressTrace trace = new AddressTrace();
+        for (int i = 0; i < size; i++) {
+            int access = in.readInt();
+            if (kind(access) > WRITE) {
+                throw new IOException(String.format("Access %d has no kind %d", i, kind(access)));
+            }
+            trace.add(kind(access), address(access));
+        }
+        return trace;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Address trace of %d accesses: %d instruction fetches, %d reads, %d writes",
+                size, getFetches(), getReads(), getWrites());
+    }
+}
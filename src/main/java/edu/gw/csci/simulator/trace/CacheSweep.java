@@ -0,0 +1,248 @@
+package edu.gw.csci.simulator.trace;
+
+import edu.gw.csci.simulator.memory.CacheHierarchy;
+import edu.gw.csci.simulator.memory.MemoryCache;
+import edu.gw.csci.simulator.memory.WordMemory;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Replays one {@link AddressTrace} against many {@link MemoryCache} configurations across the cores
+ * of one JVM, so a cache sizing study runs the program once instead of once per configuration. Each
+ * configuration gets its own cache, and the trace is only read, so replays share nothing mutable.
+ * <p>
+ * A replay treats the cache as a unified cache in front of memory: fetches and reads look it up and
+ * put their block in on a miss, and stores are written in under the cache's write policy. An access
+ * costs the hit latency, a fetch or read that misses costs the memory latency as well, and so does
+ * every word written to memory, dirty lines flushed at the end included.
+ */
+public class CacheSweep implements AutoCloseable {
+
+    private static final Logger LOGGER = LogManager.getLogger(CacheSweep.class);
+
+    private static final String FULLY_ASSOCIATIVE = "full";
+
+    private final ForkJoinPool pool;
+    private int hitLatency = CacheHierarchy.DEFAULT_L1_LATENCY;
+    private int memoryLatency = CacheHierarchy.DEFAULT_MEMORY_LATENCY;
+
+    /**
+     * @param parallelism The number of configurations replayed at the same time
+     */
+    public CacheSweep(int parallelism) {
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * A sweep with one worker per available processor.
+     */
+    public CacheSweep() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param hitLatency    The cycles of an access that hits
+     * @param memoryLatency The cycles of a memory access
+     */
+    public void setLatencies(int hitLatency, int memoryLatency) {
+        if (hitLatency < 0 || memoryLatency < 0) {
+            throw new IllegalArgumentException("Latencies can't be negative");
+        }
+        this.hitLatency = hitLatency;
+        this.memoryLatency = memoryLatency;
+    }
+
+    /**
+     * Expands a grid such as "sizes=64,256,1024;ways=1,2,full;blocks=1,4;policies=LRU,PLRU" into the
+     * configurations it covers. Sizes are in words, so a size is split into lines of each block size;
+     * "full" makes a cache fully associative. Writes can be listed as well, as in
+     * "writes=WRITE_THROUGH,WRITE_BACK". Anything left out is the default cache's: 16 words, fully
+     * associative, blocks of one word, FIFO, write through. Combinations no cache can have, such as
+     * more ways than lines, are left out.
+     *
+     * @param spec The dimensions, separated by semicolons
+     * @return The configurations, each as given to {@link MemoryCache#create(String)}
+     * @throws IllegalArgumentException If the grid is malformed, or covers no configuration
+     */
+    public static List<String> grid(String spec) {
+        String[] sizes = {"16"}, ways = {FULLY_ASSOCIATIVE}, blocks = {"1"};
+        String[] policies = {MemoryCache.Replacement.FIFO.name()}, writes = {MemoryCache.WritePolicy.WRITE_THROUGH.name()};
+        for (String part : spec.split(";")) {
+            String[] pair = part.split("=", 2);
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("Expected dimension=values, not " + part);
+            }
+            String[] values = pair[1].split(",");
+            switch (pair[0].trim().toLowerCase()) {
+                case "sizes":
+                    sizes = values;
+                    break;
+                case "ways":
+                    ways = values;
+                    break;
+                case "blocks":
+                    blocks = values;
+                    break;
+                case "policies":
+                    policies = values;
+                    break;
+                case "writes":
+                    writes = values;
+                    break;
+                default:
+                    throw new IllegalArgumentException("No cache dimension called " + pair[0]);
+            }
+        }
+
+        Set<String> configurations = new LinkedHashSet<>();
+        try {
+            for (String size : sizes) {
+                for (String block : blocks) {
+                    int words = Integer.parseInt(size.trim());
+                    int blockSize = Integer.parseInt(block.trim());
+                    if (blockSize <= 0 || words < blockSize || words % blockSize != 0) {
+                        continue;
+                    }
+                    int lines = words / blockSize;
+                    for (String way : ways) {
+                        int associativity = way.trim().equalsIgnoreCase(FULLY_ASSOCIATIVE)
+                                ? lines : Integer.parseInt(way.trim());
+                        for (String policy : policies) {
+                            MemoryCache.Replacement replacement = MemoryCache.Replacement.valueOf(policy.trim().toUpperCase());
+                            if (!allowed(lines, associativity, blockSize, replacement)) {
+                                continue;
+                            }
+                            for (String write : writes) {
+                                MemoryCache.WritePolicy writePolicy = MemoryCache.WritePolicy.valueOf(write.trim().toUpperCase());
+                                configurations.add(String.format("%d,%d,%d,%s,%s", lines, associativity, blockSize,
+                                        replacement, writePolicy));
+                            }
+                        }
+                    }
+                }
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed cache grid: " + spec, e);
+        }
+        if (configurations.isEmpty()) {
+            throw new IllegalArgumentException("The grid covers no cache: " + spec);
+        }
+        return new ArrayList<>(configurations);
+    }
+
+    /**
+     * @return Whether {@link MemoryCache#MemoryCache(int, int, int, MemoryCache.Replacement)} takes the geometry
+     */
+    private static boolean allowed(int lines, int associativity, int blockSize, MemoryCache.Replacement replacement) {
+        if (associativity <= 0 || associativity > lines || lines % associativity != 0
+                || Integer.bitCount(lines / associativity) != 1 || Integer.bitCount(blockSize) != 1) {
+            return false;
+        }
+        return replacement != MemoryCache.Replacement.PLRU
+                || (Integer.bitCount(associativity) == 1 && associativity <= Long.SIZE);
+    }
+
+    /**
+     * Replays the trace against every configuration, and waits for all of them.
+     *
+     * @param trace          The accesses to replay
+     * @param configurations The caches, each as given to {@link MemoryCache#create(String)}
+     * @return The results in the order of the configurations
+     * @throws InterruptedException If the calling thread is interrupted while waiting
+     */
+    public List<SweepResult> run(AddressTrace trace, List<String> configurations) throws InterruptedException {
+        List<Callable<SweepResult>> tasks = new ArrayList<>(configurations.size());
+        for (String configuration : configurations) {
+            tasks.add(() -> replay(trace, configuration, hitLatency, memoryLatency));
+        }
+
+        long start = System.nanoTime();
+        List<Future<SweepResult>> futures = pool.invokeAll(tasks);
+        List<SweepResult> results = new ArrayList<>(futures.size());
+        for (Future<SweepResult> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (ExecutionException e) {
+                //The configurations are parsed before anything is replayed, so only a bug gets here
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+        LOGGER.info("Replayed {} accesses against {} caches on {} workers in {} ms", trace.size(),
+                configurations.size(), pool.getParallelism(), (System.nanoTime() - start) / 1_000_000);
+        return results;
+    }
+
+    /**
+     * Replays a trace against one empty cache.
+     *
+     * @param trace         The accesses to replay
+     * @param configuration The cache, as given to {@link MemoryCache#create(String)}
+     * @param hitLatency    The cycles of an access that hits
+     * @param memoryLatency The cycles of a memory access
+     */
+    public static SweepResult replay(AddressTrace trace, String configuration, int hitLatency, int memoryLatency) {
+        MemoryCache cache = MemoryCache.create(configuration);
+        //The words don't matter, but blocks are filled from somewhere
+        cache.setBackend(new WordMemory(trace.getMaxAddress() + 1, 16));
+        int[] accesses = trace.getAccesses();
+        int size = trace.size();
+        long[] counts = new long[3];
+        long fetchMisses = 0, readMisses = 0;
+        for (int i = 0; i < size; i++) {
+            int kind = AddressTrace.kind(accesses[i]);
+            int address = AddressTrace.address(accesses[i]);
+            counts[kind]++;
+            if (kind == AddressTrace.WRITE) {
+                cache.writeWord(address, 0);
+            } else if (cache.getWord(address) == MemoryCache.MISS) {
+                cache.putWord(address, 0);
+                if (kind == AddressTrace.FETCH) {
+                    fetchMisses++;
+                } else {
+                    readMisses++;
+                }
+            }
+        }
+        cache.flush();
+
+        double cycles = (double) size * hitLatency + (fetchMisses + readMisses + cache.getMemoryWrites()) * memoryLatency;
+        return new SweepResult(configuration, cache, counts[AddressTrace.FETCH], fetchMisses,
+                counts[AddressTrace.READ], readMisses, counts[AddressTrace.WRITE], (size == 0) ? 0 : cycles / size);
+    }
+
+    /**
+     * @param results The results of a sweep
+     * @return A row per result, in the order given, then the configuration with the lowest average access time
+     */
+    public String getTable(List<SweepResult> results) {
+        StringBuilder table = new StringBuilder(String.format(
+                "Cache sweep (latencies hit %d, memory %d):%n%6s %6s %4s %5s %-6s %-13s %9s %9s %9s %9s",
+                hitLatency, memoryLatency, "words", "lines", "ways", "block", "policy", "writes", "hit rate",
+                "inst hit", "data hit", "AMAT"));
+        for (SweepResult result : results) {
+            table.append(System.lineSeparator()).append(result);
+        }
+        results.stream().min(Comparator.comparingDouble(SweepResult::getAverageAccessTime)).ifPresent(best ->
+                table.append(String.format("%nLowest AMAT: %s, %.3f cycles", best.getSpec(), best.getAverageAccessTime())));
+        return table.toString();
+    }
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+}
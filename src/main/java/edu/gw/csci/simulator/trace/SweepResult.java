@@ -0,0 +1,112 @@
+package edu.gw.csci.simulator.trace;
+
+import edu.gw.csci.simulator.memory.MemoryCache;
+
+/**
+ * What one cache configuration made of an {@link AddressTrace}, replayed by {@link CacheSweep}.
+ */
+public class SweepResult {
+
+    private final String spec;
+    private final int lines, associativity, blockSize;
+    private final MemoryCache.Replacement replacement;
+    private final MemoryCache.WritePolicy writePolicy;
+    private final long fetches, fetchMisses, reads, readMisses, writes, memoryWrites;
+    private final double averageAccessTime;
+
+    SweepResult(String spec, MemoryCache cache, long fetches, long fetchMisses, long reads, long readMisses,
+                long writes, double averageAccessTime) {
+        this.spec = spec;
+        this.lines = cache.getLines();
+        this.associativity = cache.getAssociativity();
+        this.blockSize = cache.getBlockSize();
+        this.replacement = cache.getReplacement();
+        this.writePolicy = cache.getWritePolicy();
+        this.fetches = fetches;
+        this.fetchMisses = fetchMisses;
+        this.reads = reads;
+        this.readMisses = readMisses;
+        this.writes = writes;
+        this.memoryWrites = cache.getMemoryWrites();
+        this.averageAccessTime = averageAccessTime;
+    }
+
+    /**
+     * @return The configuration, as given to {@link MemoryCache#create(String)}
+     */
+    public String getSpec() {
+        return spec;
+    }
+
+    /**
+     * @return The words the cache holds
+     */
+    public int getSize() {
+        return lines * blockSize;
+    }
+
+    public int getLines() {
+        return lines;
+    }
+
+    public int getAssociativity() {
+        return associativity;
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    public MemoryCache.Replacement getReplacement() {
+        return replacement;
+    }
+
+    public MemoryCache.WritePolicy getWritePolicy() {
+        return writePolicy;
+    }
+
+    public long getFetchMisses() {
+        return fetchMisses;
+    }
+
+    public long getReadMisses() {
+        return readMisses;
+    }
+
+    /**
+     * @return The words written to memory, dirty lines flushed at the end included
+     */
+    public long getMemoryWrites() {
+        return memoryWrites;
+    }
+
+    /**
+     * @return The share of instruction fetches and data reads that hit, 0 if there were none
+     */
+    public double getHitRate() {
+        long lookups = fetches + reads;
+        return (lookups == 0) ? 0 : 1 - (double) (fetchMisses + readMisses) / lookups;
+    }
+
+    public double getInstructionHitRate() {
+        return (fetches == 0) ? 0 : 1 - (double) fetchMisses / fetches;
+    }
+
+    public double getDataHitRate() {
+        return (reads == 0) ? 0 : 1 - (double) readMisses / reads;
+    }
+
+    /**
+     * @return The average cycles of an access, fetches, reads and stores together
+     */
+    public double getAverageAccessTime() {
+        return averageAccessTime;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%6d %6d %4d %5d %-6s %-13s %8.2f%% %8.2f%% %8.2f%% %9.3f", getSize(), lines,
+                associativity, blockSize, replacement, writePolicy, 100 * getHitRate(), 100 * getInstructionHitRate(),
+                100 * getDataHitRate(), averageAccessTime);
+    }
+}
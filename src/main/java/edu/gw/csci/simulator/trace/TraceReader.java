@@ -0,0 +1,195 @@
+package edu.gw.csci.simulator.trace;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads back a trace written by {@link TraceWriter}. Every segment is mapped read only, so records
+ * are decoded straight from the page cache, either one at a time with {@link TraceReader#get(long)}
+ * or in order by iterating. The side stream is small, and is read into memory up front.
+ */
+public class TraceReader implements Iterable<TraceRecord> {
+
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+    private final List<Long> firstRecords = new ArrayList<>();
+    private long size;
+
+    //The side stream, in order: the record of each access, then its address and word
+    private long[] extraRecords = new long[0];
+    private int[] extraAccesses = new int[0];
+    private boolean[] extraWrites = new boolean[0];
+
+    /**
+     * Maps every segment of the trace, from the first until one is missing.
+     *
+     * @param prefix The path the trace was written with
+     * @throws IOException If there is no first segment, or a segment is not a trace of this version
+     */
+    public TraceReader(Path prefix) throws IOException {
+        for (int segment = 0; ; segment++) {
+            Path path = TraceWriter.segmentPath(prefix, segment);
+            if (!Files.exists(path)) {
+                if (segment == 0) {
+                    throw new IOException("No trace at " + path);
+                }
+                break;
+            }
+            MappedByteBuffer buffer;
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.limit() < TraceWriter.HEADER_SIZE || buffer.getInt(0) != TraceWriter.MAGIC) {
+                throw new IOException("Not a trace segment: " + path);
+            }
+            int version = buffer.getShort(4);
+            if (version != TraceWriter.VERSION || buffer.getShort(6) != TraceRecord.SIZE) {
+                throw new IOException(String.format("Unsupported trace version %d in %s", version, path));
+            }
+            long count = buffer.getLong(TraceWriter.COUNT_OFFSET);
+            if (TraceWriter.HEADER_SIZE + count * TraceRecord.SIZE > buffer.limit()) {
+                throw new IOException(String.format("Trace segment %s is shorter than its %d records", path, count));
+            }
+            segments.add(buffer);
+            firstRecords.add(size);
+            size += count;
+        }
+        Path extra = TraceWriter.extraPath(prefix);
+        if (Files.exists(extra)) {
+            readExtra(extra);
+        }
+    }
+
+    /**
+     * @throws IOException If the file is not a side stream of this version
+     */
+    private void readExtra(Path path) throws IOException {
+        try (InputStream inputStream = Files.newInputStream(path)) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(inputStream));
+            if (in.readInt() != TraceWriter.EXTRA_MAGIC) {
+                throw new IOException("Not a trace side stream: " + path);
+            }
+            int version = in.readUnsignedShort();
+            if (version != TraceWriter.EXTRA_VERSION) {
+                throw new IOException(String.format("Unsupported trace side stream version %d in %s", version, path));
+            }
+            int count = 0;
+            while (true) {
+                long record;
+                try {
+                    record = in.readLong();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (count == extraRecords.length) {
+                    int capacity = Math.max(16, count * 2);
+                    extraRecords = Arrays.copyOf(extraRecords, capacity);
+                    extraAccesses = Arrays.copyOf(extraAccesses, capacity);
+                    extraWrites = Arrays.copyOf(extraWrites, capacity);
+                }
+                extraRecords[count] = record;
+                extraWrites[count] = in.readBoolean();
+                extraAccesses[count] = in.readUnsignedShort() << 16 | in.readUnsignedShort();
+                count++;
+            }
+            extraRecords = Arrays.copyOf(extraRecords, count);
+        }
+    }
+
+    /**
+     * @return The number of records in the trace
+     */
+    public long size() {
+        return size;
+    }
+
+    public int getSegments() {
+        return segments.size();
+    }
+
+    /**
+     * @param index The position of the record in the trace
+     * @return The record
+     */
+    public TraceRecord get(long index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(String.format("Record %d of %d", index, size));
+        }
+        int segment = segments.size() - 1;
+        while (firstRecords.get(segment) > index) {
+            segment--;
+        }
+        return read(segment, index);
+    }
+
+    private TraceRecord read(int segment, long index) {
+        MappedByteBuffer buffer = segments.get(segment);
+        int position = TraceWriter.HEADER_SIZE + (int) (index - firstRecords.get(segment)) * TraceRecord.SIZE;
+        long first = buffer.getLong(position);
+        if ((first >>> 56 & (TraceRecord.MORE_READS | TraceRecord.MORE_WRITES)) == 0) {
+            return new TraceRecord(index, first, buffer.getLong(position + 8));
+        }
+        return new TraceRecord(index, first, buffer.getLong(position + 8), moreAccesses(index));
+    }
+
+    /**
+     * @return The accesses of the side stream that belong to a record
+     */
+    private List<TraceRecord.Access> moreAccesses(long index) {
+        int from = Arrays.binarySearch(extraRecords, index);
+        if (from < 0) {
+            return Collections.emptyList();
+        }
+        //The search lands on any of the record's accesses
+        while (from > 0 && extraRecords[from - 1] == index) {
+            from--;
+        }
+        List<TraceRecord.Access> accesses = new ArrayList<>();
+        for (int i = from; i < extraRecords.length && extraRecords[i] == index; i++) {
+            accesses.add(new TraceRecord.Access(extraWrites[i], extraAccesses[i] >>> 16, extraAccesses[i] & 0xFFFF));
+        }
+        return accesses;
+    }
+
+    /**
+     * @return The records in the order they were written
+     */
+    @Override
+    public Iterator<TraceRecord> iterator() {
+        return new Iterator<TraceRecord>() {
+            private long index;
+            private int segment;
+
+            @Override
+            public boolean hasNext() {
+                return index < size;
+            }
+
+            @Override
+            public TraceRecord next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                while (segment + 1 < segments.size() && firstRecords.get(segment + 1) <= index) {
+                    segment++;
+                }
+                return read(segment, index++);
+            }
+        };
+    }
+}
@@ -0,0 +1,196 @@
+package edu.gw.csci.simulator.trace;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One executed instruction of a trace, as read back by {@link TraceReader}.
+ * <p>
+ * On disk a record is {@link TraceRecord#SIZE} bytes, two little endian longs. The first holds the
+ * PC in bits 0-15, the IR in 16-31, the effective address in 32-47, the CC after the instruction in
+ * 48-55 and the flags in 56-63. The second holds the address and word of the first data read, then
+ * the address and word of the first write, 16 bits each. Fields without their flag are zero. The
+ * reads and writes after those, of the vector instructions, LDFR and entering a routine, are kept
+ * in the side stream of the trace, see {@link TraceWriter}, and come back as
+ * {@link TraceRecord#getMoreAccesses()}.
+ */
+public final class TraceRecord {
+
+    /**
+     * Bytes per record
+     */
+    public static final int SIZE = 16;
+
+    /**
+     * The instruction computed an effective address
+     */
+    public static final int HAS_EA = 1;
+
+    /**
+     * The instruction read memory, apart from its own fetch
+     */
+    public static final int HAS_READ = 2;
+
+    /**
+     * The instruction wrote memory
+     */
+    public static final int HAS_WRITE = 4;
+
+    /**
+     * The instruction changed the CC
+     */
+    public static final int CC_CHANGED = 8;
+
+    /**
+     * The instruction faulted, and its writes are those of entering the fault routine
+     */
+    public static final int FAULT = 16;
+
+    /**
+     * The instruction read more than once, the reads after the first are in the side stream
+     */
+    public static final int MORE_READS = 32;
+
+    /**
+     * The instruction wrote more than once, the writes after the first are in the side stream
+     */
+    public static final int MORE_WRITES = 64;
+
+    private final long index;
+    private final long first, second;
+    private final List<Access> moreAccesses;
+
+    TraceRecord(long index, long first, long second, List<Access> moreAccesses) {
+        this.index = index;
+        this.first = first;
+        this.second = second;
+        this.moreAccesses = moreAccesses;
+    }
+
+    TraceRecord(long index, long first, long second) {
+        this(index, first, second, Collections.emptyList());
+    }
+
+    static long packFirst(int pc, int ir, int ea, int cc, int flags) {
+        return (pc & 0xFFFFL) | (ir & 0xFFFFL) << 16 | (ea & 0xFFFFL) << 32 | (cc & 0xFFL) << 48
+                | (flags & 0xFFL) << 56;
+    }
+
+    static long packSecond(int readAddress, int readWord, int writeAddress, int writeWord) {
+        return (readAddress & 0xFFFFL) | (readWord & 0xFFFFL) << 16 | (writeAddress & 0xFFFFL) << 32
+                | (writeWord & 0xFFFFL) << 48;
+    }
+
+    /**
+     * @return The position of the instruction in the trace, counting from 0
+     */
+    public long getIndex() {
+        return index;
+    }
+
+    public int getPC() {
+        return (int) (first & 0xFFFF);
+    }
+
+    public int getIR() {
+        return (int) (first >>> 16 & 0xFFFF);
+    }
+
+    public int getEA() {
+        return (int) (first >>> 32 & 0xFFFF);
+    }
+
+    public int getCC() {
+        return (int) (first >>> 48 & 0xFF);
+    }
+
+    public int getFlags() {
+        return (int) (first >>> 56 & 0xFF);
+    }
+
+    public boolean hasFlag(int flag) {
+        return (getFlags() & flag) != 0;
+    }
+
+    public int getReadAddress() {
+        return (int) (second & 0xFFFF);
+    }
+
+    public int getReadWord() {
+        return (int) (second >>> 16 & 0xFFFF);
+    }
+
+    public int getWriteAddress() {
+        return (int) (second >>> 32 & 0xFFFF);
+    }
+
+    public int getWriteWord() {
+        return (int) (second >>> 48 & 0xFFFF);
+    }
+
+    /**
+     * @return The reads after the first read and the writes after the first write, in the order
+     * they happened, empty unless {@link TraceRecord#MORE_READS} or {@link TraceRecord#MORE_WRITES}
+     */
+    public List<Access> getMoreAccesses() {
+        return moreAccesses;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format("#%d PC=%d IR=%s", index, getPC(),
+                String.format("%16s", Integer.toBinaryString(getIR())).replace(' ', '0')));
+        if (hasFlag(HAS_EA)) {
+            builder.append(" EA=").append(getEA());
+        }
+        if (hasFlag(HAS_READ)) {
+            builder.append(String.format(" c(%d)->%d", getReadAddress(), getReadWord()));
+        }
+        if (hasFlag(HAS_WRITE)) {
+            builder.append(String.format(" c(%d)<-%d", getWriteAddress(), getWriteWord()));
+        }
+        for (Access access : moreAccesses) {
+            builder.append(' ').append(access);
+        }
+        if (hasFlag(CC_CHANGED)) {
+            builder.append(" CC=").append(Integer.toBinaryString(getCC()));
+        }
+        if (hasFlag(FAULT)) {
+            builder.append(" FAULT");
+        }
+        return builder.toString();
+    }
+
+    /**
+     * A read or write of the side stream.
+     */
+    public static final class Access {
+
+        private final boolean write;
+        private final int address, word;
+
+        Access(boolean write, int address, int word) {
+            this.write = write;
+            this.address = address;
+            this.word = word;
+        }
+
+        public boolean isWrite() {
+            return write;
+        }
+
+        public int getAddress() {
+            return address;
+        }
+
+        public int getWord() {
+            return word;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(write ? "c(%d)<-%d" : "c(%d)->%d", address, word);
+        }
+    }
+}
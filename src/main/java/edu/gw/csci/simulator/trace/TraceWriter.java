@@ -0,0 +1,246 @@
+package edu.gw.csci.simulator.trace;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes an execution trace as fixed width {@link TraceRecord records} into memory mapped segment
+ * files. Writing a record is two stores into a small chunk on the heap, and every full chunk is
+ * copied into the mapped segment in one go, so the operating system, not the simulator, moves the
+ * trace to disk. Once a segment is full it is finished and the next one is mapped, so a trace can
+ * grow far beyond what one mapping can hold. Records reach the segment when their chunk is full, or
+ * when the writer is {@link TraceWriter#flush() flushed} or closed.
+ * <p>
+ * The segments of a trace named by a prefix such as traces/run are traces/run.00000.trace,
+ * traces/run.00001.trace and so on. Each starts with a {@link TraceWriter#HEADER_SIZE} byte header:
+ * the magic number, the version, the record size, the segment number and the number of records,
+ * which is filled in when the segment is finished. The last segment is cut down to its records when
+ * the writer is closed.
+ * <p>
+ * A record has room for one read and one write. The further accesses of an instruction go to the
+ * side stream, traces/run.extra, which only exists if some instruction had any: a big endian stream
+ * of a magic number and version, then per access the index of its record, whether it was a write,
+ * its address and its word. Only the vector instructions, LDFR and entering a routine access memory
+ * more than once, so the side stream stays small and is written through a plain buffered stream.
+ */
+public class TraceWriter implements AutoCloseable {
+
+    private static final Logger LOGGER = LogManager.getLogger(TraceWriter.class);
+
+    static final int MAGIC = 0x43545243; //"CTRC"
+    static final int VERSION = 2;
+    static final int EXTRA_MAGIC = 0x43545258; //"CTRX"
+    static final int EXTRA_VERSION = 1;
+    static final int HEADER_SIZE = 64;
+    static final int COUNT_OFFSET = 16;
+
+    /**
+     * 64MB, about 4 million instructions per segment
+     */
+    public static final long DEFAULT_SEGMENT_SIZE = 64L << 20;
+
+    /**
+     * Records per chunk, 64KB
+     */
+    private static final int CHUNK_RECORDS = 4096;
+
+    private final Path prefix;
+    private final long segmentSize;
+
+    private final long[] chunk = new long[CHUNK_RECORDS * 2];
+    private int chunkLength;
+
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private LongBuffer longs;
+    private int position, limit;
+    private int segment = -1;
+    private long records;
+
+    private DataOutputStream extra;
+
+    /**
+     * @param prefix      The path of the trace, without the segment suffix
+     * @param segmentSize The size of each segment file in bytes, header included
+     * @throws IOException If the first segment can't be created
+     */
+    public TraceWriter(Path prefix, long segmentSize) throws IOException {
+        if (segmentSize < HEADER_SIZE + TraceRecord.SIZE || segmentSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Segment size out of range: " + segmentSize);
+        }
+        this.prefix = prefix;
+        this.segmentSize = segmentSize;
+        //A side stream left by an earlier trace of the same name would be read as this one's
+        Files.deleteIfExists(extraPath(prefix));
+        openSegment();
+    }
+
+    public TraceWriter(Path prefix) throws IOException {
+        this(prefix, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * @return The file of one segment of the trace
+     */
+    public static Path segmentPath(Path prefix, int segment) {
+        return prefix.resolveSibling(prefix.getFileName() + String.format(".%05d.trace", segment));
+    }
+
+    /**
+     * @return The file of the side stream of the trace
+     */
+    public static Path extraPath(Path prefix) {
+        return prefix.resolveSibling(prefix.getFileName() + ".extra");
+    }
+
+    /**
+     * Appends an access to the side stream, for the instruction whose record is written next.
+     *
+     * @param write True for a write, false for a read
+     * @throws UncheckedIOException If the side stream can't be created or written
+     */
+    public void writeAccess(boolean write, int address, int word) {
+        try {
+            if (extra == null) {
+                extra = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(extraPath(prefix))));
+                extra.writeInt(EXTRA_MAGIC);
+                extra.writeShort(EXTRA_VERSION);
+            }
+            extra.writeLong(getRecords());
+            extra.writeBoolean(write);
+            extra.writeShort(address);
+            extra.writeShort(word);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Appends the record of one instruction, see {@link TraceRecord} for the fields.
+     *
+     * @throws UncheckedIOException If the next segment can't be created
+     */
+    public void write(int pc, int ir, int ea, int cc, int flags,
+                      int readAddress, int readWord, int writeAddress, int writeWord) {
+        long[] chunk = this.chunk;
+        int length = chunkLength;
+        chunk[length] = TraceRecord.packFirst(pc, ir, ea, cc, flags);
+        chunk[length + 1] = TraceRecord.packSecond(readAddress, readWord, writeAddress, writeWord);
+        chunkLength = length + 2;
+        if (chunkLength == chunk.length) {
+            flush();
+        }
+    }
+
+    /**
+     * Copies the records written so far into the segments, rolling over to new segments as they
+     * fill up.
+     *
+     * @throws UncheckedIOException If the next segment can't be created
+     */
+    public void flush() {
+        int copied = 0;
+        while (copied < chunkLength) {
+            if (position == limit) {
+                try {
+                    finishSegment(false);
+                    openSegment();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            int count = Math.min(chunkLength - copied, (limit - position) / Long.BYTES);
+            longs.position(position / Long.BYTES);
+            longs.put(chunk, copied, count);
+            position += count * Long.BYTES;
+            copied += count;
+        }
+        records += chunkLength / 2;
+        chunkLength = 0;
+        if (extra != null) {
+            try {
+                extra.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * @return The number of records written
+     */
+    public long getRecords() {
+        return records + chunkLength / 2;
+    }
+
+    /**
+     * @return The number of segment files written so far
+     */
+    public int getSegments() {
+        return segment + 1;
+    }
+
+    public Path getPrefix() {
+        return prefix;
+    }
+
+    /**
+     * Finishes the last segment, and cuts it down to its records.
+     */
+    @Override
+    public void close() throws IOException {
+        if (buffer != null) {
+            flush();
+            finishSegment(true);
+        }
+        if (extra != null) {
+            extra.close();
+            extra = null;
+        }
+    }
+
+    private void openSegment() throws IOException {
+        segment++;
+        channel = FileChannel.open(segmentPath(prefix, segment), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(0, MAGIC);
+        buffer.putShort(4, (short) VERSION);
+        buffer.putShort(6, (short) TraceRecord.SIZE);
+        buffer.putInt(8, segment);
+        buffer.putLong(COUNT_OFFSET, 0);
+        longs = buffer.asLongBuffer();
+        position = HEADER_SIZE;
+        limit = HEADER_SIZE + (int) ((segmentSize - HEADER_SIZE) / TraceRecord.SIZE) * TraceRecord.SIZE;
+    }
+
+    private void finishSegment(boolean last) throws IOException {
+        //No force: the pages reach the file in the background, and readers see them right away
+        buffer.putLong(COUNT_OFFSET, (position - HEADER_SIZE) / TraceRecord.SIZE);
+        buffer = null;
+        longs = null;
+        if (last) {
+            try {
+                channel.truncate(position);
+            } catch (IOException e) {
+                //Some systems refuse to shrink a mapped file, the header still has the count
+                LOGGER.warn("Could not cut down trace segment {}: {}", segment, e.toString());
+            }
+        }
+        channel.close();
+        channel = null;
+    }
+}
@@ -197,6 +197,53 @@ public class BitConversion {
         return bits;
     }
 
+    /**
+     * Converts a BitSet to the raw, unsigned word it represents. Unlike {@link BitConversion#convert(BitSet)}
+     * bit 15 is not treated as a sign, so a BitSet with all 16 bits set becomes 65535.
+     *
+     * @param bits The BitSet to convert, at most 32 bits long
+     * @return The raw word
+     */
+    public static int toWord(BitSet bits) {
+        return bits.isEmpty() ? 0 : (int) bits.toLongArray()[0];
+    }
+
+    /**
+     * Converts a raw, unsigned word to a new BitSet, the inverse of {@link BitConversion#toWord(BitSet)}.
+     *
+     * @param word The raw word
+     * @return The converted BitSet
+     */
+    public static BitSet fromWord(int word) {
+        return BitSet.valueOf(new long[]{word & 0xFFFFFFFFL});
+    }
+
+    /**
+     * Interprets the low 16 bits of a raw word as a signed value, which gives the same
+     * result as {@link BitConversion#convert(BitSet)} without going through a BitSet.
+     *
+     * @param word The raw word
+     * @return The signed value
+     */
+    public static int toSigned(int word) {
+        return (short) word;
+    }
+
+    /**
+     * Converts a signed value to the raw 16 bit word that {@link BitConversion#convert(int)} would produce.
+     *
+     * @param value The integer to convert
+     * @return The raw word
+     * @throws IllegalValue If the value does not fit in [-32768,32767]
+     */
+    public static int toWord(int value) throws IllegalValue {
+        if (value < SetCC.MinValue || value > SetCC.MaxValue) {
+            String mess = String.format("Value: %d is out of range:[%d,%d]", value, SetCC.MinValue, SetCC.MaxValue);
+            throw new IllegalValue(mess);
+        }
+        return value & 0xFFFF;
+    }
+
     /**
      * Converts a binary String to Integer
      *
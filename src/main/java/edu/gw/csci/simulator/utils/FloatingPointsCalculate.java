@@ -3,7 +3,11 @@ package edu.gw.csci.simulator.utils;
 import java.util.BitSet;
 
 public class FloatingPointsCalculate {
-    private static int count = 0;
+    /**
+     * The name in the stage names of a calculator that no {@link edu.gw.csci.simulator.cpu.PipeLine} numbered
+     */
+    public static final String DEFAULT_NAME = "Floating Points Number Calculator";
+
     private String f1,f2;
     boolean add_mius; //true = add; false = mius;
     private String Sign1,Sign2;
@@ -15,11 +19,10 @@ public class FloatingPointsCalculate {
     private String mantissa1WithSign,mantissa2WithSign;
     private boolean OVERFLOW;
     private boolean UNDERFLOW;
-    private String fpncName;
+    private String fpncName = DEFAULT_NAME;
 
 
     public FloatingPointsCalculate(String f1, String f2, boolean add_mius){
-        this.fpncName = "Floating Points Number Calculator: "+String.valueOf(++count);
         this.f1=f1;
         this.f2=f2;
         this.add_mius = add_mius;
@@ -59,6 +62,14 @@ public class FloatingPointsCalculate {
     public String getFpncName(){
         return fpncName;
     }
+
+    /**
+     * @param fpncName The name of the calculator in the stage names, which a {@link edu.gw.csci.simulator.cpu.PipeLine}
+     *                 numbers by position
+     */
+    public void setFpncName(String fpncName){
+        this.fpncName = fpncName;
+    }
     public void show(){
         String mess1 = String.format("F1--S:%s E:%s(%d) M:%s",
                 Sign1,
@@ -0,0 +1,66 @@
+package edu.gw.csci.simulator;
+
+import edu.gw.csci.simulator.cpu.Machine;
+import edu.gw.csci.simulator.cpu.PipelineModel;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+public class HeadlessOptionsTest {
+
+    @Test
+    public void testParse() {
+        HeadlessOptions options = HeadlessOptions.parse("loop.txt", "--start", "32", "--input", "7",
+                "--store", "10=5", "--translate", "--store", "11=40", "--watch", "R2", "--watch", "13",
+                "--predict", "2-bit", "--write-back");
+        Assert.assertEquals("loop.txt", options.getProgramFile());
+        Assert.assertEquals(32, options.getStart());
+        Assert.assertEquals(Arrays.asList("7"), options.getInputs());
+        Assert.assertEquals(Integer.valueOf(5), options.getStores().get(10));
+        Assert.assertEquals(Integer.valueOf(40), options.getStores().get(11));
+        Assert.assertTrue(options.isTranslation());
+        Assert.assertFalse(options.isFusion());
+        Assert.assertEquals(Arrays.asList("R2", "13"), options.getWatches());
+        //A predictor needs a pipeline to predict for
+        Assert.assertEquals("EX_MEM,MEM_WB", options.getForwarding());
+        Assert.assertTrue(options.isCacheReport());
+        Assert.assertFalse(options.isAddressTrace());
+        Assert.assertEquals(0, options.getCopies());
+
+        HeadlessOptions defaults = HeadlessOptions.parse("loop.txt");
+        Assert.assertEquals(Machine.DEFAULT_LOAD_LOCATION, defaults.getStart());
+        Assert.assertNull(defaults.getForwarding());
+        Assert.assertFalse(defaults.isCacheReport());
+        Assert.assertEquals(PipelineModel.Stage.EX,
+                HeadlessOptions.parse("loop.txt", "--branch-stage", "ex").getBranchStage());
+    }
+
+    @Test
+    public void testFarmRuns() {
+        HeadlessOptions options = HeadlessOptions.parse("loop.txt", "--copies", "4", "--fuse", "--store", "10=5");
+        Assert.assertEquals(4, options.getCopies());
+        Assert.assertTrue(options.isFusion());
+        try {
+            HeadlessOptions.parse("loop.txt", "--copies", "4", "--trace", "run", "--write-back");
+            Assert.fail("Parsed a farm run that would ignore its trace");
+        } catch (IllegalArgumentException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("--trace, --write-back"));
+        }
+    }
+
+    @Test
+    public void testMalformed() {
+        String[][] bad = {{}, {"loop.txt", "--colour", "red"}, {"loop.txt", "--start"}, {"loop.txt", "--start", "x"},
+                {"loop.txt", "--store", "10"}, {"loop.txt", "--copies", "-1"}, {"loop.txt", "--branch-stage", "XX"},
+                {"loop.txt", "--sweep", "sizes=x"}};
+        for (String[] args : bad) {
+            try {
+                HeadlessOptions.parse(args);
+                Assert.fail("Parsed " + Arrays.toString(args));
+            } catch (IllegalArgumentException e) {
+                //Expected
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package edu.gw.csci.simulator;
+
+import edu.gw.csci.simulator.cpu.CPU;
+import edu.gw.csci.simulator.cpu.Machine;
+import edu.gw.csci.simulator.gui.Program;
+
+/**
+ * The programs and machines the tests share.
+ */
+public final class TestPrograms {
+
+    /**
+     * Nested SOB loops: R0 counts the outer loop from c(10), R1 the inner loop from c(11), and R2
+     * adds c(12) every inner iteration and is stored to c(13), so c(13) ends up the product of the
+     * counts. X1 holds the start of the program, from c(14).
+     */
+    public static final String[] LOOP_PROGRAM = {
+            "1000010001001110", //LDX X1, 14
+            "0000010100001010", //LDR R1, 10
+            "0000010000001011", //LDR R0, 11
+            "0001001000001100", //AMR R2, 12
+            "0000101000001101", //STR R2, 13
+            "0011100001000011", //SOB R0, X1, 3
+            "0011100101000010", //SOB R1, X1, 2
+            "0000000000000000"  //HLT
+    };
+
+    /**
+     * The counts of the loop unless a test needs another run: 613 instructions, leaving 200 in c(13)
+     */
+    public static final int OUTER = 5, INNER = 40;
+
+    private TestPrograms() {
+    }
+
+    /**
+     * @param lines The instructions, as binary strings
+     */
+    public static Program program(String... lines) {
+        Program program = new Program("loop");
+        for (String line : lines) {
+            program.appendLine(line);
+        }
+        return program;
+    }
+
+    /**
+     * Stores what {@link TestPrograms#LOOP_PROGRAM} reads: the counts, the 1 added every inner
+     * iteration, and the load location.
+     */
+    public static void storeLoopData(CPU cpu, int outer, int inner) {
+        cpu.StoreValue(10, outer);
+        cpu.StoreValue(11, inner);
+        cpu.StoreValue(12, 1);
+        cpu.StoreValue(14, Machine.DEFAULT_LOAD_LOCATION);
+    }
+
+    /**
+     * Initializes the machine, stores the loop's data and loads the lines at the default location.
+     * Set up the CPU before, as turning on fusion only scans programs loaded afterwards.
+     *
+     * @return The machine
+     */
+    public static Machine load(Machine machine, int outer, int inner, String... lines) {
+        machine.initialize();
+        storeLoopData(machine.getCpu(), outer, inner);
+        machine.load(program(lines), Machine.DEFAULT_LOAD_LOCATION);
+        return machine;
+    }
+
+    /**
+     * {@link TestPrograms#load(Machine, int, int, String...)} with the default counts.
+     */
+    public static Machine load(Machine machine, String... lines) {
+        return load(machine, OUTER, INNER, lines);
+    }
+
+    /**
+     * @return A new machine with {@link TestPrograms#LOOP_PROGRAM} loaded
+     */
+    public static Machine loopMachine(int outer, int inner) {
+        return load(new Machine(), outer, inner, LOOP_PROGRAM);
+    }
+
+    public static Machine loopMachine() {
+        return loopMachine(OUTER, INNER);
+    }
+}
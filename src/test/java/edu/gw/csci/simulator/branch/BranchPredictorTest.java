@@ -0,0 +1,154 @@
+package edu.gw.csci.simulator.branch;
+
+import edu.gw.csci.simulator.TestPrograms;
+import edu.gw.csci.simulator.cpu.Machine;
+import edu.gw.csci.simulator.cpu.PipelineModel;
+import edu.gw.csci.simulator.isa.InstructionType;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+public class BranchPredictorTest {
+
+    private static final int START = Machine.DEFAULT_LOAD_LOCATION;
+    private static final int INNER_SOB = START + 5, OUTER_SOB = START + 6;
+
+    /**
+     * @return The number of mispredicts over the outcomes, taken ones jumping to 0
+     */
+    private static int mispredicts(BranchPredictor predictor, int pc, String outcomes) {
+        int mispredicts = 0;
+        for (char outcome : outcomes.toCharArray()) {
+            boolean taken = outcome == 'T';
+            if (predictor.predict(pc) != taken) {
+                mispredicts++;
+            }
+            predictor.update(pc, taken, 0);
+        }
+        return mispredicts;
+    }
+
+    @Test
+    public void testCounters() {
+        //A loop of four passes, entered three times
+        String loops = "TTTNTTTNTTTN";
+        Assert.assertEquals(9, mispredicts(new StaticNotTaken(), 7, loops));
+        //Each exit and the pass after it
+        Assert.assertEquals(6, mispredicts(new OneBitPredictor(16), 7, loops));
+        //Weakly not taken at first, then only the exits
+        Assert.assertEquals(4, mispredicts(new TwoBitPredictor(16), 7, loops));
+
+        //Alternating outcomes defeat a counter, but not the history
+        String alternating = "TNTNTNTNTNTNTNTNTNTN";
+        Assert.assertEquals(20, mispredicts(new TwoBitPredictor(16), 7, alternating));
+        GSharePredictor gshare = new GSharePredictor(16);
+        Assert.assertTrue(mispredicts(gshare, 7, alternating) <= 4);
+        Assert.assertEquals(0, mispredicts(gshare, 7, alternating));
+
+        //Entries are shared by addresses with the same low bits
+        OneBitPredictor oneBit = new OneBitPredictor(16);
+        oneBit.update(3, true, 0);
+        Assert.assertTrue(oneBit.predict(19));
+        oneBit.reset();
+        Assert.assertFalse(oneBit.predict(3));
+    }
+
+    @Test
+    public void testTargetBuffer() {
+        BranchTargetBuffer btb = new BranchTargetBuffer(16);
+        Assert.assertFalse(btb.predict(40));
+        Assert.assertEquals(BranchPredictor.NO_TARGET, btb.predictTarget(40));
+        btb.update(40, false, 0);
+        Assert.assertEquals(BranchPredictor.NO_TARGET, btb.predictTarget(40));
+
+        btb.update(40, true, 35);
+        Assert.assertTrue(btb.predict(40));
+        Assert.assertEquals(35, btb.predictTarget(40));
+        //Another transfer with the same low bits replaces it when it jumps
+        Assert.assertFalse(btb.predict(56));
+        btb.update(56, true, 50);
+        Assert.assertFalse(btb.predict(40));
+        Assert.assertEquals(50, btb.predictTarget(56));
+
+        Assert.assertEquals(0, BranchPredictors.penalty(btb, 56, true, 50, 2));
+        Assert.assertEquals(1, BranchPredictors.penalty(btb, 56, true, 51, 2));
+        Assert.assertEquals(2, BranchPredictors.penalty(btb, 56, false, 0, 2));
+        //Direction predictors leave the target to decode
+        TwoBitPredictor twoBit = new TwoBitPredictor(16);
+        twoBit.update(56, true, 50);
+        Assert.assertEquals(1, BranchPredictors.penalty(twoBit, 56, true, 50, 2));
+        Assert.assertEquals(0, BranchPredictors.penalty(new StaticNotTaken(), 56, false, 0, 2));
+    }
+
+    @Test
+    public void testCreate() {
+        List<BranchPredictor> predictors = BranchPredictors.createAll("not-taken,1-bit/64,2-bit,gshare/256,btb/32");
+        Assert.assertEquals("not-taken", predictors.get(0).getName());
+        Assert.assertEquals("1-bit/64", predictors.get(1).getName());
+        Assert.assertEquals("2-bit/" + BranchPredictors.DEFAULT_ENTRIES, predictors.get(2).getName());
+        Assert.assertEquals("gshare/256", predictors.get(3).getName());
+        Assert.assertEquals("btb/32", predictors.get(4).getName());
+        for (String bad : new String[]{"3-bit", "gshare/100"}) {
+            try {
+                BranchPredictors.create(bad);
+                Assert.fail("Made " + bad);
+            } catch (IllegalArgumentException e) {
+                //Expected
+            }
+        }
+        try {
+            BranchPredictors.create("gshare/abc");
+            Assert.fail("Made gshare/abc");
+        } catch (IllegalArgumentException e) {
+            //Not a bare NumberFormatException, the message names the spec
+            Assert.assertFalse(e instanceof NumberFormatException);
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("gshare/abc"));
+        }
+    }
+
+    @Test
+    public void testStatisticsInOnePass() {
+        Machine machine = TestPrograms.loopMachine();
+        List<BranchPredictor> predictors = BranchPredictors.createAll("not-taken,2-bit,btb");
+        BranchStatistics statistics = new BranchStatistics(predictors, machine.getAllMemory().getMemory().getSize());
+        machine.getCpu().setBranchStatistics(statistics);
+        machine.run();
+        Assert.assertEquals(200, machine.getAllMemory().fetchWord(13));
+
+        Assert.assertEquals(205, statistics.getBranches());
+        Assert.assertEquals(199, statistics.getTaken());
+        Assert.assertEquals(200, statistics.getExecutions(INNER_SOB));
+        Assert.assertEquals(195, statistics.getTaken(INNER_SOB));
+        Assert.assertEquals(4, statistics.getTaken(OUTER_SOB));
+
+        BranchPredictor notTaken = predictors.get(0), twoBit = predictors.get(1), btb = predictors.get(2);
+        Assert.assertEquals(199, statistics.getMispredicts(notTaken));
+        Assert.assertEquals(2 * 199, statistics.getPenaltyCycles(notTaken));
+        //The first pass and the exit of each inner loop, the first pass and the exit of the outer one
+        Assert.assertEquals(6, statistics.getMispredicts(twoBit, INNER_SOB));
+        Assert.assertEquals(2, statistics.getMispredicts(twoBit, OUTER_SOB));
+        Assert.assertEquals((205 - 8) / 205.0, statistics.getAccuracy(twoBit), 1e-9);
+        //A cycle for every jump predicted without a target, all but the first pass of each transfer
+        Assert.assertEquals(2 * 8 + (199 - 2), statistics.getPenaltyCycles(twoBit));
+        //The buffer learns the targets when the transfers first jump
+        Assert.assertEquals(2 * statistics.getMispredicts(btb), statistics.getPenaltyCycles(btb));
+
+        String report = statistics.getReport(1);
+        Assert.assertTrue(report, report.contains(String.format("%5d %-4s", INNER_SOB, InstructionType.SOB)));
+        Assert.assertFalse(report, report.contains(String.format("%5d %-4s", OUTER_SOB, InstructionType.SOB)));
+    }
+
+    @Test
+    public void testPipelinePrediction() {
+        Machine machine = TestPrograms.loopMachine();
+        PipelineModel model = new PipelineModel(machine.getAllRegisters());
+        model.setBranchPredictor(new BranchTargetBuffer(16));
+        machine.getCpu().setPipelineModel(model);
+        machine.run();
+        //Only the mispredicted transfers flush, each costs the two cycles to EX
+        Assert.assertEquals(613, model.getInstructions());
+        Assert.assertEquals(2 * model.getFlushes(), model.getControlStalls());
+        Assert.assertTrue(model.getFlushes() < 20);
+    }
+}
@@ -0,0 +1,64 @@
+package edu.gw.csci.simulator.cpu;
+
+import edu.gw.csci.simulator.TestPrograms;
+import edu.gw.csci.simulator.registers.AllRegisters;
+import edu.gw.csci.simulator.registers.RegisterType;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BlockTranslatorTest {
+
+    private static final RegisterType[] COMPARED = {RegisterType.PC, RegisterType.CC, RegisterType.IR,
+            RegisterType.MAR, RegisterType.MBR, RegisterType.R0, RegisterType.R1, RegisterType.R2,
+            RegisterType.R3, RegisterType.X1};
+
+    private static Machine loopMachine(boolean translation) {
+        Machine machine = new Machine();
+        machine.getCpu().setTranslation(translation);
+        return TestPrograms.load(machine, TestPrograms.LOOP_PROGRAM);
+    }
+
+    @Test
+    public void testSameStateAsInterpreter() {
+        Machine interpreted = loopMachine(false);
+        interpreted.run();
+        Machine translated = loopMachine(true);
+        translated.run();
+
+        BlockTranslator translator = translated.getCpu().getTranslator();
+        Assert.assertTrue(translator.getBlocksTranslated() > 0);
+        Assert.assertTrue(translator.getBlocksExecuted() > 0);
+
+        Assert.assertEquals(interpreted.getCpu().getInstructionCount(), translated.getCpu().getInstructionCount());
+        AllRegisters expected = interpreted.getAllRegisters();
+        AllRegisters actual = translated.getAllRegisters();
+        for (RegisterType registerType : COMPARED) {
+            Assert.assertEquals(registerType.toString(), expected.getWord(registerType), actual.getWord(registerType));
+        }
+        Assert.assertEquals(200, translated.getAllMemory().fetchWord(13));
+    }
+
+    @Test
+    public void testStoreToCodeInvalidates() {
+        Machine machine = loopMachine(true);
+        machine.run();
+        BlockTranslator translator = machine.getCpu().getTranslator();
+        Assert.assertEquals(0, translator.getInvalidations());
+
+        //Data stores leave the blocks alone
+        machine.getAllMemory().storeWord(13, 0);
+        Assert.assertEquals(0, translator.getInvalidations());
+
+        //Make the inner loop add 2 instead of 1, by pointing AMR at c(10)
+        machine.getAllMemory().storeWord(35, Integer.parseInt("0001001000001010", 2));
+        Assert.assertEquals(1, translator.getInvalidations());
+
+        machine.getAllMemory().storeWord(Machine.DEFAULT_LOAD_LOCATION + 1, Integer.parseInt("0000010100001100", 2));
+        machine.getAllRegisters().setWord(RegisterType.PC, Machine.DEFAULT_LOAD_LOCATION);
+        machine.getAllRegisters().setWord(RegisterType.R2, 0);
+        machine.getCpu().StoreValue(10, 2);
+        machine.run();
+        //One outer pass of 40 inner iterations, each adding c(10) = 2
+        Assert.assertEquals(80, machine.getAllMemory().fetchWord(13));
+    }
+}
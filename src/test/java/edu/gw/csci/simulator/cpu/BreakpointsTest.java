@@ -0,0 +1,117 @@
+package edu.gw.csci.simulator.cpu;
+
+import edu.gw.csci.simulator.TestPrograms;
+import edu.gw.csci.simulator.registers.RegisterType;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BreakpointsTest {
+
+    private static final int AMR = Machine.DEFAULT_LOAD_LOCATION + 3,
+            STR = Machine.DEFAULT_LOAD_LOCATION + 4,
+            SOB = Machine.DEFAULT_LOAD_LOCATION + 5;
+
+    private static final long TIMEOUT = 10000;
+
+    private static int pc(Machine machine) {
+        return machine.getAllRegisters().getWord(RegisterType.PC);
+    }
+
+    @Test
+    public void testBreakpoint() {
+        Machine machine = TestPrograms.loopMachine();
+        CPU cpu = machine.getCpu();
+        //Translation would run the loop as one block, breakpoints make the CPU interpret it
+        cpu.setTranslation(true);
+        Breakpoints breakpoints = cpu.getBreakpoints();
+        breakpoints.setBreakpoint(AMR);
+
+        machine.run();
+        Assert.assertEquals(Breakpoints.Stop.BREAKPOINT, breakpoints.getStop());
+        Assert.assertEquals(AMR, pc(machine));
+        Assert.assertEquals(3, cpu.getInstructionCount());
+
+        //Continuing executes the instruction at the breakpoint, and stops there on the next pass
+        machine.run();
+        Assert.assertEquals(AMR, pc(machine));
+        Assert.assertEquals(6, cpu.getInstructionCount());
+
+        breakpoints.removeBreakpoint(AMR);
+        Assert.assertTrue(breakpoints.isEmpty());
+        machine.run();
+        Assert.assertFalse(breakpoints.isStopped());
+        Assert.assertEquals(200, machine.getAllMemory().fetchWord(13));
+    }
+
+    @Test
+    public void testWatchpoints() {
+        Machine machine = TestPrograms.loopMachine();
+        CPU cpu = machine.getCpu();
+        Breakpoints breakpoints = cpu.getBreakpoints();
+
+        breakpoints.watchMemory(12, true, false);
+        machine.run();
+        Assert.assertEquals(Breakpoints.Stop.READ, breakpoints.getStop());
+        Assert.assertEquals(12, breakpoints.getStopAddress());
+        Assert.assertEquals(4, cpu.getInstructionCount());
+        breakpoints.watchMemory(12, false, false);
+
+        //The store has retired when the run stops
+        breakpoints.watchMemory(13, false, true);
+        machine.run();
+        Assert.assertEquals(Breakpoints.Stop.WRITE, breakpoints.getStop());
+        Assert.assertEquals(SOB, pc(machine));
+        Assert.assertEquals(1, machine.getAllMemory().fetchWord(13));
+        breakpoints.clear();
+
+        breakpoints.watchRegister(RegisterType.R2);
+        machine.run();
+        Assert.assertEquals(Breakpoints.Stop.REGISTER, breakpoints.getStop());
+        Assert.assertEquals(RegisterType.R2, breakpoints.getStopRegister());
+        Assert.assertEquals(STR, pc(machine));
+        Assert.assertEquals(2, machine.getAllRegisters().getWord(RegisterType.R2));
+    }
+
+    @Test
+    public void testRunnerPausesAtBreakpoint() throws InterruptedException {
+        Machine machine = TestPrograms.loopMachine();
+        CPU cpu = machine.getCpu();
+        cpu.getBreakpoints().setBreakpoint(STR);
+        CPURunner runner = new CPURunner(cpu, 1000);
+        Assert.assertTrue(runner.start());
+
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (runner.getState() != CPURunner.State.PAUSED) {
+            Assert.assertTrue("Runner never paused", System.currentTimeMillis() < deadline);
+            Thread.sleep(1);
+        }
+        Assert.assertEquals(STR, pc(machine));
+        Assert.assertEquals(4, cpu.getInstructionCount());
+
+        cpu.getBreakpoints().clear();
+        runner.resume();
+        runner.join();
+        Assert.assertEquals(200, machine.getAllMemory().fetchWord(13));
+    }
+
+    @Test
+    public void testRunBackwardsToBreakpoint() {
+        Machine machine = TestPrograms.loopMachine();
+        CPU cpu = machine.getCpu();
+        cpu.setUndoRecording(UndoLog.DEFAULT_CAPACITY);
+        machine.run();
+        long count = cpu.getInstructionCount();
+
+        //Back to just before the last STR
+        cpu.getBreakpoints().setBreakpoint(STR);
+        Assert.assertEquals(4, cpu.runBackwards());
+        Assert.assertEquals(STR, pc(machine));
+        Assert.assertEquals(199, machine.getAllMemory().fetchWord(13));
+
+        //Forwards from there passes the breakpoint, and never comes back to it
+        machine.run();
+        Assert.assertFalse(cpu.getBreakpoints().isStopped());
+        Assert.assertEquals(count, cpu.getInstructionCount());
+        Assert.assertEquals(200, machine.getAllMemory().fetchWord(13));
+    }
+}
@@ -0,0 +1,132 @@
+package edu.gw.csci.simulator.cpu;
+
+import edu.gw.csci.simulator.TestPrograms;
+import edu.gw.csci.simulator.registers.RegisterType;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CPURunnerTest {
+
+    private static final RegisterType[] COMPARED = {RegisterType.PC, RegisterType.CC, RegisterType.IR,
+            RegisterType.MAR, RegisterType.MBR, RegisterType.R0, RegisterType.R1, RegisterType.R2,
+            RegisterType.X1};
+
+    private static final long TIMEOUT = 10000;
+
+    private static void awaitState(CPURunner runner, CPURunner.State state) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (runner.getState() != state) {
+            Assert.assertTrue("Runner never got " + state, System.currentTimeMillis() < deadline);
+            Thread.sleep(1);
+        }
+    }
+
+    @Test
+    public void testExecuteBudget() {
+        Machine machine = TestPrograms.loopMachine(5, 40);
+        CPU cpu = machine.getCpu();
+        Assert.assertFalse(cpu.execute(10));
+        Assert.assertEquals(10, cpu.getInstructionCount());
+        Assert.assertTrue(cpu.execute(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testSlicedRunMatchesExecute() throws InterruptedException {
+        Machine expected = TestPrograms.loopMachine(20, 100);
+        expected.run();
+
+        Machine sliced = TestPrograms.loopMachine(20, 100);
+        CPURunner runner = new CPURunner(sliced.getCpu(), 7);
+        Assert.assertTrue(runner.start());
+        runner.join();
+
+        Assert.assertEquals(CPURunner.State.IDLE, runner.getState());
+        Assert.assertTrue(runner.getPublished() > expected.getCpu().getInstructionCount() / 7);
+        Assert.assertEquals(expected.getCpu().getInstructionCount(), sliced.getCpu().getInstructionCount());
+        for (RegisterType registerType : COMPARED) {
+            Assert.assertEquals(registerType.toString(), expected.getAllRegisters().getWord(registerType),
+                    sliced.getAllRegisters().getWord(registerType));
+        }
+        Assert.assertEquals(2000, sliced.getAllMemory().fetchWord(13));
+    }
+
+    @Test
+    public void testPauseResumeAndStop() throws InterruptedException {
+        //Far too long to finish on its own
+        Machine machine = TestPrograms.loopMachine(32767, 32767);
+        CPU cpu = machine.getCpu();
+        CPURunner runner = new CPURunner(cpu, 1000);
+        Assert.assertTrue(runner.start());
+        Assert.assertFalse(runner.start());
+
+        runner.pause();
+        awaitState(runner, CPURunner.State.PAUSED);
+        long paused = cpu.getInstructionCount();
+        Thread.sleep(20);
+        Assert.assertEquals(paused, cpu.getInstructionCount());
+
+        //A paused machine can be stepped
+        cpu.step();
+        Assert.assertEquals(paused + 1, cpu.getInstructionCount());
+
+        long published = runner.getPublished();
+        runner.resume();
+        Assert.assertEquals(CPURunner.State.RUNNING, runner.getState());
+        //Let a slice run before stopping
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (runner.getPublished() == published) {
+            Assert.assertTrue("Runner never ran a slice", System.currentTimeMillis() < deadline);
+            Thread.sleep(1);
+        }
+        runner.stop();
+        runner.join();
+        Assert.assertEquals(CPURunner.State.IDLE, runner.getState());
+        Assert.assertTrue(cpu.getInstructionCount() > paused + 1);
+
+        //The stopped program carries on from its PC
+        Assert.assertTrue(runner.start());
+        runner.stop();
+        runner.join();
+        Assert.assertEquals(CPURunner.State.IDLE, runner.getState());
+    }
+
+    @Test
+    public void testFramesAndQuietLogs() throws InterruptedException {
+        Machine machine = TestPrograms.loopMachine(32767, 32767);
+        CPU cpu = machine.getCpu();
+        CPURunner runner = new CPURunner(cpu, 1000);
+        Assert.assertNull(runner.getFrame());
+        Logger handlerLogger = LogManager.getLogger("edu.gw.csci.simulator.isa.instructions.LoadStore");
+        Assert.assertTrue(runner.start());
+        awaitState(runner, CPURunner.State.RUNNING);
+        //Quieted by start, and not changed again until the worker parks
+        Assert.assertFalse(handlerLogger.isInfoEnabled());
+
+        runner.pause();
+        awaitState(runner, CPURunner.State.PAUSED);
+        Assert.assertEquals(LogManager.getRootLogger().getLevel(), handlerLogger.getLevel());
+        //The frame published on pausing is the machine as it was left
+        CPURunner.Frame frame = runner.getFrame();
+        Assert.assertEquals(runner.getPublished(), frame.getNumber());
+        MachineSnapshot snapshot = frame.getSnapshot();
+        Assert.assertEquals(cpu.getInstructionCount(), snapshot.getInstructionCount());
+        Assert.assertEquals(machine.getAllRegisters().getWord(RegisterType.PC), snapshot.getRegister(RegisterType.PC));
+        Assert.assertEquals(machine.getAllRegisters().getWord(RegisterType.R2), snapshot.getRegister(RegisterType.R2));
+        Assert.assertEquals(machine.getAllMemory().getMemory().read(13), snapshot.getWord(13));
+        Assert.assertEquals(machine.getAllMemory().getMemoryCache().getCacheHit(), frame.getCacheHits());
+
+        //Frames are copies, so running on leaves the old one alone
+        long instructions = snapshot.getInstructionCount();
+        runner.resume();
+        //Running, with the loggers quiet, before the worker even wakes
+        Assert.assertEquals(CPURunner.State.RUNNING, runner.getState());
+        Assert.assertFalse(handlerLogger.isInfoEnabled());
+        runner.stop();
+        runner.join();
+        Assert.assertEquals(instructions, frame.getSnapshot().getInstructionCount());
+        Assert.assertEquals(cpu.getInstructionCount(), runner.getFrame().getSnapshot().getInstructionCount());
+        Assert.assertEquals(LogManager.getRootLogger().getLevel(), handlerLogger.getLevel());
+    }
+}
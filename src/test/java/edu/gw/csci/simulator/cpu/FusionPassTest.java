@@ -0,0 +1,121 @@
+package edu.gw.csci.simulator.cpu;
+
+import edu.gw.csci.simulator.TestPrograms;
+import edu.gw.csci.simulator.registers.AllRegisters;
+import edu.gw.csci.simulator.registers.RegisterType;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class FusionPassTest {
+
+    private static final String[] IDIOM_PROGRAM = {
+            "0000010100001010", //LDR R1, 10
+            "0001100100000001", //AIR R1, 1
+            "0000100100001010", //STR R1, 10
+            "0000110000000101", //LDA R0, 5
+            "0000100000001011", //STR R0, 11
+            "0001111000000001", //SIR R2, 1
+            "0011111000011111", //JGE R2, 31
+            "0000000000000000"  //HLT
+    };
+
+    /**
+     * The STR of a fused LDR/AIR/STR faults on a reserved address
+     */
+    private static final String[] TRAP_PROGRAM = {
+            "0000010100001010", //LDR R1, 10
+            "0001100100000001", //AIR R1, 1
+            "0000100100000011", //STR R1, 3
+            "0000000000000000"  //HLT
+    };
+
+    private static final RegisterType[] COMPARED = {RegisterType.PC, RegisterType.CC, RegisterType.IR,
+            RegisterType.MAR, RegisterType.MBR, RegisterType.MFR, RegisterType.R0, RegisterType.R1,
+            RegisterType.R2, RegisterType.R3, RegisterType.X1};
+
+    private static Machine machine(String[] lines, boolean fusion) {
+        Machine machine = new Machine();
+        machine.getCpu().setFusion(fusion);
+        return TestPrograms.load(machine, lines);
+    }
+
+    private static Machine assertSameAsInterpreter(String[] lines) {
+        Machine interpreted = machine(lines, false);
+        interpreted.run();
+        Machine fused = machine(lines, true);
+        fused.run();
+
+        Assert.assertEquals(interpreted.getCpu().getInstructionCount(), fused.getCpu().getInstructionCount());
+        AllRegisters expected = interpreted.getAllRegisters();
+        AllRegisters actual = fused.getAllRegisters();
+        for (RegisterType registerType : COMPARED) {
+            Assert.assertEquals(registerType.toString(), expected.getWord(registerType), actual.getWord(registerType));
+        }
+        for (int address = 0; address < 64; address++) {
+            Assert.assertEquals("c(" + address + ")", interpreted.getAllMemory().getMemory().read(address),
+                    fused.getAllMemory().getMemory().read(address));
+        }
+        return fused;
+    }
+
+    @Test
+    public void testIdioms() {
+        Machine machine = assertSameAsInterpreter(IDIOM_PROGRAM);
+        FusionPass fusionPass = machine.getCpu().getFusionPass();
+        Assert.assertEquals(1, fusionPass.getSites(FusionPattern.LOAD_OPERATE_STORE));
+        Assert.assertEquals(1, fusionPass.getSites(FusionPattern.LOAD_ADDRESS_STORE));
+        Assert.assertEquals(1, fusionPass.getSites(FusionPattern.OPERATE_BRANCH));
+        Assert.assertEquals(0, fusionPass.getSites(FusionPattern.SOB_LOOP));
+        Assert.assertEquals(3, fusionPass.getExecuted(FusionPattern.LOAD_OPERATE_STORE));
+        Assert.assertEquals(2, fusionPass.getExecuted(FusionPattern.LOAD_ADDRESS_STORE));
+        Assert.assertEquals(2, fusionPass.getExecuted(FusionPattern.OPERATE_BRANCH));
+        Assert.assertEquals(6, machine.getAllMemory().fetchWord(10));
+        Assert.assertEquals(5, machine.getAllMemory().fetchWord(11));
+    }
+
+    @Test
+    public void testLoop() {
+        Machine machine = assertSameAsInterpreter(TestPrograms.LOOP_PROGRAM);
+        FusionPass fusionPass = machine.getCpu().getFusionPass();
+        Assert.assertEquals(1, fusionPass.getSites(FusionPattern.SOB_LOOP));
+        Assert.assertEquals(6, fusionPass.getFusedInstructions(FusionPattern.SOB_LOOP));
+        Assert.assertTrue(fusionPass.getExecuted(FusionPattern.SOB_LOOP) > 400);
+        Assert.assertEquals(200, machine.getAllMemory().fetchWord(13));
+    }
+
+    @Test
+    public void testLoopKeepsToBudget() {
+        Machine machine = new Machine();
+        machine.getCpu().setFusion(true);
+        TestPrograms.load(machine, 1, 30000, TestPrograms.LOOP_PROGRAM);
+        CPU cpu = machine.getCpu();
+        Assert.assertFalse(cpu.execute(100));
+        //At most one more pass of the six instruction loop
+        Assert.assertTrue(cpu.getInstructionCount() >= 100);
+        Assert.assertTrue(cpu.getInstructionCount() < 106);
+
+        while (!cpu.execute(100)) {
+            Assert.assertTrue(cpu.getInstructionCount() < 200000);
+        }
+        Assert.assertEquals(30000, machine.getAllMemory().fetchWord(13));
+    }
+
+    @Test
+    public void testTrapInsideSuperinstruction() {
+        Machine machine = assertSameAsInterpreter(TRAP_PROGRAM);
+        Assert.assertNotEquals(0, machine.getAllRegisters().getWord(RegisterType.MFR));
+    }
+
+    @Test
+    public void testStoreToCodeRescans() {
+        Machine machine = machine(IDIOM_PROGRAM, true);
+        FusionPass fusionPass = machine.getCpu().getFusionPass();
+        Assert.assertEquals(1, fusionPass.getSites(FusionPattern.LOAD_ADDRESS_STORE));
+
+        //Replace the LDA R0, 5 with a LDR, which breaks up the LDA/STR pair
+        machine.getAllMemory().storeWord(Machine.DEFAULT_LOAD_LOCATION + 3, Integer.parseInt("0000010000000101", 2));
+        machine.run();
+        Assert.assertEquals(0, fusionPass.getSites(FusionPattern.LOAD_ADDRESS_STORE));
+        Assert.assertEquals(1, fusionPass.getSites(FusionPattern.LOAD_OPERATE_STORE));
+    }
+}
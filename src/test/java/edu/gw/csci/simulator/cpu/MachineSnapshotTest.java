@@ -0,0 +1,185 @@
+package edu.gw.csci.simulator.cpu;
+
+import edu.gw.csci.simulator.TestPrograms;
+import edu.gw.csci.simulator.gui.Program;
+import edu.gw.csci.simulator.memory.CacheHierarchy;
+import edu.gw.csci.simulator.memory.CopyOnWriteMemory;
+import edu.gw.csci.simulator.memory.MemoryCache;
+import edu.gw.csci.simulator.memory.WordMemory;
+import edu.gw.csci.simulator.registers.RegisterType;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+public class MachineSnapshotTest {
+
+    private static Machine loopMachine(boolean translation, boolean fusion) {
+        return loopMachine(new Machine(), translation, fusion);
+    }
+
+    private static Machine loopMachine(Machine machine, boolean translation, boolean fusion) {
+        CPU cpu = machine.getCpu();
+        cpu.setTranslation(translation);
+        cpu.setFusion(fusion);
+        TestPrograms.load(machine, TestPrograms.LOOP_PROGRAM);
+        cpu.consoleInput.add("7");
+        return machine;
+    }
+
+    private static void assertSameState(Machine expected, Machine actual) {
+        Assert.assertEquals(expected.getCpu().getInstructionCount(), actual.getCpu().getInstructionCount());
+        for (RegisterType registerType : RegisterType.values()) {
+            Assert.assertEquals(registerType.toString(), expected.getAllRegisters().getWord(registerType),
+                    actual.getAllRegisters().getWord(registerType));
+        }
+        for (int address = 0; address < expected.getAllMemory().getMemory().getSize(); address++) {
+            Assert.assertEquals("c(" + address + ")", expected.getAllMemory().getMemory().read(address),
+                    actual.getAllMemory().getMemory().read(address));
+        }
+        Assert.assertArrayEquals(expected.getAllMemory().getMemoryCache().getCachedAddresses(),
+                actual.getAllMemory().getMemoryCache().getCachedAddresses());
+        Assert.assertEquals(expected.getCpu().consoleInput, actual.getCpu().consoleInput);
+    }
+
+    @Test
+    public void testRestoreMidRun() throws IOException {
+        Machine original = loopMachine(false, false);
+        Assert.assertFalse(original.getCpu().execute(333));
+        byte[] bytes = original.snapshot().toByteArray();
+        original.run();
+
+        //A fresh machine picks up where the snapshot left off
+        Machine restored = new Machine();
+        restored.restore(MachineSnapshot.fromByteArray(bytes));
+        Assert.assertEquals(333, restored.getCpu().getInstructionCount());
+        restored.run();
+        assertSameState(original, restored);
+        Assert.assertEquals(200, restored.getAllMemory().fetchWord(13));
+    }
+
+    @Test
+    public void testRestoreDropsStaleCode() {
+        Machine machine = loopMachine(true, true);
+        MachineSnapshot loaded = machine.snapshot();
+        machine.run();
+        Machine expected = loopMachine(false, false);
+        expected.run();
+
+        //Overwrite the program with one that stores 1 into c(13), and run it
+        Program other = new Program("other");
+        other.appendLine("0000011000001100"); //LDR R2, 12
+        other.appendLine("0000101000001101"); //STR R2, 13
+        other.appendLine("0000000000000000"); //HLT
+        machine.load(other, Machine.DEFAULT_LOAD_LOCATION);
+        machine.run();
+        Assert.assertEquals(1, machine.getAllMemory().fetchWord(13));
+
+        //Put the loop back, which has to be decoded and translated again
+        machine.restore(loaded);
+        Assert.assertEquals(0, machine.getCpu().getInstructionCount());
+        machine.run();
+        Assert.assertEquals(200, machine.getAllMemory().fetchWord(13));
+        Assert.assertEquals(expected.getCpu().getInstructionCount(), machine.getCpu().getInstructionCount());
+    }
+
+    @Test
+    public void testBinaryForm() throws IOException {
+        Machine machine = loopMachine(false, false);
+        MachineSnapshot snapshot = machine.snapshot();
+        byte[] bytes = snapshot.toByteArray();
+        //Two bytes per word, plus a small header and the lists
+        Assert.assertTrue(bytes.length < 2 * (2048 + RegisterType.values().length) + 200);
+
+        MachineSnapshot read = MachineSnapshot.fromByteArray(bytes);
+        Assert.assertEquals(snapshot.getMemorySize(), read.getMemorySize());
+        Assert.assertEquals(snapshot.getRegister(RegisterType.PC), read.getRegister(RegisterType.PC));
+        Assert.assertEquals(snapshot.getConsoleInput(), read.getConsoleInput());
+        Assert.assertArrayEquals(bytes, read.toByteArray());
+
+        bytes[0] = 0;
+        try {
+            MachineSnapshot.fromByteArray(bytes);
+            Assert.fail("Read a snapshot with a bad magic number");
+        } catch (IOException e) {
+            //Expected
+        }
+    }
+
+    private static Machine writeBackMachine() {
+        MemoryCache cache = MemoryCache.create("16,8,2,LRU,WRITE_BACK");
+        cache.setWriteBufferEntries(2);
+        return new Machine(new WordMemory(), cache);
+    }
+
+    @Test
+    public void testDirtyLinesAndWaitingWrites() throws IOException {
+        Machine original = loopMachine(writeBackMachine(), false, false);
+        MemoryCache originalCache = original.getAllMemory().getMemoryCache();
+        Assert.assertFalse(original.getCpu().execute(333));
+        MachineSnapshot snapshot = MachineSnapshot.fromByteArray(original.snapshot().toByteArray());
+        Assert.assertEquals(originalCache.getSpec(), snapshot.getCacheSpec());
+        Assert.assertEquals(2, snapshot.getWriteBufferEntries());
+        //STR R2, 13 leaves its line dirty
+        Assert.assertTrue(snapshot.getDirtyWords() > 0);
+        long writtenBefore = originalCache.getMemoryWrites();
+
+        Machine restored = writeBackMachine();
+        restored.restore(snapshot);
+        MemoryCache restoredCache = restored.getAllMemory().getMemoryCache();
+        Assert.assertEquals(originalCache.getDirtyLines(), restoredCache.getDirtyLines());
+        Assert.assertArrayEquals(originalCache.getWaitingBlocks(), restoredCache.getWaitingBlocks());
+        Assert.assertArrayEquals(originalCache.getWaitingMasks(), restoredCache.getWaitingMasks());
+
+        //Both write the same words to memory from here on, the ones still dirty at the snapshot included
+        original.run();
+        restored.run();
+        originalCache.flush();
+        restoredCache.flush();
+        Assert.assertEquals(originalCache.getMemoryWrites() - writtenBefore, restoredCache.getMemoryWrites());
+        assertSameState(original, restored);
+    }
+
+    private static Machine hierarchyMachine() {
+        Machine machine = loopMachine(new Machine(new CopyOnWriteMemory(), new MemoryCache()), false, false);
+        machine.getAllMemory().setCacheHierarchy(
+                CacheHierarchy.create("l1i=4,2,2,LRU;l1d=4,2,2,LRU,WRITE_BACK;l2=16,4,4,LRU"));
+        return machine;
+    }
+
+    @Test
+    public void testCacheHierarchy() throws IOException {
+        Machine original = hierarchyMachine();
+        Assert.assertFalse(original.getCpu().execute(333));
+        MachineSnapshot snapshot = MachineSnapshot.fromByteArray(original.snapshot().toByteArray());
+        List<MemoryCache> levels = original.getAllMemory().getCacheHierarchy().getLevels();
+        Assert.assertEquals(levels.get(1).getSpec(), snapshot.getHierarchySpecs().get(1));
+
+        Machine restored = hierarchyMachine();
+        restored.restore(snapshot);
+        Machine fork = original.fork();
+        List<MemoryCache> restoredLevels = restored.getAllMemory().getCacheHierarchy().getLevels();
+        List<MemoryCache> forkLevels = fork.getAllMemory().getCacheHierarchy().getLevels();
+        long[] hits = new long[levels.size()], misses = new long[levels.size()];
+        for (int i = 0; i < levels.size(); i++) {
+            Assert.assertArrayEquals(levels.get(i).getCachedAddresses(), restoredLevels.get(i).getCachedAddresses());
+            Assert.assertArrayEquals(levels.get(i).getCachedAddresses(), forkLevels.get(i).getCachedAddresses());
+            hits[i] = levels.get(i).getCacheHit();
+            misses[i] = levels.get(i).getCacheMiss();
+            restoredLevels.get(i).clearCounts();
+            forkLevels.get(i).clearCounts();
+        }
+
+        //Every level hits and misses from here on as the original does
+        original.run();
+        restored.run();
+        fork.run();
+        for (int i = 0; i < levels.size(); i++) {
+            Assert.assertEquals(levels.get(i).getCacheHit() - hits[i], restoredLevels.get(i).getCacheHit());
+            Assert.assertEquals(levels.get(i).getCacheMiss() - misses[i], restoredLevels.get(i).getCacheMiss());
+            Assert.assertEquals(levels.get(i).getCacheHit() - hits[i], forkLevels.get(i).getCacheHit());
+        }
+        assertSameState(original, restored);
+    }
+}
@@ -0,0 +1,82 @@
+package edu.gw.csci.simulator.cpu;
+
+import edu.gw.csci.simulator.TestPrograms;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PipelineModelTest {
+
+    private static final String LDR_R0 = "0000010000001010", //LDR R0, 10
+            AIR_R0 = "0001100000000001", //AIR R0, 1
+            HLT = "0000000000000000";
+
+    private static Machine machine(String... lines) {
+        return TestPrograms.load(new Machine(), lines);
+    }
+
+    private static PipelineModel run(boolean exMem, boolean memWb, String... lines) {
+        Machine machine = machine(lines);
+        PipelineModel model = new PipelineModel(machine.getAllRegisters());
+        model.setForwarding(PipelineModel.Forwarding.EX_MEM, exMem);
+        model.setForwarding(PipelineModel.Forwarding.MEM_WB, memWb);
+        machine.getCpu().setPipelineModel(model);
+        machine.run();
+        return model;
+    }
+
+    @Test
+    public void testLoadUse() {
+        //Fetched in cycles 0, 2 and 3, the HLT leaves WB at the end of cycle 7
+        PipelineModel model = run(true, true, LDR_R0, AIR_R0, HLT);
+        Assert.assertEquals(3, model.getInstructions());
+        Assert.assertEquals(8, model.getCycles());
+        Assert.assertEquals(1, model.getDataStalls());
+        Assert.assertEquals(1, model.getLoadUseStalls());
+
+        //Without forwarding, the AIR reads R0 in ID once the LDR is in WB
+        model = run(false, false, LDR_R0, AIR_R0, HLT);
+        Assert.assertEquals(9, model.getCycles());
+        Assert.assertEquals(2, model.getDataStalls());
+    }
+
+    @Test
+    public void testForwardingPaths() {
+        Assert.assertEquals(0, run(true, true, AIR_R0, AIR_R0, HLT).getDataStalls());
+        Assert.assertEquals(0, run(true, false, AIR_R0, AIR_R0, HLT).getDataStalls());
+        Assert.assertEquals(1, run(false, true, AIR_R0, AIR_R0, HLT).getDataStalls());
+        PipelineModel model = run(false, false, AIR_R0, AIR_R0, HLT);
+        Assert.assertEquals(2, model.getDataStalls());
+        Assert.assertEquals(0, model.getLoadUseStalls());
+        Assert.assertEquals(7 + 2, model.getCycles());
+    }
+
+    @Test
+    public void testBranchFlushes() {
+        //199 of the 205 SOBs jump, the rest fall through
+        PipelineModel model = run(true, true, TestPrograms.LOOP_PROGRAM);
+        Assert.assertEquals(613, model.getInstructions());
+        Assert.assertEquals(199, model.getFlushes());
+        Assert.assertEquals(2 * 199, model.getControlStalls());
+        //Only STR follows the AMR it stores the result of, through MEM_WB
+        Assert.assertEquals(0, model.getDataStalls());
+        Assert.assertEquals(613 + 2 * 199 + 4, model.getCycles());
+
+        Machine machine = machine(TestPrograms.LOOP_PROGRAM);
+        model = new PipelineModel(machine.getAllRegisters());
+        model.setBranchStage(PipelineModel.Stage.ID);
+        machine.getCpu().setPipelineModel(model);
+        machine.run();
+        Assert.assertEquals(199, model.getControlStalls());
+        Assert.assertEquals((613.0 + 199 + 4) / 613, model.getCPI(), 1e-9);
+        Assert.assertEquals(200, machine.getAllMemory().fetchWord(13));
+    }
+
+    @Test
+    public void testFaultFlush() {
+        //STR R0, 2 faults, the routine's HLT returns to the program's HLT
+        PipelineModel model = run(true, true, "0000100000000010", HLT);
+        Assert.assertEquals(2, model.getInstructions());
+        Assert.assertEquals(2, model.getFlushes());
+        Assert.assertEquals(6, model.getControlStalls());
+    }
+}
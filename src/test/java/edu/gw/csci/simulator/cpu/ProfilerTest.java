@@ -0,0 +1,78 @@
+package edu.gw.csci.simulator.cpu;
+
+import edu.gw.csci.simulator.TestPrograms;
+import edu.gw.csci.simulator.isa.InstructionType;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+
+public class ProfilerTest {
+
+    private static final int START = Machine.DEFAULT_LOAD_LOCATION;
+
+    private static Machine profiledLoop() {
+        Machine machine = TestPrograms.loopMachine();
+        CPU cpu = machine.getCpu();
+        //Translation would run the loop as one block, profiling makes the CPU interpret it
+        cpu.setTranslation(true);
+        cpu.setProfiling(true);
+        machine.run();
+        return machine;
+    }
+
+    @Test
+    public void testCounts() {
+        Machine machine = profiledLoop();
+        Profiler profiler = machine.getCpu().getProfiler();
+        Assert.assertEquals(machine.getCpu().getInstructionCount(), profiler.getTotal());
+        Assert.assertEquals(0, profiler.getFaults());
+
+        Assert.assertEquals(1, profiler.getCount(InstructionType.LDX));
+        Assert.assertEquals(6, profiler.getCount(InstructionType.LDR));
+        Assert.assertEquals(200, profiler.getCount(InstructionType.AMR));
+        Assert.assertEquals(200, profiler.getCount(InstructionType.STR));
+        Assert.assertEquals(205, profiler.getCount(InstructionType.SOB));
+        Assert.assertEquals(1, profiler.getCount(InstructionType.HLT));
+        Assert.assertEquals(0, profiler.getCount(InstructionType.JZ));
+
+        Assert.assertEquals(205, profiler.getClassCount("Transfer"));
+        Assert.assertEquals(207, profiler.getClassCount("LoadStore"));
+        Assert.assertEquals(200, profiler.getClassCount("ArithmeticLogic"));
+
+        Assert.assertEquals(5, profiler.getCount(START + 2));
+        Assert.assertEquals(200, profiler.getCount(START + 5));
+        //The inner SOB falls through once per outer pass, the outer one only at the end
+        Assert.assertEquals(195, profiler.getTaken(START + 5));
+        Assert.assertEquals(5, profiler.getNotTaken(START + 5));
+        Assert.assertEquals(4, profiler.getTaken(START + 6));
+        Assert.assertEquals(1, profiler.getNotTaken(START + 6));
+        Assert.assertEquals(0, profiler.getTaken(START + 3) + profiler.getNotTaken(START + 3));
+
+        int[] hotSpots = profiler.getHotSpots(3);
+        Assert.assertArrayEquals(new int[]{START + 3, START + 4, START + 5}, hotSpots);
+    }
+
+    @Test
+    public void testReports() throws IOException {
+        Profiler profiler = profiledLoop().getCpu().getProfiler();
+        String report = profiler.getReport(2);
+        Assert.assertTrue(report, report.contains("Transfer"));
+        //Only the two hottest addresses are listed
+        Assert.assertTrue(report, report.contains(String.format("%5d AMR", START + 3)));
+        Assert.assertFalse(report, report.contains("taken 195, not taken 5"));
+        Assert.assertTrue(profiler.getReport(3).contains("taken 195, not taken 5"));
+
+        StringBuilder csv = new StringBuilder();
+        profiler.writeCsv(csv);
+        String[] rows = csv.toString().split("\\R");
+        Assert.assertEquals("kind,name,address,count,taken,not_taken,nanos", rows[0]);
+        Assert.assertTrue(csv.toString(), csv.toString().contains("opcode,SOB,,205,,,"));
+        Assert.assertTrue(csv.toString(), csv.toString().contains(String.format("pc,SOB,%d,200,195,5,", START + 5)));
+        Assert.assertTrue(csv.toString(), csv.toString().contains(String.format("pc,AMR,%d,200,,,", START + 3)));
+
+        profiler.clear();
+        Assert.assertEquals(0, profiler.getTotal());
+        Assert.assertEquals(0, profiler.getCount(START + 3));
+    }
+}
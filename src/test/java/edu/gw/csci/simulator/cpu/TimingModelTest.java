@@ -0,0 +1,124 @@
+package edu.gw.csci.simulator.cpu;
+
+import edu.gw.csci.simulator.TestPrograms;
+import edu.gw.csci.simulator.gui.Program;
+import edu.gw.csci.simulator.isa.InstructionType;
+import edu.gw.csci.simulator.memory.MemoryCache;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+public class TimingModelTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static CycleCounter run(TimingModel model, String... lines) {
+        return run(new Machine(), model, lines);
+    }
+
+    private static CycleCounter run(Machine machine, TimingModel model, String... lines) {
+        TestPrograms.load(machine, lines);
+        CPU cpu = machine.getCpu();
+        cpu.setTimingModel(model);
+        machine.run();
+        Assert.assertEquals(200, machine.getAllMemory().fetchWord(13));
+        return cpu.getCycleCounter();
+    }
+
+    @Test
+    public void testOpcodeCycles() {
+        TimingModel model = new TimingModel();
+        Assert.assertTrue(model.setClassCycles("LoadStore", 2));
+        Assert.assertTrue(model.setClassCycles("Transfer", 3));
+        Assert.assertFalse(model.setClassCycles("Vector", 3));
+        model.setOpcodeCycles(InstructionType.AMR, 5);
+        model.setMemoryLatency(0);
+        model.setCacheHitLatency(0);
+
+        CycleCounter counter = run(model, TestPrograms.LOOP_PROGRAM);
+        //LDX and 6 LDR at 2, 200 AMR at 5, 200 STR at 2, 205 SOB at 3 and the HLT at 1
+        Assert.assertEquals(613, counter.getInstructions());
+        Assert.assertEquals(2 + 12 + 1000 + 400 + 615 + 1, counter.getCycles());
+        Assert.assertEquals(2030.0 / 613, counter.getCPI(), 1e-9);
+    }
+
+    @Test
+    public void testMemoryCycles() {
+        TimingModel model = new TimingModel();
+        model.setMemoryLatency(10);
+        model.setCacheHitLatency(1);
+        CycleCounter counter = run(model, TestPrograms.LOOP_PROGRAM);
+        Assert.assertEquals(613, counter.getExecuteCycles());
+        //Every instruction is fetched, and the LDX, LDR and AMR read an operand
+        Assert.assertEquals(613 + 207, counter.getHits() + counter.getMisses());
+        Assert.assertEquals(200, counter.getStores());
+        Assert.assertEquals(counter.getHits() + 10 * (counter.getMisses() + counter.getStores()),
+                counter.getMemoryCycles());
+        Assert.assertEquals(counter.getExecuteCycles() + counter.getMemoryCycles(), counter.getCycles());
+        Assert.assertEquals(0, counter.getTrapCycles());
+    }
+
+    @Test
+    public void testWriteBackCycles() {
+        TimingModel model = new TimingModel();
+        model.setMemoryLatency(10);
+        model.setCacheHitLatency(1);
+        Machine machine = new Machine();
+        machine.getAllMemory().getMemoryCache().setWritePolicy(MemoryCache.WritePolicy.WRITE_BACK);
+        CycleCounter counter = run(machine, model, TestPrograms.LOOP_PROGRAM);
+        //The result stays dirty in the cache, so the stores only cost a hit
+        Assert.assertEquals(200, counter.getStores());
+        Assert.assertEquals(counter.getHits() + 200 + 10 * counter.getMisses(), counter.getMemoryCycles());
+        Assert.assertEquals(0, machine.getAllMemory().getMemoryCache().getWriteBacks());
+    }
+
+    @Test
+    public void testTrapOverhead() {
+        TimingModel model = new TimingModel();
+        model.setTrapOverhead(7);
+        //STR R0, 2 faults on a reserved location, then the routine's HLT returns to the program's HLT
+        Machine machine = new Machine();
+        machine.initialize();
+        Program program = new Program("fault");
+        program.appendLine("0000100000000010");
+        program.appendLine("0000000000000000");
+        machine.load(program, Machine.DEFAULT_LOAD_LOCATION);
+        machine.getCpu().setTimingModel(model);
+        machine.run();
+        CycleCounter counter = machine.getCpu().getCycleCounter();
+        Assert.assertEquals(1, counter.getTraps());
+        Assert.assertEquals(7, counter.getTrapCycles());
+        Assert.assertEquals(2, counter.getInstructions());
+    }
+
+    @Test
+    public void testLoad() throws IOException {
+        Path path = folder.newFile("timing.properties").toPath();
+        Files.write(path, Arrays.asList("# A slow multiplier", "opcode.MLT = 12", "class.ArithmeticLogic = 3",
+                "memory.latency = 40", "cache.hit.latency = 2", "trap.overhead = 50"));
+        TimingModel model = TimingModel.load(path);
+        Assert.assertEquals(12, model.getOpcodeCycles(InstructionType.MLT));
+        Assert.assertEquals(3, model.getOpcodeCycles(InstructionType.AMR));
+        Assert.assertEquals(TimingModel.DEFAULT_INSTRUCTION_CYCLES, model.getOpcodeCycles(InstructionType.LDR));
+        Assert.assertEquals(40, model.getMemoryLatency());
+        Assert.assertEquals(2, model.getCacheHitLatency());
+        Assert.assertEquals(50, model.getTrapOverhead());
+
+        for (String bad : new String[]{"memory.latancy = 4", "class.Vector = 1", "opcode.MUL = 1", "trap.overhead = -1"}) {
+            Files.write(path, Arrays.asList(bad));
+            try {
+                TimingModel.load(path);
+                Assert.fail("Loaded " + bad);
+            } catch (IOException e) {
+                //Expected
+            }
+        }
+    }
+}
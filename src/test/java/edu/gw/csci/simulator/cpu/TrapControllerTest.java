@@ -0,0 +1,110 @@
+package edu.gw.csci.simulator.cpu;
+
+import edu.gw.csci.simulator.exceptions.IllegalValue;
+import edu.gw.csci.simulator.gui.Program;
+import edu.gw.csci.simulator.registers.RegisterType;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TrapControllerTest {
+
+    /**
+     * Runs TRAP 3 c(11) times in a SOB loop
+     */
+    private static final String[] TRAP_LOOP_PROGRAM = {
+            "1000010001001110", //LDX X1, 14
+            "0000010000001011", //LDR R0, 11
+            "0111100000000011", //TRAP 3
+            "0011100001000010", //SOB R0, X1, 2
+            "0000000000000000"  //HLT
+    };
+
+    /**
+     * A trap routine counting its calls in c(12)
+     */
+    private static final String[] COUNTING_ROUTINE = {
+            "0000011000001100", //LDR R2, 12
+            "0001101000000001", //AIR R2, 1
+            "0000101000001100", //STR R2, 12
+            "0000000000000000"  //HLT
+    };
+
+    private static final int ROUTINE_LOCATION = 100;
+
+    /**
+     * The trap table entry jumps to the routine through c(15)
+     */
+    private static final String JUMP_TO_ROUTINE = "0010110000101111"; //JMA 15, I
+
+    private static Machine machine(int traps) {
+        Machine machine = new Machine();
+        machine.initialize();
+        CPU cpu = machine.getCpu();
+        cpu.StoreValue(11, traps);
+        cpu.StoreValue(14, Machine.DEFAULT_LOAD_LOCATION);
+        Program program = new Program("traps");
+        for (String line : TRAP_LOOP_PROGRAM) {
+            program.appendLine(line);
+        }
+        machine.load(program, Machine.DEFAULT_LOAD_LOCATION);
+        return machine;
+    }
+
+    private static void installCountingRoutine(Machine machine) {
+        CPU cpu = machine.getCpu();
+        for (int i = 0; i < COUNTING_ROUTINE.length; i++) {
+            cpu.StoreValue(ROUTINE_LOCATION + i, Integer.parseInt(COUNTING_ROUTINE[i], 2));
+        }
+        int table = machine.getAllMemory().fetchWord(TrapController.HALT_POINTER_ROUTINE, false);
+        cpu.StoreValue(15, ROUTINE_LOCATION);
+        cpu.StoreValue(table + IllegalValue.OP_CODE, Integer.parseInt(JUMP_TO_ROUTINE, 2));
+    }
+
+    @Test
+    public void testManyTrapsDoNotNest() {
+        int traps = 30000;
+        Machine machine = machine(traps);
+        machine.run();
+
+        CPU cpu = machine.getCpu();
+        Assert.assertEquals(0, cpu.getTrapDepth());
+        Assert.assertEquals(0, machine.getAllRegisters().getWord(RegisterType.R0));
+        Assert.assertEquals(IllegalValue.OP_CODE, machine.getAllRegisters().getWord(RegisterType.MFR));
+        //LDX and LDR, then TRAP, the HLT of the default routine and SOB per trap, then HLT
+        Assert.assertEquals(3L * traps + 3, cpu.getInstructionCount());
+    }
+
+    @Test
+    public void testRoutineReturnsAfterTrap() {
+        Machine machine = machine(25);
+        installCountingRoutine(machine);
+        machine.run();
+
+        Assert.assertEquals(0, machine.getCpu().getTrapDepth());
+        Assert.assertEquals(25, machine.getAllMemory().fetchWord(12));
+        Assert.assertEquals(Machine.DEFAULT_LOAD_LOCATION + 2 + 1,
+                machine.getAllMemory().fetchWord(TrapController.TRAP_PC_LOCATION, false));
+    }
+
+    @Test
+    public void testStepIntoRoutine() {
+        Machine machine = machine(1);
+        installCountingRoutine(machine);
+        CPU cpu = machine.getCpu();
+
+        //LDX, LDR, TRAP, then the JMA of the trap table
+        cpu.step();
+        cpu.step();
+        cpu.step();
+        cpu.step();
+        Assert.assertEquals(1, cpu.getTrapDepth());
+        Assert.assertEquals(ROUTINE_LOCATION, machine.getAllRegisters().getWord(RegisterType.PC));
+
+        for (int i = 0; i < COUNTING_ROUTINE.length; i++) {
+            cpu.step();
+        }
+        Assert.assertEquals(0, cpu.getTrapDepth());
+        Assert.assertEquals(Machine.DEFAULT_LOAD_LOCATION + 3, machine.getAllRegisters().getWord(RegisterType.PC));
+        Assert.assertEquals(1, machine.getAllMemory().fetchWord(12));
+    }
+}
@@ -0,0 +1,124 @@
+package edu.gw.csci.simulator.cpu;
+
+import edu.gw.csci.simulator.TestPrograms;
+import edu.gw.csci.simulator.gui.Program;
+import edu.gw.csci.simulator.registers.RegisterType;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+public class UndoLogTest {
+
+    /**
+     * Reads two numbers, echoes each and stores the second to c(13)
+     */
+    private static final String[] ECHO_PROGRAM = {
+            "1100010000000000", //IN R0, 0
+            "1100100000000001", //OUT R0, 1
+            "1100010000000000", //IN R0, 0
+            "1100100000000001", //OUT R0, 1
+            "0000100000001101", //STR R0, 13
+            "0000000000000000"  //HLT
+    };
+
+    private static Machine machine(String[] lines, int capacity) {
+        Machine machine = new Machine();
+        machine.getCpu().setUndoRecording(capacity);
+        return TestPrograms.load(machine, lines);
+    }
+
+    @Test
+    public void testStepBackRestoresState() {
+        Machine machine = machine(TestPrograms.LOOP_PROGRAM, UndoLog.DEFAULT_CAPACITY);
+        CPU cpu = machine.getCpu();
+        Assert.assertFalse(cpu.execute(200));
+        MachineSnapshot at200 = cpu.snapshot();
+        machine.run();
+        Assert.assertEquals(200, machine.getAllMemory().fetchWord(13));
+
+        int back = (int) (cpu.getInstructionCount() - 200);
+        Assert.assertEquals(back, cpu.stepBack(back));
+        Assert.assertEquals(200, cpu.getInstructionCount());
+        for (RegisterType registerType : RegisterType.values()) {
+            Assert.assertEquals(registerType.toString(), at200.getRegister(registerType),
+                    machine.getAllRegisters().getWord(registerType));
+        }
+        for (int address = 0; address < at200.getMemorySize(); address++) {
+            Assert.assertEquals("c(" + address + ")", at200.getWord(address),
+                    machine.getAllMemory().getMemory().read(address));
+        }
+        //Reads go through the cache, which must not hand back the words that were undone
+        Assert.assertEquals(at200.getWord(13), machine.getAllMemory().fetchWord(13));
+
+        //Running forwards again gives the same result
+        machine.run();
+        Assert.assertEquals(200, machine.getAllMemory().fetchWord(13));
+    }
+
+    @Test
+    public void testOldestInstructionsAreForgotten() {
+        Machine machine = machine(TestPrograms.LOOP_PROGRAM, 50);
+        Assert.assertEquals(64, machine.getCpu().getUndoLog().getCapacity());
+        CPU cpu = machine.getCpu();
+        Assert.assertFalse(cpu.execute(300));
+        Assert.assertEquals(64, cpu.getUndoLog().size());
+        Assert.assertEquals(64, cpu.stepBack(100));
+        Assert.assertEquals(236, cpu.getInstructionCount());
+        Assert.assertEquals(0, cpu.stepBack(1));
+
+        //Stores from outside execution are not undone, and loading drops the history
+        cpu.step();
+        cpu.StoreValue(12, 3);
+        Assert.assertEquals(1, cpu.stepBack(1));
+        Assert.assertEquals(3, machine.getAllMemory().fetchWord(12));
+        cpu.step();
+        machine.load(new Program("empty"), Machine.DEFAULT_LOAD_LOCATION);
+        Assert.assertEquals(0, cpu.getUndoLog().size());
+    }
+
+    @Test
+    public void testRunBackwardsToConsole() {
+        Machine machine = machine(ECHO_PROGRAM, UndoLog.DEFAULT_CAPACITY);
+        CPU cpu = machine.getCpu();
+        cpu.consoleInput.addAll(Arrays.asList("7", "9"));
+        machine.run();
+        Assert.assertEquals(Arrays.asList("7", "9"), cpu.consoleOutput);
+        Assert.assertEquals(9, machine.getAllMemory().fetchWord(13));
+
+        //Back to just before the second IN: its line is unread and the second echo is gone
+        Assert.assertEquals(4, cpu.runBackwardsTo(Machine.DEFAULT_LOAD_LOCATION + 2));
+        Assert.assertEquals(Machine.DEFAULT_LOAD_LOCATION + 2, machine.getAllRegisters().getWord(RegisterType.PC));
+        Assert.assertEquals(Collections.singletonList("9"), cpu.consoleInput);
+        Assert.assertEquals(Collections.singletonList("7"), cpu.consoleOutput);
+        Assert.assertEquals(7, machine.getAllRegisters().getWord(RegisterType.R0));
+        Assert.assertEquals(0, machine.getAllMemory().fetchWord(13));
+
+        //An address that is never reached runs back to the start
+        Assert.assertEquals(2, cpu.runBackwardsTo(0));
+        Assert.assertEquals(Arrays.asList("7", "9"), cpu.consoleInput);
+        Assert.assertTrue(cpu.consoleOutput.isEmpty());
+    }
+
+    @Test
+    public void testInstructionStoringMoreThanTheRingIsUndoneInFull() {
+        //Room for one instruction, and 64 stored words
+        Machine machine = machine(TestPrograms.LOOP_PROGRAM, 1);
+        CPU cpu = machine.getCpu();
+        cpu.step();
+        UndoLog undoLog = cpu.getUndoLog();
+        undoLog.record(cpu.getInstructionCount(), 0, 0);
+        for (int address = 100; address < 300; address++) {
+            cpu.StoreValue(address, address);
+        }
+        undoLog.finish();
+
+        Assert.assertEquals(1, cpu.stepBack(1));
+        for (int address = 100; address < 300; address++) {
+            Assert.assertEquals("c(" + address + ")", 0, machine.getAllMemory().getMemory().read(address));
+        }
+        //The instruction before it was forgotten to make room
+        Assert.assertEquals(0, cpu.stepBack(1));
+    }
+}
@@ -0,0 +1,82 @@
+package edu.gw.csci.simulator.farm;
+
+import edu.gw.csci.simulator.cpu.Machine;
+import edu.gw.csci.simulator.gui.Program;
+import edu.gw.csci.simulator.memory.CopyOnWriteMemory;
+import edu.gw.csci.simulator.memory.MemoryCache;
+import edu.gw.csci.simulator.registers.RegisterType;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class MachineForkTest {
+
+    /**
+     * Reads a number, keeps it in c(20), and prints it
+     */
+    private static final String[] ECHO_PROGRAM = {
+            "1100010000000000", //IN R0, 0
+            "0000100000010100", //STR R0, 20
+            "1100100000000001", //OUT R0, 1
+            "0000000000000000"  //HLT
+    };
+
+    private static Machine forkableMachine() {
+        Machine machine = new Machine(new CopyOnWriteMemory(), new MemoryCache());
+        machine.initialize();
+        Program program = new Program("echo");
+        for (String line : ECHO_PROGRAM) {
+            program.appendLine(line);
+        }
+        machine.load(program, Machine.DEFAULT_LOAD_LOCATION);
+        return machine;
+    }
+
+    @Test
+    public void testForksRunWithTheirOwnInput() throws InterruptedException {
+        Machine parent = forkableMachine();
+        List<List<String>> inputs = new ArrayList<>();
+        for (int i = 1; i <= 8; i++) {
+            inputs.add(Collections.singletonList(String.valueOf(i * 11)));
+        }
+
+        FarmReport report;
+        try (SimulationFarm farm = new SimulationFarm(4)) {
+            report = farm.runForks(parent, inputs);
+        }
+
+        Assert.assertEquals(0, report.getFailures());
+        for (int i = 1; i <= 8; i++) {
+            FarmResult result = report.getResults().get(i - 1);
+            Assert.assertTrue(result.isHalted());
+            Assert.assertEquals(Collections.singletonList(String.valueOf(i * 11)), result.getOutput());
+            Assert.assertEquals(Integer.valueOf(i * 11), result.getRegister(RegisterType.R0));
+        }
+        //The parent is still paused at the start, with its memory untouched
+        Assert.assertEquals(0, parent.getCpu().getInstructionCount());
+        Assert.assertEquals(0, parent.getAllMemory().fetchWord(20));
+        Assert.assertEquals(Machine.DEFAULT_LOAD_LOCATION, parent.getAllRegisters().getWord(RegisterType.PC));
+    }
+
+    @Test
+    public void testForkCopiesOnlyWrittenPages() {
+        Machine parent = forkableMachine();
+        parent.getCpu().consoleInput.add("5");
+        Machine child = parent.fork();
+        CopyOnWriteMemory childMemory = (CopyOnWriteMemory) child.getAllMemory().getMemory();
+        Assert.assertEquals(Collections.singletonList("5"), child.getCpu().consoleInput);
+
+        child.run();
+        Assert.assertEquals(5, child.getAllMemory().fetchWord(20));
+        Assert.assertEquals(1, childMemory.getCopiedPages());
+        Assert.assertEquals(0, parent.getAllMemory().fetchWord(20));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testOnlyCopyOnWriteMachinesFork() {
+        new Machine().fork();
+    }
+}
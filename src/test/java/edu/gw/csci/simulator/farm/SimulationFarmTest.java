@@ -0,0 +1,86 @@
+package edu.gw.csci.simulator.farm;
+
+import edu.gw.csci.simulator.TestPrograms;
+import edu.gw.csci.simulator.cpu.Machine;
+import edu.gw.csci.simulator.gui.Program;
+import edu.gw.csci.simulator.registers.RegisterType;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class SimulationFarmTest {
+
+    private static Program loopProgram() {
+        return TestPrograms.program(TestPrograms.LOOP_PROGRAM);
+    }
+
+    private static FarmJob loopJob(Program program, int outer) {
+        FarmJob job = new FarmJob("outer=" + outer, program);
+        job.store(10, outer);
+        job.store(11, 50);
+        job.store(12, 1);
+        job.store(14, Machine.DEFAULT_LOAD_LOCATION);
+        return job;
+    }
+
+    @Test
+    public void testIndependentJobs() throws InterruptedException {
+        Program program = loopProgram();
+        List<FarmJob> jobs = new ArrayList<>();
+        for (int outer = 1; outer <= 32; outer++) {
+            FarmJob job = loopJob(program, outer);
+            job.setFusion(outer % 3 == 1);
+            job.setTranslation(outer % 3 == 2);
+            jobs.add(job);
+        }
+
+        FarmReport report;
+        try (SimulationFarm farm = new SimulationFarm(4)) {
+            report = farm.run(jobs);
+        }
+
+        Assert.assertEquals(32, report.getResults().size());
+        Assert.assertEquals(0, report.getFailures());
+        long total = 0;
+        for (int outer = 1; outer <= 32; outer++) {
+            FarmResult result = report.getResults().get(outer - 1);
+            Assert.assertEquals("outer=" + outer, result.getName());
+            Assert.assertTrue(result.isHalted());
+            Assert.assertEquals(Integer.valueOf(outer * 50), result.getRegister(RegisterType.R2));
+            total += result.getInstructionCount();
+        }
+        Assert.assertEquals(total, report.getTotalInstructions());
+        Assert.assertTrue(report.getInstructionsPerSecond() > 0);
+    }
+
+    @Test
+    public void testInstructionLimit() throws InterruptedException {
+        FarmJob job = loopJob(loopProgram(), 1000);
+        job.setInstructionLimit(500);
+
+        FarmReport report;
+        try (SimulationFarm farm = new SimulationFarm(1)) {
+            List<FarmJob> jobs = new ArrayList<>();
+            jobs.add(job);
+            report = farm.run(jobs);
+        }
+        FarmResult result = report.getResults().get(0);
+        Assert.assertFalse(result.isHalted());
+        Assert.assertNull(result.getError());
+        Assert.assertEquals(500, result.getInstructionCount());
+    }
+
+    @Test
+    public void testMachinesDoNotShareWordCodes() {
+        Machine first = new Machine();
+        first.initialize();
+        Machine second = new Machine();
+        second.initialize();
+
+        first.getCpu().getFileReader().encode("simulator");
+        Assert.assertTrue(first.getCpu().getFileReader().isEncoded("simulator"));
+        Assert.assertFalse(second.getCpu().getFileReader().isEncoded("simulator"));
+    }
+}
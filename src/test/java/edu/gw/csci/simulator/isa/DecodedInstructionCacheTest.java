@@ -0,0 +1,55 @@
+package edu.gw.csci.simulator.isa;
+
+import edu.gw.csci.simulator.memory.AllMemory;
+import edu.gw.csci.simulator.memory.MemoryCache;
+import edu.gw.csci.simulator.memory.WordMemory;
+import edu.gw.csci.simulator.registers.AllRegisters;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DecodedInstructionCacheTest {
+
+    private static final int LDR = 0b0000010000001010, STR = 0b0000100000001010;
+
+    private DecodedInstructionCache cache;
+    private AllMemory allMemory;
+
+    @Before
+    public void before(){
+        AllRegisters registers = new AllRegisters();
+        registers.initialize();
+        WordMemory memory = new WordMemory();
+        allMemory = new AllMemory(memory, registers, new MemoryCache());
+        cache = new DecodedInstructionCache(new Decoder(), memory.getSize());
+        allMemory.addStoreListener(cache);
+    }
+
+    @Test
+    public void testHit(){
+        DecodedInstruction first = cache.getDecoded(32, LDR);
+        DecodedInstruction second = cache.getDecoded(32, LDR);
+        Assert.assertSame(first, second);
+        Assert.assertEquals(1, cache.getCacheHit());
+        Assert.assertEquals(1, cache.getCacheMiss());
+        Assert.assertEquals(2, cache.getTotalRequests());
+    }
+
+    @Test
+    public void testStoreInvalidates(){
+        allMemory.storeWord(32, LDR);
+        cache.getDecoded(32, LDR);
+        allMemory.storeWord(32, LDR);
+        cache.getDecoded(32, LDR);
+        Assert.assertEquals(0, cache.getCacheHit());
+        Assert.assertEquals(2, cache.getCacheMiss());
+    }
+
+    @Test
+    public void testChangedWord(){
+        cache.getDecoded(32, LDR);
+        DecodedInstruction instruction = cache.getDecoded(32, STR);
+        Assert.assertEquals(InstructionType.STR, instruction.getInstructionType());
+        Assert.assertEquals(2, cache.getCacheMiss());
+    }
+}
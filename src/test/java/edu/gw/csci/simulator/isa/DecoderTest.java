@@ -1,5 +1,6 @@
 package edu.gw.csci.simulator.isa;
 
+import edu.gw.csci.simulator.exceptions.IllegalOpcode;
 import edu.gw.csci.simulator.utils.BitConversion;
 import org.junit.Assert;
 import org.junit.Test;
@@ -18,13 +19,38 @@ public class DecoderTest {
     }
 
     @Test
-    public void testNewObjectCreation(){
+    public void testSharedInstance(){
         String binary = InstructionType.HLT.getBinary();
         BitSet b = BitConversion.convert(binary);
-        Decoder decoder = new Decoder();
-        Instruction instruction1 = decoder.getInstruction(b);
-        Instruction instruction2 = decoder.getInstruction(b);
-        Assert.assertNotEquals(instruction1, instruction2);
+        Instruction instruction1 = new Decoder().getInstruction(b);
+        Instruction instruction2 = new Decoder().getInstruction(b);
+        Assert.assertSame(instruction1, instruction2);
+    }
+
+    @Test
+    public void testFields(){
+        //LDR R2, X1, indirect, address 27
+        DecodedInstruction decoded = new DecodedInstruction(BitConversion.fromBinaryStringToInt("0000011001111011"));
+        Assert.assertEquals(InstructionType.LDR, decoded.getInstructionType());
+        Assert.assertEquals(2, decoded.getR());
+        Assert.assertEquals(1, decoded.getIX());
+        Assert.assertTrue(decoded.isIndirect());
+        Assert.assertEquals(27, decoded.getAddress());
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testShiftFields(){
+        //SRC R1, count 5, L/R 1, A/L 0
+        DecodedInstruction decoded = new DecodedInstruction(BitConversion.fromBinaryStringToInt("0110010101000101"));
+        Assert.assertEquals(InstructionType.SRC, decoded.getInstructionType());
+        Assert.assertEquals(1, decoded.getR());
+        Assert.assertTrue(decoded.isLeft());
+        Assert.assertFalse(decoded.isLogical());
+        Assert.assertEquals(5, decoded.getCount());
+    }
+
+    @Test(expected = IllegalOpcode.class)
+    public void testIllegalWord(){
+        new Decoder().getInstruction(0xFFFF);
+    }
+}
@@ -0,0 +1,136 @@
+package edu.gw.csci.simulator.isa;
+
+import edu.gw.csci.simulator.TestPrograms;
+import edu.gw.csci.simulator.cpu.CPU;
+import edu.gw.csci.simulator.cpu.Machine;
+import edu.gw.csci.simulator.memory.AllMemory;
+import edu.gw.csci.simulator.registers.AllRegisters;
+import edu.gw.csci.simulator.registers.RegisterType;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Measures the time and the heap allocation of executing single instructions through their
+ * shared handlers, and of running a whole program on a {@link Machine}. It is not a unit test,
+ * so it is named to stay out of the surefire run; start it with its main method:
+ * <pre>
+ * java -cp target/classes:target/test-classes:... edu.gw.csci.simulator.isa.InstructionBenchmark [iterations]
+ * </pre>
+ * Every timed call also resets the register it works on, so results include one register write.
+ * Allocation is only reported when the JVM can measure it per thread.
+ */
+public class InstructionBenchmark {
+
+    static {
+        //Per instruction info logging would dominate the measurement
+        if (System.getProperty("log4j.configurationFile") == null) {
+            System.setProperty("log4j.configurationFile", "log4j2-headless.xml");
+        }
+    }
+
+    private static final int DEFAULT_ITERATIONS = 2_000_000, WARMUP_ROUNDS = 3;
+
+    private final Machine machine = new Machine();
+    private final AllMemory memory;
+    private final AllRegisters registers;
+    private final CPU cpu;
+    private final Decoder decoder = new Decoder();
+    private final int iterations;
+
+    private InstructionBenchmark(int iterations) {
+        this.iterations = iterations;
+        machine.initialize();
+        this.memory = machine.getAllMemory();
+        this.registers = machine.getAllRegisters();
+        this.cpu = machine.getCpu();
+    }
+
+    /**
+     * Sets up the operands the single instructions use, which {@link InstructionBenchmark#run(boolean)} clears.
+     */
+    private void prepare() {
+        memory.storeWord(20, 7);
+        memory.storeWord(21, 20);
+        registers.setWord(RegisterType.X1, 1);
+        registers.setWord(RegisterType.R2, 3);
+    }
+
+    public static void main(String[] args) {
+        int iterations = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_ITERATIONS;
+        InstructionBenchmark benchmark = new InstructionBenchmark(iterations);
+
+        for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+            boolean report = round == WARMUP_ROUNDS;
+            if (report) {
+                System.out.println(String.format("%-24s %10s %12s", "instruction", "ns/op", "bytes/op"));
+            }
+            benchmark.prepare();
+            benchmark.measure("LDR R0,20", "0000010000010100", RegisterType.R0, 0, report);
+            benchmark.measure("LDR R0,X1,20,indirect", "0000010001110100", RegisterType.R0, 0, report);
+            benchmark.measure("STR R0,22", "0000100000010110", RegisterType.R0, 5, report);
+            benchmark.measure("LDA R0,20", "0000110000010100", RegisterType.R0, 0, report);
+            benchmark.measure("AMR R0,20", "0001000000010100", RegisterType.R0, 5, report);
+            benchmark.measure("AIR R0,3", "0001100000000011", RegisterType.R0, 5, report);
+            benchmark.measure("SIR R0,3", "0001110000000011", RegisterType.R0, 5, report);
+            benchmark.measure("SOB R0,20", "0011100000010100", RegisterType.R0, 5, report);
+            benchmark.measure("JNE R0,20", "0010010000010100", RegisterType.R0, 5, report);
+            benchmark.measure("MLT R0,R2", "0100000010000000", RegisterType.R0, 300, report);
+            benchmark.measure("TRR R0,R1", "0100100001000000", RegisterType.R0, 5, report);
+            benchmark.measure("AND R0,R1", "0100110001000000", RegisterType.R0, 5, report);
+            benchmark.measure("NOT R0", "0101010000000000", RegisterType.R0, 5, report);
+            benchmark.measure("SRC R0,3,left", "0110010001000011", RegisterType.R0, 5, report);
+            benchmark.measure("RRC R0,3,right", "0110100000000011", RegisterType.R0, 5, report);
+            benchmark.run(report);
+        }
+    }
+
+    private void measure(String name, String binary, RegisterType reset, int resetValue, boolean report) {
+        DecodedInstruction decoded = decoder.decode(Integer.parseInt(binary, 2));
+        Instruction instruction = decoder.getInstruction(decoded.getInstructionType());
+
+        long allocated = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            registers.setWord(reset, resetValue);
+            instruction.execute(decoded, memory, registers, cpu);
+        }
+        long elapsed = System.nanoTime() - start;
+        allocated = allocatedBytes() - allocated;
+
+        if (report) {
+            System.out.println(String.format("%-24s %10.1f %12s", name, elapsed / (double) iterations,
+                    perOperation(allocated, iterations)));
+        }
+    }
+
+    private void run(boolean report) {
+        TestPrograms.load(machine, 20, 1000, TestPrograms.LOOP_PROGRAM);
+
+        long count = cpu.getInstructionCount();
+        long allocated = allocatedBytes();
+        long elapsed = machine.run();
+        allocated = allocatedBytes() - allocated;
+        count = cpu.getInstructionCount() - count;
+
+        if (report) {
+            System.out.println(String.format("%nWhole machine: %d instructions, %.1f ns/instruction, %s bytes/instruction",
+                    count, elapsed / (double) count, perOperation(allocated, count)));
+        }
+    }
+
+    private static String perOperation(long allocated, long operations) {
+        return (allocated < 0) ? "n/a" : String.format("%.2f", allocated / (double) operations);
+    }
+
+    /**
+     * @return The bytes allocated by this thread so far, or a negative value if it can't be measured
+     */
+    private static long allocatedBytes() {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threadMXBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+}
@@ -19,6 +19,16 @@ public class InstructionTypeTest {
         Assert.assertEquals(it, InstructionType.LDX);
     }
 
+    @Test
+    public void testDecodeOpCode(){
+        Assert.assertEquals(InstructionType.LDX, InstructionType.getInstructionType(33));
+    }
+
+    @Test (expected = IllegalOpcode.class)
+    public void testIllegalOpCode(){
+        InstructionType.getInstructionType(63);
+    }
+
 //    @Test (expected = IllegalOpcode.class)
 //    public void testNull(){
 //        String binaryOpCode = "";
@@ -0,0 +1,43 @@
+package edu.gw.csci.simulator.isa.instructions;
+
+import edu.gw.csci.simulator.cpu.Machine;
+import edu.gw.csci.simulator.isa.DecodedInstruction;
+import edu.gw.csci.simulator.isa.Decoder;
+import edu.gw.csci.simulator.registers.AllRegisters;
+import edu.gw.csci.simulator.registers.RegisterType;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ArithmeticLogicTest {
+
+    /**
+     * MLT R0, R2
+     */
+    private static final int MLT_R0_R2 = 0b0100000010000000;
+
+    /**
+     * @return The words left in R0 and R1 by multiplying the operands
+     */
+    private static int[] multiply(int rx, int ry) {
+        Machine machine = new Machine();
+        machine.initialize();
+        AllRegisters registers = machine.getAllRegisters();
+        registers.setWord(RegisterType.R0, rx & 0xFFFF);
+        registers.setWord(RegisterType.R2, ry & 0xFFFF);
+        Decoder decoder = new Decoder();
+        DecodedInstruction decoded = decoder.decode(MLT_R0_R2);
+        decoder.getInstruction(decoded.getInstructionType())
+                .execute(decoded, machine.getAllMemory(), registers, machine.getCpu());
+        return new int[]{registers.getWord(RegisterType.R0), registers.getWord(RegisterType.R1)};
+    }
+
+    @Test
+    public void testMultiplyKeepsTheWholeLowWord() {
+        //Odd products keep their lowest bit
+        Assert.assertArrayEquals(new int[]{0, 21}, multiply(7, 3));
+        //1000000 is 0x000F4240
+        Assert.assertArrayEquals(new int[]{0x000F, 0x4240}, multiply(1000, 1000));
+        //-300 sign extends into the high word
+        Assert.assertArrayEquals(new int[]{0xFFFF, -300 & 0xFFFF}, multiply(-100, 3));
+    }
+}
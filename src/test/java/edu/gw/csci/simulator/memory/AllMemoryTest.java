@@ -1,6 +1,7 @@
 package edu.gw.csci.simulator.memory;
 
 import edu.gw.csci.simulator.exceptions.*;
+import edu.gw.csci.simulator.isa.DecodedInstruction;
 import edu.gw.csci.simulator.isa.Decoder;
 import edu.gw.csci.simulator.registers.AllRegisters;
 import edu.gw.csci.simulator.registers.Register;
@@ -94,4 +95,38 @@ public class AllMemoryTest {
         allMemory.fetch(7);
         Assert.assertEquals(1, memoryCache.getCacheHit());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testWordStore(){
+        AllMemory allMemory = new AllMemory(new WordMemory(), registers, memoryCache);
+        allMemory.storeWord(7, 0xFFFF);
+        Assert.assertEquals(0xFFFF, allMemory.fetchWord(7));
+        Assert.assertEquals(-1, BitConversion.convert(allMemory.fetch(7)));
+        Assert.assertEquals(0xFFFF, registers.getWord(RegisterType.MBR));
+        Assert.assertEquals(7, registers.getWord(RegisterType.MAR));
+    }
+
+    @Test
+    public void testBitSetStoreIsVisibleAsWord(){
+        AllMemory allMemory = new AllMemory(memory, registers, memoryCache);
+        allMemory.store(8, BitConversion.convert(-2));
+        Assert.assertEquals(0xFFFE, memory.read(8));
+        Assert.assertEquals(-2, BitConversion.convert(memory.getChunkData(8)));
+    }
+
+    @Test
+    public void testEA(){
+        AllMemory allMemory = new AllMemory(memory, registers, memoryCache);
+        registers.setWord(RegisterType.X1, 10);
+        allMemory.storeWord(20, 100);
+        allMemory.storeWord(30, 200);
+        //LDR R0, X1, direct, 20
+        Assert.assertEquals(30, allMemory.EA(new DecodedInstruction(0b0000010001010100)));
+        //LDR R0, X1, indirect, 20
+        Assert.assertEquals(200, allMemory.EA(new DecodedInstruction(0b0000010001110100)));
+        //LDX X1, indirect, 20 ignores the index
+        Assert.assertEquals(100, allMemory.EA(new DecodedInstruction(0b1000010001110100)));
+        //AIR R0, immediate 20 ignores both
+        Assert.assertEquals(20, allMemory.EA(new DecodedInstruction(0b0001100001110100)));
+    }
+}
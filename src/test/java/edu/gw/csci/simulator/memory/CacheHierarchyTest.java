@@ -0,0 +1,113 @@
+package edu.gw.csci.simulator.memory;
+
+import edu.gw.csci.simulator.TestPrograms;
+import edu.gw.csci.simulator.cpu.CPU;
+import edu.gw.csci.simulator.cpu.CycleCounter;
+import edu.gw.csci.simulator.cpu.Machine;
+import edu.gw.csci.simulator.cpu.TimingModel;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CacheHierarchyTest {
+
+    private static CacheHierarchy hierarchy(String spec) {
+        CacheHierarchy hierarchy = CacheHierarchy.create(spec);
+        hierarchy.setBackend(new WordMemory());
+        return hierarchy;
+    }
+
+    @Test
+    public void testLevels() {
+        CacheHierarchy hierarchy = hierarchy("l1i=4,1,1,LRU;l1d=4,1,1,LRU;l2=16,4,1,LRU");
+        Assert.assertFalse(hierarchy.read(0, true));
+        Assert.assertEquals(1 + 10 + 100, hierarchy.getLastLatency());
+        Assert.assertTrue(hierarchy.read(0, true));
+        Assert.assertEquals(1, hierarchy.getLastLatency());
+        //Code and data are cached apart, but share L2
+        Assert.assertFalse(hierarchy.read(0, false));
+        Assert.assertEquals(1 + 10, hierarchy.getLastLatency());
+        Assert.assertEquals(123.0 / 3, hierarchy.getAverageAccessTime(), 1e-9);
+        Assert.assertEquals(0.5, CacheHierarchy.getHitRate(hierarchy.getL1I()), 1e-9);
+        Assert.assertEquals(0, CacheHierarchy.getHitRate(hierarchy.getL1D()), 1e-9);
+        Assert.assertEquals(0.5, CacheHierarchy.getHitRate(hierarchy.getL2()), 1e-9);
+
+        //Without L2, a miss goes to memory
+        hierarchy = hierarchy("l1i=4,1,1,LRU;l1d=4,1,1,LRU;latency=2,5,50");
+        Assert.assertNull(hierarchy.getL2());
+        hierarchy.read(9, false);
+        Assert.assertEquals(2 + 50, hierarchy.getLastLatency());
+    }
+
+    @Test
+    public void testWrites() {
+        //Written through into a write back L2, which keeps it until flushed
+        CacheHierarchy hierarchy = hierarchy("l1i=4,1,1,LRU;l1d=4,1,1,LRU;l2=16,4,1,LRU,WRITE_BACK");
+        hierarchy.write(5, 7);
+        Assert.assertEquals(1 + 10, hierarchy.getLastLatency());
+        Assert.assertEquals(1, hierarchy.getL1D().getMemoryWrites());
+        Assert.assertEquals(1, hierarchy.getL2().getDirtyLines());
+        Assert.assertEquals(0, hierarchy.getL2().getMemoryWrites());
+        hierarchy.flush();
+        Assert.assertEquals(1, hierarchy.getL2().getMemoryWrites());
+
+        //A write back L1D costs the L1 latency until the dirty line is evicted
+        hierarchy = hierarchy("l1i=4,1,1,LRU;l1d=4,1,1,LRU,WRITE_BACK;l2=16,4,1,LRU");
+        hierarchy.write(5, 7);
+        Assert.assertEquals(1, hierarchy.getLastLatency());
+        hierarchy.read(9, false);
+        Assert.assertEquals(1 + 10 + 100 + 10 + 100, hierarchy.getLastLatency());
+        Assert.assertEquals(1, hierarchy.getL1D().getWriteBacks());
+    }
+
+    @Test
+    public void testMachine() {
+        Machine machine = TestPrograms.loopMachine();
+        CPU cpu = machine.getCpu();
+        CacheHierarchy hierarchy = CacheHierarchy.create("l1i=4,2,2,LRU;l1d=4,2,2,LRU,WRITE_BACK;l2=16,4,4,LRU");
+        machine.getAllMemory().setCacheHierarchy(hierarchy);
+        cpu.setTimingModel(new TimingModel());
+        machine.run();
+        Assert.assertEquals(200, machine.getAllMemory().fetchWord(13));
+
+        Assert.assertEquals(613, hierarchy.getInstructionReads());
+        //LDX, the LDRs, the AMRs and the check of the result read, the STRs write
+        Assert.assertEquals(207 + 1, hierarchy.getDataReads());
+        Assert.assertEquals(200, hierarchy.getDataWrites());
+        //The single cache is left alone
+        Assert.assertEquals(0, machine.getAllMemory().getMemoryCache().getTotalRequests());
+
+        //Costed by the hierarchy, but for the check of the result above
+        CycleCounter counter = cpu.getCycleCounter();
+        Assert.assertEquals(hierarchy.getAverageAccessTime() * (613 + 208 + 200) - hierarchy.getLastLatency(),
+                counter.getMemoryCycles(), 1e-6);
+    }
+
+    @Test
+    public void testDetach() {
+        Machine machine = new Machine();
+        machine.initialize();
+        AllMemory memory = machine.getAllMemory();
+        memory.storeWord(100, 1);
+        memory.setCacheHierarchy(CacheHierarchy.create("l1i=4,2,1,LRU;l1d=4,2,1,LRU"));
+        memory.storeWord(100, 2);
+        memory.setCacheHierarchy(null);
+        Assert.assertEquals(2, memory.fetchWord(100));
+        Assert.assertEquals(2, memory.getMemoryCache().getWord(100));
+    }
+
+    @Test
+    public void testCreate() {
+        CacheHierarchy hierarchy = CacheHierarchy.create("l1d=8,2,1,FIFO; l1i=16,4,2,PLRU");
+        Assert.assertEquals(16, hierarchy.getL1I().getLines());
+        Assert.assertEquals(MemoryCache.Replacement.FIFO, hierarchy.emptyCopy().getL1D().getReplacement());
+        for (String bad : new String[]{"l1i=8,2,1,LRU", "l1i=8,2,1,LRU;l1d=8,2,1,LRU;l3=64,8,1,LRU",
+                "l1i=8,2,1,LRU;l1d=8,2,1,LRU;latency=1,2", "l1i=8,2,1,LRU;l1d"}) {
+            try {
+                CacheHierarchy.create(bad);
+                Assert.fail("Made " + bad);
+            } catch (IllegalArgumentException e) {
+                //Expected
+            }
+        }
+    }
+}
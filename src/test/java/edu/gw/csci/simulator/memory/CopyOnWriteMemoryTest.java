@@ -0,0 +1,63 @@
+package edu.gw.csci.simulator.memory;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CopyOnWriteMemoryTest {
+
+    @Test
+    public void testForkSharesUntilWrite() {
+        CopyOnWriteMemory parent = new CopyOnWriteMemory();
+        for (int i = 0; i < parent.getSize(); i++) {
+            parent.write(i, i);
+        }
+        Assert.assertEquals(2048 / CopyOnWriteMemory.PAGE_SIZE, parent.getPageCount());
+
+        CopyOnWriteMemory child = parent.fork();
+        Assert.assertEquals(parent.getPageCount(), child.getSharedPages());
+        Assert.assertEquals(1000, child.read(1000));
+
+        //Only the written page is copied, and only the writer sees the write
+        child.write(1000, 7);
+        child.write(1001, 8);
+        Assert.assertEquals(1, child.getCopiedPages());
+        Assert.assertEquals(parent.getPageCount() - 1, child.getSharedPages());
+        Assert.assertEquals(7, child.read(1000));
+        Assert.assertEquals(1000, parent.read(1000));
+
+        parent.write(5, 0);
+        Assert.assertEquals(1, parent.getCopiedPages());
+        Assert.assertEquals(5, child.read(5));
+        Assert.assertEquals(0, parent.read(5));
+    }
+
+    @Test
+    public void testForksOfForks() {
+        CopyOnWriteMemory parent = new CopyOnWriteMemory();
+        parent.write(100, 1);
+        CopyOnWriteMemory first = parent.fork();
+        CopyOnWriteMemory second = first.fork();
+        second.write(100, 3);
+        first.write(100, 2);
+        Assert.assertEquals(1, parent.read(100));
+        Assert.assertEquals(2, first.read(100));
+        Assert.assertEquals(3, second.read(100));
+    }
+
+    @Test
+    public void testCopyToAndFrom() {
+        CopyOnWriteMemory memory = new CopyOnWriteMemory(100, 16);
+        char[] words = new char[100];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = (char) (0xFFFF - i);
+        }
+        CopyOnWriteMemory child = memory.fork();
+        memory.copyFrom(words);
+        Assert.assertEquals(0, child.read(99));
+
+        char[] copy = new char[100];
+        memory.copyTo(copy);
+        Assert.assertArrayEquals(words, copy);
+        Assert.assertEquals(0xFFFF - 99, memory.read(99));
+    }
+}
@@ -45,4 +45,203 @@ public class MemoryCacheTest {
         }
     }
 
-}
\ No newline at end of file
+    private static int[] putAll(MemoryCache cache, int... addresses) {
+        for (int address : addresses) {
+            cache.putWord(address, address + 100);
+        }
+        return cache.getCachedAddresses();
+    }
+
+    @Test
+    public void testReplacement() {
+        //Four sets of two ways, 0, 4 and 8 share set 0
+        MemoryCache lru = new MemoryCache(8, 2, 1, MemoryCache.Replacement.LRU);
+        MemoryCache fifo = new MemoryCache(8, 2, 1, MemoryCache.Replacement.FIFO);
+        for (MemoryCache cache : new MemoryCache[]{lru, fifo}) {
+            putAll(cache, 0, 4, 1);
+            Assert.assertEquals(100, cache.getWord(0));
+            cache.putWord(8, 108);
+            Assert.assertEquals(3, cache.getSize());
+            Assert.assertEquals(1, cache.getSetEvictions(0));
+            Assert.assertEquals(0, cache.getSetEvictions(1));
+        }
+        Assert.assertArrayEquals(new int[]{1, 0, 8}, lru.getCachedAddresses());
+        Assert.assertArrayEquals(new int[]{4, 1, 8}, fifo.getCachedAddresses());
+        Assert.assertEquals(MemoryCache.MISS, lru.getWord(4));
+        Assert.assertEquals(1, lru.getSetMisses(0));
+        Assert.assertEquals(1, lru.getSetHits(0));
+
+        //The tree points away from 2, then within the left half away from 0
+        MemoryCache plru = new MemoryCache(4, 4, 1, MemoryCache.Replacement.PLRU);
+        putAll(plru, 0, 1, 2, 3);
+        plru.getWord(0);
+        plru.getWord(2);
+        plru.putWord(4, 104);
+        Assert.assertEquals(MemoryCache.MISS, plru.getWord(1));
+        Assert.assertEquals(104, plru.getWord(4));
+
+        MemoryCache random = new MemoryCache(8, 2, 1, MemoryCache.Replacement.RANDOM);
+        for (int i = 0; i < 100; i++) {
+            random.putWord(i, i);
+        }
+        int[] perSet = new int[random.getSets()];
+        for (int address : random.getCachedAddresses()) {
+            perSet[address % random.getSets()]++;
+        }
+        Assert.assertArrayEquals(new int[]{2, 2, 2, 2}, perSet);
+        Assert.assertEquals(92 / 4, random.getSetEvictions(3));
+    }
+
+    @Test
+    public void testWideSets() {
+        //One set of 512 ways, looked up through the block index and kept in order by the LRU list
+        MemoryCache wide = new MemoryCache(512, 512, 1, MemoryCache.Replacement.LRU);
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < 512; i++) {
+                wide.putWord(i, i);
+            }
+            for (int i = 0; i < 512; i += 2) {
+                Assert.assertEquals(i, wide.getWord(i));
+            }
+            //The odd addresses were used longest ago, so they make room
+            for (int i = 512; i < 768; i++) {
+                wide.putWord(i, i);
+            }
+            Assert.assertEquals(256, wide.getSetEvictions(0) - 256 * round);
+            for (int i = 0; i < 768; i++) {
+                Assert.assertEquals(String.valueOf(i), (i < 512 && i % 2 == 1) ? MemoryCache.MISS : i, wide.getWord(i));
+            }
+            wide.clear();
+            Assert.assertEquals(0, wide.getSize());
+        }
+    }
+
+    @Test
+    public void testBlocks() {
+        WordMemory memory = new WordMemory();
+        for (int i = 0; i < 16; i++) {
+            memory.write(i, 1000 + i);
+        }
+        MemoryCache cache = new MemoryCache(4, 2, 4, MemoryCache.Replacement.LRU);
+        Assert.assertEquals(2, cache.getSets());
+        //A store brings in its whole block
+        cache.setBackend(memory);
+        cache.putWord(5, 7);
+        Assert.assertEquals(1004, cache.getWord(4));
+        Assert.assertEquals(7, cache.getWord(5));
+        Assert.assertEquals(1007, cache.getWord(7));
+        Assert.assertEquals(MemoryCache.MISS, cache.getWord(8));
+        Assert.assertEquals(3, cache.getSetHits(1));
+        Assert.assertEquals(1, cache.getSetMisses(0));
+        Assert.assertArrayEquals(new int[]{4, 5, 6, 7}, cache.getCachedAddresses());
+
+        //Without a backend only the words put are cached
+        cache = new MemoryCache(4, 2, 4, MemoryCache.Replacement.LRU);
+        cache.putWord(5, 7);
+        Assert.assertEquals(MemoryCache.MISS, cache.getWord(4));
+        Assert.assertArrayEquals(new int[]{5}, cache.getCachedAddresses());
+        cache.updateWord(6, 9);
+        Assert.assertEquals(9, cache.getWord(6));
+        cache.updateWord(8, 9);
+        Assert.assertEquals(MemoryCache.MISS, cache.getWord(8));
+    }
+
+    @Test
+    public void testCreate() {
+        MemoryCache cache = MemoryCache.create("64,4,2,plru");
+        Assert.assertEquals(16, cache.getSets());
+        Assert.assertEquals(MemoryCache.Replacement.PLRU, cache.emptyCopy().getReplacement());
+        for (String bad : new String[]{"64,4,2", "48,4,1,LRU", "64,3,1,LRU", "64,4,3,LRU", "24,3,1,PLRU", "64,4,1,MRU"}) {
+            try {
+                MemoryCache.create(bad);
+                Assert.fail("Made " + bad);
+            } catch (IllegalArgumentException e) {
+                //Expected
+            }
+        }
+    }
+
+    @Test
+    public void testWriteBack() {
+        //Four sets of one way and two words, 0 and 8 share set 0
+        for (MemoryCache.WritePolicy policy : MemoryCache.WritePolicy.values()) {
+            MemoryCache cache = new MemoryCache(4, 1, 2, MemoryCache.Replacement.LRU);
+            cache.setBackend(new WordMemory());
+            cache.setWritePolicy(policy);
+            cache.writeWord(0, 1);
+            cache.writeWord(1, 2);
+            cache.writeWord(0, 3);
+            cache.writeWord(8, 4);
+            Assert.assertEquals(4, cache.getWrites());
+            if (policy == MemoryCache.WritePolicy.WRITE_BACK) {
+                //Only the eviction of the dirty block reached memory
+                Assert.assertEquals(1, cache.getWriteBacks());
+                Assert.assertEquals(2, cache.getMemoryWrites());
+                Assert.assertEquals(1, cache.getDirtyLines());
+                cache.flush();
+                Assert.assertEquals(2, cache.getWriteBacks());
+                Assert.assertEquals(4, cache.getMemoryWrites());
+                Assert.assertEquals(0, cache.getDirtyLines());
+                Assert.assertEquals(4, cache.getWord(8));
+            } else {
+                Assert.assertEquals(0, cache.getWriteBacks());
+                Assert.assertEquals(4, cache.getMemoryWrites());
+            }
+            Assert.assertEquals(cache.getWrites() - cache.getMemoryWrites(), cache.getWriteTrafficSaved());
+        }
+
+        //Leaving write back writes the dirty lines back
+        MemoryCache cache = new MemoryCache(4, 1, 2, MemoryCache.Replacement.LRU);
+        cache.setWritePolicy(MemoryCache.WritePolicy.WRITE_BACK);
+        cache.writeWord(2, 1);
+        Assert.assertEquals(0, cache.getMemoryWrites());
+        cache.setWritePolicy(MemoryCache.WritePolicy.WRITE_THROUGH);
+        Assert.assertEquals(2, cache.getMemoryWrites());
+        cache.writeWord(2, 1);
+        Assert.assertEquals(3, cache.getMemoryWrites());
+    }
+
+    @Test
+    public void testLongBlocks() {
+        //Blocks of more words than a long has bits
+        MemoryCache cache = MemoryCache.create("2,1,128,LRU,WRITE_BACK");
+        MemoryCache next = MemoryCache.create("512,1,1,LRU,WRITE_BACK");
+        cache.setNextLevel(next);
+        cache.writeWord(100, 1);
+        cache.flush();
+        Assert.assertEquals(1, cache.getWriteBacks());
+        Assert.assertEquals(128, cache.getMemoryWrites());
+        Assert.assertEquals(128, next.getWrites());
+
+        cache.setWritePolicy(MemoryCache.WritePolicy.WRITE_THROUGH);
+        next.clear();
+        cache.writeWord(300, 2);
+        Assert.assertEquals(129, cache.getMemoryWrites());
+        Assert.assertNotEquals(MemoryCache.MISS, next.getWord(300));
+    }
+
+    @Test
+    public void testWriteBuffer() {
+        MemoryCache cache = new MemoryCache(4, 1, 2, MemoryCache.Replacement.LRU);
+        cache.setWriteBufferEntries(2);
+        Assert.assertTrue(cache.isBufferingWrites());
+        cache.writeWord(0, 1);
+        cache.writeWord(0, 2);
+        cache.writeWord(1, 3);
+        cache.writeWord(2, 4);
+        Assert.assertEquals(0, cache.getMemoryWrites());
+        Assert.assertEquals(1, cache.getCoalescedWrites());
+        //The buffer is full, so block 0 drains to make room
+        cache.writeWord(4, 5);
+        Assert.assertEquals(2, cache.getMemoryWrites());
+        cache.flush();
+        Assert.assertEquals(4, cache.getMemoryWrites());
+        Assert.assertEquals(1, cache.getWriteTrafficSaved());
+
+        MemoryCache copy = cache.emptyCopy();
+        Assert.assertEquals(2, copy.getWriteBufferEntries());
+        Assert.assertEquals(0, copy.getSize());
+        copy.setWriteBufferEntries(0);
+        Assert.assertFalse(copy.isBufferingWrites());
+    }
+}
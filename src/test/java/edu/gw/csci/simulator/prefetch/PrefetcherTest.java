@@ -0,0 +1,142 @@
+package edu.gw.csci.simulator.prefetch;
+
+import edu.gw.csci.simulator.cpu.Machine;
+import edu.gw.csci.simulator.memory.AllMemory;
+import edu.gw.csci.simulator.memory.MemoryCache;
+import edu.gw.csci.simulator.memory.WordMemory;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class PrefetcherTest {
+
+    private static MemoryCache cache(int lines) {
+        MemoryCache cache = new MemoryCache(lines, lines, 1, MemoryCache.Replacement.LRU);
+        cache.setBackend(new WordMemory());
+        return cache;
+    }
+
+    /**
+     * Reads the addresses as a single cache does, without allocating on a miss
+     */
+    private static void scan(MemoryCache cache, Prefetcher prefetcher, int from, int to) {
+        for (int address = from; address < to; address++) {
+            boolean miss = cache.getWord(address) == MemoryCache.MISS;
+            prefetcher.access(40, address, cache.getBlockSize(), miss, cache::prefetch);
+        }
+    }
+
+    @Test
+    public void testNextLine() {
+        List<Integer> asked = new ArrayList<>();
+        new NextLinePrefetcher(2).access(40, 13, 4, true, asked::add);
+        new NextLinePrefetcher(2).access(40, 13, 4, false, asked::add);
+        Assert.assertEquals(Arrays.asList(16, 20), asked);
+
+        //Every other read of a scan misses, and brings in the next
+        MemoryCache cache = cache(16);
+        scan(cache, new NextLinePrefetcher(1), 100, 110);
+        Assert.assertEquals(5, cache.getCacheMiss());
+        Assert.assertEquals(5, cache.getPrefetches());
+        Assert.assertEquals(1.0, cache.getPrefetchAccuracy(), 1e-9);
+        Assert.assertEquals(0.5, cache.getPrefetchCoverage(), 1e-9);
+    }
+
+    @Test
+    public void testStride() {
+        List<Integer> asked = new ArrayList<>();
+        StridePrefetcher stride = new StridePrefetcher(64, 2);
+        for (int address = 100; address <= 109; address += 3) {
+            stride.access(40, address, 1, true, asked::add);
+            //Another load in between keeps an entry of its own
+            stride.access(41, 7, 1, true, asked::add);
+        }
+        //Confident from the third read of load 40
+        Assert.assertEquals(Arrays.asList(109, 112, 112, 115), asked);
+
+        //A load with the low bits of 40 replaces it
+        asked.clear();
+        stride.access(40 + 64, 200, 1, true, asked::add);
+        stride.access(40, 112, 1, true, asked::add);
+        Assert.assertTrue(asked.isEmpty());
+        stride.reset();
+        Assert.assertEquals("stride/64/2", stride.getName());
+    }
+
+    @Test
+    public void testStream() {
+        //Three misses start and confirm the stream, after which it stays ahead
+        MemoryCache cache = cache(16);
+        scan(cache, new StreamPrefetcher(4, 1), 100, 110);
+        Assert.assertEquals(3, cache.getCacheMiss());
+        Assert.assertEquals(8, cache.getPrefetches());
+        Assert.assertEquals(7.0 / 8, cache.getPrefetchAccuracy(), 1e-9);
+        Assert.assertEquals(0.7, cache.getPrefetchCoverage(), 1e-9);
+
+        //Downwards as well
+        List<Integer> asked = new ArrayList<>();
+        StreamPrefetcher stream = new StreamPrefetcher(4, 1);
+        for (int address = 50; address > 40; address -= 2) {
+            stream.access(40, address, 2, true, asked::add);
+        }
+        Assert.assertEquals(Arrays.asList(44, 42, 40), asked);
+    }
+
+    @Test
+    public void testPollution() {
+        MemoryCache cache = cache(2);
+        cache.putWord(0, 1);
+        cache.putWord(1, 2);
+        Assert.assertTrue(cache.prefetch(5));
+        //The prefetch evicted a block that is then missed on, once
+        Assert.assertEquals(MemoryCache.MISS, cache.getWord(0));
+        Assert.assertEquals(MemoryCache.MISS, cache.getWord(0));
+        Assert.assertEquals(1, cache.getPollution());
+
+        Assert.assertTrue(cache.prefetch(6));
+        Assert.assertTrue(cache.prefetch(7));
+        Assert.assertEquals(1, cache.getUselessPrefetches());
+        Assert.assertFalse(cache.prefetch(7));
+        Assert.assertEquals(1, cache.getRedundantPrefetches());
+        Assert.assertTrue(cache.getReport().contains("1 pollution misses"));
+        cache.clearCounts();
+        Assert.assertEquals(0, cache.getPrefetches());
+    }
+
+    @Test
+    public void testAllMemory() {
+        Machine machine = new Machine();
+        machine.initialize();
+        AllMemory allMemory = machine.getAllMemory();
+        allMemory.setPrefetcher(Prefetchers.create("next-line"));
+        for (int address = 100; address < 110; address++) {
+            allMemory.fetchWord(address);
+        }
+        MemoryCache memoryCache = allMemory.getMemoryCache();
+        Assert.assertEquals(5, memoryCache.getUsefulPrefetches());
+        //Nothing is brought in past the end of memory
+        allMemory.fetchWord(allMemory.getMemory().getSize() - 1);
+        Assert.assertEquals(5, memoryCache.getPrefetches());
+        //Instruction fetches are left alone
+        allMemory.fetchInstruction(200);
+        Assert.assertEquals(5, memoryCache.getPrefetches());
+    }
+
+    @Test
+    public void testCreate() {
+        Assert.assertEquals("next-line/" + Prefetchers.DEFAULT_DEGREE, Prefetchers.create("next-line").getName());
+        Assert.assertEquals("stride/" + StridePrefetcher.DEFAULT_ENTRIES + "/4", Prefetchers.create("Stride/4").getName());
+        Assert.assertEquals("stream/" + StreamPrefetcher.DEFAULT_STREAMS + "/2", Prefetchers.create("stream/2").getName());
+        for (String bad : new String[]{"markov", "stride/0", "stream/x"}) {
+            try {
+                Prefetchers.create(bad);
+                Assert.fail("Made " + bad);
+            } catch (IllegalArgumentException e) {
+                //Expected
+            }
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package edu.gw.csci.simulator.trace;
+
+import edu.gw.csci.simulator.TestPrograms;
+import edu.gw.csci.simulator.cpu.Machine;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+public class CacheSweepTest {
+
+    private static AddressTrace loopTrace() {
+        Machine machine = TestPrograms.loopMachine();
+        AddressTrace trace = new AddressTrace();
+        trace.attach(machine.getAllMemory());
+        machine.run();
+        trace.detach(machine.getAllMemory());
+        Assert.assertEquals(200, machine.getAllMemory().fetchWord(13));
+        return trace;
+    }
+
+    @Test
+    public void testRecord() throws IOException {
+        AddressTrace trace = loopTrace();
+        Assert.assertEquals(613, trace.getFetches());
+        Assert.assertEquals(207, trace.getReads());
+        Assert.assertEquals(200, trace.getWrites());
+        Assert.assertEquals(AddressTrace.FETCH, trace.getKind(0));
+        Assert.assertEquals(Machine.DEFAULT_LOAD_LOCATION, trace.getAddress(0));
+        //LDX reads X1 from 14
+        Assert.assertEquals(AddressTrace.READ, trace.getKind(1));
+        Assert.assertEquals(14, trace.getAddress(1));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        trace.writeTo(bytes);
+        AddressTrace copy = AddressTrace.readFrom(new ByteArrayInputStream(bytes.toByteArray()));
+        Assert.assertEquals(trace.size(), copy.size());
+        for (int i = 0; i < trace.size(); i++) {
+            Assert.assertEquals(trace.getKind(i), copy.getKind(i));
+            Assert.assertEquals(trace.getAddress(i), copy.getAddress(i));
+        }
+        try {
+            AddressTrace.readFrom(new ByteArrayInputStream(new byte[8]));
+            Assert.fail("Read a trace from zeros");
+        } catch (IOException e) {
+            //Expected
+        }
+    }
+
+    @Test
+    public void testReplay() {
+        AddressTrace trace = new AddressTrace();
+        for (int pass = 0; pass < 3; pass++) {
+            trace.add(AddressTrace.FETCH, 0);
+            trace.add(AddressTrace.READ, 4);
+        }
+        trace.add(AddressTrace.WRITE, 5);
+
+        //0 and 4 share the only set of a direct mapped cache, and keep evicting each other
+        SweepResult direct = CacheSweep.replay(trace, "4,1,1,LRU", 1, 10);
+        Assert.assertEquals(3, direct.getFetchMisses());
+        Assert.assertEquals(3, direct.getReadMisses());
+        Assert.assertEquals(0, direct.getHitRate(), 1e-9);
+        Assert.assertEquals((7 + 10 * (6 + 1)) / 7.0, direct.getAverageAccessTime(), 1e-9);
+
+        //Two ways keep both, and blocks of two words bring 5 in with 4
+        SweepResult twoWay = CacheSweep.replay(trace, "4,2,2,LRU,WRITE_BACK", 1, 10);
+        Assert.assertEquals(2.0 / 3, twoWay.getHitRate(), 1e-9);
+        Assert.assertEquals(2.0 / 3, twoWay.getInstructionHitRate(), 1e-9);
+        Assert.assertEquals(8, twoWay.getSize());
+        //The dirty line is written back by the flush at the end
+        Assert.assertEquals(2, twoWay.getMemoryWrites());
+        Assert.assertEquals((7 + 10 * (2 + 2)) / 7.0, twoWay.getAverageAccessTime(), 1e-9);
+    }
+
+    @Test
+    public void testGrid() {
+        List<String> grid = CacheSweep.grid("sizes=8,16;ways=1,2,full;blocks=1,4;policies=LRU,PLRU");
+        //Three associativities and two policies each, but 8 words in blocks of 4 are 2 lines, where
+        //2 ways is already fully associative
+        Assert.assertEquals(2 * (3 + 2 + 3 + 3), grid.size());
+        Assert.assertEquals("8,1,1,LRU,WRITE_THROUGH", grid.get(0));
+        Assert.assertTrue(grid.contains("16,16,1,PLRU,WRITE_THROUGH"));
+        Assert.assertEquals(1, CacheSweep.grid("sizes=16").size());
+        Assert.assertEquals("16,16,1,FIFO,WRITE_THROUGH", CacheSweep.grid("ways=full").get(0));
+        for (String bad : new String[]{"sizes=2;blocks=4", "colors=1", "sizes=x", "ways=3;sizes=8",
+                "policies=MRU"}) {
+            try {
+                CacheSweep.grid(bad);
+                Assert.fail("Expanded " + bad);
+            } catch (IllegalArgumentException e) {
+                //Expected
+            }
+        }
+    }
+
+    @Test
+    public void testParallelSweep() throws InterruptedException {
+        AddressTrace trace = loopTrace();
+        List<String> grid = CacheSweep.grid("sizes=4,8,16;ways=1,2,full;blocks=1,2;policies=LRU,FIFO,RANDOM");
+        List<SweepResult> results;
+        try (CacheSweep sweep = new CacheSweep(4)) {
+            results = sweep.run(trace, grid);
+            String table = sweep.getTable(results);
+            Assert.assertTrue(table, table.contains("Lowest AMAT"));
+        }
+        Assert.assertEquals(grid.size(), results.size());
+        for (int i = 0; i < grid.size(); i++) {
+            SweepResult result = results.get(i);
+            SweepResult alone = CacheSweep.replay(trace, grid.get(i), 1, 100);
+            Assert.assertEquals(grid.get(i), result.getSpec());
+            Assert.assertEquals(alone.getFetchMisses(), result.getFetchMisses());
+            Assert.assertEquals(alone.getReadMisses(), result.getReadMisses());
+            Assert.assertEquals(alone.getAverageAccessTime(), result.getAverageAccessTime(), 1e-9);
+        }
+        //The loop fits in 16 words: only the first touch of each block misses
+        SweepResult fits = results.get(grid.indexOf("16,16,1,LRU,WRITE_THROUGH"));
+        Assert.assertEquals(8, fits.getFetchMisses());
+        Assert.assertEquals(4, fits.getReadMisses());
+    }
+}
@@ -0,0 +1,190 @@
+package edu.gw.csci.simulator.trace;
+
+import edu.gw.csci.simulator.TestPrograms;
+import edu.gw.csci.simulator.cpu.Machine;
+import edu.gw.csci.simulator.cpu.TrapController;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.List;
+
+public class TraceWriterTest {
+
+    private static final int START = Machine.DEFAULT_LOAD_LOCATION;
+
+    /**
+     * 100 records per segment
+     */
+    private static final long SEGMENT_SIZE = TraceWriter.HEADER_SIZE + 100 * TraceRecord.SIZE;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static Machine machine(String... lines) {
+        return TestPrograms.load(new Machine(), lines);
+    }
+
+    private Path trace(Machine machine) throws IOException {
+        Path prefix = folder.getRoot().toPath().resolve("run");
+        try (TraceWriter writer = new TraceWriter(prefix, SEGMENT_SIZE)) {
+            machine.getCpu().setTraceWriter(writer);
+            machine.run();
+            machine.getCpu().setTraceWriter(null);
+        }
+        return prefix;
+    }
+
+    @Test
+    public void testLoopTrace() throws IOException {
+        Machine machine = machine(TestPrograms.LOOP_PROGRAM);
+        TraceReader reader = new TraceReader(trace(machine));
+        long count = machine.getCpu().getInstructionCount();
+        Assert.assertEquals(count, reader.size());
+        Assert.assertEquals((count + 99) / 100, reader.getSegments());
+
+        TraceRecord ldx = reader.get(0);
+        Assert.assertEquals(START, ldx.getPC());
+        Assert.assertEquals(Integer.parseInt(TestPrograms.LOOP_PROGRAM[0], 2), ldx.getIR());
+        Assert.assertTrue(ldx.hasFlag(TraceRecord.HAS_EA));
+        Assert.assertEquals(14, ldx.getEA());
+        Assert.assertEquals(14, ldx.getReadAddress());
+        Assert.assertEquals(START, ldx.getReadWord());
+        Assert.assertFalse(ldx.hasFlag(TraceRecord.HAS_WRITE));
+
+        TraceRecord str = reader.get(4);
+        Assert.assertEquals(START + 4, str.getPC());
+        Assert.assertTrue(str.hasFlag(TraceRecord.HAS_WRITE));
+        Assert.assertFalse(str.hasFlag(TraceRecord.HAS_READ));
+        Assert.assertEquals(13, str.getWriteAddress());
+        Assert.assertEquals(1, str.getWriteWord());
+
+        //The last store of the run, and the HLT
+        TraceRecord lastStore = reader.get(count - 4);
+        Assert.assertEquals(START + 4, lastStore.getPC());
+        Assert.assertEquals(200, lastStore.getWriteWord());
+        Assert.assertEquals(START + 7, reader.get(count - 1).getPC());
+
+        //Iterating walks across the segments in order
+        long index = 0;
+        for (TraceRecord record : reader) {
+            Assert.assertEquals(index, record.getIndex());
+            Assert.assertEquals(reader.get(index).getPC(), record.getPC());
+            index++;
+        }
+        Assert.assertEquals(count, index);
+    }
+
+    @Test
+    public void testFaultRecord() throws IOException {
+        //STR R0, 2 stores to a reserved location, and faults
+        Machine machine = machine("0000100000000010", "0000000000000000");
+        TraceReader reader = new TraceReader(trace(machine));
+        Iterator<TraceRecord> records = reader.iterator();
+
+        TraceRecord fault = records.next();
+        Assert.assertEquals(START, fault.getPC());
+        Assert.assertTrue(fault.hasFlag(TraceRecord.FAULT));
+        Assert.assertTrue(fault.hasFlag(TraceRecord.HAS_WRITE));
+        Assert.assertEquals(TrapController.TRAP_PC_LOCATION, fault.getWriteAddress());
+
+        //The HLT of the fault routine, then the HLT of the program
+        Assert.assertEquals(TrapController.HALT_LOCATION, records.next().getPC());
+        Assert.assertEquals(START + 1, records.next().getPC());
+        Assert.assertFalse(records.hasNext());
+    }
+
+    @Test
+    public void testEffectiveAddresses() throws IOException {
+        Machine machine = machine(
+                "0000010100101010", //LDR R1, 10, indirect
+                "0001100100000011", //AIR R1, 3
+                "0100110001000000", //AND R0, R1
+                "1000010001001011", //LDX X1, 11
+                "0000011001000101", //LDR R2, X1, 5
+                "0000000000000000"  //HLT
+        );
+        machine.getAllMemory().storeWord(10, 20);
+        machine.getAllMemory().storeWord(11, 8);
+        TraceReader reader = new TraceReader(trace(machine));
+
+        //The pointer is the first read, and the address
+        TraceRecord indirect = reader.get(0);
+        Assert.assertEquals(20, indirect.getEA());
+        Assert.assertEquals(10, indirect.getReadAddress());
+        Assert.assertEquals(3, reader.get(1).getEA());
+        Assert.assertEquals(0, reader.get(2).getEA());
+        Assert.assertEquals(11, reader.get(3).getEA());
+        Assert.assertEquals(13, reader.get(4).getEA());
+        for (int i = 0; i < 6; i++) {
+            Assert.assertEquals(i != 2 && i != 5, reader.get(i).hasFlag(TraceRecord.HAS_EA));
+        }
+    }
+
+    @Test
+    public void testMoreAccessesGoToTheSideStream() throws IOException {
+        Path prefix = folder.getRoot().toPath().resolve("vector");
+        try (TraceWriter writer = new TraceWriter(prefix, SEGMENT_SIZE)) {
+            writer.write(START, 0, 0, 0, 0, 0, 0, 0, 0);
+            //Like a VADD of two words: four reads and two stores after the pointers
+            writer.writeAccess(false, 101, 7);
+            writer.writeAccess(false, 200, 1);
+            writer.writeAccess(true, 200, 2);
+            writer.writeAccess(false, 102, 8);
+            writer.writeAccess(false, 201, 1);
+            writer.writeAccess(true, 201, 3);
+            writer.write(START + 1, 0, 100, 0, TraceRecord.HAS_EA | TraceRecord.HAS_READ | TraceRecord.HAS_WRITE
+                    | TraceRecord.MORE_READS | TraceRecord.MORE_WRITES, 100, 200, 101, 2);
+            writer.write(START + 2, 0, 0, 0, 0, 0, 0, 0, 0);
+        }
+        Assert.assertTrue(Files.exists(TraceWriter.extraPath(prefix)));
+
+        TraceReader reader = new TraceReader(prefix);
+        Assert.assertEquals(3, reader.size());
+        Assert.assertTrue(reader.get(0).getMoreAccesses().isEmpty());
+        Assert.assertTrue(reader.get(2).getMoreAccesses().isEmpty());
+        TraceRecord vadd = reader.get(1);
+        Assert.assertEquals(100, vadd.getReadAddress());
+        Assert.assertEquals(101, vadd.getWriteAddress());
+        List<TraceRecord.Access> more = vadd.getMoreAccesses();
+        Assert.assertEquals(6, more.size());
+        Assert.assertFalse(more.get(0).isWrite());
+        Assert.assertEquals(101, more.get(0).getAddress());
+        Assert.assertEquals(7, more.get(0).getWord());
+        Assert.assertTrue(more.get(5).isWrite());
+        Assert.assertEquals(201, more.get(5).getAddress());
+        Assert.assertEquals(3, more.get(5).getWord());
+
+        //A trace of the same name without extra accesses leaves no side stream behind
+        Machine machine = machine(TestPrograms.LOOP_PROGRAM);
+        try (TraceWriter writer = new TraceWriter(prefix, SEGMENT_SIZE)) {
+            machine.getCpu().setTraceWriter(writer);
+            machine.run();
+            machine.getCpu().setTraceWriter(null);
+        }
+        Assert.assertFalse(Files.exists(TraceWriter.extraPath(prefix)));
+    }
+
+    @Test
+    public void testNotATrace() throws IOException {
+        Path prefix = folder.getRoot().toPath().resolve("other");
+        try {
+            new TraceReader(prefix);
+            Assert.fail("Read a trace that doesn't exist");
+        } catch (IOException e) {
+            //Expected
+        }
+        Files.write(TraceWriter.segmentPath(prefix, 0), new byte[TraceWriter.HEADER_SIZE]);
+        try {
+            new TraceReader(prefix);
+            Assert.fail("Read a segment without the magic number");
+        } catch (IOException e) {
+            //Expected
+        }
+    }
+}
@@ -90,7 +90,9 @@ public class FloatTest {
                 new FloatingPointsCalculate(s1,s3,true),
                 new FloatingPointsCalculate(s2,s3,false)
         };
+        Assert.assertEquals(FloatingPointsCalculate.DEFAULT_NAME, floatingPointsCalculates[0].getFpncName());
         PipeLine pipeLine = new PipeLine(floatingPointsCalculates,10);
+        Assert.assertEquals(FloatingPointsCalculate.DEFAULT_NAME + ": 6", floatingPointsCalculates[5].getFpncName());
         pipeLine.pipeline();
     }
 }